@@ -1,5 +1,6 @@
 package com.izicap.dynamicmultidatabase;
 
+import com.izicap.dynamicmultidatabase.tracing.Tracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +12,7 @@ public class DBContextHolder {
     public static void setCurrentDb(DBTypeEnum dbType) {
         logger.debug("Setting database context to: {} for thread: {}", dbType, Thread.currentThread().getName());
         contextHolder.set(dbType);
+        Tracing.tagTenant(dbType);
     }
     
     public static DBTypeEnum getCurrentDb() {
@@ -1,5 +1,37 @@
 package com.izicap.dynamicmultidatabase;
 
+import java.util.Optional;
+
 public enum DBTypeEnum {
     MAIN, CLIENT_A, CLIENT_B;
+    
+    /**
+     * Resolve the tenant database for a client identifier used in request parameters
+     */
+    public static DBTypeEnum fromClientId(String client) {
+        if (client == null) {
+            return MAIN;
+        }
+        return findByClientId(client).orElse(MAIN);
+    }
+    
+    /**
+     * Resolve a client identifier without falling back to the main database, for requests
+     * where an unknown identifier must be rejected rather than routed to it
+     */
+    public static Optional<DBTypeEnum> findByClientId(String client) {
+        if (client == null) {
+            return Optional.empty();
+        }
+        switch (client) {
+            case "main":
+                return Optional.of(MAIN);
+            case "client-a":
+                return Optional.of(CLIENT_A);
+            case "client-b":
+                return Optional.of(CLIENT_B);
+            default:
+                return Optional.empty();
+        }
+    }
 }
\ No newline at end of file
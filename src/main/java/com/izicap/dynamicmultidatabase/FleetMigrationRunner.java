@@ -0,0 +1,64 @@
+package com.izicap.dynamicmultidatabase;
+
+import com.izicap.dynamicmultidatabase.model.FleetMigrationReport;
+import com.izicap.dynamicmultidatabase.service.FleetMigrationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Standalone entry point that migrates the tenant fleet out-of-band, without starting
+ * the web server or the application's background work. Run it with {@code ./gradlew migrateFleet}; pass
+ * {@code --app.flyway.fleet.run-id=<id>} to resume a previous run.
+ */
+public class FleetMigrationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetMigrationRunner.class);
+
+    public static void main(String[] args) {
+        logger.info("Starting out-of-band fleet migration runner...");
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DynamicMultiDatabaseApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(FleetMigrationRunner::overrideProperties)
+                .run(args);
+
+        int exitCode;
+        try {
+            FleetMigrationReport report = context.getBean(FleetMigrationService.class).migrateFleet();
+            logger.info("Fleet migration finished: {}", report);
+            logger.info("Tenant status: {}", report.getTenantStatus());
+            exitCode = report.isSuccessful() ? 0 : 1;
+
+        } catch (Exception e) {
+            logger.error("Fleet migration runner failed", e);
+            exitCode = 2;
+        }
+
+        int finalExitCode = exitCode;
+        System.exit(SpringApplication.exit(context, () -> finalExitCode));
+    }
+
+    /**
+     * Keep the runner to migrations: no startup migrations, scheduled jobs, cluster
+     * membership, startup partition maintenance, in-memory search indexes or hbm2ddl.
+     * Added ahead of every other source, so profiles and arguments cannot turn them back on.
+     */
+    private static void overrideProperties(ConfigurableApplicationContext context) {
+        Map<String, Object> overrides = new LinkedHashMap<>();
+        overrides.put("app.flyway.startup-mode", "none");
+        overrides.put("app.scheduling.enabled", "false");
+        overrides.put("app.cluster.enabled", "false");
+        overrides.put("app.partitioning.maintain-on-startup", "false");
+        overrides.put("app.search.ngram.enabled", "false");
+        overrides.put("app.hibernate.hbm2ddl-auto", "none");
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("fleetMigrationRunner", overrides));
+    }
+}
@@ -1,13 +1,68 @@
 package com.izicap.dynamicmultidatabase;
 
+import com.izicap.dynamicmultidatabase.profiling.ConnectionAcquireEvent;
+import com.izicap.dynamicmultidatabase.profiling.RowCountingStatements;
+import com.izicap.dynamicmultidatabase.profiling.TenantHeavyHitters;
+import com.izicap.dynamicmultidatabase.profiling.TenantRoutingEvent;
+import com.izicap.dynamicmultidatabase.tracing.Span;
+import com.izicap.dynamicmultidatabase.tracing.TracedStatements;
+import com.izicap.dynamicmultidatabase.tracing.Tracing;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
 
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
 public class MultiRoutingDataSource extends AbstractRoutingDataSource {
     
     private static final Logger logger = LoggerFactory.getLogger(MultiRoutingDataSource.class);
     
+    private TenantCircuitBreakerRegistry circuitBreakerRegistry;
+    
+    private int defaultStatementTimeoutSeconds;
+    
+    private final Map<DBTypeEnum, Integer> statementTimeoutSeconds = new EnumMap<>(DBTypeEnum.class);
+    
+    private long pauseWaitMs = 5000;
+    
+    // Routes switched at runtime by tenant moves, taking precedence over the configured datasources
+    private final Map<DBTypeEnum, DataSource> routeOverrides = new ConcurrentHashMap<>();
+    
+    private final Map<DBTypeEnum, TenantGate> gates = new ConcurrentHashMap<>();
+    
+    // Tenants offloaded to cold storage, whose databases do not exist until rehydrated
+    private final Set<DBTypeEnum> coldTenants = ConcurrentHashMap.newKeySet();
+    
+    private long coldRetryAfterMs = 5000;
+    
+    // Tenants this node serves in cluster mode, null when it serves every tenant
+    private volatile Set<DBTypeEnum> ownedTenants;
+    
+    private long notOwnedRetryAfterMs = 5000;
+    
+    // Minimum idle connections of pools quiesced while their tenant is not served here
+    private final Map<DBTypeEnum, Integer> quiescedPools = new ConcurrentHashMap<>();
+    
+    // Single-connection pools next to tenant pools, keyed by the pool they belong to
+    private final Map<DataSource, DataSource> sidePools = new ConcurrentHashMap<>();
+    
+    // Fed with every closed connection, null while heavy-hitter tracking is disabled
+    private volatile TenantHeavyHitters heavyHitters;
+    
     @Override
     protected Object determineCurrentLookupKey() {
         DBTypeEnum currentDb = DBContextHolder.getCurrentDb();
@@ -21,4 +76,394 @@ public class MultiRoutingDataSource extends AbstractRoutingDataSource {
         logger.info("Routing to database: {}", currentDb);
         return currentDb;
     }
-}
\ No newline at end of file
+    
+    @Override
+    protected DataSource determineTargetDataSource() {
+        Object lookupKey = determineCurrentLookupKey();
+        String route = "moved";
+        DataSource dataSource = routeOverrides.get(lookupKey);
+        if (dataSource == null) {
+            route = "configured";
+            dataSource = getResolvedDataSources().get(lookupKey);
+        }
+        if (dataSource == null) {
+            route = "default";
+            dataSource = getResolvedDefaultDataSource();
+        }
+        if (dataSource == null) {
+            throw new IllegalStateException("Cannot determine target DataSource for lookup key [" + lookupKey + "]");
+        }
+        
+        TenantRoutingEvent event = new TenantRoutingEvent();
+        if (event.shouldCommit()) {
+            event.tenant = String.valueOf(lookupKey);
+            event.route = route;
+            event.commit();
+        }
+        if (Tracing.isActive()) {
+            try (Span span = Tracing.startSpan("tenant.resolve")) {
+                span.setAttribute("tenant", String.valueOf(lookupKey)).setAttribute("route", route);
+            }
+        }
+        return dataSource;
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        DBTypeEnum tenant = currentTenant();
+        return guard(tenant, () -> super.getConnection());
+    }
+    
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        DBTypeEnum tenant = currentTenant();
+        return guard(tenant, () -> super.getConnection(username, password));
+    }
+    
+    /**
+     * The physical datasource of a tenant, for work that must bypass routing
+     * (bulk JDBC access, streaming exports)
+     */
+    public DataSource getTenantDataSource(DBTypeEnum dbType) {
+        DataSource dataSource = routeOverrides.get(dbType);
+        if (dataSource == null) {
+            dataSource = getResolvedDataSources().get(dbType);
+        }
+        if (dataSource == null) {
+            throw new IllegalArgumentException("No datasource configured for tenant: " + dbType);
+        }
+        return dataSource;
+    }
+    
+    /**
+     * The physical datasource of a tenant behind its gate, for bulk work that bypasses
+     * routing checks but must not write to the tenant while it is paused for a move:
+     * connections wait at the gate and count as in flight until they are closed
+     */
+    public DataSource getGatedDataSource(DBTypeEnum dbType) {
+        return new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return gated(dbType, () -> getTenantDataSource(dbType).getConnection());
+            }
+            
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return gated(dbType, () -> getTenantDataSource(dbType).getConnection(username, password));
+            }
+        };
+    }
+    
+    /**
+     * A single-connection pool to the database of a tenant's current pool, for short
+     * bookkeeping transactions taken while the caller holds a connection of the tenant,
+     * which must not wait on a pool the callers themselves may have exhausted
+     */
+    public DataSource getSidePool(DBTypeEnum dbType) {
+        DataSource dataSource = getTenantDataSource(dbType);
+        if (!(dataSource instanceof HikariDataSource)) {
+            return dataSource;
+        }
+        return sidePools.computeIfAbsent(dataSource, key -> {
+            HikariDataSource pool = (HikariDataSource) key;
+            HikariDataSource sidePool = new HikariDataSource();
+            sidePool.setPoolName(pool.getPoolName() + "-side");
+            sidePool.setJdbcUrl(pool.getJdbcUrl());
+            sidePool.setUsername(pool.getUsername());
+            sidePool.setPassword(pool.getPassword());
+            if (pool.getDriverClassName() != null) {
+                sidePool.setDriverClassName(pool.getDriverClassName());
+            }
+            sidePool.setMaximumPoolSize(1);
+            sidePool.setMinimumIdle(0);
+            return sidePool;
+        });
+    }
+    
+    /**
+     * Close the side pools, called on shutdown; tenant pools belong to the application context
+     */
+    public void close() {
+        sidePools.values().stream()
+                .filter(HikariDataSource.class::isInstance)
+                .forEach(pool -> ((HikariDataSource) pool).close());
+        sidePools.clear();
+    }
+    
+    /**
+     * Atomically route a tenant to another datasource, returning the datasource it was
+     * routed to before
+     */
+    public DataSource switchRoute(DBTypeEnum dbType, DataSource dataSource) {
+        DataSource previous = getTenantDataSource(dbType);
+        routeOverrides.put(dbType, dataSource);
+        DataSource previousSidePool = sidePools.remove(previous);
+        if (previousSidePool instanceof HikariDataSource) {
+            ((HikariDataSource) previousSidePool).close();
+        }
+        logger.info("Switched route of tenant {} to a new datasource", dbType);
+        return previous;
+    }
+    
+    /**
+     * Gate tracking the connections a tenant has checked out, used to pause it
+     */
+    public TenantGate getGate(DBTypeEnum dbType) {
+        return gates.computeIfAbsent(dbType, TenantGate::new);
+    }
+    
+    /**
+     * Stop routing to a tenant whose database was offloaded; connections are refused
+     * with a {@link TenantUnavailableException} until it is marked warm again
+     */
+    public void markCold(DBTypeEnum dbType) {
+        coldTenants.add(dbType);
+        logger.info("Tenant {} is cold, refusing routed connections", dbType);
+        updatePool(dbType);
+    }
+    
+    public void markWarm(DBTypeEnum dbType) {
+        if (coldTenants.remove(dbType)) {
+            logger.info("Tenant {} is warm again, routing resumed", dbType);
+            updatePool(dbType);
+        }
+    }
+    
+    public boolean isCold(DBTypeEnum dbType) {
+        return coldTenants.contains(dbType);
+    }
+    
+    public Set<DBTypeEnum> getColdTenants() {
+        return Set.copyOf(coldTenants);
+    }
+    
+    public void setColdRetryAfterMs(long coldRetryAfterMs) {
+        this.coldRetryAfterMs = coldRetryAfterMs;
+    }
+    
+    /**
+     * Restrict routing to the tenants this node owns in cluster mode, or lift the
+     * restriction with null. Pools of tenants owned elsewhere stop keeping idle connections.
+     */
+    public void setOwnedTenants(Set<DBTypeEnum> owned) {
+        ownedTenants = owned != null ? Set.copyOf(owned) : null;
+        for (DBTypeEnum dbType : DBTypeEnum.values()) {
+            updatePool(dbType);
+        }
+    }
+    
+    public boolean isOwned(DBTypeEnum dbType) {
+        Set<DBTypeEnum> owned = ownedTenants;
+        return owned == null || owned.contains(dbType);
+    }
+    
+    public void setNotOwnedRetryAfterMs(long notOwnedRetryAfterMs) {
+        this.notOwnedRetryAfterMs = notOwnedRetryAfterMs;
+    }
+    
+    public void setPauseWaitMs(long pauseWaitMs) {
+        this.pauseWaitMs = pauseWaitMs;
+    }
+    
+    public void setHeavyHitters(TenantHeavyHitters heavyHitters) {
+        this.heavyHitters = heavyHitters;
+    }
+    
+    public void setCircuitBreakerRegistry(TenantCircuitBreakerRegistry circuitBreakerRegistry) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+    }
+    
+    public void setDefaultStatementTimeoutSeconds(int defaultStatementTimeoutSeconds) {
+        this.defaultStatementTimeoutSeconds = defaultStatementTimeoutSeconds;
+    }
+    
+    public void setStatementTimeoutSeconds(Map<DBTypeEnum, Integer> statementTimeoutSeconds) {
+        this.statementTimeoutSeconds.clear();
+        this.statementTimeoutSeconds.putAll(statementTimeoutSeconds);
+    }
+    
+    public Map<DBTypeEnum, Integer> getStatementTimeoutSeconds() {
+        return statementTimeoutSeconds;
+    }
+    
+    private DBTypeEnum currentTenant() {
+        DBTypeEnum currentDb = DBContextHolder.getCurrentDb();
+        return currentDb != null ? currentDb : DBTypeEnum.MAIN;
+    }
+    
+    /**
+     * Fail fast while the tenant is cold, owned by another node or its circuit is open, wait while it is paused for a move,
+     * and feed connection outcomes back to its breaker
+     */
+    private Connection guard(DBTypeEnum tenant, ConnectionSupplier supplier) throws SQLException {
+        ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+        event.begin();
+        Span span = Tracing.startSpan("db.connection.acquire").setAttribute("tenant", tenant.name());
+        try {
+            Connection connection = acquire(tenant, supplier);
+            event.success = true;
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.close();
+            event.end();
+            if (event.shouldCommit()) {
+                event.tenant = tenant.name();
+                event.commit();
+            }
+        }
+    }
+    
+    private Connection acquire(DBTypeEnum tenant, ConnectionSupplier supplier) throws SQLException {
+        if (coldTenants.contains(tenant)) {
+            throw new TenantUnavailableException(tenant, coldRetryAfterMs);
+        }
+        if (!isOwned(tenant)) {
+            throw new TenantNotOwnedException(tenant, notOwnedRetryAfterMs);
+        }
+        
+        TenantGate gate = getGate(tenant);
+        gate.enter(pauseWaitMs);
+        
+        TenantCircuitBreaker breaker = circuitBreakerRegistry != null && circuitBreakerRegistry.isEnabled()
+                ? circuitBreakerRegistry.get(tenant) : null;
+        if (breaker != null) {
+            try {
+                breaker.acquirePermission();
+            } catch (TenantUnavailableException e) {
+                gate.exit();
+                throw e;
+            }
+        }
+        
+        Connection connection;
+        try {
+            connection = supplier.get();
+        } catch (SQLException | RuntimeException e) {
+            gate.exit();
+            if (breaker != null) {
+                breaker.onFailure(e);
+            }
+            throw e;
+        }
+        if (breaker != null) {
+            breaker.onSuccess();
+        }
+        return track(tenant, gate, connection);
+    }
+    
+    private Connection gated(DBTypeEnum tenant, ConnectionSupplier supplier) throws SQLException {
+        TenantGate gate = getGate(tenant);
+        gate.enter(pauseWaitMs);
+        Connection connection;
+        try {
+            connection = supplier.get();
+        } catch (SQLException | RuntimeException e) {
+            gate.exit();
+            throw e;
+        }
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                        try {
+                            connection.close();
+                        } finally {
+                            gate.exit();
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+    
+    /**
+     * Release the gate when the connection is closed, and apply the tenant's statement
+     * timeout to every statement created on it, so one slow tenant cannot hold request
+     * threads indefinitely. Statements created inside a trace record their executions,
+     * and the connection's hold time and rows read feed the heavy-hitter tracker.
+     */
+    private Connection track(DBTypeEnum tenant, TenantGate gate, Connection connection) {
+        int timeout = statementTimeoutSeconds.getOrDefault(tenant, defaultStatementTimeoutSeconds);
+        AtomicBoolean closed = new AtomicBoolean();
+        TenantHeavyHitters tracker = heavyHitters;
+        LongAdder rows = tracker != null ? new LongAdder() : null;
+        long checkedOutAt = System.nanoTime();
+        
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                        try {
+                            connection.close();
+                        } finally {
+                            gate.exit();
+                            if (tracker != null) {
+                                tracker.record(tenant.name(), System.nanoTime() - checkedOutAt, rows.sum());
+                            }
+                        }
+                        return null;
+                    }
+                    
+                    Object result;
+                    try {
+                        result = method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                    if (timeout > 0 && result instanceof Statement) {
+                        ((Statement) result).setQueryTimeout(timeout);
+                    }
+                    if (rows != null && result instanceof Statement) {
+                        result = RowCountingStatements.wrap((Statement) result, rows);
+                    }
+                    if (result instanceof Statement && Tracing.isActive()) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                        result = TracedStatements.wrap((Statement) result, sql, tenant.name());
+                    }
+                    return result;
+                });
+    }
+    
+    /**
+     * Let the pool of a tenant that is cold or owned by another node close its idle
+     * connections and stop opening new ones, and restore it once the tenant is served
+     * here again. Pools that were never used are not started either way.
+     */
+    private void updatePool(DBTypeEnum tenant) {
+        DataSource dataSource = routeOverrides.get(tenant);
+        if (dataSource == null && getResolvedDataSources() != null) {
+            dataSource = getResolvedDataSources().get(tenant);
+        }
+        if (!(dataSource instanceof HikariDataSource)) {
+            return;
+        }
+        HikariDataSource pool = (HikariDataSource) dataSource;
+        
+        if (coldTenants.contains(tenant) || !isOwned(tenant)) {
+            if (quiescedPools.putIfAbsent(tenant, pool.getMinimumIdle()) == null) {
+                pool.getHikariConfigMXBean().setMinimumIdle(0);
+                HikariPoolMXBean poolMXBean = pool.getHikariPoolMXBean();
+                if (poolMXBean != null) {
+                    poolMXBean.softEvictConnections();
+                }
+            }
+        } else {
+            Integer minimumIdle = quiescedPools.remove(tenant);
+            if (minimumIdle != null) {
+                // An unset minimum idle (-1) means as many as the maximum pool size
+                pool.getHikariConfigMXBean().setMinimumIdle(minimumIdle < 0 ? pool.getMaximumPoolSize() : minimumIdle);
+            }
+        }
+    }
+    
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
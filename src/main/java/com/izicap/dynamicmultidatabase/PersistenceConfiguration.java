@@ -3,12 +3,14 @@ package com.izicap.dynamicmultidatabase;
 import com.zaxxer.hikari.HikariDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.orm.hibernate5.LocalSessionFactoryBean;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
@@ -33,6 +35,22 @@ public class PersistenceConfiguration {
     private static final Logger logger = LoggerFactory.getLogger(PersistenceConfiguration.class);
     private final String PACKAGE_SCAN = "com.izicap.dynamicmultidatabase";
     
+    @Value("${spring.jpa.properties.hibernate.dialect:org.hibernate.dialect.MySQL8Dialect}")
+    private String hibernateDialect;
+    
+    @Value("${spring.jpa.show-sql:true}")
+    private boolean showSql;
+    
+    @Value("${spring.jpa.properties.hibernate.format_sql:true}")
+    private boolean formatSql;
+    
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int jdbcBatchSize;
+    
+    // The routing session factory does not read spring.jpa.hibernate.ddl-auto
+    @Value("${app.hibernate.hbm2ddl-auto:update}")
+    private String hbm2ddlAuto;
+    
     @Primary
     @Bean(name = "mainDataSource")
     @ConfigurationProperties("app.datasource.main")
@@ -55,8 +73,21 @@ public class PersistenceConfiguration {
         return DataSourceBuilder.create().type(HikariDataSource.class).build();
     }
     
+    @Bean(name = "mainJdbcTemplate")
+    public JdbcTemplate mainJdbcTemplate() {
+        logger.info("Configuring main database JDBC template");
+        return new JdbcTemplate(mainDataSource());
+    }
+    
+    @Bean(name = "tenantCircuitBreakerRegistry")
+    @ConfigurationProperties("app.circuit-breaker")
+    public TenantCircuitBreakerRegistry tenantCircuitBreakerRegistry() {
+        return new TenantCircuitBreakerRegistry();
+    }
+    
     @Bean(name = "multiRoutingDataSource")
-    public DataSource multiRoutingDataSource() {
+    @ConfigurationProperties("app.routing")
+    public MultiRoutingDataSource multiRoutingDataSource() {
         logger.info("Configuring multi-routing datasource");
         
         Map<Object, Object> targetDataSources = new HashMap<>();
@@ -67,6 +98,8 @@ public class PersistenceConfiguration {
         MultiRoutingDataSource multiRoutingDataSource = new MultiRoutingDataSource();
         multiRoutingDataSource.setDefaultTargetDataSource(mainDataSource());
         multiRoutingDataSource.setTargetDataSources(targetDataSources);
+        multiRoutingDataSource.setCircuitBreakerRegistry(tenantCircuitBreakerRegistry());
+        TenantBlockIdGenerator.setReservationDataSources(multiRoutingDataSource::getSidePool);
         
         logger.info("Multi-routing datasource configured with {} target datasources", targetDataSources.size());
         return multiRoutingDataSource;
@@ -116,10 +149,14 @@ public class PersistenceConfiguration {
         logger.debug("Configuring Hibernate properties");
         
         Properties properties = new Properties();
-        properties.put("hibernate.show_sql", true);
-        properties.put("hibernate.format_sql", true);
-        properties.put("hibernate.hbm2ddl.auto", "update");
-        properties.put("hibernate.dialect", "org.hibernate.dialect.MySQL8Dialect");
+        properties.put("hibernate.show_sql", showSql);
+        properties.put("hibernate.format_sql", formatSql);
+        properties.put("hibernate.hbm2ddl.auto", hbm2ddlAuto);
+        properties.put("hibernate.dialect", hibernateDialect);
+        // Inserts of entities with block-allocated ids are grouped into JDBC batches
+        properties.put("hibernate.jdbc.batch_size", jdbcBatchSize);
+        properties.put("hibernate.order_inserts", true);
+        properties.put("hibernate.order_updates", true);
         
         logger.debug("Hibernate properties configured");
         return properties;
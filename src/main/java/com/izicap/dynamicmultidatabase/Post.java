@@ -1,9 +1,16 @@
 package com.izicap.dynamicmultidatabase;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.Generated;
+import org.hibernate.annotations.GenerationTime;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Column;
 import javax.persistence.Temporal;
@@ -11,25 +18,38 @@ import javax.persistence.TemporalType;
 import java.util.Date;
 
 @Entity
+@EntityListeners(PostEntityListener.class)
+@JsonSerialize(using = PostSerializer.class)
 @ApiModel(description = "Post entity representing a blog post or article in the system")
 public class Post {
     
     @Id
-    @ApiModelProperty(value = "Unique identifier for the post", example = "1", required = true)
+    @GeneratedValue(generator = "post-id-block")
+    @GenericGenerator(name = "post-id-block", strategy = "com.izicap.dynamicmultidatabase.TenantBlockIdGenerator",
+            parameters = {
+                @Parameter(name = TenantBlockIdGenerator.SEQUENCE_NAME, value = "post"),
+                @Parameter(name = TenantBlockIdGenerator.BLOCK_SIZE, value = "100")
+            })
+    @ApiModelProperty(value = "Unique identifier for the post, allocated per tenant when not assigned", example = "1")
     private long id;
     
     @Column(nullable = false)
     @ApiModelProperty(value = "Name or title of the post", example = "My First Post", required = true)
     private String name;
     
-    @Column(name = "created_at")
+    @Column(name = "created_at", updatable = false)
     @Temporal(TemporalType.TIMESTAMP)
     @ApiModelProperty(value = "Creation timestamp", example = "2024-01-15T10:30:00Z")
     private Date createdAt;
     
-    @Column(name = "updated_at")
+    // Owned by the database (DEFAULT / ON UPDATE CURRENT_TIMESTAMP): the change feed orders
+    // by it, which a timestamp taken in the application before the write cannot guarantee.
+    // Read back after every insert and update, so the written post carries it.
+    @Column(name = "updated_at", insertable = false, updatable = false)
+    @Generated(GenerationTime.ALWAYS)
     @Temporal(TemporalType.TIMESTAMP)
-    @ApiModelProperty(value = "Last update timestamp", example = "2024-01-15T10:30:00Z")
+    @ApiModelProperty(value = "Last update timestamp, assigned by the database when the post is written",
+                      example = "2024-01-15T10:30:00Z")
     private Date updatedAt;
 
     public Post() {
@@ -38,14 +58,12 @@ public class Post {
     public Post(String name) {
         this.name = name;
         this.createdAt = new Date();
-        this.updatedAt = new Date();
     }
 
     public Post(long id, String name) {
         this.id = id;
         this.name = name;
         this.createdAt = new Date();
-        this.updatedAt = new Date();
     }
 
     @Override
@@ -1,5 +1,13 @@
 package com.izicap.dynamicmultidatabase;
 
+import com.izicap.dynamicmultidatabase.model.RowCountMode;
+import com.izicap.dynamicmultidatabase.model.TenantBroadcastReport;
+import com.izicap.dynamicmultidatabase.service.IdempotencyKeyService;
+import com.izicap.dynamicmultidatabase.service.PostLookupCoalescer;
+import com.izicap.dynamicmultidatabase.service.PostWriteBehindService;
+import com.izicap.dynamicmultidatabase.service.RowCountService;
+import com.izicap.dynamicmultidatabase.service.TenantBroadcastService;
+import com.izicap.dynamicmultidatabase.service.TenantDataVersionService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -8,10 +16,34 @@ import io.swagger.annotations.ApiResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import springfox.documentation.annotations.ApiIgnore;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 @RestController
 @Api(tags = "Post Management", description = "Operations for managing posts across multiple tenant databases")
@@ -19,18 +51,51 @@ public class PostController {
     
     private static final Logger logger = LoggerFactory.getLogger(PostController.class);
     
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    
     @Autowired
     private PostRepository postRepository;
+    
+    @Autowired
+    private TenantDataVersionService dataVersionService;
+    
+    @Autowired
+    private PostWriteBehindService writeBehindService;
+    
+    @Autowired
+    private IdempotencyKeyService idempotencyKeyService;
+    
+    @Autowired
+    private TenantBroadcastService broadcastService;
+    
+    @Autowired
+    private PostLookupCoalescer lookupCoalescer;
+    
+    @Autowired
+    private RowCountService rowCountService;
+    
+    @Value("${app.write-behind.durable-ack-timeout-ms:5000}")
+    private long durableAckTimeoutMs;
+    
+    @Value("${app.lookup-coalescing.timeout-ms:5000}")
+    private long lookupTimeoutMs;
 
     @GetMapping("/test")
     @ApiOperation(
         value = "Retrieve posts from specified tenant database",
-        notes = "Fetches all posts from the specified tenant database. Use 'client' parameter to specify the tenant database.",
+        notes = "Fetches all posts from the specified tenant database. Use 'client' parameter to specify the tenant database. " +
+               "Optional createdFrom/createdTo bounds (ISO-8601 instants, createdTo exclusive) restrict the result to posts created in that " +
+               "range, which on tenants partitioned by created_at only scans the overlapping partitions. " +
+               "Responses carry ETag and Last-Modified headers; conditional requests are answered with 304 after a single indexed version query, without reading the posts. " +
+               "Internal callers may request application/x-jackson-smile or application/cbor instead of JSON.",
         response = Post.class,
         responseContainer = "List"
     )
     @ApiResponses(value = {
         @ApiResponse(code = 200, message = "Successfully retrieved posts"),
+        @ApiResponse(code = 304, message = "Posts have not changed since the supplied ETag or date"),
+        @ApiResponse(code = 400, message = "createdFrom is not before createdTo"),
+        @ApiResponse(code = 503, message = "Tenant database is unavailable, retry after the Retry-After delay"),
         @ApiResponse(code = 500, message = "Internal server error")
     })
     public ResponseEntity<Iterable<Post>> getTest(
@@ -40,34 +105,53 @@ public class PostController {
                 defaultValue = "main",
                 example = "client-a"
             )
-            @RequestParam(defaultValue = "main") String client) {
+            @RequestParam(defaultValue = "main") String client,
+            
+            @ApiParam(value = "Only posts created at or after this time", example = "2026-10-01T00:00:00Z")
+            @RequestParam(required = false) Instant createdFrom,
+            
+            @ApiParam(value = "Only posts created before this time", example = "2026-11-01T00:00:00Z")
+            @RequestParam(required = false) Instant createdTo,
+            @ApiIgnore WebRequest webRequest) {
         
         logger.info("Received request to fetch posts for client: {}", client);
         
+        if (createdFrom != null && createdTo != null && !createdFrom.isBefore(createdTo)) {
+            logger.warn("Invalid created_at range for client: {}: {} is not before {}", client, createdFrom, createdTo);
+            return ResponseEntity.badRequest().build();
+        }
+        
         try {
-            DBTypeEnum dbType;
-            switch (client) {
-                case "client-a":
-                    dbType = DBTypeEnum.CLIENT_A;
-                    break;
-                case "client-b":
-                    dbType = DBTypeEnum.CLIENT_B;
-                    break;
-                default:
-                    dbType = DBTypeEnum.MAIN;
-                    break;
+            DBTypeEnum dbType = DBTypeEnum.fromClientId(client);
+            
+            // Read the version before querying, so a concurrent write can only make the stamp older than the data
+            TenantDataVersionService.DataVersion version = dataVersionService.getVersion(dbType);
+            if (webRequest.checkNotModified(version.getETag(), version.getLastModified())) {
+                logger.info("Posts for client: {} not modified since {}, skipping database query", client, version.getETag());
+                return null;
             }
             
             logger.debug("Setting database context to: {}", dbType);
             DBContextHolder.setCurrentDb(dbType);
             
             logger.debug("Fetching posts from database: {}", dbType);
-            Iterable<Post> posts = postRepository.findAll();
+            Iterable<Post> posts = findPosts(createdFrom, createdTo);
             
             logger.info("Successfully retrieved posts for client: {} from database: {}", client, dbType);
-            return ResponseEntity.ok(posts);
+            return ResponseEntity.ok()
+                    .eTag(version.getETag())
+                    .lastModified(version.getLastModified())
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(posts);
             
         } catch (Exception e) {
+            TenantUnavailableException unavailable = TenantUnavailableException.findIn(e);
+            if (unavailable != null) {
+                logger.warn("Database for client: {} is unavailable: {}", client, unavailable.getMessage());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                        .build();
+            }
             logger.error("Error occurred while fetching posts for client: {}", client, e);
             return ResponseEntity.internalServerError().build();
         } finally {
@@ -76,6 +160,223 @@ public class PostController {
         }
     }
 
+    @GetMapping("/posts/count")
+    @ApiOperation(
+        value = "Count the posts of the specified tenant database",
+        notes = "Returns the number of posts without scanning the table. mode=exact reads the count maintained from the " +
+               "application's writes and reconciled periodically; mode=approximate reads the row estimate from the table " +
+               "statistics, which is cheaper still but can be off by a large fraction."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Post count returned"),
+        @ApiResponse(code = 400, message = "Invalid count mode"),
+        @ApiResponse(code = 503, message = "Tenant database is unavailable, retry after the Retry-After delay"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    public ResponseEntity<Map<String, Object>> countPosts(
+            @ApiParam(value = "Client identifier to determine which database to query", 
+                     allowableValues = "main,client-a,client-b", defaultValue = "main")
+            @RequestParam(defaultValue = "main") String client,
+            
+            @ApiParam(value = "Count mode", allowableValues = "exact,approximate", defaultValue = "exact")
+            @RequestParam(defaultValue = "exact") String mode) {
+        
+        DBTypeEnum dbType = DBTypeEnum.fromClientId(client);
+        RowCountMode countMode;
+        try {
+            countMode = RowCountMode.fromName(mode);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid count mode: {}", mode);
+            return ResponseEntity.badRequest().build();
+        }
+        
+        try {
+            long count = rowCountService.count(dbType, countMode);
+            return ResponseEntity.ok(Map.of(
+                "database", dbType.name(),
+                "mode", countMode.name().toLowerCase(),
+                "count", count
+            ));
+            
+        } catch (Exception e) {
+            TenantUnavailableException unavailable = TenantUnavailableException.findIn(e);
+            if (unavailable != null) {
+                logger.warn("Database for client: {} is unavailable: {}", client, unavailable.getMessage());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                        .build();
+            }
+            logger.error("Error occurred while counting posts for client: {}", client, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/posts/{id}")
+    @ApiOperation(
+        value = "Retrieve a single post from the specified tenant database",
+        notes = "Looks up one post by id. Concurrent lookups for the same tenant are coalesced into a single batched query " +
+               "issued within a few milliseconds, and concurrent lookups of the same id share one result.",
+        response = Post.class
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Post found"),
+        @ApiResponse(code = 404, message = "No post with this id in the tenant database"),
+        @ApiResponse(code = 503, message = "Tenant database is unavailable, retry after the Retry-After delay"),
+        @ApiResponse(code = 504, message = "Lookup did not complete within the lookup timeout"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    public ResponseEntity<Post> getPost(
+            @ApiParam(value = "Post identifier", required = true, example = "42")
+            @PathVariable long id,
+            
+            @ApiParam(value = "Client identifier to determine which database to query", 
+                     allowableValues = "main,client-a,client-b", defaultValue = "main")
+            @RequestParam(defaultValue = "main") String client) {
+        
+        logger.debug("Received request to fetch post {} for client: {}", id, client);
+        DBTypeEnum dbType = DBTypeEnum.fromClientId(client);
+        
+        try {
+            Optional<Post> post = lookupCoalescer.load(dbType, id).get(lookupTimeoutMs, TimeUnit.MILLISECONDS);
+            return post.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+            
+        } catch (TimeoutException e) {
+            logger.warn("Lookup of post {} for client: {} did not complete within {} ms", id, client, lookupTimeoutMs);
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.internalServerError().build();
+            
+        } catch (Exception e) {
+            TenantUnavailableException unavailable = TenantUnavailableException.findIn(e);
+            if (unavailable != null) {
+                logger.warn("Database for client: {} is unavailable: {}", client, unavailable.getMessage());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                        .build();
+            }
+            logger.error("Error occurred while fetching post {} for client: {}", id, client, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/posts")
+    @ApiOperation(
+        value = "Create a post in the specified tenant database",
+        notes = "Saves a post in the tenant database selected by the 'client' parameter. Without an 'id', the post gets the next " +
+               "id allocated by the tenant database and is inserted with a single statement; with an 'id', an existing post is " +
+               "updated. When write-behind buffering is enabled, " +
+               "the write is queued and flushed in a batch: with ack=buffered the call returns 202 as soon as the write is queued, " +
+               "with ack=durable it returns 201 once the batch containing the write has committed. Buffered writes are recorded " +
+               "with an idempotency key, the Idempotency-Key header or one generated for durable acks, which is returned in " +
+               "the Idempotency-Key response header: a caller that got 504 retries with it and gets 200 with the post if the " +
+               "first attempt was saved, instead of a second post.",
+        response = Post.class
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Post was already saved by an earlier attempt with the same idempotency key"),
+        @ApiResponse(code = 201, message = "Post saved"),
+        @ApiResponse(code = 202, message = "Post queued for a buffered write"),
+        @ApiResponse(code = 400, message = "Idempotency key is blank or longer than 64 characters"),
+        @ApiResponse(code = 503, message = "Write buffer for the tenant is full, or the tenant database is unavailable"),
+        @ApiResponse(code = 504, message = "Buffered write was not flushed within the durable acknowledgement timeout; " +
+                                           "retry with the returned Idempotency-Key"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    public ResponseEntity<Post> createPost(
+            @ApiParam(value = "Client identifier to determine which database to write to", 
+                     allowableValues = "main,client-a,client-b", defaultValue = "main")
+            @RequestParam(defaultValue = "main") String client,
+            
+            @ApiParam(value = "Post identifier, allocated by the tenant database when omitted", example = "42")
+            @RequestParam(required = false) Long id,
+            
+            @ApiParam(value = "Name or title of the post", required = true, example = "My First Post")
+            @RequestParam String name,
+            
+            @ApiParam(value = "Acknowledgement mode when write-behind buffering is enabled", 
+                     allowableValues = "buffered,durable", defaultValue = "durable")
+            @RequestParam(defaultValue = "durable") String ack,
+            
+            @ApiParam(value = "Idempotency key of a buffered write, to retry it safely after a 504", example = "3f1e2d4c-order-17")
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        
+        logger.info("Received request to create post {} for client: {}", id, client);
+        DBTypeEnum dbType = DBTypeEnum.fromClientId(client);
+        
+        // Posts without an id are inserted directly; an assigned id is saved as an upsert
+        Post newPost = id != null ? new Post(id, name) : new Post(name);
+        String requestKey = idempotencyKey;
+        
+        try {
+            if (writeBehindService.isEnabled()) {
+                if (requestKey != null) {
+                    if (!IdempotencyKeyService.isValid(requestKey)) {
+                        logger.warn("Invalid idempotency key for client: {}", client);
+                        return ResponseEntity.badRequest().build();
+                    }
+                    Long savedId = idempotencyKeyService.findPostId(dbType, requestKey);
+                    if (savedId != null) {
+                        DBContextHolder.setCurrentDb(dbType);
+                        logger.info("Post with idempotency key {} was already saved as post {} in database: {}",
+                                  requestKey, savedId, dbType);
+                        return ResponseEntity.ok().header(IDEMPOTENCY_KEY, requestKey)
+                                .body(postRepository.findById(savedId).orElse(null));
+                    }
+                } else if (!"buffered".equals(ack)) {
+                    // Returned with a 504, so the caller can retry without risking a second post
+                    requestKey = UUID.randomUUID().toString();
+                }
+                
+                CompletableFuture<Post> saved = writeBehindService.enqueue(dbType, newPost, requestKey);
+                
+                if ("buffered".equals(ack)) {
+                    logger.debug("Queued post {} for buffered write to database: {}", id, dbType);
+                    return requestKey != null
+                            ? ResponseEntity.accepted().header(IDEMPOTENCY_KEY, requestKey).build()
+                            : ResponseEntity.accepted().build();
+                }
+                
+                Post post = saved.get(durableAckTimeoutMs, TimeUnit.MILLISECONDS);
+                logger.info("Durably saved buffered post {} in database: {}", post.getId(), dbType);
+                return ResponseEntity.status(HttpStatus.CREATED).header(IDEMPOTENCY_KEY, requestKey).body(post);
+            }
+            
+            DBContextHolder.setCurrentDb(dbType);
+            Post post = postRepository.save(newPost);
+            
+            logger.info("Successfully saved post {} in database: {}", post.getId(), dbType);
+            return ResponseEntity.status(HttpStatus.CREATED).body(post);
+            
+        } catch (RejectedExecutionException e) {
+            logger.warn("Rejected post {} for client: {}: {}", id, client, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            
+        } catch (TimeoutException e) {
+            logger.warn("Post {} for client: {} was not flushed within {} ms, retry with idempotency key {}",
+                      id, client, durableAckTimeoutMs, requestKey);
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).header(IDEMPOTENCY_KEY, requestKey).build();
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.internalServerError().build();
+            
+        } catch (Exception e) {
+            TenantUnavailableException unavailable = TenantUnavailableException.findIn(e);
+            if (unavailable != null) {
+                logger.warn("Database for client: {} is unavailable: {}", client, unavailable.getMessage());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                        .build();
+            }
+            logger.error("Error occurred while creating post {} for client: {}", id, client, e);
+            return ResponseEntity.internalServerError().build();
+        } finally {
+            DBContextHolder.clear();
+        }
+    }
+
     @GetMapping("/init-data")
     @ApiOperation(
         value = "Initialize sample data",
@@ -90,35 +391,102 @@ public class PostController {
     public ResponseEntity<String> initialData() {
         logger.info("Starting initialization of sample data across all databases");
         
-        try {
-            // Insert into main database
-            logger.debug("Inserting sample data into MAIN database");
-            DBContextHolder.setCurrentDb(DBTypeEnum.MAIN);
-            Post mainPost = postRepository.save(new Post(1L, "Main DB"));
-            logger.debug("Successfully saved post in MAIN database: {}", mainPost);
-            
-            // Insert into client A database
-            logger.debug("Inserting sample data into CLIENT_A database");
-            DBContextHolder.setCurrentDb(DBTypeEnum.CLIENT_A);
-            Post clientAPost = postRepository.save(new Post(1L, "Client A DB"));
-            logger.debug("Successfully saved post in CLIENT_A database: {}", clientAPost);
-            
-            // Insert into client B database
-            logger.debug("Inserting sample data into CLIENT_B database");
-            DBContextHolder.setCurrentDb(DBTypeEnum.CLIENT_B);
-            Post clientBPost = postRepository.save(new Post(1L, "Client B DB"));
-            logger.debug("Successfully saved post in CLIENT_B database: {}", clientBPost);
-            
-            logger.info("Successfully initialized sample data in all databases");
-            return ResponseEntity.ok("Success! Sample data created in all databases.");
-            
-        } catch (Exception e) {
-            logger.error("Error occurred while initializing sample data", e);
+        Map<DBTypeEnum, String> names = Map.of(
+                DBTypeEnum.MAIN, "Main DB",
+                DBTypeEnum.CLIENT_A, "Client A DB",
+                DBTypeEnum.CLIENT_B, "Client B DB");
+        
+        TenantBroadcastReport report = broadcastService.broadcast(tenant -> {
+            Post post = postRepository.save(new Post(1L, names.get(tenant)));
+            logger.debug("Successfully saved post in {} database: {}", tenant, post);
+            return post;
+        });
+        
+        if (!report.isSuccessful()) {
+            String errors = report.getResults().stream()
+                    .filter(result -> !result.isSuccess())
+                    .map(result -> result.getTenant() + ": " + result.getError())
+                    .collect(Collectors.joining("; "));
+            logger.error("Error occurred while initializing sample data: {}", errors);
             return ResponseEntity.internalServerError()
-                .body("Error initializing data: " + e.getMessage());
-        } finally {
-            logger.debug("Clearing database context after data initialization");
-            DBContextHolder.clear();
+                .body("Error initializing data: " + errors);
+        }
+        
+        logger.info("Successfully initialized sample data in all databases");
+        return ResponseEntity.ok("Success! Sample data created in all databases.");
+    }
+    
+    @PostMapping("/posts/broadcast")
+    @ApiOperation(
+        value = "Create a post in several tenant databases",
+        notes = "Writes the same post, e.g. reference data, to every tenant database or to the tenants listed in 'clients'. " +
+               "Tenants are written in parallel, each in its own transaction: a failing tenant is rolled back alone and " +
+               "reported, while the others commit. The report lists the outcome and duration per tenant. The broadcast " +
+               "runs under a request key, the Idempotency-Key header or a generated one returned in the same header: a " +
+               "tenant that times out may still commit, so callers retry with the key, which skips tenants that already " +
+               "applied it.",
+        response = TenantBroadcastReport.class
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Post saved in every selected tenant database"),
+        @ApiResponse(code = 207, message = "Post saved in some tenant databases only, see the per-tenant results"),
+        @ApiResponse(code = 400, message = "Unknown client identifier, or idempotency key blank or longer than 64 characters")
+    })
+    public ResponseEntity<?> broadcastPost(
+            @ApiParam(value = "Comma-separated client identifiers, all tenants when omitted", example = "client-a,client-b")
+            @RequestParam(required = false) List<String> clients,
+            
+            @ApiParam(value = "Post identifier", required = true, example = "42")
+            @RequestParam long id,
+            
+            @ApiParam(value = "Name or title of the post", required = true, example = "Terms of service v2")
+            @RequestParam String name,
+            
+            @ApiParam(value = "Request key of the broadcast, to retry it safely", example = "3f1e2d4c-refdata-7")
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        
+        if (idempotencyKey != null && !IdempotencyKeyService.isValid(idempotencyKey)) {
+            logger.warn("Invalid idempotency key for broadcast of post {}", id);
+            return ResponseEntity.badRequest().build();
+        }
+        String requestKey = idempotencyKey != null ? idempotencyKey : UUID.randomUUID().toString();
+        
+        // Unknown identifiers are rejected rather than routed to the main database, and
+        // repeated ones are written once
+        Set<DBTypeEnum> tenants = new LinkedHashSet<>();
+        List<String> unknown = new ArrayList<>();
+        if (clients == null || clients.isEmpty()) {
+            tenants.addAll(Arrays.asList(DBTypeEnum.values()));
+        } else {
+            for (String client : clients) {
+                DBTypeEnum.findByClientId(client.trim()).ifPresentOrElse(tenants::add, () -> unknown.add(client.trim()));
+            }
+        }
+        if (!unknown.isEmpty()) {
+            logger.warn("Unknown client identifiers in broadcast of post {}: {}", id, unknown);
+            return ResponseEntity.badRequest().body("Unknown client identifiers: " + String.join(", ", unknown));
+        }
+        
+        logger.info("Received request to broadcast post {} to tenants: {}", id, tenants);
+        TenantBroadcastReport report = broadcastService.broadcast(tenants, requestKey,
+                tenant -> postRepository.save(new Post(id, name)));
+        
+        return ResponseEntity.status(report.isSuccessful() ? HttpStatus.OK : HttpStatus.MULTI_STATUS)
+                .header(IDEMPOTENCY_KEY, requestKey)
+                .body(report);
+    }
+    
+    private Iterable<Post> findPosts(Instant createdFrom, Instant createdTo) {
+        if (createdFrom != null && createdTo != null) {
+            return postRepository.findByCreatedAtGreaterThanEqualAndCreatedAtLessThanOrderByCreatedAtAscIdAsc(
+                    Date.from(createdFrom), Date.from(createdTo));
+        }
+        if (createdFrom != null) {
+            return postRepository.findByCreatedAtGreaterThanEqualOrderByCreatedAtAscIdAsc(Date.from(createdFrom));
+        }
+        if (createdTo != null) {
+            return postRepository.findByCreatedAtLessThanOrderByCreatedAtAscIdAsc(Date.from(createdTo));
         }
+        return postRepository.findAll();
     }
-}
\ No newline at end of file
+}
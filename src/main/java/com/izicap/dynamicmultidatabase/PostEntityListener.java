@@ -0,0 +1,113 @@
+package com.izicap.dynamicmultidatabase;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * JPA entity listener that publishes every {@link Post} write to registered observers,
+ * tagged with the tenant database the write was routed to. When the write happens inside
+ * a transaction, observers are only notified after it commits.
+ */
+public class PostEntityListener {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PostEntityListener.class);
+    
+    private static final List<Observer> observers = new CopyOnWriteArrayList<>();
+    
+    public enum ChangeType {
+        CREATED, UPDATED, DELETED
+    }
+    
+    public interface Observer {
+        void onPostChange(DBTypeEnum tenant, Post post, ChangeType changeType);
+        
+        /**
+         * Posts changed by a set-based statement that bypassed JPA; by default reported to
+         * {@link #onPostChange} one post at a time, carrying nothing but its id
+         */
+        default void onPostsChanged(DBTypeEnum tenant, List<Long> ids, ChangeType changeType) {
+            for (Long id : ids) {
+                Post post = new Post();
+                post.setId(id);
+                onPostChange(tenant, post, changeType);
+            }
+        }
+    }
+    
+    public static void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+    
+    public static void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+    
+    /**
+     * Publish posts written by a bulk statement, once it has been committed
+     */
+    public static void publishBulk(DBTypeEnum tenant, List<Long> ids, ChangeType changeType) {
+        for (Observer observer : observers) {
+            try {
+                observer.onPostsChanged(tenant, ids, changeType);
+            } catch (RuntimeException e) {
+                logger.warn("Post change observer {} failed for bulk {} of {} posts in {}: {}", 
+                          observer.getClass().getSimpleName(), changeType, ids.size(), tenant, e.getMessage());
+            }
+        }
+    }
+    
+    @PostPersist
+    public void postPersist(Post post) {
+        publish(post, ChangeType.CREATED);
+    }
+    
+    @PostUpdate
+    public void postUpdate(Post post) {
+        publish(post, ChangeType.UPDATED);
+    }
+    
+    @PostRemove
+    public void postRemove(Post post) {
+        publish(post, ChangeType.DELETED);
+    }
+    
+    private void publish(Post post, ChangeType changeType) {
+        if (observers.isEmpty()) {
+            return;
+        }
+        
+        // Capture the tenant now: the context may have changed by the time the transaction commits
+        DBTypeEnum currentDb = DBContextHolder.getCurrentDb();
+        DBTypeEnum tenant = currentDb != null ? currentDb : DBTypeEnum.MAIN;
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notifyObservers(tenant, post, changeType);
+                }
+            });
+        } else {
+            notifyObservers(tenant, post, changeType);
+        }
+    }
+    
+    private static void notifyObservers(DBTypeEnum tenant, Post post, ChangeType changeType) {
+        for (Observer observer : observers) {
+            try {
+                observer.onPostChange(tenant, post, changeType);
+            } catch (RuntimeException e) {
+                logger.warn("Post change observer {} failed for {} in {}: {}", 
+                          observer.getClass().getSimpleName(), changeType, tenant, e.getMessage());
+            }
+        }
+    }
+}
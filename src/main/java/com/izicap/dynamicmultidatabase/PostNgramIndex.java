@@ -0,0 +1,183 @@
+package com.izicap.dynamicmultidatabase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over the names of one tenant's posts. A search term of three
+ * or more characters narrows the candidates to the posts containing all of its
+ * trigrams; every candidate is then checked against its full name, so results are exact
+ * substring matches. Shorter terms are checked against every indexed name.
+ */
+public class PostNgramIndex {
+    
+    static final int GRAM = 3;
+    
+    // Rough heap cost of a posting (a boxed id in a hash set) and of a name entry
+    private static final int POSTING_BYTES = 48;
+    
+    private static final int ENTRY_BYTES = 96;
+    
+    private final Map<Long, String> names = new HashMap<>();
+    
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private long postingCount;
+    
+    private long nameChars;
+    
+    /**
+     * Index a post's name, replacing the name indexed for it before
+     */
+    public void put(long id, String name) {
+        String normalized = normalize(name);
+        lock.writeLock().lock();
+        try {
+            String previous = names.put(id, normalized);
+            if (previous != null) {
+                if (previous.equals(normalized)) {
+                    return;
+                }
+                unindex(id, previous);
+            }
+            nameChars += normalized.length();
+            for (String gram : grams(normalized)) {
+                if (postings.computeIfAbsent(gram, key -> new HashSet<>()).add(id)) {
+                    postingCount++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            String previous = names.remove(id);
+            if (previous != null) {
+                unindex(id, previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Ids of the posts whose name contains every term, highest id first
+     */
+    public List<Long> search(List<String> terms, int limit) {
+        List<String> normalized = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            normalized.add(normalize(term));
+        }
+        
+        lock.readLock().lock();
+        try {
+            Set<Long> candidates = null;
+            for (String term : normalized) {
+                if (term.length() < GRAM) {
+                    continue;
+                }
+                for (String gram : grams(term)) {
+                    Set<Long> posting = postings.get(gram);
+                    if (posting == null) {
+                        return List.of();
+                    }
+                    if (candidates == null) {
+                        candidates = new HashSet<>(posting);
+                    } else {
+                        candidates.retainAll(posting);
+                    }
+                    if (candidates.isEmpty()) {
+                        return List.of();
+                    }
+                }
+            }
+            
+            List<Long> ids = new ArrayList<>(candidates != null ? candidates : names.keySet());
+            ids.sort((a, b) -> Long.compare(b, a));
+            
+            List<Long> matches = new ArrayList<>(Math.min(limit, ids.size()));
+            for (Long id : ids) {
+                if (containsAll(names.get(id), normalized)) {
+                    matches.add(id);
+                    if (matches.size() >= limit) {
+                        break;
+                    }
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Approximate heap used by the index
+     */
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            return names.size() * (long) ENTRY_BYTES + nameChars + postingCount * POSTING_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Callers hold the write lock
+    private void unindex(long id, String name) {
+        nameChars -= name.length();
+        for (String gram : grams(name)) {
+            Set<Long> posting = postings.get(gram);
+            if (posting != null && posting.remove(id)) {
+                postingCount--;
+                if (posting.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+    
+    private static boolean containsAll(String name, List<String> terms) {
+        if (name == null) {
+            return false;
+        }
+        for (String term : terms) {
+            if (!name.contains(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+    
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
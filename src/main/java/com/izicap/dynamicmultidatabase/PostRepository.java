@@ -1,7 +1,40 @@
 package com.izicap.dynamicmultidatabase;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.TemporalType;
+import java.util.Date;
+import java.util.List;
+
 @Repository
-public interface PostRepository extends JpaRepository<Post, Long> {}
+public interface PostRepository extends JpaRepository<Post, Long> {
+    
+    /**
+     * Posts changed after the (updatedAt, id) cursor, in cursor order. Rows updated within
+     * the last settleSeconds are left out, so a later page can never contain a change that
+     * sorts before the cursor.
+     */
+    @Query(value = "SELECT * FROM post " +
+                   "WHERE (updated_at, id) > (:afterUpdatedAt, :afterId) " +
+                   "AND updated_at < TIMESTAMPADD(SECOND, -:settleSeconds, CURRENT_TIMESTAMP) " +
+                   "ORDER BY updated_at, id LIMIT :limit",
+           nativeQuery = true)
+    List<Post> findChangesAfter(@Param("afterUpdatedAt") @Temporal(TemporalType.TIMESTAMP) Date afterUpdatedAt,
+                                @Param("afterId") long afterId,
+                                @Param("settleSeconds") int settleSeconds,
+                                @Param("limit") int limit);
+    
+    /**
+     * Posts created in [createdFrom, createdTo). On tenants partitioned by created_at the
+     * range prunes the scan to the partitions it overlaps.
+     */
+    List<Post> findByCreatedAtGreaterThanEqualAndCreatedAtLessThanOrderByCreatedAtAscIdAsc(Date createdFrom, Date createdTo);
+    
+    List<Post> findByCreatedAtGreaterThanEqualOrderByCreatedAtAscIdAsc(Date createdFrom);
+    
+    List<Post> findByCreatedAtLessThanOrderByCreatedAtAscIdAsc(Date createdTo);
+}
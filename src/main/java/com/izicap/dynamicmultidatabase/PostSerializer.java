@@ -0,0 +1,54 @@
+package com.izicap.dynamicmultidatabase;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Hand-written serializer for {@link Post}. Writes the same fields as the default bean
+ * serializer, but with pre-encoded field names and direct getter calls instead of
+ * reflective property introspection, and never touches Hibernate proxy internals.
+ */
+public class PostSerializer extends StdSerializer<Post> {
+    
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString CREATED_AT = new SerializedString("createdAt");
+    private static final SerializedString UPDATED_AT = new SerializedString("updatedAt");
+    
+    public PostSerializer() {
+        super(Post.class);
+    }
+    
+    @Override
+    public void serialize(Post post, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(post);
+        
+        gen.writeFieldName(ID);
+        gen.writeNumber(post.getId());
+        
+        gen.writeFieldName(NAME);
+        gen.writeString(post.getName());
+        
+        gen.writeFieldName(CREATED_AT);
+        writeDate(post.getCreatedAt(), gen, provider);
+        
+        gen.writeFieldName(UPDATED_AT);
+        writeDate(post.getUpdatedAt(), gen, provider);
+        
+        gen.writeEndObject();
+    }
+    
+    private void writeDate(Date date, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        if (date == null) {
+            gen.writeNull();
+        } else {
+            // Honours the mapper's date settings, like the default serializer does
+            provider.defaultSerializeDateValue(date, gen);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.izicap.dynamicmultidatabase;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.jdbc.AbstractReturningWork;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Hi/lo identifier generator reserving blocks of ids per tenant from the {@code id_block}
+ * table of the tenant's own database, so new entities get their id without a round trip
+ * and are inserted with a single, batchable statement.
+ *
+ * Blocks are reserved in a short transaction of their own and never start below the
+ * current maximum id of the entity table. The transaction runs on the tenant's side pool
+ * when one is registered, so a caller holding a connection of an exhausted pool does not
+ * wait for a second one. An id already set on the entity is kept, and the sequence is
+ * moved past it, so later blocks cannot hand it out again. Blocks already reserved by
+ * other instances may still contain it; the insert that collides then fails on the key.
+ */
+public class TenantBlockIdGenerator implements IdentifierGenerator {
+    
+    public static final String SEQUENCE_NAME = "sequence_name";
+    
+    public static final String BLOCK_SIZE = "block_size";
+    
+    private static final Logger logger = LoggerFactory.getLogger(TenantBlockIdGenerator.class);
+    
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z0-9_]{1,64}");
+    
+    private String sequenceName;
+    
+    private String tableName;
+    
+    private String columnName;
+    
+    private int blockSize;
+    
+    private final Map<DBTypeEnum, Block> blocks = new ConcurrentHashMap<>();
+    
+    // Connections for block reservations per tenant, outside the pools callers hold connections of
+    private static volatile Function<DBTypeEnum, DataSource> reservationDataSources;
+    
+    public static void setReservationDataSources(Function<DBTypeEnum, DataSource> dataSources) {
+        reservationDataSources = dataSources;
+    }
+    
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        tableName = params.getProperty(PersistentIdentifierGenerator.TABLE);
+        columnName = params.getProperty(PersistentIdentifierGenerator.PK);
+        sequenceName = ConfigurationHelper.getString(SEQUENCE_NAME, params, tableName);
+        blockSize = ConfigurationHelper.getInt(BLOCK_SIZE, params, 100);
+        
+        for (String identifier : new String[]{sequenceName, tableName, columnName}) {
+            if (identifier == null || !IDENTIFIER.matcher(identifier).matches()) {
+                throw new MappingException("Invalid identifier for TenantBlockIdGenerator: " + identifier);
+            }
+        }
+        if (blockSize < 1) {
+            throw new MappingException("TenantBlockIdGenerator block_size must be positive");
+        }
+    }
+    
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        DBTypeEnum currentDb = DBContextHolder.getCurrentDb();
+        DBTypeEnum tenant = currentDb != null ? currentDb : DBTypeEnum.MAIN;
+        Block block = blocks.computeIfAbsent(tenant, key -> new Block());
+        
+        Serializable assigned = session.getEntityPersister(null, object).getIdentifier(object, session);
+        if (assigned instanceof Number && ((Number) assigned).longValue() != 0) {
+            reservePast(session, tenant, block, ((Number) assigned).longValue());
+            return assigned;
+        }
+        
+        synchronized (block) {
+            if (block.next >= block.end) {
+                long start = inOwnTransaction(session, tenant, this::reserveBlock);
+                block.next = start;
+                block.end = start + blockSize;
+                logger.debug("Reserved {} ids [{}, {}) of {} for {}", blockSize, block.next, block.end, sequenceName, tenant);
+            }
+            return block.next++;
+        }
+    }
+    
+    /**
+     * Keep generated ids clear of an id assigned by the caller: skip it in the current block,
+     * and move the sequence past it when it lies beyond the ids reserved so far
+     */
+    private void reservePast(SharedSessionContractImplementor session, DBTypeEnum tenant, Block block, long assigned) {
+        synchronized (block) {
+            if (assigned >= block.next && assigned < block.end) {
+                block.next = assigned + 1;
+                return;
+            }
+            if (assigned < block.end || assigned <= block.reservedPast) {
+                return;
+            }
+            inOwnTransaction(session, tenant, connection -> {
+                lockSequence(connection);
+                try (PreparedStatement update = connection.prepareStatement(
+                        "UPDATE id_block SET next_value = GREATEST(next_value, ?) WHERE sequence_name = ?")) {
+                    update.setLong(1, assigned + 1);
+                    update.setString(2, sequenceName);
+                    update.executeUpdate();
+                }
+                return assigned;
+            });
+            block.reservedPast = assigned;
+            logger.debug("Moved {} of {} past assigned id {}", sequenceName, tenant, assigned);
+        }
+    }
+    
+    /**
+     * Run the work in a transaction of its own, committed before the caller's
+     */
+    private long inOwnTransaction(SharedSessionContractImplementor session, DBTypeEnum tenant, SequenceWork work) {
+        Function<DBTypeEnum, DataSource> dataSources = reservationDataSources;
+        if (dataSources == null) {
+            return session.getTransactionCoordinator().createIsolationDelegate()
+                    .delegateWork(new AbstractReturningWork<Long>() {
+                        @Override
+                        public Long execute(Connection connection) throws SQLException {
+                            return work.execute(connection);
+                        }
+                    }, true);
+        }
+        
+        try (Connection connection = dataSources.apply(tenant).getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                long result = work.execute(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new HibernateException("Could not reserve ids of " + sequenceName + " for " + tenant, e);
+        }
+    }
+    
+    private long reserveBlock(Connection connection) throws SQLException {
+        long nextValue = lockSequence(connection);
+        long start = Math.max(nextValue, maxId(connection) + 1);
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE id_block SET next_value = ? WHERE sequence_name = ?")) {
+            update.setLong(1, start + blockSize);
+            update.setString(2, sequenceName);
+            update.executeUpdate();
+        }
+        return start;
+    }
+    
+    /**
+     * Lock the sequence's row, creating it first if needed, and return its next value
+     */
+    private long lockSequence(Connection connection) throws SQLException {
+        Long nextValue = selectForUpdate(connection);
+        if (nextValue == null) {
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO id_block (sequence_name, next_value) VALUES (?, 1)")) {
+                insert.setString(1, sequenceName);
+                insert.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Created concurrently by another instance
+            }
+            nextValue = selectForUpdate(connection);
+        }
+        return nextValue;
+    }
+    
+    private Long selectForUpdate(Connection connection) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT next_value FROM id_block WHERE sequence_name = ? FOR UPDATE")) {
+            select.setString(1, sequenceName);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+    
+    private long maxId(Connection connection) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT COALESCE(MAX(" + columnName + "), 0) FROM " + tableName);
+             ResultSet rs = select.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+    
+    @FunctionalInterface
+    private interface SequenceWork {
+        long execute(Connection connection) throws SQLException;
+    }
+    
+    private static class Block {
+        private long next;
+        private long end;
+        // Highest assigned id the sequence is known to have been moved past
+        private long reservedPast;
+    }
+}
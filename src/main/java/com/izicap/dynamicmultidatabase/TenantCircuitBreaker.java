@@ -0,0 +1,136 @@
+package com.izicap.dynamicmultidatabase;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Circuit breaker guarding the connections of one tenant datasource.
+ *
+ * CLOSED lets every request through and opens after a run of consecutive connection
+ * failures. OPEN rejects requests immediately until the open duration has passed (or a
+ * health probe succeeds), then HALF_OPEN lets a limited number of trial requests
+ * through: one success closes the circuit, one failure opens it again.
+ */
+public class TenantCircuitBreaker {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TenantCircuitBreaker.class);
+    
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+    
+    private final DBTypeEnum tenant;
+    private final int failureThreshold;
+    private final long openDurationMs;
+    private final int halfOpenTrials;
+    
+    // Read without locking on the hot path; every transition happens under the lock
+    private volatile State state = State.CLOSED;
+    private volatile int consecutiveFailures;
+    private long openedAt;
+    private int trialsInFlight;
+    private long rejectedCount;
+    private String lastFailure;
+    
+    public TenantCircuitBreaker(DBTypeEnum tenant, int failureThreshold, long openDurationMs, int halfOpenTrials) {
+        this.tenant = tenant;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenTrials = halfOpenTrials;
+    }
+    
+    /**
+     * Let a request through, or fail it immediately while the circuit is open
+     */
+    public void acquirePermission() throws TenantUnavailableException {
+        if (state == State.CLOSED) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (state == State.OPEN && now - openedAt >= openDurationMs) {
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.HALF_OPEN && trialsInFlight < halfOpenTrials) {
+                trialsInFlight++;
+                return;
+            }
+            if (state == State.CLOSED) {
+                return;
+            }
+            rejectedCount++;
+            throw new TenantUnavailableException(tenant, Math.max(0, openedAt + openDurationMs - now));
+        }
+    }
+    
+    public void onSuccess() {
+        if (state == State.CLOSED && consecutiveFailures == 0) {
+            return;
+        }
+        synchronized (this) {
+            consecutiveFailures = 0;
+            if (state != State.CLOSED) {
+                transitionTo(State.CLOSED);
+            }
+        }
+    }
+    
+    public synchronized void onFailure(Throwable error) {
+        lastFailure = error.getMessage();
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            transitionTo(State.OPEN);
+        }
+    }
+    
+    /**
+     * Feed the result of an out-of-band health probe. A healthy probe lets trial requests
+     * through right away instead of waiting for the open duration.
+     */
+    public synchronized void onProbe(boolean healthy, String error) {
+        if (healthy) {
+            if (state == State.OPEN) {
+                transitionTo(State.HALF_OPEN);
+            }
+        } else {
+            onFailure(new IllegalStateException(error != null ? error : "Health probe failed"));
+        }
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    public synchronized Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state.name());
+        status.put("consecutiveFailures", consecutiveFailures);
+        status.put("rejectedRequests", rejectedCount);
+        if (state != State.CLOSED) {
+            status.put("openedAt", openedAt);
+        }
+        if (lastFailure != null) {
+            status.put("lastFailure", lastFailure);
+        }
+        return status;
+    }
+    
+    private void transitionTo(State newState) {
+        State previous = state;
+        state = newState;
+        trialsInFlight = 0;
+        if (newState == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+            logger.warn("Circuit for tenant {} opened after {} consecutive failures ({}), failing fast for {} ms",
+                      tenant, consecutiveFailures, lastFailure, openDurationMs);
+        } else {
+            logger.info("Circuit for tenant {} moved from {} to {}", tenant, previous, newState);
+        }
+        if (newState == State.CLOSED) {
+            consecutiveFailures = 0;
+        }
+    }
+}
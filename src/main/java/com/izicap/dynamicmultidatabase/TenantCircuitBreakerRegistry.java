@@ -0,0 +1,70 @@
+package com.izicap.dynamicmultidatabase;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Circuit breakers of the tenant datasources, bound to the {@code app.circuit-breaker}
+ * properties
+ */
+public class TenantCircuitBreakerRegistry {
+    
+    private boolean enabled = true;
+    private int failureThreshold = 3;
+    private long openDurationMs = 10000;
+    private int halfOpenTrials = 1;
+    
+    private final Map<DBTypeEnum, TenantCircuitBreaker> breakers = new ConcurrentHashMap<>();
+    
+    public TenantCircuitBreaker get(DBTypeEnum tenant) {
+        return breakers.computeIfAbsent(tenant,
+                key -> new TenantCircuitBreaker(key, failureThreshold, openDurationMs, halfOpenTrials));
+    }
+    
+    public void recordProbe(DBTypeEnum tenant, boolean healthy, String error) {
+        if (enabled) {
+            get(tenant).onProbe(healthy, error);
+        }
+    }
+    
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        for (DBTypeEnum tenant : DBTypeEnum.values()) {
+            status.put(tenant.name(), get(tenant).getStatus());
+        }
+        return status;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+    
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+    
+    public long getOpenDurationMs() {
+        return openDurationMs;
+    }
+    
+    public void setOpenDurationMs(long openDurationMs) {
+        this.openDurationMs = openDurationMs;
+    }
+    
+    public int getHalfOpenTrials() {
+        return halfOpenTrials;
+    }
+    
+    public void setHalfOpenTrials(int halfOpenTrials) {
+        this.halfOpenTrials = halfOpenTrials;
+    }
+}
@@ -0,0 +1,104 @@
+package com.izicap.dynamicmultidatabase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the connections a tenant has checked out through routing, and lets a tenant
+ * move pause new checkouts until the in-flight ones have been returned.
+ */
+public class TenantGate {
+    
+    private final DBTypeEnum tenant;
+    
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    private volatile boolean paused;
+    
+    // Thread that paused the tenant, which keeps passing the gate to do the work it paused for
+    private volatile Thread pausedBy;
+    
+    private volatile long lastEnteredAt;
+    
+    public TenantGate(DBTypeEnum tenant) {
+        this.tenant = tenant;
+    }
+    
+    /**
+     * Register a connection checkout, waiting up to maxWaitMs while the tenant is paused
+     */
+    public void enter(long maxWaitMs) throws TenantUnavailableException {
+        lastEnteredAt = System.currentTimeMillis();
+        inFlight.incrementAndGet();
+        if (!paused || pausedBy == Thread.currentThread()) {
+            return;
+        }
+        
+        // Paused: back out, so the pausing thread can see the tenant go idle, and wait
+        exit();
+        long deadline = System.currentTimeMillis() + maxWaitMs;
+        synchronized (this) {
+            while (paused) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new TenantUnavailableException(tenant, maxWaitMs);
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TenantUnavailableException(tenant, maxWaitMs);
+                }
+            }
+            inFlight.incrementAndGet();
+        }
+    }
+    
+    public void exit() {
+        if (inFlight.decrementAndGet() == 0 && paused) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+    
+    public synchronized void pause() {
+        paused = true;
+        pausedBy = Thread.currentThread();
+    }
+    
+    /**
+     * Wait until every connection checked out before the pause has been returned
+     */
+    public synchronized boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (inFlight.get() > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(Math.min(remaining, 10));
+        }
+        return true;
+    }
+    
+    public synchronized void resume() {
+        paused = false;
+        pausedBy = null;
+        notifyAll();
+    }
+    
+    public boolean isPaused() {
+        return paused;
+    }
+    
+    /**
+     * Time of the last connection checkout, or 0 before the first one
+     */
+    public long getLastEnteredAt() {
+        return lastEnteredAt;
+    }
+    
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
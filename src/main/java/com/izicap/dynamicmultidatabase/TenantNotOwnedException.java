@@ -0,0 +1,13 @@
+package com.izicap.dynamicmultidatabase;
+
+/**
+ * Thrown instead of opening a connection when, in cluster mode, the tenant is owned by
+ * another application node. Callers see it like an unavailable tenant; requests are
+ * normally redirected to the owner before they get here.
+ */
+public class TenantNotOwnedException extends TenantUnavailableException {
+    
+    public TenantNotOwnedException(DBTypeEnum tenant, long retryAfterMillis) {
+        super(tenant, retryAfterMillis, "Tenant " + tenant + " is served by another node");
+    }
+}
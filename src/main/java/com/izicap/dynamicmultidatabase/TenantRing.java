@@ -0,0 +1,52 @@
+package com.izicap.dynamicmultidatabase;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring assigning tenants to application nodes. Every node is placed on
+ * the ring at several virtual points, so tenants spread evenly and a node joining or
+ * leaving only moves the tenants next to its points.
+ */
+public class TenantRing {
+    
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+    
+    public TenantRing(Collection<String> nodeIds, int virtualNodes) {
+        for (String nodeId : nodeIds) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(nodeId + "#" + i), nodeId);
+            }
+        }
+    }
+    
+    /**
+     * Node owning a tenant, the first node point at or after the tenant's hash; null
+     * when the ring is empty
+     */
+    public String ownerOf(DBTypeEnum tenant) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(tenant.name()));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+    
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xff);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
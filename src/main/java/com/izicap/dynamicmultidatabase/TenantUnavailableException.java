@@ -0,0 +1,53 @@
+package com.izicap.dynamicmultidatabase;
+
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Thrown instead of waiting for a connection when a tenant's circuit breaker is open
+ */
+public class TenantUnavailableException extends SQLTransientConnectionException {
+    
+    private final DBTypeEnum tenant;
+    private final long retryAfterMillis;
+    
+    public TenantUnavailableException(DBTypeEnum tenant, long retryAfterMillis) {
+        this(tenant, retryAfterMillis, "Database of tenant " + tenant + " is unavailable, retry in " + retryAfterMillis + " ms");
+    }
+    
+    protected TenantUnavailableException(DBTypeEnum tenant, long retryAfterMillis, String message) {
+        super(message);
+        this.tenant = tenant;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+    
+    public DBTypeEnum getTenant() {
+        return tenant;
+    }
+    
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+    
+    /**
+     * Value for a Retry-After header, rounded up to whole seconds
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfterMillis + 999) / 1000);
+    }
+    
+    /**
+     * Find a TenantUnavailableException in the cause chain, as it usually reaches callers
+     * wrapped by Spring or Hibernate
+     */
+    public static TenantUnavailableException findIn(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TenantUnavailableException) {
+                return (TenantUnavailableException) cause;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.izicap.dynamicmultidatabase.config;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.service.ClusterMembershipService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * In cluster mode, redirects requests for a tenant owned by another node to that node
+ * with a 307, which keeps the method and body, so the request is served where the
+ * tenant's connection pool lives. Runs before every other interceptor, so cold tenants
+ * are only rehydrated by their owner. A request that was already redirected is answered
+ * with a 503 instead, so it does not bounce while two nodes disagree on the owner.
+ */
+@Configuration
+public class ClusterConfig implements WebMvcConfigurer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ClusterConfig.class);
+    
+    private static final String OWNER_HEADER = "X-Tenant-Owner";
+    
+    private static final String HOP_PARAMETER = "redirectedBy";
+    
+    @Autowired
+    private ClusterMembershipService clusterMembershipService;
+    
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                String client = request.getParameter("client");
+                if (client == null || !clusterMembershipService.isEnabled()) {
+                    return true;
+                }
+                DBTypeEnum tenant = DBTypeEnum.fromClientId(client);
+                String ownerUrl = clusterMembershipService.getOwnerUrl(tenant);
+                if (ownerUrl == null) {
+                    return true;
+                }
+                
+                if (request.getParameter(HOP_PARAMETER) != null || request.getHeader(OWNER_HEADER) != null) {
+                    logger.warn("Request for tenant {} was already redirected by {}, owner is now {}",
+                            tenant, request.getParameter(HOP_PARAMETER), ownerUrl);
+                    response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                    response.setHeader(HttpHeaders.RETRY_AFTER,
+                            String.valueOf(clusterMembershipService.getRetryAfterSeconds()));
+                    return false;
+                }
+                
+                String hop = HOP_PARAMETER + "=" + URLEncoder.encode(clusterMembershipService.getNodeId(), StandardCharsets.UTF_8);
+                String location = ownerUrl + request.getRequestURI() + "?" +
+                        (request.getQueryString() != null ? request.getQueryString() + "&" + hop : hop);
+                logger.debug("Redirecting request for tenant {} to its owner: {}", tenant, location);
+                response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+                response.setHeader(HttpHeaders.LOCATION, location);
+                response.setHeader(OWNER_HEADER, ownerUrl);
+                return false;
+            }
+        }).order(Ordered.HIGHEST_PRECEDENCE);
+    }
+}
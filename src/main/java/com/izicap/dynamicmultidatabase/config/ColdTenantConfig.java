@@ -0,0 +1,62 @@
+package com.izicap.dynamicmultidatabase.config;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.service.TenantLifecycleService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Answers requests for tenants offloaded to cold storage with a fast 503 instead of
+ * letting them fail on the missing database. The first such request starts rehydrating
+ * the tenant; callers are told to retry after {@code app.routing.cold-retry-after-ms}.
+ */
+@Configuration
+public class ColdTenantConfig implements WebMvcConfigurer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ColdTenantConfig.class);
+    
+    @Autowired
+    private TenantLifecycleService lifecycleService;
+    
+    @Value("${app.routing.cold-retry-after-ms:5000}")
+    private long retryAfterMs;
+    
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+                String client = request.getParameter("client");
+                if (client == null) {
+                    return true;
+                }
+                DBTypeEnum tenant = DBTypeEnum.fromClientId(client);
+                if (!lifecycleService.isCold(tenant)) {
+                    return true;
+                }
+                
+                if (lifecycleService.rehydrateAsync(tenant)) {
+                    logger.info("Request for cold tenant {} started its rehydration", tenant);
+                }
+                response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfterMs + 999) / 1000)));
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.getWriter().write("{\"tenant\":\"" + tenant.name() + "\",\"state\":\"warming\"}");
+                return false;
+            }
+        });
+    }
+}
@@ -1,16 +1,33 @@
 package com.izicap.dynamicmultidatabase.config;
 
 import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.migration.OnlineBackfillMigration;
+import com.izicap.dynamicmultidatabase.profiling.FlywayMigrationEvent;
+import com.izicap.dynamicmultidatabase.service.MigrationFingerprintService;
+import com.izicap.dynamicmultidatabase.migration.DropFulltextIndexCallback;
+import com.izicap.dynamicmultidatabase.service.MigrationLeaseService;
+import com.izicap.dynamicmultidatabase.service.TenantPlacementService;
+import com.izicap.dynamicmultidatabase.tracing.Span;
+import com.izicap.dynamicmultidatabase.tracing.Tracing;
+import db.migration.V6__Add_post_name_fulltext_index;
 import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.output.MigrateResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 
-import javax.sql.DataSource;
-import java.util.HashMap;
+import javax.annotation.PostConstruct;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Configuration
@@ -18,6 +35,24 @@ public class FlywayConfig {
     
     private static final Logger logger = LoggerFactory.getLogger(FlywayConfig.class);
     
+    private static final String MIGRATION_LOCATION = "classpath:db/migration";
+    
+    private static final String PARTITIONING_LOCATION = "classpath:db/partitioning";
+    
+    private static final String PARTITIONING_HISTORY_TABLE = "flyway_partitioning_history";
+    
+    @Autowired
+    private MigrationFingerprintService fingerprintService;
+    
+    @Autowired
+    private MigrationLeaseService leaseService;
+    
+    @Autowired
+    private TenantPlacementService placementService;
+    
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+    
     @Value("${app.datasource.main.jdbc-url}")
     private String mainDbUrl;
     
@@ -45,60 +80,384 @@ public class FlywayConfig {
     @Value("${app.datasource.clientb.password}")
     private String clientBDbPassword;
     
+    @Value("${app.flyway.startup-mode:migrate}")
+    private String startupMode;
+    
+    @Value("${app.flyway.skip-unchanged:true}")
+    private boolean skipUnchanged;
+    
+    @Value("${app.partitioning.enabled:false}")
+    private boolean partitioningEnabled;
+    
+    @Value("${app.flyway.lease.wait-timeout-ms:600000}")
+    private long leaseWaitTimeoutMs;
+    
+    @Value("${app.flyway.lease.poll-interval-ms:2000}")
+    private long leasePollIntervalMs;
+    
+    @Value("${app.flyway.backfill.chunk-size:1000}")
+    private int backfillChunkSize;
+    
+    @Value("${app.flyway.backfill.pause-ms:50}")
+    private long backfillPauseMs;
+    
+    @Value("${app.flyway.backfill.sleep-ratio:1.0}")
+    private double backfillSleepRatio;
+    
+    @Value("${app.flyway.backfill.max-threads-running:0}")
+    private int backfillMaxThreadsRunning;
+    
+    @Value("${app.flyway.backfill.max-load-wait-ms:60000}")
+    private long backfillMaxLoadWaitMs;
+    
+    // Java migrations are instantiated by Flyway, outside the application context
+    @PostConstruct
+    public void configureJavaMigrations() {
+        OnlineBackfillMigration.configure(backfillChunkSize, backfillPauseMs, backfillSleepRatio,
+                backfillMaxThreadsRunning, backfillMaxLoadWaitMs);
+        V6__Add_post_name_fulltext_index.setPartitioningEnabled(partitioningEnabled);
+    }
+    
+    // Runs before other startup listeners, which may expect migrated schemas
     @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
     public void migrateDatabases() {
+        switch (startupMode.trim().toLowerCase()) {
+            case "none":
+                logger.info("Flyway startup mode is 'none', skipping tenant database migrations");
+                return;
+            case "verify":
+                verifyDatabases();
+                return;
+            default:
+                break;
+        }
+        
         logger.info("Starting Flyway migrations for all tenant databases...");
         
-        Map<String, DatabaseConfig> databases = new HashMap<>();
-        databases.put("MAIN", new DatabaseConfig(mainDbUrl, mainDbUsername, mainDbPassword));
-        databases.put("CLIENT_A", new DatabaseConfig(clientADbUrl, clientADbUsername, clientADbPassword));
-        databases.put("CLIENT_B", new DatabaseConfig(clientBDbUrl, clientBDbUsername, clientBDbPassword));
+        Map<String, String> recordedFingerprints = skipUnchanged ? findRecordedFingerprints() : Map.of();
+        
+        // Tenants another node is migrating, waited for once this node's own share is done
+        Map<String, DatabaseConfig> leasedElsewhere = new LinkedHashMap<>();
         
-        for (Map.Entry<String, DatabaseConfig> entry : databases.entrySet()) {
+        for (Map.Entry<String, DatabaseConfig> entry : getTenantDatabases().entrySet()) {
             String dbName = entry.getKey();
-            DatabaseConfig config = entry.getValue();
+            String fingerprint = getMigrationFingerprint(entry.getValue());
             
+            if (fingerprint.equals(recordedFingerprints.get(dbName))) {
+                logger.info("Database {} already migrated and validated at fingerprint {}, skipping", dbName, fingerprint);
+                continue;
+            }
+            
+            if (!migrateUnderLease(dbName, entry.getValue())) {
+                logger.info("Database {} is being migrated by another node, checking back later", dbName);
+                leasedElsewhere.put(dbName, entry.getValue());
+            }
+        }
+        
+        if (!leasedElsewhere.isEmpty()) {
+            awaitMigrations(leasedElsewhere);
+        }
+        
+        logger.info("Completed Flyway migrations for all tenant databases");
+    }
+    
+    /**
+     * Migrate a database while holding its migration lease, false when another node holds
+     * the lease. Without lease coordination the database is always migrated.
+     */
+    private boolean migrateUnderLease(String dbName, DatabaseConfig config) {
+        return tryMigrateUnderLease(dbName, config) != null;
+    }
+    
+    /**
+     * Migrate a database under its migration lease outside startup, as the fleet migration
+     * runner does, waiting while a starting node holds the lease. Fails once
+     * app.flyway.lease.wait-timeout-ms passed with the lease still held elsewhere.
+     */
+    public MigrateResult migrateDatabaseUnderLease(String dbName, DatabaseConfig config) {
+        long deadline = System.currentTimeMillis() + leaseWaitTimeoutMs;
+        
+        while (true) {
+            MigrateResult result = tryMigrateUnderLease(dbName, config);
+            if (result != null) {
+                return result;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IllegalStateException("Timed out after " + leaseWaitTimeoutMs +
+                        " ms waiting for another node to release the migration lease of database " + dbName);
+            }
+            logger.info("Database {} is being migrated by another node, waiting for its lease", dbName);
             try {
-                logger.info("Running Flyway migration for database: {}", dbName);
-                
-                Flyway flyway = Flyway.configure()
-                        .dataSource(config.url, config.username, config.password)
-                        .locations("classpath:db/migration")
-                        .baselineOnMigrate(true)
-                        .validateOnMigrate(true)
-                        .cleanDisabled(true)
-                        .load();
-                
-                // Get migration info before running
-                var migrationInfos = flyway.info().all();
-                logger.debug("Found {} migrations for database {}", migrationInfos.length, dbName);
+                Thread.sleep(leasePollIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the migration lease of database " + dbName, e);
+            }
+        }
+    }
+    
+    /**
+     * Migrate a database while holding its migration lease, null when another node holds it
+     */
+    private MigrateResult tryMigrateUnderLease(String dbName, DatabaseConfig config) {
+        if (!leaseService.isEnabled()) {
+            return migrateDatabase(dbName, config);
+        }
+        
+        MigrationLeaseService.Lease lease;
+        try {
+            lease = leaseService.tryAcquire(dbName);
+        } catch (Exception e) {
+            // Flyway's own schema history lock still keeps concurrent runs safe
+            logger.warn("Could not acquire migration lease for database {}, migrating without it: {}", dbName, e.getMessage());
+            return migrateDatabase(dbName, config);
+        }
+        if (lease == null) {
+            return null;
+        }
+        
+        try (lease) {
+            return migrateDatabase(dbName, config);
+        }
+    }
+    
+    /**
+     * Wait until the nodes holding these databases' leases released them or let them
+     * expire. A database left at the current fingerprint is skipped; otherwise the other
+     * node failed and this node migrates it. Fails once app.flyway.lease.wait-timeout-ms
+     * passed with a lease still held elsewhere, rather than migrating without the lease.
+     */
+    private void awaitMigrations(Map<String, DatabaseConfig> leasedElsewhere) {
+        long deadline = System.currentTimeMillis() + leaseWaitTimeoutMs;
+        
+        while (!leasedElsewhere.isEmpty()) {
+            Map<String, String> recordedFingerprints = skipUnchanged ? findRecordedFingerprints() : Map.of();
+            
+            for (Iterator<Map.Entry<String, DatabaseConfig>> it = leasedElsewhere.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, DatabaseConfig> entry = it.next();
+                String dbName = entry.getKey();
                 
-                // Run migrations
-                var result = flyway.migrate();
+                if (getMigrationFingerprint(entry.getValue()).equals(recordedFingerprints.get(dbName))) {
+                    logger.info("Database {} was migrated by another node, skipping", dbName);
+                    it.remove();
+                } else if (!leaseService.isHeldElsewhere(dbName) && migrateUnderLease(dbName, entry.getValue())) {
+                    it.remove();
+                } else if (System.currentTimeMillis() >= deadline) {
+                    // The other node still renews its lease; migrating here anyway would defeat it
+                    throw new IllegalStateException("Timed out after " + leaseWaitTimeoutMs +
+                            " ms waiting for another node to migrate database " + dbName);
+                }
+            }
+            
+            if (!leasedElsewhere.isEmpty()) {
+                try {
+                    Thread.sleep(leasePollIntervalMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for tenant migrations of other nodes", e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Verify-only startup: report pending migrations without applying them, so the
+     * application never blocks on (or fails because of) a tenant schema change.
+     * Migrations are expected to be applied out-of-band by the fleet migration runner.
+     */
+    public void verifyDatabases() {
+        logger.info("Flyway startup mode is 'verify', checking pending migrations without applying them");
+        
+        for (Map.Entry<String, DatabaseConfig> entry : getTenantDatabases().entrySet()) {
+            String dbName = entry.getKey();
+            
+            try {
+                int pending = createFlyway(entry.getValue()).info().pending().length;
+                if (partitioningEnabled) {
+                    pending += createPartitioningFlyway(entry.getValue()).info().pending().length;
+                }
                 
-                if (result.success) {
-                    logger.info("Successfully applied {} migrations to database: {}", 
-                              result.migrationsExecuted, dbName);
-                    
-                    if (result.migrationsExecuted > 0) {
-                        logger.info("Migrations applied to {}: {}", dbName, 
-                                  result.migrations.stream()
-                                          .map(m -> m.version + " - " + m.description)
-                                          .toArray());
-                    } else {
-                        logger.info("Database {} is already up to date", dbName);
-                    }
+                if (pending > 0) {
+                    logger.warn("Database {} has {} pending migrations, run the fleet migration runner to apply them", 
+                              dbName, pending);
                 } else {
-                    logger.error("Migration failed for database: {}", dbName);
+                    logger.info("Database {} is up to date", dbName);
                 }
-                
             } catch (Exception e) {
-                logger.error("Error running Flyway migration for database: {}", dbName, e);
-                throw new RuntimeException("Failed to migrate database: " + dbName, e);
+                logger.warn("Could not verify migration status for database {}: {}", dbName, e.getMessage());
             }
         }
+    }
+    
+    /**
+     * Run migrations for a single configured database, throwing if they fail
+     */
+    public MigrateResult migrateDatabase(String dbName, DatabaseConfig config) {
+        FlywayMigrationEvent event = new FlywayMigrationEvent();
+        event.tenant = dbName;
+        event.begin();
+        Span span = Tracing.startSpanOrTrace("flyway.migrate").setAttribute("tenant", dbName);
+        Tracing.tagTenant(dbName);
+        try {
+            logger.info("Running Flyway migration for database: {}", dbName);
+            
+            Flyway flyway = createFlyway(config);
+            
+            // Get migration info before running
+            var migrationInfos = flyway.info().all();
+            logger.debug("Found {} migrations for database {}", migrationInfos.length, dbName);
+            
+            // Run migrations
+            var result = migrate(flyway, config);
+            event.migrationsExecuted = result.migrationsExecuted;
+            event.success = result.success;
+            span.setAttribute("flyway.migrations_executed", result.migrationsExecuted);
+            
+            if (result.success) {
+                logger.info("Successfully applied {} migrations to database: {}", 
+                          result.migrationsExecuted, dbName);
+                
+                if (result.migrationsExecuted > 0) {
+                    logger.info("Migrations applied to {}: {}", dbName, 
+                              result.migrations.stream()
+                                      .map(m -> m.version + " - " + m.description)
+                                      .toArray());
+                } else {
+                    logger.info("Database {} is already up to date", dbName);
+                }
+                
+                fingerprintService.recordFingerprint(dbName, getMigrationFingerprint(config));
+            } else {
+                logger.error("Migration failed for database: {}", dbName);
+            }
+            
+            return result;
         
-        logger.info("Completed Flyway migrations for all tenant databases");
+        } catch (Exception e) {
+            logger.error("Error running Flyway migration for database: {}", dbName, e);
+            span.setError(e);
+            throw new RuntimeException("Failed to migrate database: " + dbName, e);
+        } finally {
+            span.close();
+            event.commit();
+        }
+    }
+    
+    /**
+     * All live tenant databases keyed by tenant name, at their current placement. Tenants
+     * offloaded to cold storage have no database and are left out.
+     */
+    public Map<String, DatabaseConfig> getTenantDatabases() {
+        Map<String, DatabaseConfig> databases = new LinkedHashMap<>();
+        getConfiguredDatabases().forEach((tenant, config) -> {
+            DBTypeEnum dbType = DBTypeEnum.valueOf(tenant);
+            if (!multiRoutingDataSource.isCold(dbType)) {
+                databases.put(tenant, placementService.resolve(dbType, config));
+            }
+        });
+        return databases;
+    }
+    
+    /**
+     * The database of one tenant at its current placement, whether it is live or cold
+     */
+    public DatabaseConfig getTenantDatabase(DBTypeEnum tenant) {
+        return placementService.resolve(tenant, getConfiguredDatabases().get(tenant.name()));
+    }
+    
+    /**
+     * All statically configured tenant databases, keyed by tenant name
+     */
+    public Map<String, DatabaseConfig> getConfiguredDatabases() {
+        Map<String, DatabaseConfig> databases = new LinkedHashMap<>();
+        databases.put("MAIN", new DatabaseConfig(mainDbUrl, mainDbUsername, mainDbPassword));
+        databases.put("CLIENT_A", new DatabaseConfig(clientADbUrl, clientADbUsername, clientADbPassword));
+        databases.put("CLIENT_B", new DatabaseConfig(clientBDbUrl, clientBDbUsername, clientBDbPassword));
+        return databases;
+    }
+    
+    /**
+     * Fingerprint of the packaged migration set, computed once per application run, as
+     * applied to the given database. Covers the partitioning scripts when they are
+     * enabled, so opting in re-migrates tenants that were skipped as unchanged, and the
+     * database identity, so a tenant whose database changed is never skipped.
+     */
+    public String getMigrationFingerprint(DatabaseConfig config) {
+        String fingerprint = partitioningEnabled
+                ? fingerprintService.getFingerprint(MIGRATION_LOCATION, PARTITIONING_LOCATION)
+                : fingerprintService.getFingerprint(MIGRATION_LOCATION);
+        return fingerprintService.getDatabaseFingerprint(fingerprint, config.getUrl());
+    }
+    
+    /**
+     * Apply the schema migrations, and the opt-in partitioning migrations when enabled,
+     * to a database without recording its fingerprint
+     */
+    public MigrateResult migrateSchema(DatabaseConfig config) {
+        return migrate(createFlyway(config), config);
+    }
+    
+    /**
+     * Build a Flyway instance with the settings shared by every tenant database
+     */
+    public Flyway createFlyway(DatabaseConfig config) {
+        return Flyway.configure()
+                .dataSource(config.url, config.username, config.password)
+                .locations(MIGRATION_LOCATION)
+                .baselineOnMigrate(true)
+                .validateOnMigrate(true)
+                .cleanDisabled(true)
+                .load();
+    }
+    
+    /**
+     * Flyway instance for the opt-in partitioning scripts. They keep their own history
+     * table so they can be enabled at any point without interleaving their versions
+     * with the main migration set.
+     */
+    public Flyway createPartitioningFlyway(DatabaseConfig config) {
+        return Flyway.configure()
+                .dataSource(config.url, config.username, config.password)
+                .locations(PARTITIONING_LOCATION)
+                .table(PARTITIONING_HISTORY_TABLE)
+                // The schema already exists, so a baseline must sort below the first partitioning script
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                // Tenants migrated while partitioning was off have a FULLTEXT index that would block it
+                .callbacks(new DropFulltextIndexCallback())
+                .validateOnMigrate(true)
+                .cleanDisabled(true)
+                .load();
+    }
+    
+    /**
+     * Schema version of a database according to the main migration set, null before
+     * the first migration
+     */
+    public String getSchemaVersion(DatabaseConfig config) {
+        MigrationInfo current = createFlyway(config).info().current();
+        return current != null && current.getVersion() != null ? current.getVersion().getVersion() : null;
+    }
+    
+    /**
+     * Apply the main migration set up to and including the given version only, e.g. to
+     * restore data exported at that version before applying the newer migrations
+     */
+    public MigrateResult migrateToVersion(DatabaseConfig config, String version) {
+        Flyway flyway = Flyway.configure()
+                .configuration(createFlyway(config).getConfiguration())
+                .target(version)
+                .load();
+        MigrateResult result = flyway.migrate();
+        if (!result.success) {
+            throw new IllegalStateException("Failed to migrate database to version " + version);
+        }
+        return result;
+    }
+    
+    public boolean isPartitioningEnabled() {
+        return partitioningEnabled;
     }
     
     /**
@@ -107,40 +466,81 @@ public class FlywayConfig {
     public void migrateTenantDatabase(String jdbcUrl, String username, String password, String tenantName) {
         logger.info("Running Flyway migration for new tenant: {}", tenantName);
         
+        FlywayMigrationEvent event = new FlywayMigrationEvent();
+        event.tenant = tenantName;
+        event.begin();
+        Span span = Tracing.startSpanOrTrace("flyway.migrate").setAttribute("tenant", tenantName);
+        Tracing.tagTenant(tenantName);
         try {
-            Flyway flyway = Flyway.configure()
-                    .dataSource(jdbcUrl, username, password)
-                    .locations("classpath:db/migration")
-                    .baselineOnMigrate(true)
-                    .validateOnMigrate(true)
-                    .cleanDisabled(true)
-                    .load();
+            DatabaseConfig config = new DatabaseConfig(jdbcUrl, username, password);
             
-            var result = flyway.migrate();
+            var result = migrate(createFlyway(config), config);
+            event.migrationsExecuted = result.migrationsExecuted;
+            event.success = result.success;
+            span.setAttribute("flyway.migrations_executed", result.migrationsExecuted);
             
             if (result.success) {
                 logger.info("Successfully applied {} migrations to tenant database: {}", 
                           result.migrationsExecuted, tenantName);
+                fingerprintService.recordFingerprint(tenantName, getMigrationFingerprint(config));
             } else {
                 logger.error("Migration failed for tenant database: {}", tenantName);
                 throw new RuntimeException("Failed to migrate tenant database: " + tenantName);
             }
-            
+        
         } catch (Exception e) {
             logger.error("Error running Flyway migration for tenant: {}", tenantName, e);
+            span.setError(e);
             throw new RuntimeException("Failed to migrate tenant database: " + tenantName, e);
+        } finally {
+            span.close();
+            event.commit();
+        }
+    }
+    
+    private MigrateResult migrate(Flyway flyway, DatabaseConfig config) {
+        MigrateResult result = flyway.migrate();
+        if (!result.success || !partitioningEnabled) {
+            return result;
+        }
+        
+        MigrateResult partitioning = createPartitioningFlyway(config).migrate();
+        result.migrationsExecuted += partitioning.migrationsExecuted;
+        result.migrations.addAll(partitioning.migrations);
+        result.success = partitioning.success;
+        return result;
+    }
+    
+    private Map<String, String> findRecordedFingerprints() {
+        try {
+            return fingerprintService.findRecordedFingerprints();
+        } catch (Exception e) {
+            logger.warn("Could not read recorded migration fingerprints, migrating every database: {}", e.getMessage());
+            return Map.of();
         }
     }
     
-    private static class DatabaseConfig {
-        final String url;
-        final String username;
-        final String password;
+    public static class DatabaseConfig {
+        private final String url;
+        private final String username;
+        private final String password;
         
-        DatabaseConfig(String url, String username, String password) {
+        public DatabaseConfig(String url, String username, String password) {
             this.url = url;
             this.username = username;
             this.password = password;
         }
+        
+        public String getUrl() {
+            return url;
+        }
+        
+        public String getUsername() {
+            return username;
+        }
+        
+        public String getPassword() {
+            return password;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.izicap.dynamicmultidatabase.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables {@code @Scheduled} maintenance jobs. Each job reads its cron expression from
+ * configuration and is disabled with the value {@code -}; {@code app.scheduling.enabled=false}
+ * disables them all, as the fleet migration runner does.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+@EnableScheduling
+public class SchedulingConfig {
+}
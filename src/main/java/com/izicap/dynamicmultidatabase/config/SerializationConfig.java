@@ -0,0 +1,43 @@
+package com.izicap.dynamicmultidatabase.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Adds compact binary response formats for internal service-to-service callers.
+ * Clients opt in with {@code Accept: application/x-jackson-smile} or
+ * {@code Accept: application/cbor}; everyone else keeps getting JSON.
+ */
+@Configuration
+public class SerializationConfig implements WebMvcConfigurer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SerializationConfig.class);
+    
+    // Boot's builder is prototype-scoped and carries the spring.jackson.* settings and
+    // registered modules, so binary responses serialize exactly like JSON ones
+    @Autowired
+    private ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+    
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Appended after the JSON converter so wildcard Accept headers still negotiate JSON
+        converters.add(new MappingJackson2SmileHttpMessageConverter(
+                objectMapperBuilder.getObject().factory(new SmileFactory()).build()));
+        converters.add(new MappingJackson2CborHttpMessageConverter(
+                objectMapperBuilder.getObject().factory(new CBORFactory()).build()));
+        
+        logger.info("Registered Smile and CBOR message converters");
+    }
+}
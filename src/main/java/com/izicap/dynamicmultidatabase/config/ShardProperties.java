@@ -0,0 +1,83 @@
+package com.izicap.dynamicmultidatabase.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Physical MySQL servers that tenant databases can be placed on, e.g.
+ * {@code app.placement.shards.db2.url=jdbc:mysql://db2:3306/{database}?useSSL=false}.
+ * The {@code {database}} placeholder is replaced by the tenant's database name.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.placement")
+public class ShardProperties {
+
+    public static final String DATABASE_PLACEHOLDER = "{database}";
+
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+
+    public Map<String, Shard> getShards() {
+        return shards;
+    }
+
+    public void setShards(Map<String, Shard> shards) {
+        this.shards = shards;
+    }
+
+    public Shard getShard(String name) {
+        Shard shard = shards.get(name);
+        if (shard == null) {
+            throw new IllegalArgumentException("Unknown shard: " + name + ", configured shards are " + shards.keySet());
+        }
+        return shard;
+    }
+
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+
+        /**
+         * JDBC URL of a database on this shard
+         */
+        public String urlFor(String database) {
+            return url.replace(DATABASE_PLACEHOLDER, database);
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.izicap.dynamicmultidatabase.config;
+
+import com.izicap.dynamicmultidatabase.tracing.TracingFilter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Traces every HTTP request, see {@link com.izicap.dynamicmultidatabase.service.TracingService}
+ */
+@Configuration
+public class TracingConfig {
+    
+    // First in the chain, so the request span covers the other filters and all interceptors
+    @Bean
+    public FilterRegistrationBean<TracingFilter> tracingFilter() {
+        FilterRegistrationBean<TracingFilter> registration = new FilterRegistrationBean<>(new TracingFilter());
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
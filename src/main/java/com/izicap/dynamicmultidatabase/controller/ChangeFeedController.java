@@ -0,0 +1,105 @@
+package com.izicap.dynamicmultidatabase.controller;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.TenantUnavailableException;
+import com.izicap.dynamicmultidatabase.model.ChangeFeedPage;
+import com.izicap.dynamicmultidatabase.service.ChangeFeedService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.CompletionException;
+
+@RestController
+@RequestMapping("/posts")
+@Api(tags = "Change Feed", description = "Incremental per-tenant feed of created and updated posts")
+public class ChangeFeedController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeedController.class);
+    
+    private static final long TIMEOUT_MARGIN_MS = 10_000;
+    
+    @Autowired
+    private ChangeFeedService changeFeedService;
+    
+    @GetMapping("/changes")
+    @ApiOperation(
+        value = "Read post changes since a cursor",
+        notes = "Returns posts created or updated after the given cursor, ordered by (updatedAt, id). " +
+               "Pass the returned nextCursor on the following request to resume. Omit the cursor to start from the beginning. " +
+               "With waitSeconds > 0 the request long-polls until changes appear or the wait elapses, without holding a " +
+               "server thread while it waits.",
+        response = ChangeFeedPage.class
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Changes retrieved (possibly empty)"),
+        @ApiResponse(code = 400, message = "Invalid cursor"),
+        @ApiResponse(code = 503, message = "Tenant database is unavailable, retry after the Retry-After delay"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    public DeferredResult<ResponseEntity<ChangeFeedPage>> getChanges(
+            @ApiParam(value = "Client identifier to determine which database to read", 
+                     allowableValues = "main,client-a,client-b", defaultValue = "main")
+            @RequestParam(defaultValue = "main") String client,
+            
+            @ApiParam(value = "Cursor returned by the previous request")
+            @RequestParam(required = false) String cursor,
+            
+            @ApiParam(value = "Maximum number of changes to return", defaultValue = "100")
+            @RequestParam(defaultValue = "100") int limit,
+            
+            @ApiParam(value = "Seconds to wait for changes when none are available", defaultValue = "0")
+            @RequestParam(defaultValue = "0") int waitSeconds) {
+        
+        logger.info("Received change feed request for client: {} after cursor: {}", client, cursor);
+        
+        // The service answers a parked poll by its deadline; this only guards against a stuck poller
+        DeferredResult<ResponseEntity<ChangeFeedPage>> result =
+                new DeferredResult<>(changeFeedService.getMaxWaitMs() + TIMEOUT_MARGIN_MS);
+        result.onTimeout(() -> {
+            logger.warn("Change feed poll for client: {} was not answered in time", client);
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build());
+        });
+        
+        try {
+            changeFeedService.watchChanges(DBTypeEnum.fromClientId(client), cursor, limit, waitSeconds)
+                    .whenComplete((page, failure) -> result.setResult(
+                            failure == null ? ResponseEntity.ok(page) : toErrorResponse(client, failure)));
+        } catch (Exception e) {
+            result.setResult(toErrorResponse(client, e));
+        }
+        return result;
+    }
+    
+    private ResponseEntity<ChangeFeedPage> toErrorResponse(String client, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof IllegalArgumentException) {
+            logger.warn("Invalid change feed request for client: {}: {}", client, cause.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        TenantUnavailableException unavailable = TenantUnavailableException.findIn(cause);
+        if (unavailable != null) {
+            logger.warn("Database for client: {} is unavailable: {}", client, unavailable.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                    .build();
+        }
+        logger.error("Error occurred while reading change feed for client: {}", client, cause);
+        return ResponseEntity.internalServerError().build();
+    }
+}
@@ -1,18 +1,31 @@
 package com.izicap.dynamicmultidatabase.controller;
 
+import com.izicap.dynamicmultidatabase.profiling.TenantHeavyHitters;
 import com.izicap.dynamicmultidatabase.service.HealthService;
+import com.izicap.dynamicmultidatabase.service.HeavyHitterService;
+import com.izicap.dynamicmultidatabase.service.ProfilingService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.nio.file.Path;
 import java.util.Map;
 
 @RestController
@@ -25,6 +38,12 @@ public class HealthController {
     @Autowired
     private HealthService healthService;
     
+    @Autowired
+    private ProfilingService profilingService;
+    
+    @Autowired
+    private HeavyHitterService heavyHitterService;
+    
     @GetMapping
     @ApiOperation(
         value = "Overall system health check",
@@ -49,7 +68,7 @@ public class HealthController {
                 logger.warn("Overall system health check failed");
                 return ResponseEntity.status(503).body(healthStatus);
             }
-            
+        
         } catch (Exception e) {
             logger.error("Error during overall health check", e);
             return ResponseEntity.status(503).body(Map.of(
@@ -84,7 +103,7 @@ public class HealthController {
                 logger.warn("Some databases are unhealthy");
                 return ResponseEntity.status(503).body(databaseHealth);
             }
-            
+        
         } catch (Exception e) {
             logger.error("Error during database health check", e);
             return ResponseEntity.status(503).body(Map.of(
@@ -119,7 +138,7 @@ public class HealthController {
                 logger.warn("Some database migrations are not up-to-date");
                 return ResponseEntity.status(503).body(migrationHealth);
             }
-            
+        
         } catch (Exception e) {
             logger.error("Error during migration health check", e);
             return ResponseEntity.status(503).body(Map.of(
@@ -154,7 +173,7 @@ public class HealthController {
                 logger.warn("Database routing issues detected");
                 return ResponseEntity.status(503).body(routingHealth);
             }
-            
+        
         } catch (Exception e) {
             logger.error("Error during routing health check", e);
             return ResponseEntity.status(503).body(Map.of(
@@ -168,7 +187,9 @@ public class HealthController {
     @GetMapping("/system")
     @ApiOperation(
         value = "System resources health check",
-        notes = "Provides information about system resources including memory usage, thread counts, and JVM statistics.",
+        notes = "Provides information about system resources including memory usage, thread counts, and JVM statistics. " +
+                "The 'profiling' section aggregates JFR data over the last window: GC pauses, allocation rate, " +
+                "lock contention, and per-tenant connection acquisition and repository call timings.",
         response = Map.class
     )
     @ApiResponses(value = {
@@ -189,7 +210,7 @@ public class HealthController {
                 logger.warn("System resource issues detected");
                 return ResponseEntity.status(503).body(systemHealth);
             }
-            
+        
         } catch (Exception e) {
             logger.error("Error during system health check", e);
             return ResponseEntity.status(503).body(Map.of(
@@ -199,4 +220,76 @@ public class HealthController {
             ));
         }
     }
-}
\ No newline at end of file
+    
+    @PostMapping("/system/recording")
+    @ApiOperation(
+        value = "Dump a JFR recording",
+        notes = "Writes the last minutes of the continuous JDK Flight Recorder recording, including the tenant routing, " +
+                "connection, repository and Flyway events, to a .jfr file and returns it for offline analysis, " +
+                "e.g. in JDK Mission Control. The file is also kept in app.profiling.directory."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Recording dumped"),
+        @ApiResponse(code = 503, message = "JFR profiling is disabled"),
+        @ApiResponse(code = 500, message = "Recording could not be dumped")
+    })
+    public ResponseEntity<Resource> dumpRecording(
+            @ApiParam(value = "Minutes of recording to include, capped at app.profiling.max-age-minutes", example = "5")
+            @RequestParam(defaultValue = "5") long minutes) {
+        
+        logger.info("Dumping the last {} minutes of JFR profiling data", minutes);
+        
+        if (!profilingService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        
+        try {
+            Path recording = profilingService.dumpRecording(minutes);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            ContentDisposition.attachment().filename(recording.getFileName().toString()).build().toString())
+                    .body(new FileSystemResource(recording));
+        
+        } catch (Exception e) {
+            logger.error("Error dumping JFR recording", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    @GetMapping("/tenants/top")
+    @ApiOperation(
+        value = "Heaviest tenants right now",
+        notes = "Returns the tenants with the most database requests (connections checked out), connection time in " +
+                "microseconds (db_time) or rows read over a recent window, with their share of the total. Values are " +
+                "estimated with bounded-memory sketches and may be overestimated by at most maxError.",
+        response = TenantHeavyHitters.Result.class
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Heavy hitters retrieved successfully"),
+        @ApiResponse(code = 400, message = "Unknown metric"),
+        @ApiResponse(code = 503, message = "Heavy-hitter tracking is disabled")
+    })
+    public ResponseEntity<TenantHeavyHitters.Result> getTopTenants(
+            @ApiParam(value = "Metric to rank tenants by", allowableValues = "requests,db_time,rows", defaultValue = "requests")
+            @RequestParam(defaultValue = "requests") String metric,
+            
+            @ApiParam(value = "Window in seconds, capped at app.heavy-hitters.window-seconds", defaultValue = "60")
+            @RequestParam(defaultValue = "60") long windowSeconds,
+            
+            @ApiParam(value = "Maximum number of tenants to return", defaultValue = "10")
+            @RequestParam(defaultValue = "10") int limit) {
+        
+        if (!heavyHitterService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        
+        try {
+            return ResponseEntity.ok(heavyHitterService.getTop(metric, windowSeconds, limit));
+        
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid heavy-hitter request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
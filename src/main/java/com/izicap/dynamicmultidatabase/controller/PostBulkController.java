@@ -0,0 +1,151 @@
+package com.izicap.dynamicmultidatabase.controller;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.TenantUnavailableException;
+import com.izicap.dynamicmultidatabase.model.BulkPostOperation;
+import com.izicap.dynamicmultidatabase.model.BulkPostOperationProgress;
+import com.izicap.dynamicmultidatabase.service.PostBulkService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/posts/bulk")
+@Api(tags = "Bulk Operations", description = "Chunked, throttled and resumable set-based updates and deletes of tenant posts")
+public class PostBulkController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PostBulkController.class);
+    
+    @Autowired
+    private PostBulkService postBulkService;
+    
+    @PostMapping
+    @ApiOperation(
+        value = "Start or resume a bulk update or delete",
+        notes = "Updates or deletes the posts matching the criteria in the background, in chunks of app.bulk.chunk-size " +
+               "posts visited by id or creation time, each committed with the job's checkpoint and followed by a pause. " +
+               "Submitting a job id again resumes it after its last committed chunk, and runs it again once completed " +
+               "only with restart=true; without a job id, resubmitting the same operation resumes it while unfinished " +
+               "and runs it again once completed. Poll /posts/bulk/{jobId} for progress.",
+        response = BulkPostOperationProgress.class
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 202, message = "Job started, resumed or already running"),
+        @ApiResponse(code = 200, message = "Job had already completed"),
+        @ApiResponse(code = 400, message = "Invalid operation"),
+        @ApiResponse(code = 409, message = "Job id is in use by a different operation, or is being restarted concurrently"),
+        @ApiResponse(code = 503, message = "Tenant database is unavailable, retry after the Retry-After delay"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    public ResponseEntity<BulkPostOperationProgress> submit(
+            @ApiParam(value = "Client identifier to determine which database to modify", 
+                     allowableValues = "main,client-a,client-b", defaultValue = "main")
+            @RequestParam(defaultValue = "main") String client,
+            
+            @ApiParam(value = "Operation and criteria", required = true)
+            @RequestBody BulkPostOperation operation) {
+        
+        logger.info("Received bulk {} request for client: {}", operation.getOperation(), client);
+        
+        try {
+            BulkPostOperationProgress progress = postBulkService.submit(DBTypeEnum.fromClientId(client), operation);
+            if (BulkPostOperationProgress.COMPLETED.equals(progress.getState())) {
+                return ResponseEntity.ok(progress);
+            }
+            return ResponseEntity.accepted().body(progress);
+            
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid bulk request for client: {}: {}", client, e.getMessage());
+            return ResponseEntity.badRequest().build();
+            
+        } catch (IllegalStateException e) {
+            logger.warn("Conflicting bulk request for client: {}: {}", client, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            
+        } catch (Exception e) {
+            return errorResponse(client, e);
+        }
+    }
+    
+    @GetMapping("/{jobId}")
+    @ApiOperation(
+        value = "Get the progress of a bulk job",
+        notes = "Returns the live progress of a job running on this instance, or else its last checkpoint.",
+        response = BulkPostOperationProgress.class
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Progress retrieved successfully"),
+        @ApiResponse(code = 404, message = "Unknown job"),
+        @ApiResponse(code = 503, message = "Tenant database is unavailable, retry after the Retry-After delay"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    public ResponseEntity<BulkPostOperationProgress> getProgress(
+            @ApiParam(value = "Client identifier to determine which database to read", 
+                     allowableValues = "main,client-a,client-b", defaultValue = "main")
+            @RequestParam(defaultValue = "main") String client,
+            
+            @ApiParam(value = "Job identifier", required = true)
+            @PathVariable String jobId) {
+        
+        try {
+            BulkPostOperationProgress progress = postBulkService.getProgress(DBTypeEnum.fromClientId(client), jobId);
+            if (progress == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(progress);
+            
+        } catch (Exception e) {
+            return errorResponse(client, e);
+        }
+    }
+    
+    @GetMapping
+    @ApiOperation(
+        value = "List bulk jobs",
+        notes = "Returns every bulk job recorded for the tenant, most recently active first, including unfinished jobs " +
+               "stopped by a crash or shutdown, which resume when resubmitted.",
+        response = BulkPostOperationProgress.class,
+        responseContainer = "List"
+    )
+    public ResponseEntity<List<BulkPostOperationProgress>> listJobs(
+            @ApiParam(value = "Client identifier to determine which database to read", 
+                     allowableValues = "main,client-a,client-b", defaultValue = "main")
+            @RequestParam(defaultValue = "main") String client) {
+        
+        try {
+            return ResponseEntity.ok(postBulkService.listJobs(DBTypeEnum.fromClientId(client)));
+            
+        } catch (Exception e) {
+            return errorResponse(client, e);
+        }
+    }
+    
+    private <T> ResponseEntity<T> errorResponse(String client, Exception e) {
+        TenantUnavailableException unavailable = TenantUnavailableException.findIn(e);
+        if (unavailable != null) {
+            logger.warn("Database for client: {} is unavailable: {}", client, unavailable.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                    .build();
+        }
+        logger.error("Error occurred during bulk operation request for client: {}", client, e);
+        return ResponseEntity.internalServerError().build();
+    }
+}
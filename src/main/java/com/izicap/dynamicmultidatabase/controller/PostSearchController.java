@@ -0,0 +1,103 @@
+package com.izicap.dynamicmultidatabase.controller;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.TenantUnavailableException;
+import com.izicap.dynamicmultidatabase.model.PostSearchResult;
+import com.izicap.dynamicmultidatabase.service.PostSearchService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/posts/search")
+@Api(tags = "Post Search", description = "Substring and keyword search over the names of a tenant's posts")
+public class PostSearchController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PostSearchController.class);
+    
+    @Autowired
+    private PostSearchService postSearchService;
+    
+    @GetMapping
+    @ApiOperation(
+        value = "Search the posts of the specified tenant database by name",
+        notes = "Returns the posts whose name contains every whitespace-separated term, case-insensitively, highest id " +
+               "first. path=database searches the tenant's n-gram FULLTEXT index, or falls back to LIKE where the index " +
+               "does not exist. path=memory uses the in-memory n-gram index when app.search.ngram.enabled is set and the " +
+               "tenant's index is loaded, the database otherwise; with compare=true the search is repeated in the " +
+               "database and both timings are returned.",
+        response = PostSearchResult.class
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Search completed"),
+        @ApiResponse(code = 400, message = "Query has no terms, too many terms, or the path is invalid"),
+        @ApiResponse(code = 503, message = "Tenant database is unavailable, retry after the Retry-After delay"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    public ResponseEntity<PostSearchResult> search(
+            @ApiParam(value = "Client identifier to determine which database to query",
+                     allowableValues = "main,client-a,client-b", defaultValue = "main")
+            @RequestParam(defaultValue = "main") String client,
+            
+            @ApiParam(value = "Search terms", required = true, example = "routing")
+            @RequestParam String q,
+            
+            @ApiParam(value = "Where to search", allowableValues = "database,memory", defaultValue = "memory")
+            @RequestParam(defaultValue = "memory") String path,
+            
+            @ApiParam(value = "Maximum number of posts, capped by app.search.max-results", defaultValue = "20")
+            @RequestParam(defaultValue = "20") int limit,
+            
+            @ApiParam(value = "Repeat an in-memory search in the database and report both", defaultValue = "false")
+            @RequestParam(defaultValue = "false") boolean compare) {
+        
+        if (!"database".equals(path) && !"memory".equals(path)) {
+            logger.warn("Invalid search path: {}", path);
+            return ResponseEntity.badRequest().build();
+        }
+        
+        try {
+            return ResponseEntity.ok(postSearchService.search(DBTypeEnum.fromClientId(client), q, limit,
+                    "memory".equals(path), compare));
+        
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid search for client: {}: {}", client, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        
+        } catch (Exception e) {
+            TenantUnavailableException unavailable = TenantUnavailableException.findIn(e);
+            if (unavailable != null) {
+                logger.warn("Database for client: {} is unavailable: {}", client, unavailable.getMessage());
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                        .build();
+            }
+            logger.error("Error occurred while searching posts for client: {}", client, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    @GetMapping("/stats")
+    @ApiOperation(
+        value = "Search latencies and in-memory index state",
+        notes = "Latency of the fulltext, like and ngram search paths since startup, with percentiles over the most " +
+               "recent searches, and the size of every tenant's in-memory n-gram index."
+    )
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(postSearchService.getStats());
+    }
+}
@@ -1,5 +1,20 @@
 package com.izicap.dynamicmultidatabase.controller;
 
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.config.FlywayConfig;
+import com.izicap.dynamicmultidatabase.model.DataFileFormat;
+import com.izicap.dynamicmultidatabase.model.PartitionMaintenanceResult;
+import com.izicap.dynamicmultidatabase.model.TenantExportResult;
+import com.izicap.dynamicmultidatabase.model.TenantImportResult;
+import com.izicap.dynamicmultidatabase.model.TenantLifecycle;
+import com.izicap.dynamicmultidatabase.model.TenantMoveReport;
+import com.izicap.dynamicmultidatabase.model.TenantPlacement;
+import com.izicap.dynamicmultidatabase.service.PostPartitionService;
+import com.izicap.dynamicmultidatabase.service.TenantExportService;
+import com.izicap.dynamicmultidatabase.service.TenantImportService;
+import com.izicap.dynamicmultidatabase.service.TenantLifecycleService;
+import com.izicap.dynamicmultidatabase.service.TenantMoveService;
+import com.izicap.dynamicmultidatabase.service.TenantPlacementService;
 import com.izicap.dynamicmultidatabase.service.TenantService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -10,11 +25,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 @RestController
 @RequestMapping("/tenant")
 @Api(tags = "Tenant Management", description = "Operations for managing tenant databases and onboarding")
@@ -25,6 +48,27 @@ public class TenantController {
     @Autowired
     private TenantService tenantService;
     
+    @Autowired
+    private TenantExportService tenantExportService;
+    
+    @Autowired
+    private TenantImportService tenantImportService;
+    
+    @Autowired
+    private TenantPlacementService placementService;
+    
+    @Autowired
+    private TenantMoveService tenantMoveService;
+    
+    @Autowired
+    private PostPartitionService partitionService;
+    
+    @Autowired
+    private TenantLifecycleService lifecycleService;
+    
+    @Autowired
+    private FlywayConfig flywayConfig;
+    
     @PostMapping("/onboard")
     @ApiOperation(
         value = "Onboard a new tenant",
@@ -70,4 +114,309 @@ public class TenantController {
                     .body("Failed to onboard tenant: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+    
+    @PostMapping("/export")
+    @ApiOperation(
+        value = "Export tenant databases",
+        notes = "Streams every table of the selected tenants to gzip-compressed NDJSON or CSV files, one file per table. " +
+                "Tenants are exported in parallel and the response reports rows and rows per second for each tenant.",
+        response = TenantExportResult.class,
+        responseContainer = "List"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "All tenants exported"),
+        @ApiResponse(code = 400, message = "Invalid format or tenant"),
+        @ApiResponse(code = 500, message = "One or more tenant exports failed")
+    })
+    public ResponseEntity<List<TenantExportResult>> exportTenants(
+            @ApiParam(value = "Export file format", allowableValues = "ndjson,csv", example = "ndjson")
+            @RequestParam(defaultValue = "ndjson") String format,
+            
+            @ApiParam(value = "Tenants to export, all tenants when omitted", example = "CLIENT_A,CLIENT_B")
+            @RequestParam(required = false) List<String> tenants) {
+        
+        List<DBTypeEnum> selected;
+        DataFileFormat fileFormat;
+        try {
+            fileFormat = DataFileFormat.fromName(format);
+            selected = new ArrayList<>();
+            if (tenants == null || tenants.isEmpty()) {
+                selected.addAll(Arrays.asList(DBTypeEnum.values()));
+            } else {
+                for (String tenant : tenants) {
+                    selected.add(DBTypeEnum.valueOf(tenant.trim().toUpperCase()));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid export request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        
+        logger.info("Received export request for tenants {} as {}", selected, fileFormat);
+        
+        try {
+            List<TenantExportResult> results = tenantExportService.exportTenants(selected, fileFormat);
+            boolean allSucceeded = results.stream().allMatch(TenantExportResult::isSuccess);
+            
+            return allSucceeded ? ResponseEntity.ok(results) : ResponseEntity.internalServerError().body(results);
+            
+        } catch (Exception e) {
+            logger.error("Tenant export failed", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    @PostMapping("/import")
+    @ApiOperation(
+        value = "Bulk import data files into a tenant database",
+        notes = "Loads an NDJSON or CSV file (optionally gzip-compressed), or every such file of a directory such as one tenant " +
+                "directory of an export, into the tenant's tables. Rows are committed in chunks with a checkpoint, so calling " +
+                "the endpoint again after a failure resumes after the last committed chunk.",
+        response = TenantImportResult.class,
+        responseContainer = "List"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "All files imported"),
+        @ApiResponse(code = 400, message = "Invalid tenant or path"),
+        @ApiResponse(code = 500, message = "One or more files failed to import")
+    })
+    public ResponseEntity<List<TenantImportResult>> importTenantData(
+            @ApiParam(value = "Target tenant", required = true, example = "CLIENT_A")
+            @RequestParam String tenant,
+            
+            @ApiParam(value = "File or directory, relative to the import directory", required = true,
+                     example = "2024-01-31T020000/client_a")
+            @RequestParam String path,
+            
+            @ApiParam(value = "Target table for a single file, derived from the file name when omitted", example = "post")
+            @RequestParam(required = false) String table) {
+        
+        DBTypeEnum dbType;
+        Path source;
+        try {
+            dbType = DBTypeEnum.valueOf(tenant.trim().toUpperCase());
+            source = tenantImportService.resolveImportPath(path);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid import request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        
+        logger.info("Received import request of {} into tenant {}", source, dbType);
+        
+        try {
+            List<TenantImportResult> results;
+            if (Files.isDirectory(source)) {
+                results = tenantImportService.importDirectory(dbType, source);
+            } else {
+                results = List.of(tenantImportService.importFile(dbType, source, table));
+            }
+            boolean allSucceeded = results.stream().allMatch(TenantImportResult::isSuccess);
+            
+            return allSucceeded ? ResponseEntity.ok(results) : ResponseEntity.internalServerError().body(results);
+            
+        } catch (Exception e) {
+            logger.error("Import into tenant {} failed", dbType, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    @GetMapping("/placements")
+    @ApiOperation(
+        value = "List tenant placements",
+        notes = "Returns the shard and database every tenant is currently routed to. Tenants that were never moved are on the 'default' shard, their statically configured datasource.",
+        response = TenantPlacement.class,
+        responseContainer = "List"
+    )
+    public ResponseEntity<List<TenantPlacement>> getPlacements() {
+        return ResponseEntity.ok(placementService.getPlacements(flywayConfig.getConfiguredDatabases()));
+    }
+    
+    @PostMapping("/move")
+    @ApiOperation(
+        value = "Move a tenant database to another shard",
+        notes = "Copies the tenant database to the target shard while it keeps serving traffic, catches up on rows changed " +
+                "during the copy using updated_at, briefly pauses new connections to the tenant to apply the final delta, " +
+                "then atomically switches the tenant's route. The report includes copy throughput and the cutover pause time.",
+        response = TenantMoveReport.class
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Tenant moved and routed to the target"),
+        @ApiResponse(code = 400, message = "Invalid tenant, shard or database name"),
+        @ApiResponse(code = 409, message = "Tenant is already being moved"),
+        @ApiResponse(code = 500, message = "Move failed, the tenant stays on its current database")
+    })
+    public ResponseEntity<TenantMoveReport> moveTenant(
+            @ApiParam(value = "Tenant to move", required = true, example = "CLIENT_B")
+            @RequestParam String tenant,
+            
+            @ApiParam(value = "Target shard, as configured under app.placement.shards", required = true, example = "db2")
+            @RequestParam String shard,
+            
+            @ApiParam(value = "Database name on the target shard, defaults to the current database name", example = "multi_client_b")
+            @RequestParam(required = false) String database) {
+        
+        DBTypeEnum dbType;
+        String targetDatabase;
+        try {
+            dbType = DBTypeEnum.valueOf(tenant.trim().toUpperCase());
+            targetDatabase = database;
+            if (targetDatabase == null || targetDatabase.isBlank()) {
+                targetDatabase = placementService.getPlacements(flywayConfig.getConfiguredDatabases()).stream()
+                        .filter(placement -> placement.getTenant().equals(dbType.name()))
+                        .findFirst()
+                        .map(TenantPlacement::getDatabase)
+                        .orElseThrow(() -> new IllegalArgumentException("No database name known for " + dbType));
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid tenant move request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        
+        logger.info("Received request to move tenant {} to database {} on shard {}", dbType, targetDatabase, shard);
+        
+        try {
+            TenantMoveReport report = tenantMoveService.moveTenant(dbType, shard, targetDatabase);
+            return report.isSuccess() ? ResponseEntity.ok(report) : ResponseEntity.internalServerError().body(report);
+            
+        } catch (IllegalStateException e) {
+            logger.warn("Tenant move rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            
+        } catch (Exception e) {
+            logger.error("Failed to move tenant {}", dbType, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    @PostMapping("/partitions/maintain")
+    @ApiOperation(
+        value = "Maintain the monthly post partitions of tenant databases",
+        notes = "Runs the scheduled partition maintenance immediately: adds partitions for the coming months and archives or " +
+                "drops partitions older than the retention period. Tenants whose post table is not partitioned are reported " +
+                "with partitioned=false and left unchanged.",
+        response = PartitionMaintenanceResult.class,
+        responseContainer = "List"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Maintenance succeeded for every tenant"),
+        @ApiResponse(code = 400, message = "Invalid tenant name"),
+        @ApiResponse(code = 500, message = "Maintenance failed for at least one tenant")
+    })
+    public ResponseEntity<List<PartitionMaintenanceResult>> maintainPartitions(
+            @ApiParam(value = "Tenants to maintain, all tenants when omitted", example = "CLIENT_A,CLIENT_B")
+            @RequestParam(required = false) List<String> tenants) {
+        
+        List<DBTypeEnum> selected = new ArrayList<>();
+        try {
+            if (tenants == null || tenants.isEmpty()) {
+                selected.addAll(Arrays.asList(DBTypeEnum.values()));
+            } else {
+                for (String tenant : tenants) {
+                    selected.add(DBTypeEnum.valueOf(tenant.trim().toUpperCase()));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid partition maintenance request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        
+        logger.info("Received request to maintain post partitions of tenants {}", selected);
+        
+        List<PartitionMaintenanceResult> results = new ArrayList<>();
+        for (DBTypeEnum tenant : selected) {
+            results.add(partitionService.maintainTenant(tenant));
+        }
+        boolean allSucceeded = results.stream().allMatch(result -> result.getError() == null);
+        
+        return allSucceeded ? ResponseEntity.ok(results) : ResponseEntity.internalServerError().body(results);
+    }
+    
+    @PostMapping("/offload")
+    @ApiOperation(
+        value = "Offload a dormant tenant to cold storage",
+        notes = "Exports every table of the tenant as gzipped NDJSON into the cold storage directory, drops its database and " +
+                "marks it cold. Requests for a cold tenant are answered with 503 'warming' and start its rehydration.",
+        response = TenantLifecycle.class
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Tenant offloaded"),
+        @ApiResponse(code = 400, message = "Invalid tenant, or the main database"),
+        @ApiResponse(code = 409, message = "Tenant is already cold, was active too recently or did not drain"),
+        @ApiResponse(code = 500, message = "Offload failed, the tenant stays active")
+    })
+    public ResponseEntity<TenantLifecycle> offloadTenant(
+            @ApiParam(value = "Tenant to offload", required = true, example = "CLIENT_B")
+            @RequestParam String tenant,
+            
+            @ApiParam(value = "Offload even if the tenant was active within app.cold-storage.min-idle-minutes", defaultValue = "false")
+            @RequestParam(defaultValue = "false") boolean force) {
+        
+        DBTypeEnum dbType;
+        try {
+            dbType = DBTypeEnum.valueOf(tenant.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid tenant offload request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        
+        logger.info("Received request to offload tenant {} (force={})", dbType, force);
+        
+        try {
+            return ResponseEntity.ok(lifecycleService.offload(dbType, force));
+            
+        } catch (IllegalArgumentException e) {
+            logger.warn("Tenant offload rejected: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+            
+        } catch (IllegalStateException e) {
+            logger.warn("Tenant offload rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            
+        } catch (Exception e) {
+            logger.error("Failed to offload tenant {}", dbType, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    @PostMapping("/rehydrate")
+    @ApiOperation(
+        value = "Rehydrate a cold tenant",
+        notes = "Starts recreating the tenant database from its cold storage archive in the background: the schema is migrated " +
+                "to the archived version, the data imported and newer migrations applied before the tenant is routed again. " +
+                "Poll /tenant/lifecycle for progress."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 202, message = "Rehydration started or already running"),
+        @ApiResponse(code = 400, message = "Invalid tenant"),
+        @ApiResponse(code = 409, message = "Tenant is not cold, or is owned by another node in cluster mode")
+    })
+    public ResponseEntity<Void> rehydrateTenant(
+            @ApiParam(value = "Tenant to rehydrate", required = true, example = "CLIENT_B")
+            @RequestParam String tenant) {
+        
+        DBTypeEnum dbType;
+        try {
+            dbType = DBTypeEnum.valueOf(tenant.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid tenant rehydration request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        
+        if (!lifecycleService.isCold(dbType) || !lifecycleService.isOwned(dbType)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        lifecycleService.rehydrateAsync(dbType);
+        return ResponseEntity.accepted().build();
+    }
+    
+    @GetMapping("/lifecycle")
+    @ApiOperation(
+        value = "List tenant lifecycle states",
+        notes = "Returns whether every tenant is active, cold or warming, with its last cold storage archive and errors.",
+        response = TenantLifecycle.class,
+        responseContainer = "List"
+    )
+    public ResponseEntity<List<TenantLifecycle>> getLifecycles() {
+        return ResponseEntity.ok(lifecycleService.getLifecycles());
+    }
+}
@@ -0,0 +1,90 @@
+package com.izicap.dynamicmultidatabase.controller;
+
+import com.izicap.dynamicmultidatabase.service.TracingService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/traces")
+@Api(tags = "Tracing", description = "Recent sampled, slow and failed request traces")
+public class TraceController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TraceController.class);
+    
+    @Autowired
+    private TracingService tracingService;
+    
+    @GetMapping
+    @ApiOperation(
+        value = "List kept traces",
+        notes = "Returns summaries of the most recent kept traces, newest first, with the time spent per operation " +
+               "(connection acquisition, SQL statements, repository calls, migrations). " +
+               "Traces are kept when sampled, slower than app.tracing.slow-threshold-ms or failed.",
+        response = List.class
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Traces retrieved successfully"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    public ResponseEntity<List<Map<String, Object>>> getTraces(
+            @ApiParam(value = "Only traces at least this long, in milliseconds", defaultValue = "0")
+            @RequestParam(defaultValue = "0") long minDurationMs,
+            
+            @ApiParam(value = "Only traces of this tenant, e.g. CLIENT_A")
+            @RequestParam(required = false) String tenant,
+            
+            @ApiParam(value = "Maximum number of traces to return", defaultValue = "50")
+            @RequestParam(defaultValue = "50") int limit) {
+        
+        try {
+            return ResponseEntity.ok(tracingService.getTraces(minDurationMs, tenant, limit));
+        
+        } catch (Exception e) {
+            logger.error("Error occurred while listing traces", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    @GetMapping("/{traceId}")
+    @ApiOperation(
+        value = "Get a trace with its spans",
+        notes = "Returns a kept trace and all of its spans with their tenant, timing and SQL attributes.",
+        response = Map.class
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Trace retrieved successfully"),
+        @ApiResponse(code = 404, message = "Trace was not kept or has been evicted from the buffer"),
+        @ApiResponse(code = 500, message = "Internal server error")
+    })
+    public ResponseEntity<Map<String, Object>> getTrace(
+            @ApiParam(value = "Trace id, as returned in the traceparent response header", required = true)
+            @PathVariable String traceId) {
+        
+        try {
+            Map<String, Object> trace = tracingService.getTrace(traceId);
+            if (trace == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(trace);
+        
+        } catch (Exception e) {
+            logger.error("Error occurred while reading trace: {}", traceId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
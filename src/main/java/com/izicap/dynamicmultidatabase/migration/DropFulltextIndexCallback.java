@@ -0,0 +1,64 @@
+package com.izicap.dynamicmultidatabase.migration;
+
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.callback.BaseCallback;
+import org.flywaydb.core.api.callback.Context;
+import org.flywaydb.core.api.callback.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Drops the n-gram FULLTEXT index on post names before the partitioning script that
+ * partitions the post table, as MySQL has no FULLTEXT indexes on partitioned tables.
+ * The index exists on tenants migrated while partitioning was off; once it is gone,
+ * {@code GET /posts/search} falls back to {@code LIKE} for them.
+ */
+public class DropFulltextIndexCallback extends BaseCallback {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DropFulltextIndexCallback.class);
+    
+    private static final String INDEX_NAME = "idx_post_name_fulltext";
+    
+    // Version of the partitioning script that partitions the post table
+    private static final String PARTITIONING_VERSION = "1";
+    
+    @Override
+    public boolean supports(Event event, Context context) {
+        if (event != Event.BEFORE_EACH_MIGRATE) {
+            return false;
+        }
+        MigrationInfo info = context.getMigrationInfo();
+        return info != null && info.getVersion() != null && PARTITIONING_VERSION.equals(info.getVersion().getVersion());
+    }
+    
+    @Override
+    public void handle(Event event, Context context) {
+        Connection connection = context.getConnection();
+        try {
+            if (!"MySQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName()) || !hasIndex(connection)) {
+                return;
+            }
+            logger.info("Dropping FULLTEXT index {} before partitioning the post table", INDEX_NAME);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE post DROP INDEX " + INDEX_NAME);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not drop FULLTEXT index " + INDEX_NAME +
+                    ", which would make partitioning the post table fail", e);
+        }
+    }
+    
+    private boolean hasIndex(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT COUNT(*) FROM information_schema.statistics " +
+                     "WHERE table_schema = DATABASE() AND table_name = 'post' AND index_name = '" + INDEX_NAME + "'")) {
+            return rs.next() && rs.getLong(1) > 0;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.izicap.dynamicmultidatabase.migration;
+
+import com.izicap.dynamicmultidatabase.tracing.Span;
+import com.izicap.dynamicmultidatabase.tracing.Tracing;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Base class for Java migrations under {@code db/migration} that backfill data without
+ * locking a large table for the duration of the migration. The table is walked in
+ * ranges of its numeric key, {@code chunkSize} rows at a time, and every range is
+ * updated and checkpointed in its own transaction, so row locks are only held for one
+ * chunk. A migration interrupted by a crash or a stopped node continues after its last
+ * committed chunk when Flyway runs it again; after a failure, {@code flyway repair}
+ * clears the failed entry and the next run resumes the same way.
+ *
+ * Between chunks the migration pauses for {@code pauseMs}, or {@code sleepRatio} times
+ * the chunk's duration if that is longer, and waits while the server is busier than
+ * {@code maxThreadsRunning}. Rows written behind the backfill's cursor are not visited
+ * again, so the application must already write the new data itself when the backfill
+ * is released.
+ *
+ * Subclasses are instantiated by Flyway, so the throttling settings are static and set
+ * once by {@link com.izicap.dynamicmultidatabase.config.FlywayConfig}.
+ */
+public abstract class OnlineBackfillMigration extends BaseJavaMigration {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OnlineBackfillMigration.class);
+    
+    private static volatile int chunkSize = 1000;
+    
+    private static volatile long pauseMs = 50;
+    
+    private static volatile double sleepRatio = 1.0;
+    
+    private static volatile int maxThreadsRunning;
+    
+    private static volatile long maxLoadWaitMs = 60000;
+    
+    public static void configure(int chunkRows, long pause, double ratio, int threadsRunningLimit, long loadWaitMs) {
+        chunkSize = Math.max(1, chunkRows);
+        pauseMs = Math.max(0, pause);
+        sleepRatio = Math.max(0, ratio);
+        maxThreadsRunning = threadsRunningLimit;
+        maxLoadWaitMs = loadWaitMs;
+    }
+    
+    /**
+     * Table to backfill
+     */
+    protected abstract String getTable();
+    
+    /**
+     * Numeric, indexed and unique column the table is walked by
+     */
+    protected String getKeyColumn() {
+        return "id";
+    }
+    
+    /**
+     * Schema changes the backfill needs before it starts, such as adding the column it
+     * fills. Runs on every attempt, so it must be idempotent.
+     */
+    protected void prepare(Connection connection) throws SQLException {
+    }
+    
+    /**
+     * Backfill the rows whose key is in (fromExclusive, toInclusive], returning the
+     * number of rows changed. Called inside the chunk's transaction, which is committed
+     * together with the checkpoint.
+     */
+    protected abstract int backfillChunk(Connection connection, long fromExclusive, long toInclusive) throws SQLException;
+    
+    /**
+     * Schema changes that need the completed backfill, such as a constraint on the
+     * filled column
+     */
+    protected void finish(Connection connection) throws SQLException {
+    }
+    
+    /**
+     * Whether the database is too busy for the next chunk. Replicas are not visible from
+     * the tenant connection, so the default looks at the primary's running threads.
+     */
+    protected boolean isOverloaded(Connection connection) throws SQLException {
+        if (maxThreadsRunning <= 0) {
+            return false;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SHOW GLOBAL STATUS LIKE 'Threads_running'")) {
+            return rs.next() && rs.getLong(2) > maxThreadsRunning;
+        }
+    }
+    
+    // The backfill manages its own transactions, one per chunk
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+    
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        String name = getClass().getSimpleName();
+        boolean autoCommit = connection.getAutoCommit();
+        
+        try {
+            connection.setAutoCommit(true);
+            prepare(connection);
+            ensureCheckpointTable(connection);
+            
+            connection.setAutoCommit(false);
+            Checkpoint checkpoint = startCheckpoint(connection, name);
+            connection.commit();
+            
+            if (checkpoint.completed) {
+                logger.info("Backfill {} already completed ({} rows), skipping to its final step", name, checkpoint.rows);
+            } else {
+                backfill(connection, name, checkpoint);
+            }
+            
+            connection.setAutoCommit(true);
+            finish(connection);
+        } catch (Exception e) {
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+    
+    private void backfill(Connection connection, String name, Checkpoint checkpoint) throws SQLException, InterruptedException {
+        if (checkpoint.cursor != null) {
+            logger.info("Resuming backfill {} of {} after {} {} ({} rows in {} chunks so far)",
+                      name, getTable(), getKeyColumn(), checkpoint.cursor, checkpoint.rows, checkpoint.chunks);
+        } else {
+            logger.info("Starting backfill {} of {} in chunks of {} rows", name, getTable(), chunkSize);
+        }
+        
+        // A database without the status variable cannot be checked again during this run
+        boolean loadCheck = true;
+        
+        while (true) {
+            if (loadCheck) {
+                try {
+                    awaitLoad(connection, name);
+                } catch (SQLException e) {
+                    logger.debug("Cannot check database load for backfill {}, throttling by pause only: {}", name, e.getMessage());
+                    connection.rollback();
+                    loadCheck = false;
+                }
+            }
+            
+            long chunkStarted = System.nanoTime();
+            Span span = Tracing.startSpan("flyway.backfill.chunk").setAttribute("backfill", name);
+            Long upper;
+            try {
+                upper = nextChunkEnd(connection, checkpoint.cursor);
+                if (upper == null) {
+                    completeCheckpoint(connection, name);
+                    connection.commit();
+                    break;
+                }
+                
+                long from = checkpoint.cursor != null ? checkpoint.cursor : Long.MIN_VALUE;
+                int changed = backfillChunk(connection, from, upper);
+                advanceCheckpoint(connection, name, upper, changed);
+                connection.commit();
+                
+                checkpoint.cursor = upper;
+                checkpoint.rows += changed;
+                checkpoint.chunks++;
+                span.setAttribute("rows", changed);
+            } catch (SQLException | RuntimeException e) {
+                span.setError(e);
+                throw e;
+            } finally {
+                span.close();
+            }
+            
+            if (checkpoint.chunks % 100 == 0) {
+                logger.info("Backfill {} reached {} {} ({} rows in {} chunks)",
+                          name, getKeyColumn(), checkpoint.cursor, checkpoint.rows, checkpoint.chunks);
+            }
+            
+            long chunkMs = (System.nanoTime() - chunkStarted) / 1_000_000;
+            Thread.sleep(Math.max(pauseMs, (long) (chunkMs * sleepRatio)));
+        }
+        
+        logger.info("Completed backfill {} of {}: {} rows in {} chunks", name, getTable(), checkpoint.rows, checkpoint.chunks);
+    }
+    
+    private void awaitLoad(Connection connection, String name) throws SQLException, InterruptedException {
+        long deadline = System.currentTimeMillis() + maxLoadWaitMs;
+        while (isOverloaded(connection)) {
+            if (System.currentTimeMillis() >= deadline) {
+                logger.warn("Database still busy after {} ms, continuing backfill {} anyway", maxLoadWaitMs, name);
+                return;
+            }
+            Thread.sleep(Math.max(pauseMs, 100));
+        }
+    }
+    
+    /**
+     * Key of the last row of the chunk after the cursor, null when no rows are left
+     */
+    private Long nextChunkEnd(Connection connection, Long cursor) throws SQLException {
+        String key = getKeyColumn();
+        String sql = "SELECT MAX(" + key + ") FROM (SELECT " + key + " FROM " + getTable()
+                + (cursor != null ? " WHERE " + key + " > ?" : "")
+                + " ORDER BY " + key + " LIMIT ?) chunk";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (cursor != null) {
+                statement.setLong(index++, cursor);
+            }
+            statement.setInt(index, chunkSize);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                long upper = rs.getLong(1);
+                return rs.wasNull() ? null : upper;
+            }
+        }
+    }
+    
+    private void ensureCheckpointTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(
+                    "CREATE TABLE IF NOT EXISTS backfill_checkpoint (" +
+                    "    migration VARCHAR(191) NOT NULL PRIMARY KEY," +
+                    "    cursor_key BIGINT NULL," +
+                    "    rows_done BIGINT NOT NULL DEFAULT 0," +
+                    "    chunks BIGINT NOT NULL DEFAULT 0," +
+                    "    completed BOOLEAN NOT NULL DEFAULT FALSE," +
+                    "    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                    ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci");
+        }
+    }
+    
+    private Checkpoint startCheckpoint(Connection connection, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT cursor_key, rows_done, chunks, completed FROM backfill_checkpoint WHERE migration = ?")) {
+            statement.setString(1, name);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    Checkpoint checkpoint = new Checkpoint();
+                    long cursor = rs.getLong("cursor_key");
+                    checkpoint.cursor = rs.wasNull() ? null : cursor;
+                    checkpoint.rows = rs.getLong("rows_done");
+                    checkpoint.chunks = rs.getLong("chunks");
+                    checkpoint.completed = rs.getBoolean("completed");
+                    return checkpoint;
+                }
+            }
+        }
+        
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO backfill_checkpoint (migration) VALUES (?)")) {
+            statement.setString(1, name);
+            statement.executeUpdate();
+        }
+        return new Checkpoint();
+    }
+    
+    private void advanceCheckpoint(Connection connection, String name, long cursor, int rows) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE backfill_checkpoint SET cursor_key = ?, rows_done = rows_done + ?, chunks = chunks + 1, " +
+                "updated_at = CURRENT_TIMESTAMP WHERE migration = ?")) {
+            statement.setLong(1, cursor);
+            statement.setLong(2, rows);
+            statement.setString(3, name);
+            statement.executeUpdate();
+        }
+    }
+    
+    private void completeCheckpoint(Connection connection, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE backfill_checkpoint SET completed = TRUE, updated_at = CURRENT_TIMESTAMP WHERE migration = ?")) {
+            statement.setString(1, name);
+            statement.executeUpdate();
+        }
+    }
+    
+    private static class Checkpoint {
+        
+        private Long cursor;
+        
+        private long rows;
+        
+        private long chunks;
+        
+        private boolean completed;
+    }
+}
@@ -0,0 +1,122 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.Date;
+
+@ApiModel(description = "Set-based update or delete of the posts of one tenant, applied in chunks")
+public class BulkPostOperation {
+    
+    public static final String DELETE = "delete";
+    public static final String UPDATE = "update";
+    
+    public static final String CHUNK_BY_ID = "id";
+    public static final String CHUNK_BY_CREATED_AT = "created_at";
+    
+    @ApiModelProperty(value = "Job identifier to resume under; defaults to one derived from the operation, so resubmitting " +
+            "the same operation resumes it while unfinished and runs it again once completed", example = "retention-2026-10")
+    private String jobId;
+    
+    @ApiModelProperty(value = "Operation", allowableValues = "delete,update", required = true, example = "delete")
+    private String operation;
+    
+    @ApiModelProperty(value = "Order in which posts are visited: by primary key, or by creation time (posts without one are skipped)",
+            allowableValues = "id,created_at", example = "id")
+    private String chunkBy = CHUNK_BY_ID;
+    
+    @ApiModelProperty(value = "Only posts created at or after this time")
+    private Date createdAfter;
+    
+    @ApiModelProperty(value = "Only posts created before this time", example = "2025-01-01T00:00:00Z")
+    private Date createdBefore;
+    
+    @ApiModelProperty(value = "Only posts with exactly this name", example = "Draft")
+    private String nameEquals;
+    
+    @ApiModelProperty(value = "New name of the matching posts, for updates", example = "Archived")
+    private String setName;
+    
+    @ApiModelProperty(value = "Run the job again when a job with this id already completed, instead of reporting it completed",
+            example = "false")
+    private boolean restart;
+    
+    public BulkPostOperation() {
+    }
+    
+    /**
+     * Canonical description of what the operation does, compared when a job is resumed
+     */
+    public String describe() {
+        return operation + " chunkBy=" + chunkBy +
+               " createdAfter=" + (createdAfter != null ? createdAfter.getTime() : null) +
+               " createdBefore=" + (createdBefore != null ? createdBefore.getTime() : null) +
+               " nameEquals=" + nameEquals +
+               (UPDATE.equals(operation) ? " setName=" + setName : "");
+    }
+    
+    // Getters and Setters
+    public String getJobId() {
+        return jobId;
+    }
+    
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+    
+    public String getOperation() {
+        return operation;
+    }
+    
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+    
+    public String getChunkBy() {
+        return chunkBy;
+    }
+    
+    public void setChunkBy(String chunkBy) {
+        this.chunkBy = chunkBy;
+    }
+    
+    public Date getCreatedAfter() {
+        return createdAfter;
+    }
+    
+    public void setCreatedAfter(Date createdAfter) {
+        this.createdAfter = createdAfter;
+    }
+    
+    public Date getCreatedBefore() {
+        return createdBefore;
+    }
+    
+    public void setCreatedBefore(Date createdBefore) {
+        this.createdBefore = createdBefore;
+    }
+    
+    public String getNameEquals() {
+        return nameEquals;
+    }
+    
+    public void setNameEquals(String nameEquals) {
+        this.nameEquals = nameEquals;
+    }
+    
+    public String getSetName() {
+        return setName;
+    }
+    
+    public void setSetName(String setName) {
+        this.setName = setName;
+    }
+    
+    public boolean isRestart() {
+        return restart;
+    }
+    
+    public void setRestart(boolean restart) {
+        this.restart = restart;
+    }
+}
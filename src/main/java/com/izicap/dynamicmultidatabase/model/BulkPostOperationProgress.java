@@ -0,0 +1,154 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.Date;
+
+@ApiModel(description = "Progress of a chunked bulk post operation")
+public class BulkPostOperationProgress {
+    
+    public static final String RUNNING = "running";
+    public static final String COMPLETED = "completed";
+    public static final String FAILED = "failed";
+    public static final String STOPPED = "stopped";
+    
+    @ApiModelProperty(value = "Job identifier", example = "retention-2026-10")
+    private String jobId;
+    
+    @ApiModelProperty(value = "Tenant", example = "CLIENT_A")
+    private String tenant;
+    
+    @ApiModelProperty(value = "What the job does", example = "delete chunkBy=id createdAfter=null createdBefore=1735689600000 nameEquals=null")
+    private String definition;
+    
+    @ApiModelProperty(value = "running, completed, failed or stopped (interrupted before a crash or shutdown, resumable); " +
+            "jobs read from the checkpoint table alone are completed or stopped", example = "running")
+    private String state;
+    
+    @ApiModelProperty(value = "Position after the last committed chunk", example = "184200")
+    private String cursor;
+    
+    @ApiModelProperty(value = "Rows updated or deleted, including by earlier runs of the job", example = "184000")
+    private long rowsAffected;
+    
+    @ApiModelProperty(value = "Chunks committed, including by earlier runs of the job", example = "184")
+    private long chunks;
+    
+    @ApiModelProperty(value = "Rows affected by earlier runs when this run resumed the job", example = "0")
+    private long resumedRows;
+    
+    @ApiModelProperty(value = "When this run started")
+    private Date startedAt;
+    
+    @ApiModelProperty(value = "When the last chunk was committed")
+    private Date updatedAt;
+    
+    @ApiModelProperty(value = "Error of a failed run")
+    private String error;
+    
+    public BulkPostOperationProgress() {
+    }
+    
+    public BulkPostOperationProgress(String jobId, String tenant, String definition) {
+        this.jobId = jobId;
+        this.tenant = tenant;
+        this.definition = definition;
+    }
+    
+    public void addChunk(long chunkRows, String newCursor) {
+        rowsAffected += chunkRows;
+        chunks++;
+        cursor = newCursor;
+        updatedAt = new Date();
+    }
+    
+    // Getters and Setters
+    public String getJobId() {
+        return jobId;
+    }
+    
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+    
+    public String getTenant() {
+        return tenant;
+    }
+    
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
+    
+    public String getDefinition() {
+        return definition;
+    }
+    
+    public void setDefinition(String definition) {
+        this.definition = definition;
+    }
+    
+    public String getState() {
+        return state;
+    }
+    
+    public void setState(String state) {
+        this.state = state;
+    }
+    
+    public String getCursor() {
+        return cursor;
+    }
+    
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+    
+    public long getRowsAffected() {
+        return rowsAffected;
+    }
+    
+    public void setRowsAffected(long rowsAffected) {
+        this.rowsAffected = rowsAffected;
+    }
+    
+    public long getChunks() {
+        return chunks;
+    }
+    
+    public void setChunks(long chunks) {
+        this.chunks = chunks;
+    }
+    
+    public long getResumedRows() {
+        return resumedRows;
+    }
+    
+    public void setResumedRows(long resumedRows) {
+        this.resumedRows = resumedRows;
+    }
+    
+    public Date getStartedAt() {
+        return startedAt;
+    }
+    
+    public void setStartedAt(Date startedAt) {
+        this.startedAt = startedAt;
+    }
+    
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+}
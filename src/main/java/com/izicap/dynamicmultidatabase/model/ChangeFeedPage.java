@@ -0,0 +1,54 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import com.izicap.dynamicmultidatabase.Post;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.List;
+
+@ApiModel(description = "A page of post changes read from a tenant's change feed")
+public class ChangeFeedPage {
+    
+    @ApiModelProperty(value = "Created or updated posts, in (updatedAt, id) order")
+    private List<Post> changes;
+    
+    @ApiModelProperty(value = "Opaque cursor to pass on the next request to continue after this page")
+    private String nextCursor;
+    
+    @ApiModelProperty(value = "Whether more changes are immediately available after this page", example = "false")
+    private boolean hasMore;
+    
+    public ChangeFeedPage() {
+    }
+    
+    public ChangeFeedPage(List<Post> changes, String nextCursor, boolean hasMore) {
+        this.changes = changes;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+    
+    // Getters and Setters
+    public List<Post> getChanges() {
+        return changes;
+    }
+    
+    public void setChanges(List<Post> changes) {
+        this.changes = changes;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+    
+    public boolean isHasMore() {
+        return hasMore;
+    }
+    
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,37 @@
+package com.izicap.dynamicmultidatabase.model;
+
+/**
+ * File formats used for tenant data exports and imports. Files are gzip-compressed
+ * when their name ends with {@code .gz}.
+ */
+public enum DataFileFormat {
+    NDJSON(".ndjson"),
+    CSV(".csv");
+    
+    private final String extension;
+    
+    DataFileFormat(String extension) {
+        this.extension = extension;
+    }
+    
+    public String getExtension() {
+        return extension;
+    }
+    
+    public static DataFileFormat fromName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+    
+    /**
+     * Detect the format of a data file from its name, ignoring a trailing {@code .gz}
+     */
+    public static DataFileFormat fromFileName(String fileName) {
+        String name = fileName.toLowerCase().replaceFirst("\\.gz$", "");
+        for (DataFileFormat format : values()) {
+            if (name.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported data file: " + fileName);
+    }
+}
@@ -0,0 +1,108 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@ApiModel(description = "Outcome of an out-of-band fleet migration run")
+public class FleetMigrationReport {
+
+    @ApiModelProperty(value = "Identifier used for resumable checkpoints", example = "fleet-20240115103000")
+    private String runId;
+
+    @ApiModelProperty(value = "Tenants skipped because a previous attempt of this run already migrated them")
+    private int resumedTenants;
+
+    @ApiModelProperty(value = "Tenants successfully migrated during this attempt")
+    private int migratedTenants;
+
+    @ApiModelProperty(value = "Tenants whose migration failed during this attempt")
+    private int failedTenants;
+
+    @ApiModelProperty(value = "Whether the run stopped early because the failure budget was exceeded")
+    private boolean aborted;
+
+    @ApiModelProperty(value = "Per-tenant status (SUCCESS, FAILED, SKIPPED)")
+    private final Map<String, String> tenantStatus = new LinkedHashMap<>();
+
+    @ApiModelProperty(value = "Total run duration in milliseconds")
+    private long durationMillis;
+
+    public FleetMigrationReport() {
+    }
+
+    public FleetMigrationReport(String runId) {
+        this.runId = runId;
+    }
+
+    public boolean isSuccessful() {
+        return failedTenants == 0 && !aborted;
+    }
+
+    // Getters and Setters
+    public String getRunId() {
+        return runId;
+    }
+
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+
+    public int getResumedTenants() {
+        return resumedTenants;
+    }
+
+    public void setResumedTenants(int resumedTenants) {
+        this.resumedTenants = resumedTenants;
+    }
+
+    public int getMigratedTenants() {
+        return migratedTenants;
+    }
+
+    public void setMigratedTenants(int migratedTenants) {
+        this.migratedTenants = migratedTenants;
+    }
+
+    public int getFailedTenants() {
+        return failedTenants;
+    }
+
+    public void setFailedTenants(int failedTenants) {
+        this.failedTenants = failedTenants;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public void setAborted(boolean aborted) {
+        this.aborted = aborted;
+    }
+
+    public Map<String, String> getTenantStatus() {
+        return tenantStatus;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "FleetMigrationReport{" +
+                "runId='" + runId + '\'' +
+                ", resumedTenants=" + resumedTenants +
+                ", migratedTenants=" + migratedTenants +
+                ", failedTenants=" + failedTenants +
+                ", aborted=" + aborted +
+                ", durationMillis=" + durationMillis +
+                '}';
+    }
+}
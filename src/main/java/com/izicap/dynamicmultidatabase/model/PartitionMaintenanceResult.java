@@ -0,0 +1,88 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ApiModel(description = "Outcome of maintaining the post partitions of one tenant database")
+public class PartitionMaintenanceResult {
+    
+    @ApiModelProperty(value = "Maintained tenant", example = "CLIENT_A")
+    private String tenant;
+    
+    @ApiModelProperty(value = "Whether the tenant's post table is partitioned", example = "true")
+    private boolean partitioned;
+    
+    @ApiModelProperty(value = "Monthly partitions present after maintenance, oldest first", example = "[\"p202609\", \"p202610\", \"p202611\"]")
+    private final List<String> partitions = new ArrayList<>();
+    
+    @ApiModelProperty(value = "Partitions added for upcoming months", example = "[\"p202701\"]")
+    private final List<String> added = new ArrayList<>();
+    
+    @ApiModelProperty(value = "Expired partitions moved into archive tables", example = "[\"post_archive_p202509\"]")
+    private final List<String> archived = new ArrayList<>();
+    
+    @ApiModelProperty(value = "Expired partitions dropped", example = "[\"p202509\"]")
+    private final List<String> dropped = new ArrayList<>();
+    
+    @ApiModelProperty(value = "Error message when maintenance failed")
+    private String error;
+    
+    public PartitionMaintenanceResult() {
+    }
+    
+    public PartitionMaintenanceResult(String tenant) {
+        this.tenant = tenant;
+    }
+    
+    // Getters and Setters
+    public String getTenant() {
+        return tenant;
+    }
+    
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+    
+    public void setPartitioned(boolean partitioned) {
+        this.partitioned = partitioned;
+    }
+    
+    public List<String> getPartitions() {
+        return partitions;
+    }
+    
+    public List<String> getAdded() {
+        return added;
+    }
+    
+    public List<String> getArchived() {
+        return archived;
+    }
+    
+    public List<String> getDropped() {
+        return dropped;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+    
+    @Override
+    public String toString() {
+        return "PartitionMaintenanceResult{" +
+                "tenant='" + tenant + '\'' +
+                ", partitioned=" + partitioned +
+                ", added=" + added +
+                ", archived=" + archived +
+                ", dropped=" + dropped +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,106 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import com.izicap.dynamicmultidatabase.Post;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.List;
+
+@ApiModel(description = "Posts of one tenant whose name contains every search term")
+public class PostSearchResult {
+    
+    public static final String FULLTEXT = "fulltext";
+    
+    public static final String LIKE = "like";
+    
+    public static final String NGRAM = "ngram";
+    
+    @ApiModelProperty(value = "Tenant database searched", example = "CLIENT_A")
+    private String database;
+    
+    @ApiModelProperty(value = "Search terms, lower-cased", example = "[\"routing\"]")
+    private List<String> terms;
+    
+    @ApiModelProperty(value = "How the search was answered", allowableValues = "fulltext,like,ngram", example = "fulltext")
+    private String path;
+    
+    @ApiModelProperty(value = "Time taken by the search in milliseconds", example = "1.8")
+    private double tookMs;
+    
+    @ApiModelProperty(value = "Matching posts, highest id first")
+    private List<Post> posts;
+    
+    @ApiModelProperty(value = "The same search answered by the database, when a comparison was requested")
+    private PostSearchResult comparison;
+    
+    @ApiModelProperty(value = "Whether the comparison returned the same posts", example = "true")
+    private Boolean sameResults;
+    
+    public PostSearchResult() {
+    }
+    
+    public PostSearchResult(String database, List<String> terms, String path, double tookMs, List<Post> posts) {
+        this.database = database;
+        this.terms = terms;
+        this.path = path;
+        this.tookMs = tookMs;
+        this.posts = posts;
+    }
+    
+    // Getters and Setters
+    public String getDatabase() {
+        return database;
+    }
+    
+    public void setDatabase(String database) {
+        this.database = database;
+    }
+    
+    public List<String> getTerms() {
+        return terms;
+    }
+    
+    public void setTerms(List<String> terms) {
+        this.terms = terms;
+    }
+    
+    public String getPath() {
+        return path;
+    }
+    
+    public void setPath(String path) {
+        this.path = path;
+    }
+    
+    public double getTookMs() {
+        return tookMs;
+    }
+    
+    public void setTookMs(double tookMs) {
+        this.tookMs = tookMs;
+    }
+    
+    public List<Post> getPosts() {
+        return posts;
+    }
+    
+    public void setPosts(List<Post> posts) {
+        this.posts = posts;
+    }
+    
+    public PostSearchResult getComparison() {
+        return comparison;
+    }
+    
+    public void setComparison(PostSearchResult comparison) {
+        this.comparison = comparison;
+    }
+    
+    public Boolean getSameResults() {
+        return sameResults;
+    }
+    
+    public void setSameResults(Boolean sameResults) {
+        this.sameResults = sameResults;
+    }
+}
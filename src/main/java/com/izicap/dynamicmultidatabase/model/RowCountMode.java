@@ -0,0 +1,20 @@
+package com.izicap.dynamicmultidatabase.model;
+
+/**
+ * How table row counts are obtained without scanning the table
+ */
+public enum RowCountMode {
+    /**
+     * Row estimate from the table statistics, which can be off by a large fraction
+     */
+    APPROXIMATE,
+    
+    /**
+     * Count maintained per tenant from the application's writes and reconciled periodically
+     */
+    EXACT;
+    
+    public static RowCountMode fromName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
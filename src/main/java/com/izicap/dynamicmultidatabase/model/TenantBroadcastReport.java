@@ -0,0 +1,107 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ApiModel(description = "Outcome of applying a unit of work to several tenant databases in parallel")
+public class TenantBroadcastReport {
+    
+    @ApiModelProperty(value = "Per-tenant outcomes, in the order the tenants were requested")
+    private final List<TenantBroadcastResult> results = new ArrayList<>();
+    
+    @ApiModelProperty(value = "Request key the broadcast was applied under; retrying with it skips tenants that already applied it",
+            example = "3f1e2d4c-refdata-7")
+    private String requestKey;
+    
+    @ApiModelProperty(value = "Tenants that applied the work, now or in an earlier attempt with the same request key", example = "3")
+    private int succeeded;
+    
+    @ApiModelProperty(value = "Tenants whose transaction was rolled back or did not complete", example = "0")
+    private int failed;
+    
+    @ApiModelProperty(value = "Failed tenants that did not complete in time and may still have committed", example = "0")
+    private int timedOut;
+    
+    @ApiModelProperty(value = "Wall-clock duration of the broadcast in milliseconds", example = "45")
+    private long durationMillis;
+    
+    @ApiModelProperty(value = "Duration of the slowest tenant in milliseconds", example = "42")
+    private long slowestTenantMillis;
+    
+    @ApiModelProperty(value = "Sum of all tenant durations, what a serial broadcast would have taken, in milliseconds", example = "97")
+    private long totalTenantMillis;
+    
+    public void addResult(TenantBroadcastResult result) {
+        results.add(result);
+        if (result.isSuccess()) {
+            succeeded++;
+        } else {
+            failed++;
+        }
+        if (TenantBroadcastResult.TIMED_OUT.equals(result.getOutcome())) {
+            timedOut++;
+        }
+        slowestTenantMillis = Math.max(slowestTenantMillis, result.getDurationMillis());
+        totalTenantMillis += result.getDurationMillis();
+    }
+    
+    public boolean isSuccessful() {
+        return failed == 0;
+    }
+    
+    // Getters and Setters
+    public List<TenantBroadcastResult> getResults() {
+        return results;
+    }
+    
+    public String getRequestKey() {
+        return requestKey;
+    }
+    
+    public void setRequestKey(String requestKey) {
+        this.requestKey = requestKey;
+    }
+    
+    public int getSucceeded() {
+        return succeeded;
+    }
+    
+    public int getFailed() {
+        return failed;
+    }
+    
+    public int getTimedOut() {
+        return timedOut;
+    }
+    
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+    
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+    
+    public long getSlowestTenantMillis() {
+        return slowestTenantMillis;
+    }
+    
+    public long getTotalTenantMillis() {
+        return totalTenantMillis;
+    }
+    
+    @Override
+    public String toString() {
+        return "TenantBroadcastReport{" +
+                "succeeded=" + succeeded +
+                ", failed=" + failed +
+                ", timedOut=" + timedOut +
+                ", durationMillis=" + durationMillis +
+                ", slowestTenantMillis=" + slowestTenantMillis +
+                ", totalTenantMillis=" + totalTenantMillis +
+                '}';
+    }
+}
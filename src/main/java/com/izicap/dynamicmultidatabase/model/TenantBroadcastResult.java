@@ -0,0 +1,109 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+@ApiModel(description = "Outcome of a broadcast write in one tenant database")
+public class TenantBroadcastResult {
+    
+    public static final String COMMITTED = "COMMITTED";
+    
+    public static final String ALREADY_APPLIED = "ALREADY_APPLIED";
+    
+    public static final String ROLLED_BACK = "ROLLED_BACK";
+    
+    public static final String TIMED_OUT = "TIMED_OUT";
+    
+    @ApiModelProperty(value = "Tenant", example = "CLIENT_A")
+    private String tenant;
+    
+    @ApiModelProperty(value = "Whether the work is applied in the tenant, by this or an earlier broadcast with the same request key", example = "true")
+    private boolean success;
+    
+    @ApiModelProperty(value = "What happened in the tenant; a timed-out tenant may still have committed, so it is retried " +
+            "with the same request key rather than assumed rolled back",
+            allowableValues = "COMMITTED,ALREADY_APPLIED,ROLLED_BACK,TIMED_OUT", example = "COMMITTED")
+    private String outcome;
+    
+    @ApiModelProperty(value = "Value returned by the unit of work")
+    private Object result;
+    
+    @ApiModelProperty(value = "Time spent on the tenant, including waiting for a connection, in milliseconds", example = "42")
+    private long durationMillis;
+    
+    @ApiModelProperty(value = "Error message when the tenant's transaction was rolled back or did not complete")
+    private String error;
+    
+    public TenantBroadcastResult() {
+    }
+    
+    public TenantBroadcastResult(String tenant) {
+        this.tenant = tenant;
+    }
+    
+    public static TenantBroadcastResult succeeded(String tenant, Object result, long durationMillis) {
+        TenantBroadcastResult outcome = new TenantBroadcastResult(tenant);
+        outcome.success = true;
+        outcome.outcome = COMMITTED;
+        outcome.result = result;
+        outcome.durationMillis = durationMillis;
+        return outcome;
+    }
+    
+    public static TenantBroadcastResult alreadyApplied(String tenant, long durationMillis) {
+        TenantBroadcastResult outcome = new TenantBroadcastResult(tenant);
+        outcome.success = true;
+        outcome.outcome = ALREADY_APPLIED;
+        outcome.durationMillis = durationMillis;
+        return outcome;
+    }
+    
+    public static TenantBroadcastResult failed(String tenant, String error, long durationMillis) {
+        TenantBroadcastResult outcome = new TenantBroadcastResult(tenant);
+        outcome.outcome = ROLLED_BACK;
+        outcome.error = error;
+        outcome.durationMillis = durationMillis;
+        return outcome;
+    }
+    
+    public static TenantBroadcastResult timedOut(String tenant, String error, long durationMillis) {
+        TenantBroadcastResult outcome = failed(tenant, error, durationMillis);
+        outcome.outcome = TIMED_OUT;
+        return outcome;
+    }
+    
+    // Getters and Setters
+    public String getTenant() {
+        return tenant;
+    }
+    
+    public boolean isSuccess() {
+        return success;
+    }
+    
+    public String getOutcome() {
+        return outcome;
+    }
+    
+    public Object getResult() {
+        return result;
+    }
+    
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    @Override
+    public String toString() {
+        return "TenantBroadcastResult{" +
+                "tenant='" + tenant + '\'' +
+                ", outcome=" + outcome +
+                ", durationMillis=" + durationMillis +
+                (error != null ? ", error='" + error + '\'' : "") +
+                '}';
+    }
+}
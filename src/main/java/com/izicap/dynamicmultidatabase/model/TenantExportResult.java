@@ -0,0 +1,122 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@ApiModel(description = "Outcome of exporting one tenant database to compressed files")
+public class TenantExportResult {
+    
+    @ApiModelProperty(value = "Exported tenant", example = "CLIENT_A")
+    private String tenant;
+    
+    @ApiModelProperty(value = "Whether every table was exported", example = "true")
+    private boolean success;
+    
+    @ApiModelProperty(value = "Directory containing the exported files")
+    private String directory;
+    
+    @ApiModelProperty(value = "Rows exported per table")
+    private final Map<String, Long> tableRows = new LinkedHashMap<>();
+    
+    @ApiModelProperty(value = "Total rows exported", example = "125000")
+    private long rows;
+    
+    @ApiModelProperty(value = "Total compressed bytes written", example = "1048576")
+    private long bytesWritten;
+    
+    @ApiModelProperty(value = "Export duration in milliseconds", example = "2300")
+    private long durationMillis;
+    
+    @ApiModelProperty(value = "Export throughput in rows per second", example = "54347.8")
+    private double rowsPerSecond;
+    
+    @ApiModelProperty(value = "Error message when the export failed")
+    private String error;
+    
+    public TenantExportResult() {
+    }
+    
+    public TenantExportResult(String tenant, String directory) {
+        this.tenant = tenant;
+        this.directory = directory;
+    }
+    
+    public void addTable(String table, long tableRowCount, long tableBytes) {
+        tableRows.put(table, tableRowCount);
+        rows += tableRowCount;
+        bytesWritten += tableBytes;
+    }
+    
+    public void complete(long durationMillis) {
+        this.durationMillis = durationMillis;
+        this.rowsPerSecond = durationMillis > 0 ? Math.round(rows * 10000.0 / durationMillis) / 10.0 : rows;
+    }
+    
+    // Getters and Setters
+    public String getTenant() {
+        return tenant;
+    }
+    
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
+    
+    public boolean isSuccess() {
+        return success;
+    }
+    
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+    
+    public String getDirectory() {
+        return directory;
+    }
+    
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+    
+    public Map<String, Long> getTableRows() {
+        return tableRows;
+    }
+    
+    public long getRows() {
+        return rows;
+    }
+    
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+    
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+    
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+    
+    @Override
+    public String toString() {
+        return "TenantExportResult{" +
+                "tenant='" + tenant + '\'' +
+                ", success=" + success +
+                ", rows=" + rows +
+                ", bytesWritten=" + bytesWritten +
+                ", durationMillis=" + durationMillis +
+                ", rowsPerSecond=" + rowsPerSecond +
+                '}';
+    }
+}
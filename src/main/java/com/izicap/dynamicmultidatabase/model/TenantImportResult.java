@@ -0,0 +1,146 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+@ApiModel(description = "Outcome of bulk importing one data file into a tenant table")
+public class TenantImportResult {
+
+    @ApiModelProperty(value = "Target tenant", example = "CLIENT_A")
+    private String tenant;
+    
+    @ApiModelProperty(value = "Target table", example = "post")
+    private String table;
+    
+    @ApiModelProperty(value = "Imported file", example = "post.ndjson.gz")
+    private String file;
+    
+    @ApiModelProperty(value = "Whether the whole file was imported", example = "true")
+    private boolean success;
+    
+    @ApiModelProperty(value = "Load method used for the last chunk", allowableValues = "LOAD_DATA,INSERT", example = "LOAD_DATA")
+    private String method;
+    
+    @ApiModelProperty(value = "Rows committed by earlier runs and skipped on resume", example = "0")
+    private long resumedRows;
+    
+    @ApiModelProperty(value = "Rows committed by this run", example = "125000")
+    private long rows;
+    
+    @ApiModelProperty(value = "Chunks committed by this run", example = "25")
+    private int chunks;
+    
+    @ApiModelProperty(value = "Import duration in milliseconds", example = "2300")
+    private long durationMillis;
+    
+    @ApiModelProperty(value = "Import throughput in rows per second", example = "54347.8")
+    private double rowsPerSecond;
+    
+    @ApiModelProperty(value = "Error message when the import failed")
+    private String error;
+    
+    public TenantImportResult() {
+    }
+    
+    public TenantImportResult(String tenant, String table, String file) {
+        this.tenant = tenant;
+        this.table = table;
+        this.file = file;
+    }
+    
+    public void addChunk(long chunkRows) {
+        rows += chunkRows;
+        chunks++;
+    }
+    
+    public void complete(long durationMillis) {
+        this.durationMillis = durationMillis;
+        this.rowsPerSecond = durationMillis > 0 ? Math.round(rows * 10000.0 / durationMillis) / 10.0 : rows;
+    }
+    
+    // Getters and Setters
+    public String getTenant() {
+        return tenant;
+    }
+    
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
+    
+    public String getTable() {
+        return table;
+    }
+    
+    public void setTable(String table) {
+        this.table = table;
+    }
+    
+    public String getFile() {
+        return file;
+    }
+    
+    public void setFile(String file) {
+        this.file = file;
+    }
+    
+    public boolean isSuccess() {
+        return success;
+    }
+    
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+    
+    public String getMethod() {
+        return method;
+    }
+    
+    public void setMethod(String method) {
+        this.method = method;
+    }
+    
+    public long getResumedRows() {
+        return resumedRows;
+    }
+    
+    public void setResumedRows(long resumedRows) {
+        this.resumedRows = resumedRows;
+    }
+    
+    public long getRows() {
+        return rows;
+    }
+    
+    public int getChunks() {
+        return chunks;
+    }
+    
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+    
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+    
+    @Override
+    public String toString() {
+        return "TenantImportResult{" +
+                "tenant='" + tenant + '\'' +
+                ", table='" + table + '\'' +
+                ", success=" + success +
+                ", method=" + method +
+                ", resumedRows=" + resumedRows +
+                ", rows=" + rows +
+                ", rowsPerSecond=" + rowsPerSecond +
+                '}';
+    }
+}
@@ -0,0 +1,107 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.Date;
+
+@ApiModel(description = "Cold storage state of one tenant")
+public class TenantLifecycle {
+    
+    public static final String ACTIVE = "active";
+    public static final String COLD = "cold";
+    public static final String WARMING = "warming";
+    
+    @ApiModelProperty(value = "Tenant", example = "CLIENT_B")
+    private String tenant;
+    
+    @ApiModelProperty(value = "active, cold (offloaded, no live database) or warming (being rehydrated)", example = "cold")
+    private String state;
+    
+    @ApiModelProperty(value = "Directory of the tenant's last cold storage archive", example = "cold-storage/client_b/2026-10-18T031500")
+    private String archivePath;
+    
+    @ApiModelProperty(value = "Schema version the archive was exported at", example = "5")
+    private String schemaVersion;
+    
+    @ApiModelProperty(value = "Rows in the archive", example = "120000")
+    private long archivedRows;
+    
+    @ApiModelProperty(value = "When the tenant was last offloaded")
+    private Date offloadedAt;
+    
+    @ApiModelProperty(value = "When the tenant was last rehydrated")
+    private Date rehydratedAt;
+    
+    @ApiModelProperty(value = "Error of the last failed offload or rehydration")
+    private String lastError;
+    
+    public TenantLifecycle() {
+    }
+    
+    public TenantLifecycle(String tenant, String state) {
+        this.tenant = tenant;
+        this.state = state;
+    }
+    
+    // Getters and Setters
+    public String getTenant() {
+        return tenant;
+    }
+    
+    public String getState() {
+        return state;
+    }
+    
+    public void setState(String state) {
+        this.state = state;
+    }
+    
+    public String getArchivePath() {
+        return archivePath;
+    }
+    
+    public void setArchivePath(String archivePath) {
+        this.archivePath = archivePath;
+    }
+    
+    public String getSchemaVersion() {
+        return schemaVersion;
+    }
+    
+    public void setSchemaVersion(String schemaVersion) {
+        this.schemaVersion = schemaVersion;
+    }
+    
+    public long getArchivedRows() {
+        return archivedRows;
+    }
+    
+    public void setArchivedRows(long archivedRows) {
+        this.archivedRows = archivedRows;
+    }
+    
+    public Date getOffloadedAt() {
+        return offloadedAt;
+    }
+    
+    public void setOffloadedAt(Date offloadedAt) {
+        this.offloadedAt = offloadedAt;
+    }
+    
+    public Date getRehydratedAt() {
+        return rehydratedAt;
+    }
+    
+    public void setRehydratedAt(Date rehydratedAt) {
+        this.rehydratedAt = rehydratedAt;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
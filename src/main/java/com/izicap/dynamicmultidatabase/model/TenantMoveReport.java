@@ -0,0 +1,178 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@ApiModel(description = "Outcome of moving a tenant database to another shard")
+public class TenantMoveReport {
+    
+    @ApiModelProperty(value = "Moved tenant", example = "CLIENT_B")
+    private String tenant;
+    
+    @ApiModelProperty(value = "Target shard", example = "db2")
+    private String shard;
+    
+    @ApiModelProperty(value = "Target database name", example = "multi_client_b")
+    private String database;
+    
+    @ApiModelProperty(value = "Whether the tenant is now routed to the target", example = "true")
+    private boolean success;
+    
+    @ApiModelProperty(value = "Rows copied per table by the initial bulk copy")
+    private final Map<String, Long> tableRows = new LinkedHashMap<>();
+    
+    @ApiModelProperty(value = "Rows copied by the initial bulk copy", example = "125000")
+    private long copiedRows;
+    
+    @ApiModelProperty(value = "Duration of the initial bulk copy in milliseconds", example = "2300")
+    private long copyMillis;
+    
+    @ApiModelProperty(value = "Bulk copy throughput in rows per second", example = "54347.8")
+    private double copyRowsPerSecond;
+    
+    @ApiModelProperty(value = "Catch-up rounds run while the tenant kept serving writes", example = "2")
+    private int catchUpRounds;
+    
+    @ApiModelProperty(value = "Rows re-copied by catch-up rounds, including the final one", example = "310")
+    private long catchUpRows;
+    
+    @ApiModelProperty(value = "Deletes captured during the move and replayed on the target", example = "3")
+    private int replayedDeletes;
+    
+    @ApiModelProperty(value = "Rows the keyed comparison of source and target found missing, changed or extra on the target and repaired", example = "2")
+    private long repairedRows;
+    
+    @ApiModelProperty(value = "Time new connections to the tenant were paused for the cutover, in milliseconds", example = "180")
+    private long pauseMillis;
+    
+    @ApiModelProperty(value = "Total move duration in milliseconds", example = "4100")
+    private long durationMillis;
+    
+    @ApiModelProperty(value = "Error message when the move failed")
+    private String error;
+    
+    public TenantMoveReport() {
+    }
+    
+    public TenantMoveReport(String tenant, String shard, String database) {
+        this.tenant = tenant;
+        this.shard = shard;
+        this.database = database;
+    }
+    
+    public void addCopiedTable(String table, long rows) {
+        tableRows.put(table, rows);
+        copiedRows += rows;
+    }
+    
+    public void completeCopy(long copyMillis) {
+        this.copyMillis = copyMillis;
+        this.copyRowsPerSecond = copyMillis > 0 ? Math.round(copiedRows * 10000.0 / copyMillis) / 10.0 : copiedRows;
+    }
+    
+    public void addCatchUpRound(long rows) {
+        catchUpRounds++;
+        catchUpRows += rows;
+    }
+    
+    // Getters and Setters
+    public String getTenant() {
+        return tenant;
+    }
+    
+    public String getShard() {
+        return shard;
+    }
+    
+    public String getDatabase() {
+        return database;
+    }
+    
+    public boolean isSuccess() {
+        return success;
+    }
+    
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+    
+    public Map<String, Long> getTableRows() {
+        return tableRows;
+    }
+    
+    public long getCopiedRows() {
+        return copiedRows;
+    }
+    
+    public long getCopyMillis() {
+        return copyMillis;
+    }
+    
+    public double getCopyRowsPerSecond() {
+        return copyRowsPerSecond;
+    }
+    
+    public int getCatchUpRounds() {
+        return catchUpRounds;
+    }
+    
+    public long getCatchUpRows() {
+        return catchUpRows;
+    }
+    
+    public int getReplayedDeletes() {
+        return replayedDeletes;
+    }
+    
+    public void setReplayedDeletes(int replayedDeletes) {
+        this.replayedDeletes = replayedDeletes;
+    }
+    
+    public long getRepairedRows() {
+        return repairedRows;
+    }
+    
+    public void addRepairedRows(long rows) {
+        repairedRows += rows;
+    }
+    
+    public long getPauseMillis() {
+        return pauseMillis;
+    }
+    
+    public void setPauseMillis(long pauseMillis) {
+        this.pauseMillis = pauseMillis;
+    }
+    
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+    
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+    
+    @Override
+    public String toString() {
+        return "TenantMoveReport{" +
+                "tenant='" + tenant + '\'' +
+                ", shard='" + shard + '\'' +
+                ", success=" + success +
+                ", copiedRows=" + copiedRows +
+                ", copyRowsPerSecond=" + copyRowsPerSecond +
+                ", catchUpRows=" + catchUpRows +
+                ", pauseMillis=" + pauseMillis +
+                '}';
+    }
+}
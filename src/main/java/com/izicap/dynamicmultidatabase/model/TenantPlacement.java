@@ -0,0 +1,74 @@
+package com.izicap.dynamicmultidatabase.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+@ApiModel(description = "Physical location of a tenant database")
+public class TenantPlacement {
+    
+    public static final String DEFAULT_SHARD = "default";
+    
+    @ApiModelProperty(value = "Tenant", example = "CLIENT_A")
+    private String tenant;
+    
+    @ApiModelProperty(value = "Shard the tenant database lives on, 'default' for the statically configured datasource", example = "db2")
+    private String shard;
+    
+    @ApiModelProperty(value = "Database name on the shard", example = "multi_client_a")
+    private String database;
+    
+    @ApiModelProperty(value = "JDBC URL of the tenant database")
+    private String url;
+    
+    public TenantPlacement() {
+    }
+    
+    public TenantPlacement(String tenant, String shard, String database, String url) {
+        this.tenant = tenant;
+        this.shard = shard;
+        this.database = database;
+        this.url = url;
+    }
+    
+    // Getters and Setters
+    public String getTenant() {
+        return tenant;
+    }
+    
+    public void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
+    
+    public String getShard() {
+        return shard;
+    }
+    
+    public void setShard(String shard) {
+        this.shard = shard;
+    }
+    
+    public String getDatabase() {
+        return database;
+    }
+    
+    public void setDatabase(String database) {
+        this.database = database;
+    }
+    
+    public String getUrl() {
+        return url;
+    }
+    
+    public void setUrl(String url) {
+        this.url = url;
+    }
+    
+    @Override
+    public String toString() {
+        return "TenantPlacement{" +
+                "tenant='" + tenant + '\'' +
+                ", shard='" + shard + '\'' +
+                ", database='" + database + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,24 @@
+package com.izicap.dynamicmultidatabase.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(ConnectionAcquireEvent.NAME)
+@Label("Tenant Connection Acquire")
+@Category({"Multi-Tenant", "Connections"})
+@Description("Time to obtain a connection for a tenant, including waits for a paused tenant and for the pool")
+@StackTrace(false)
+public class ConnectionAcquireEvent extends Event {
+    
+    public static final String NAME = "com.izicap.ConnectionAcquire";
+    
+    @Label("Tenant")
+    public String tenant;
+    
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,25 @@
+package com.izicap.dynamicmultidatabase.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(FlywayMigrationEvent.NAME)
+@Label("Tenant Flyway Migration")
+@Category({"Multi-Tenant", "Migrations"})
+@StackTrace(false)
+public class FlywayMigrationEvent extends Event {
+    
+    public static final String NAME = "com.izicap.FlywayMigration";
+    
+    @Label("Tenant")
+    public String tenant;
+    
+    @Label("Migrations Executed")
+    public int migrationsExecuted;
+    
+    @Label("Success")
+    public boolean success;
+}
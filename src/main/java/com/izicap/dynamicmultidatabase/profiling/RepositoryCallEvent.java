@@ -0,0 +1,26 @@
+package com.izicap.dynamicmultidatabase.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(RepositoryCallEvent.NAME)
+@Label("Tenant Repository Call")
+@Category({"Multi-Tenant", "Repositories"})
+public class RepositoryCallEvent extends Event {
+    
+    public static final String NAME = "com.izicap.RepositoryCall";
+    
+    @Label("Tenant")
+    public String tenant;
+    
+    @Label("Repository")
+    public String repository;
+    
+    @Label("Method")
+    public String method;
+    
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,49 @@
+package com.izicap.dynamicmultidatabase.profiling;
+
+import com.izicap.dynamicmultidatabase.DBContextHolder;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.tracing.Span;
+import com.izicap.dynamicmultidatabase.tracing.Tracing;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Records a {@link RepositoryCallEvent} for every call of a Spring Data repository,
+ * tagged with the tenant selected in {@link DBContextHolder}, and a span when the call
+ * is part of a trace
+ */
+public class RepositoryProfilingInterceptor implements MethodInterceptor {
+    
+    private final String repository;
+    
+    public RepositoryProfilingInterceptor(Class<?> repositoryInterface) {
+        this.repository = repositoryInterface.getSimpleName();
+    }
+    
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        RepositoryCallEvent event = new RepositoryCallEvent();
+        event.begin();
+        Span span = Tracing.startSpan(repository + "." + invocation.getMethod().getName());
+        boolean success = false;
+        try {
+            Object result = invocation.proceed();
+            success = true;
+            return result;
+        } catch (Throwable e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.close();
+            event.end();
+            if (event.shouldCommit()) {
+                DBTypeEnum tenant = DBContextHolder.getCurrentDb();
+                event.tenant = tenant != null ? tenant.name() : DBTypeEnum.MAIN.name();
+                event.repository = repository;
+                event.method = invocation.getMethod().getName();
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.izicap.dynamicmultidatabase.profiling;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps JDBC statements so that every row read from their query results is counted
+ */
+public final class RowCountingStatements {
+    
+    private RowCountingStatements() {
+    }
+    
+    public static Statement wrap(Statement statement, LongAdder rows) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    Object result = invoke(statement, method, args);
+                    // Generated keys are not rows read by the caller
+                    if (result instanceof ResultSet && !"getGeneratedKeys".equals(method.getName())) {
+                        return countRows((ResultSet) result, rows);
+                    }
+                    return result;
+                });
+    }
+    
+    private static ResultSet countRows(ResultSet resultSet, LongAdder rows) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(resultSet, method, args);
+                    if (Boolean.TRUE.equals(result) && "next".equals(method.getName())) {
+                        rows.increment();
+                    }
+                    return result;
+                });
+    }
+    
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
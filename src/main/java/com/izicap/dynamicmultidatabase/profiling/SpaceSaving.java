@@ -0,0 +1,101 @@
+package com.izicap.dynamicmultidatabase.profiling;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Space-Saving sketch of the heaviest keys of a weighted stream, using a fixed number of
+ * counters however many distinct keys there are. A key that is not tracked while all
+ * counters are taken replaces the smallest one and inherits its count as a possible
+ * overestimate, so every key with more than {@code total / capacity} of the weight is
+ * guaranteed to be tracked, and no count is more than that too high.
+ */
+public class SpaceSaving {
+    
+    private final int capacity;
+    
+    private final Map<String, Counter> counters;
+    
+    private long total;
+    
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+    
+    public synchronized void add(String key, long weight) {
+        total += weight;
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            if (counters.size() < capacity) {
+                counter = new Counter(0);
+            } else {
+                // Linear scan, but only when a new key arrives with all counters taken
+                String smallest = null;
+                long smallestCount = Long.MAX_VALUE;
+                for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+                    if (entry.getValue().count < smallestCount) {
+                        smallest = entry.getKey();
+                        smallestCount = entry.getValue().count;
+                    }
+                }
+                counters.remove(smallest);
+                counter = new Counter(smallestCount);
+            }
+            counters.put(key, counter);
+        }
+        counter.count += weight;
+    }
+    
+    /**
+     * Copy of this sketch's counts and error bounds, indexed as {count, error}
+     */
+    public synchronized Snapshot snapshot() {
+        Map<String, long[]> copy = new HashMap<>(counters.size() * 2);
+        counters.forEach((key, counter) -> copy.put(key, new long[] {counter.count, counter.error}));
+        return new Snapshot(copy, minCount(), total);
+    }
+    
+    /**
+     * Highest count a key that is not tracked can have had: the smallest counter once
+     * all are taken, as the key was either evicted below it or never seen, and 0 before
+     */
+    private long minCount() {
+        if (counters.size() < capacity) {
+            return 0;
+        }
+        long min = Long.MAX_VALUE;
+        for (Counter counter : counters.values()) {
+            min = Math.min(min, counter.count);
+        }
+        return min;
+    }
+    
+    public synchronized void clear() {
+        counters.clear();
+        total = 0;
+    }
+    
+    public static class Snapshot {
+        final Map<String, long[]> counters;
+        final long minCount;
+        final long total;
+        
+        Snapshot(Map<String, long[]> counters, long minCount, long total) {
+            this.counters = counters;
+            this.minCount = minCount;
+            this.total = total;
+        }
+    }
+    
+    private static class Counter {
+        long count;
+        // Count inherited from the evicted key, by which count may overestimate
+        final long error;
+        
+        Counter(long error) {
+            this.count = error;
+            this.error = error;
+        }
+    }
+}
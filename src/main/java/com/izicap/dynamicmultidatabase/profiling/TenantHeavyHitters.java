@@ -0,0 +1,235 @@
+package com.izicap.dynamicmultidatabase.profiling;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Heaviest tenants by database requests, connection time and rows read over a sliding
+ * window. The window is split into buckets, each holding one {@link SpaceSaving} sketch
+ * per metric, so memory stays bounded with any number of tenants; a bucket is reset when
+ * the window moves past it. Queries merge the buckets covering the requested span.
+ *
+ * Connections are recorded into a buffer of the closing thread, which only that thread
+ * and {@link #fold()} lock, so recording never contends across threads. Buffers are folded
+ * into the current bucket's sketches periodically and before every query.
+ */
+public class TenantHeavyHitters {
+    
+    public enum Metric {
+        // Connections checked out of the tenant's pool
+        REQUESTS,
+        // Time connections were held, in microseconds
+        DB_TIME,
+        // Rows read from result sets
+        ROWS
+    }
+    
+    private final long bucketMs;
+    
+    private final Bucket[] buckets;
+    
+    private final ThreadLocal<Buffer> buffer = ThreadLocal.withInitial(this::newBuffer);
+    
+    private final ConcurrentLinkedQueue<Buffer> buffers = new ConcurrentLinkedQueue<>();
+    
+    public TenantHeavyHitters(long windowMs, int bucketCount, int capacity) {
+        this.bucketMs = Math.max(1, windowMs / bucketCount);
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket(capacity);
+        }
+    }
+    
+    /**
+     * Record one connection of a tenant once it is closed
+     */
+    public void record(String tenant, long heldNanos, long rows) {
+        Buffer own = buffer.get();
+        synchronized (own) {
+            long[] values = own.pending.computeIfAbsent(tenant, key -> new long[Metric.values().length]);
+            values[Metric.REQUESTS.ordinal()]++;
+            values[Metric.DB_TIME.ordinal()] += heldNanos / 1000;
+            values[Metric.ROWS.ordinal()] += rows;
+        }
+    }
+    
+    /**
+     * Add the connections recorded by every thread since the last fold to the current bucket
+     */
+    public synchronized void fold() {
+        Bucket bucket = bucket(System.currentTimeMillis() / bucketMs);
+        for (Iterator<Buffer> it = buffers.iterator(); it.hasNext(); ) {
+            Buffer next = it.next();
+            Map<String, long[]> pending;
+            synchronized (next) {
+                pending = next.pending;
+                next.pending = new HashMap<>();
+            }
+            pending.forEach((tenant, values) -> {
+                for (Metric metric : Metric.values()) {
+                    if (values[metric.ordinal()] > 0) {
+                        bucket.sketches[metric.ordinal()].add(tenant, values[metric.ordinal()]);
+                    }
+                }
+            });
+            // Everything the thread recorded is folded once it has ended
+            if (!next.owner.isAlive()) {
+                it.remove();
+            }
+        }
+    }
+    
+    /**
+     * The limit heaviest tenants by a metric over the last windowMs, at bucket granularity
+     * and at most the whole window
+     */
+    public Result top(Metric metric, long windowMs, int limit) {
+        fold();
+        long current = System.currentTimeMillis() / bucketMs;
+        long oldest = current - Math.min(buckets.length, Math.max(1, (windowMs + bucketMs - 1) / bucketMs)) + 1;
+        
+        List<SpaceSaving.Snapshot> snapshots = new ArrayList<>();
+        for (Bucket bucket : buckets) {
+            synchronized (bucket) {
+                if (bucket.epoch >= oldest && bucket.epoch <= current) {
+                    snapshots.add(bucket.sketches[metric.ordinal()].snapshot());
+                }
+            }
+        }
+        Map<String, long[]> merged = merge(snapshots);
+        
+        long total = snapshots.stream().mapToLong(snapshot -> snapshot.total).sum();
+        List<Entry> entries = new ArrayList<>(merged.size());
+        merged.forEach((tenant, values) -> entries.add(new Entry(tenant, values[0], values[1], total)));
+        entries.sort(Comparator.comparingLong(Entry::getValue).reversed());
+        return new Result((current - oldest + 1) * bucketMs, total,
+                entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries);
+    }
+    
+    /**
+     * Sum the sketches' counts and errors, indexed as {count, error}. A sketch that does
+     * not hold a tenant adds its smallest counter to both, the most the tenant can have
+     * had there, so a sum never falls below the true total and stays within its error.
+     */
+    static Map<String, long[]> merge(List<SpaceSaving.Snapshot> snapshots) {
+        Set<String> tenants = new HashSet<>();
+        snapshots.forEach(snapshot -> tenants.addAll(snapshot.counters.keySet()));
+        
+        Map<String, long[]> merged = new HashMap<>(tenants.size() * 2);
+        for (String tenant : tenants) {
+            long[] sum = new long[2];
+            for (SpaceSaving.Snapshot snapshot : snapshots) {
+                long[] values = snapshot.counters.get(tenant);
+                sum[0] += values != null ? values[0] : snapshot.minCount;
+                sum[1] += values != null ? values[1] : snapshot.minCount;
+            }
+            merged.put(tenant, sum);
+        }
+        return merged;
+    }
+    
+    private Buffer newBuffer() {
+        Buffer created = new Buffer(Thread.currentThread());
+        buffers.add(created);
+        return created;
+    }
+    
+    private Bucket bucket(long epoch) {
+        Bucket bucket = buckets[(int) (epoch % buckets.length)];
+        if (bucket.epoch != epoch) {
+            synchronized (bucket) {
+                if (bucket.epoch != epoch) {
+                    for (SpaceSaving sketch : bucket.sketches) {
+                        sketch.clear();
+                    }
+                    bucket.epoch = epoch;
+                }
+            }
+        }
+        return bucket;
+    }
+    
+    private static class Buffer {
+        final Thread owner;
+        Map<String, long[]> pending = new HashMap<>();
+        
+        Buffer(Thread owner) {
+            this.owner = owner;
+        }
+    }
+    
+    private static class Bucket {
+        volatile long epoch = -1;
+        final SpaceSaving[] sketches = new SpaceSaving[Metric.values().length];
+        
+        Bucket(int capacity) {
+            for (int i = 0; i < sketches.length; i++) {
+                sketches[i] = new SpaceSaving(capacity);
+            }
+        }
+    }
+    
+    public static class Result {
+        private final long windowMs;
+        private final long total;
+        private final List<Entry> tenants;
+        
+        Result(long windowMs, long total, List<Entry> tenants) {
+            this.windowMs = windowMs;
+            this.total = total;
+            this.tenants = tenants;
+        }
+        
+        public long getWindowMs() {
+            return windowMs;
+        }
+        
+        public long getTotal() {
+            return total;
+        }
+        
+        public List<Entry> getTenants() {
+            return tenants;
+        }
+    }
+    
+    public static class Entry {
+        private final String tenant;
+        private final long value;
+        private final long maxError;
+        private final double share;
+        
+        Entry(String tenant, long value, long maxError, long total) {
+            this.tenant = tenant;
+            this.value = value;
+            this.maxError = maxError;
+            this.share = total > 0 ? Math.round(value * 1000.0 / total) / 1000.0 : 0.0;
+        }
+        
+        public String getTenant() {
+            return tenant;
+        }
+        
+        /**
+         * Estimated total, never below the true one and at most maxError above it
+         */
+        public long getValue() {
+            return value;
+        }
+        
+        public long getMaxError() {
+            return maxError;
+        }
+        
+        public double getShare() {
+            return share;
+        }
+    }
+}
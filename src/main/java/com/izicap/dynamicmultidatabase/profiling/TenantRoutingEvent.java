@@ -0,0 +1,25 @@
+package com.izicap.dynamicmultidatabase.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(TenantRoutingEvent.NAME)
+@Label("Tenant Routing")
+@Category({"Multi-Tenant", "Routing"})
+@Description("Datasource chosen for a tenant's connection request")
+@StackTrace(false)
+public class TenantRoutingEvent extends Event {
+    
+    public static final String NAME = "com.izicap.TenantRouting";
+    
+    @Label("Tenant")
+    public String tenant;
+    
+    @Label("Route")
+    @Description("configured, moved (switched at runtime by a tenant move) or default")
+    public String route;
+}
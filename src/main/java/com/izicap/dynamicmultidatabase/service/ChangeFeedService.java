@@ -0,0 +1,283 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBContextHolder;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.Post;
+import com.izicap.dynamicmultidatabase.PostEntityListener;
+import com.izicap.dynamicmultidatabase.PostRepository;
+import com.izicap.dynamicmultidatabase.model.ChangeFeedPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-tenant "changes since cursor" feed over the post table, ordered by
+ * (updated_at, id). Cursors are stable: resuming from the cursor of a page returns
+ * exactly the changes made after it. Deletes are not part of the feed.
+ *
+ * updated_at is assigned by the database when a row is written, but the row only
+ * becomes visible when its transaction commits, so changes are held back for
+ * app.change-feed.settle-seconds, which must exceed the longest write transaction.
+ *
+ * Long polls hold no thread while they wait: a waiting read is parked with its cursor
+ * and re-checked on a small pool when the tenant is written locally, and every
+ * app.change-feed.poll-interval-ms for writes made elsewhere and rows leaving the
+ * settle window.
+ */
+@Service
+public class ChangeFeedService implements PostEntityListener.Observer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeedService.class);
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Value("${app.change-feed.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${app.change-feed.max-wait-seconds:30}")
+    private int maxWaitSeconds;
+
+    @Value("${app.change-feed.settle-seconds:1}")
+    private int settleSeconds;
+
+    @Value("${app.change-feed.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+
+    @Value("${app.change-feed.poll-threads:2}")
+    private int pollThreads;
+
+    private final Map<DBTypeEnum, TenantWaiters> waiters = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService poller;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        poller = Executors.newScheduledThreadPool(Math.max(1, pollThreads), runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-poll-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::pollAll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        PostEntityListener.addObserver(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        PostEntityListener.removeObserver(this);
+        poller.shutdownNow();
+        // Answer parked polls with what they have rather than leave them to the request timeout
+        waiters.values().forEach(tenantWaiters -> tenantWaiters.waiting.forEach(Waiter::expire));
+    }
+
+    /**
+     * Read up to limit changes after the cursor
+     */
+    public ChangeFeedPage getChanges(DBTypeEnum tenant, String cursor, int limit) {
+        return readPage(tenant, Cursor.decode(cursor), pageSize(limit));
+    }
+
+    /**
+     * Read up to limit changes after the cursor. When there are none and waitSeconds is
+     * positive, the returned future completes once changes appear or after that long
+     * (capped by configuration) with an empty page.
+     */
+    public CompletableFuture<ChangeFeedPage> watchChanges(DBTypeEnum tenant, String cursor, int limit, int waitSeconds) {
+        Cursor position = Cursor.decode(cursor);
+        int pageSize = pageSize(limit);
+        ChangeFeedPage page = readPage(tenant, position, pageSize);
+        long waitMs = Math.min(Math.max(waitSeconds, 0), maxWaitSeconds) * 1000L;
+        if (!page.getChanges().isEmpty() || waitMs == 0) {
+            return CompletableFuture.completedFuture(page);
+        }
+
+        Waiter waiter = new Waiter(position, pageSize, System.currentTimeMillis() + waitMs);
+        TenantWaiters tenantWaiters = waiters.computeIfAbsent(tenant, TenantWaiters::new);
+        tenantWaiters.waiting.add(waiter);
+        waiter.result.whenComplete((result, failure) -> tenantWaiters.waiting.remove(waiter));
+        logger.debug("Parked change feed poll for {} after cursor {} for {} ms", tenant, cursor, waitMs);
+        return waiter.result;
+    }
+
+    /**
+     * Longest a change feed poll can wait, in milliseconds
+     */
+    public long getMaxWaitMs() {
+        return maxWaitSeconds * 1000L;
+    }
+
+    @Override
+    public void onPostChange(DBTypeEnum tenant, Post post, PostEntityListener.ChangeType changeType) {
+        TenantWaiters tenantWaiters = waiters.get(tenant);
+        if (tenantWaiters != null && !tenantWaiters.waiting.isEmpty()) {
+            schedule(tenantWaiters);
+        }
+    }
+
+    private void pollAll() {
+        waiters.values().forEach(tenantWaiters -> {
+            if (!tenantWaiters.waiting.isEmpty()) {
+                schedule(tenantWaiters);
+            }
+        });
+    }
+
+    // At most one check per tenant is queued; a check already running reads rows written before it
+    private void schedule(TenantWaiters tenantWaiters) {
+        if (tenantWaiters.scheduled.compareAndSet(false, true)) {
+            try {
+                poller.execute(() -> {
+                    tenantWaiters.scheduled.set(false);
+                    check(tenantWaiters);
+                });
+            } catch (RejectedExecutionException e) {
+                tenantWaiters.scheduled.set(false);
+            }
+        }
+    }
+
+    private void check(TenantWaiters tenantWaiters) {
+        long now = System.currentTimeMillis();
+        for (Waiter waiter : tenantWaiters.waiting) {
+            if (waiter.result.isDone()) {
+                continue;
+            }
+            try {
+                ChangeFeedPage page = readPage(tenantWaiters.tenant, waiter.position, waiter.pageSize);
+                if (!page.getChanges().isEmpty()) {
+                    waiter.result.complete(page);
+                } else if (now >= waiter.deadline) {
+                    waiter.expire();
+                }
+            } catch (Exception e) {
+                waiter.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private ChangeFeedPage readPage(DBTypeEnum tenant, Cursor position, int pageSize) {
+        List<Post> changes = readChanges(tenant, position, pageSize + 1);
+        boolean hasMore = changes.size() > pageSize;
+        if (hasMore) {
+            changes = changes.subList(0, pageSize);
+        }
+
+        Post last = changes.isEmpty() ? null : changes.get(changes.size() - 1);
+        String nextCursor = last == null ? position.encode() : Cursor.at(last.getUpdatedAt(), last.getId()).encode();
+        logger.debug("Read {} changes for {} after cursor {}", changes.size(), tenant, position.encode());
+        return new ChangeFeedPage(changes, nextCursor, hasMore);
+    }
+
+    private List<Post> readChanges(DBTypeEnum tenant, Cursor position, int limit) {
+        DBTypeEnum previous = DBContextHolder.getCurrentDb();
+        DBContextHolder.setCurrentDb(tenant);
+        try {
+            return postRepository.findChangesAfter(position.updatedAt(), position.id, settleSeconds, limit);
+        } finally {
+            if (previous != null) {
+                DBContextHolder.setCurrentDb(previous);
+            } else {
+                DBContextHolder.clear();
+            }
+        }
+    }
+
+    private int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, maxPageSize));
+    }
+
+    private static class TenantWaiters {
+        final DBTypeEnum tenant;
+        final Set<Waiter> waiting = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+
+        TenantWaiters(DBTypeEnum tenant) {
+            this.tenant = tenant;
+        }
+    }
+
+    private static class Waiter {
+        final Cursor position;
+        final int pageSize;
+        final long deadline;
+        final CompletableFuture<ChangeFeedPage> result = new CompletableFuture<>();
+
+        Waiter(Cursor position, int pageSize, long deadline) {
+            this.position = position;
+            this.pageSize = pageSize;
+            this.deadline = deadline;
+        }
+
+        void expire() {
+            result.complete(new ChangeFeedPage(List.of(), position.encode(), false));
+        }
+    }
+
+    /**
+     * Position in the (updated_at, id) order, encoded as an opaque URL-safe token. updated_at
+     * is kept in microseconds, the column's precision, so a cursor never sorts before the
+     * row it was taken from.
+     */
+    static class Cursor {
+        final long updatedAtMicros;
+        final long id;
+
+        Cursor(long updatedAtMicros, long id) {
+            this.updatedAtMicros = updatedAtMicros;
+            this.id = id;
+        }
+
+        static Cursor at(Date updatedAt, long id) {
+            long micros = Math.floorDiv(updatedAt.getTime(), 1000L) * 1_000_000L;
+            micros += updatedAt instanceof Timestamp
+                    ? ((Timestamp) updatedAt).getNanos() / 1000
+                    : Math.floorMod(updatedAt.getTime(), 1000L) * 1000L;
+            return new Cursor(micros, id);
+        }
+
+        static Cursor decode(String token) {
+            if (token == null || token.isBlank()) {
+                return new Cursor(0L, Long.MIN_VALUE);
+            }
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                String[] parts = decoded.split(":");
+                return new Cursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid change feed cursor: " + token);
+            }
+        }
+
+        Timestamp updatedAt() {
+            Timestamp timestamp = new Timestamp(Math.floorDiv(updatedAtMicros, 1_000_000L) * 1000L);
+            timestamp.setNanos((int) Math.floorMod(updatedAtMicros, 1_000_000L) * 1000);
+            return timestamp;
+        }
+
+        String encode() {
+            String raw = updatedAtMicros + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
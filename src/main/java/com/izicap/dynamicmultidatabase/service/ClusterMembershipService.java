@@ -0,0 +1,238 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.TenantRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Optional cluster mode in which every application node serves only the tenants it owns,
+ * so each MySQL server sees one pool per tenant instead of one per tenant and node.
+ * Nodes heartbeat into the main database's {@code cluster_node} table; the nodes seen
+ * within {@code app.cluster.node-timeout-ms} form a consistent hash ring that decides
+ * which node owns each tenant. The main database is served by every node, as it also
+ * holds the node list. Heartbeats are stamped and judged with the main database's clock,
+ * so nodes with skewed clocks still agree on the live nodes.
+ */
+@Service
+public class ClusterMembershipService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterMembershipService.class);
+
+    @Autowired
+    @Qualifier("mainJdbcTemplate")
+    private JdbcTemplate mainJdbcTemplate;
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    @Value("${app.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.cluster.node-id:}")
+    private String nodeId;
+
+    @Value("${app.cluster.advertised-url:}")
+    private String advertisedUrl;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    @Value("${app.cluster.heartbeat-interval-ms:5000}")
+    private long heartbeatIntervalMs;
+
+    @Value("${app.cluster.node-timeout-ms:15000}")
+    private long nodeTimeoutMs;
+
+    @Value("${app.cluster.virtual-nodes:100}")
+    private int virtualNodes;
+
+    // Live nodes mapped to their advertised URLs, as of the last heartbeat
+    private volatile Map<String, String> nodes = Map.of();
+
+    private volatile Map<DBTypeEnum, String> owners = Map.of();
+
+    private volatile boolean tableReady;
+
+    @PostConstruct
+    public void join() {
+        if (!enabled) {
+            return;
+        }
+
+        String host = localHostName();
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = host + ":" + serverPort;
+        }
+        if (advertisedUrl == null || advertisedUrl.isBlank()) {
+            advertisedUrl = "http://" + host + ":" + serverPort;
+        }
+        multiRoutingDataSource.setNotOwnedRetryAfterMs(heartbeatIntervalMs);
+
+        // Serve nothing but the main database until the first heartbeat saw the other nodes
+        multiRoutingDataSource.setOwnedTenants(EnumSet.of(DBTypeEnum.MAIN));
+        logger.info("Joining cluster as node {} at {}", nodeId, advertisedUrl);
+        heartbeat();
+    }
+
+    @PreDestroy
+    public void leave() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            // Lets the other nodes take over this node's tenants without waiting for the timeout
+            mainJdbcTemplate.update("DELETE FROM cluster_node WHERE node_id = ?", nodeId);
+            logger.info("Node {} left the cluster", nodeId);
+        } catch (Exception e) {
+            logger.warn("Could not remove node {} from the cluster: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * Record this node as alive, and recompute tenant ownership from the live nodes
+     */
+    @Scheduled(fixedDelayString = "${app.cluster.heartbeat-interval-ms:5000}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            ensureTable();
+            long now = mainJdbcTemplate.queryForObject("SELECT CAST(UNIX_TIMESTAMP(NOW(3)) AS DECIMAL(20, 3)) * 1000", Long.class);
+            int updated = mainJdbcTemplate.update(
+                    "UPDATE cluster_node SET url = ?, heartbeat_at = ? WHERE node_id = ?", advertisedUrl, now, nodeId);
+            if (updated == 0) {
+                mainJdbcTemplate.update(
+                        "INSERT INTO cluster_node (node_id, url, heartbeat_at) VALUES (?, ?, ?)", nodeId, advertisedUrl, now);
+            }
+
+            Map<String, String> liveNodes = new TreeMap<>();
+            mainJdbcTemplate.query("SELECT node_id, url FROM cluster_node WHERE heartbeat_at >= ?",
+                    rs -> {
+                        liveNodes.put(rs.getString("node_id"), rs.getString("url"));
+                    }, now - nodeTimeoutMs);
+            liveNodes.put(nodeId, advertisedUrl);
+            applyRing(liveNodes);
+
+        } catch (Exception e) {
+            // Keep the last known ownership; without the main database no tenant is routed anyway
+            logger.warn("Cluster heartbeat of node {} failed: {}", nodeId, e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Seconds after which a request refused during an ownership change can be retried,
+     * by then the nodes have heartbeated again
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (heartbeatIntervalMs + 999) / 1000);
+    }
+
+    /**
+     * Whether this node serves the tenant; always true outside cluster mode
+     */
+    public boolean isLocal(DBTypeEnum tenant) {
+        return multiRoutingDataSource.isOwned(tenant);
+    }
+
+    /**
+     * Advertised URL of the node owning a tenant, null when it is owned here or unknown
+     */
+    public String getOwnerUrl(DBTypeEnum tenant) {
+        if (!enabled || isLocal(tenant)) {
+            return null;
+        }
+        String owner = owners.get(tenant);
+        return owner != null ? nodes.get(owner) : null;
+    }
+
+    /**
+     * Live nodes and the owner of every tenant except the main database
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        if (enabled) {
+            status.put("nodeId", nodeId);
+            status.put("nodes", nodes);
+            Map<String, String> tenantOwners = new LinkedHashMap<>();
+            owners.forEach((tenant, owner) -> tenantOwners.put(tenant.name(), owner));
+            status.put("owners", tenantOwners);
+        }
+        return status;
+    }
+
+    private void applyRing(Map<String, String> liveNodes) {
+        TenantRing ring = new TenantRing(liveNodes.keySet(), virtualNodes);
+        Map<DBTypeEnum, String> newOwners = new EnumMap<>(DBTypeEnum.class);
+        Set<DBTypeEnum> owned = EnumSet.of(DBTypeEnum.MAIN);
+        for (DBTypeEnum tenant : DBTypeEnum.values()) {
+            if (tenant == DBTypeEnum.MAIN) {
+                continue;
+            }
+            String owner = ring.ownerOf(tenant);
+            newOwners.put(tenant, owner);
+            if (nodeId.equals(owner)) {
+                owned.add(tenant);
+            }
+        }
+
+        if (!liveNodes.equals(nodes)) {
+            logger.info("Cluster nodes changed to {}", liveNodes.keySet());
+        }
+        if (!newOwners.equals(owners)) {
+            logger.info("Node {} now owns tenants {}", nodeId, owned);
+        }
+        nodes = Map.copyOf(liveNodes);
+        owners = newOwners;
+        multiRoutingDataSource.setOwnedTenants(owned);
+    }
+
+    private String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    private void ensureTable() {
+        if (tableReady) {
+            return;
+        }
+        mainJdbcTemplate.execute(
+                "CREATE TABLE IF NOT EXISTS cluster_node (" +
+                "    node_id VARCHAR(128) NOT NULL PRIMARY KEY," +
+                "    url VARCHAR(255) NOT NULL," +
+                "    heartbeat_at BIGINT NOT NULL" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci");
+        tableReady = true;
+    }
+}
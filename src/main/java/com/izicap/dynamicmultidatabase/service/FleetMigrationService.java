@@ -0,0 +1,195 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.config.FlywayConfig;
+import com.izicap.dynamicmultidatabase.config.FlywayConfig.DatabaseConfig;
+import com.izicap.dynamicmultidatabase.model.FleetMigrationReport;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@Service
+public class FleetMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetMigrationService.class);
+
+    private static final String STATUS_SUCCESS = "SUCCESS";
+    private static final String STATUS_FAILED = "FAILED";
+    private static final String STATUS_SKIPPED = "SKIPPED";
+
+    @Autowired
+    private FlywayConfig flywayConfig;
+
+    @Autowired
+    @Qualifier("mainJdbcTemplate")
+    private JdbcTemplate mainJdbcTemplate;
+
+    @Value("${app.flyway.fleet.concurrency:4}")
+    private int concurrency;
+
+    @Value("${app.flyway.fleet.wave-size:10}")
+    private int waveSize;
+
+    @Value("${app.flyway.fleet.failure-budget:0}")
+    private int failureBudget;
+
+    @Value("${app.flyway.fleet.run-id:}")
+    private String configuredRunId;
+
+    /**
+     * Migrate every configured tenant database using the configured run id,
+     * or a freshly generated one when none is set
+     */
+    public FleetMigrationReport migrateFleet() {
+        String runId = configuredRunId == null || configuredRunId.isBlank()
+                ? "fleet-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                : configuredRunId.trim();
+        return migrateFleet(runId);
+    }
+
+    /**
+     * Migrate the tenant fleet in waves of bounded concurrency. Each tenant outcome is
+     * checkpointed in the main database, so re-running with the same run id resumes
+     * after the tenants that already succeeded. Once more tenants than the failure
+     * budget have failed, no further waves are started.
+     */
+    public FleetMigrationReport migrateFleet(String runId) {
+        logger.info("Starting fleet migration run {} (concurrency={}, waveSize={}, failureBudget={})",
+                  runId, concurrency, waveSize, failureBudget);
+
+        long startTime = System.currentTimeMillis();
+        FleetMigrationReport report = new FleetMigrationReport(runId);
+
+        ensureCheckpointTable();
+        Set<String> completed = findCompletedTenants(runId);
+
+        Map<String, DatabaseConfig> remaining = new LinkedHashMap<>();
+        for (Map.Entry<String, DatabaseConfig> entry : flywayConfig.getTenantDatabases().entrySet()) {
+            if (completed.contains(entry.getKey())) {
+                logger.info("Tenant {} already migrated by run {}, skipping", entry.getKey(), runId);
+                report.getTenantStatus().put(entry.getKey(), STATUS_SUCCESS);
+                report.setResumedTenants(report.getResumedTenants() + 1);
+            } else {
+                remaining.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        List<List<String>> waves = splitIntoWaves(new ArrayList<>(remaining.keySet()));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, waveSize)));
+
+        try {
+            for (int waveIndex = 0; waveIndex < waves.size(); waveIndex++) {
+                if (report.getFailedTenants() > failureBudget) {
+                    logger.error("Fleet migration run {} exceeded its failure budget ({} failures), aborting remaining waves",
+                               runId, report.getFailedTenants());
+                    report.setAborted(true);
+                    for (List<String> skippedWave : waves.subList(waveIndex, waves.size())) {
+                        skippedWave.forEach(tenant -> report.getTenantStatus().put(tenant, STATUS_SKIPPED));
+                    }
+                    break;
+                }
+
+                List<String> wave = waves.get(waveIndex);
+                logger.info("Fleet migration run {}: starting wave {}/{} with {} tenants",
+                          runId, waveIndex + 1, waves.size(), wave.size());
+
+                Map<String, Future<MigrateResult>> futures = new LinkedHashMap<>();
+                for (String tenant : wave) {
+                    DatabaseConfig config = remaining.get(tenant);
+                    futures.put(tenant, executor.submit(() -> flywayConfig.migrateDatabaseUnderLease(tenant, config)));
+                }
+
+                for (Map.Entry<String, Future<MigrateResult>> entry : futures.entrySet()) {
+                    recordOutcome(runId, entry.getKey(), entry.getValue(), report);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        report.setDurationMillis(System.currentTimeMillis() - startTime);
+        logger.info("Completed fleet migration run: {}", report);
+        return report;
+    }
+
+    private void recordOutcome(String runId, String tenant, Future<MigrateResult> future, FleetMigrationReport report) {
+        try {
+            MigrateResult result = future.get();
+
+            if (result.success) {
+                saveCheckpoint(runId, tenant, STATUS_SUCCESS, result.migrationsExecuted, null);
+                report.getTenantStatus().put(tenant, STATUS_SUCCESS);
+                report.setMigratedTenants(report.getMigratedTenants() + 1);
+                return;
+            }
+
+            saveCheckpoint(runId, tenant, STATUS_FAILED, result.migrationsExecuted, "Flyway reported an unsuccessful migration");
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Fleet migration run " + runId + " was interrupted", e);
+
+        } catch (ExecutionException e) {
+            logger.error("Fleet migration run {} failed for tenant {}", runId, tenant, e.getCause());
+            saveCheckpoint(runId, tenant, STATUS_FAILED, 0, String.valueOf(e.getCause().getMessage()));
+        }
+
+        report.getTenantStatus().put(tenant, STATUS_FAILED);
+        report.setFailedTenants(report.getFailedTenants() + 1);
+    }
+
+    private List<List<String>> splitIntoWaves(List<String> tenants) {
+        int size = Math.max(1, waveSize);
+        List<List<String>> waves = new ArrayList<>();
+        for (int i = 0; i < tenants.size(); i += size) {
+            waves.add(new ArrayList<>(tenants.subList(i, Math.min(i + size, tenants.size()))));
+        }
+        return waves;
+    }
+
+    private void ensureCheckpointTable() {
+        mainJdbcTemplate.execute(
+                "CREATE TABLE IF NOT EXISTS fleet_migration_checkpoint (" +
+                "    run_id VARCHAR(64) NOT NULL," +
+                "    tenant_id VARCHAR(64) NOT NULL," +
+                "    status VARCHAR(16) NOT NULL," +
+                "    migrations_executed INT NOT NULL DEFAULT 0," +
+                "    error_message VARCHAR(1024)," +
+                "    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP," +
+                "    PRIMARY KEY (run_id, tenant_id)" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci");
+    }
+
+    private Set<String> findCompletedTenants(String runId) {
+        return new HashSet<>(mainJdbcTemplate.queryForList(
+                "SELECT tenant_id FROM fleet_migration_checkpoint WHERE run_id = ? AND status = ?",
+                String.class, runId, STATUS_SUCCESS));
+    }
+
+    private void saveCheckpoint(String runId, String tenant, String status, int migrationsExecuted, String error) {
+        String truncatedError = error != null && error.length() > 1024 ? error.substring(0, 1024) : error;
+        mainJdbcTemplate.update(
+                "INSERT INTO fleet_migration_checkpoint (run_id, tenant_id, status, migrations_executed, error_message) " +
+                "VALUES (?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE status = VALUES(status), migrations_executed = VALUES(migrations_executed), " +
+                "error_message = VALUES(error_message)",
+                runId, tenant, status, migrationsExecuted, truncatedError);
+    }
+}
@@ -2,7 +2,11 @@ package com.izicap.dynamicmultidatabase.service;
 
 import com.izicap.dynamicmultidatabase.DBContextHolder;
 import com.izicap.dynamicmultidatabase.DBTypeEnum;
-import com.izicap.dynamicmultidatabase.PostRepository;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.TenantCircuitBreaker;
+import com.izicap.dynamicmultidatabase.TenantCircuitBreakerRegistry;
+import com.izicap.dynamicmultidatabase.config.FlywayConfig;
+import com.izicap.dynamicmultidatabase.model.RowCountMode;
 import org.flywaydb.core.Flyway;
 import org.flywaydb.core.api.MigrationInfo;
 import org.flywaydb.core.api.MigrationState;
@@ -10,6 +14,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.sql.DataSource;
@@ -26,7 +31,31 @@ public class HealthService {
     private static final Logger logger = LoggerFactory.getLogger(HealthService.class);
     
     @Autowired
-    private PostRepository postRepository;
+    private TenantCircuitBreakerRegistry circuitBreakerRegistry;
+    
+    @Autowired
+    private TenantPlacementService placementService;
+    
+    @Autowired
+    private ProfilingService profilingService;
+    
+    @Autowired
+    private PostLookupCoalescer lookupCoalescer;
+    
+    @Autowired
+    private RowCountService rowCountService;
+    
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+    
+    @Autowired
+    private ClusterMembershipService clusterMembershipService;
+    
+    @Autowired
+    private TracingService tracingService;
+    
+    @Value("${app.row-count.health-mode:approximate}")
+    private String healthCountMode;
     
     @Value("${app.datasource.main.jdbc-url}")
     private String mainDbUrl;
@@ -109,7 +138,7 @@ public class HealthService {
                 "routing", routingHealth,
                 "system", systemHealth
             ));
-            
+        
         } catch (Exception e) {
             logger.error("Error during overall health check", e);
             overallHealth.put("healthy", false);
@@ -131,12 +160,7 @@ public class HealthService {
         Map<String, Object> databases = new HashMap<>();
         boolean allHealthy = true;
         
-        // Define database configurations
-        Map<String, DatabaseConfig> dbConfigs = Map.of(
-            "MAIN", new DatabaseConfig(mainDbUrl, mainDbUsername, mainDbPassword),
-            "CLIENT_A", new DatabaseConfig(clientADbUrl, clientADbUsername, clientADbPassword),
-            "CLIENT_B", new DatabaseConfig(clientBDbUrl, clientBDbUsername, clientBDbPassword)
-        );
+        Map<String, DatabaseConfig> dbConfigs = getDatabaseConfigs();
         
         for (Map.Entry<String, DatabaseConfig> entry : dbConfigs.entrySet()) {
             String dbName = entry.getKey();
@@ -152,11 +176,31 @@ public class HealthService {
         
         databaseHealth.put("allDatabasesHealthy", allHealthy);
         databaseHealth.put("databases", databases);
+        databaseHealth.put("circuitBreakers", circuitBreakerRegistry.getStatus());
         databaseHealth.put("timestamp", System.currentTimeMillis());
         
         return databaseHealth;
     }
     
+    /**
+     * Probe tenants whose circuit is open, so a recovered database is let back in
+     * without waiting for the full open duration
+     */
+    @Scheduled(fixedDelayString = "${app.circuit-breaker.probe-interval-ms:5000}")
+    public void probeOpenCircuits() {
+        if (!circuitBreakerRegistry.isEnabled()) {
+            return;
+        }
+        
+        for (Map.Entry<String, DatabaseConfig> entry : getDatabaseConfigs().entrySet()) {
+            DBTypeEnum tenant = DBTypeEnum.valueOf(entry.getKey());
+            if (circuitBreakerRegistry.get(tenant).getState() == TenantCircuitBreaker.State.OPEN) {
+                logger.debug("Probing tenant {} with an open circuit", tenant);
+                checkDatabaseConnectivity(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+    
     /**
      * Check migration status for all databases
      */
@@ -167,12 +211,7 @@ public class HealthService {
         Map<String, Object> databases = new HashMap<>();
         boolean allUpToDate = true;
         
-        // Define database configurations
-        Map<String, DatabaseConfig> dbConfigs = Map.of(
-            "MAIN", new DatabaseConfig(mainDbUrl, mainDbUsername, mainDbPassword),
-            "CLIENT_A", new DatabaseConfig(clientADbUrl, clientADbUsername, clientADbPassword),
-            "CLIENT_B", new DatabaseConfig(clientBDbUrl, clientBDbUsername, clientBDbPassword)
-        );
+        Map<String, DatabaseConfig> dbConfigs = getDatabaseConfigs();
         
         for (Map.Entry<String, DatabaseConfig> entry : dbConfigs.entrySet()) {
             String dbName = entry.getKey();
@@ -264,8 +303,12 @@ public class HealthService {
                 "version", System.getProperty("java.version"),
                 "vendor", System.getProperty("java.vendor")
             ));
+            systemHealth.put("profiling", profilingService.getSummary());
+            systemHealth.put("lookupCoalescing", lookupCoalescer.getStats());
+            systemHealth.put("cluster", clusterMembershipService.getStatus());
+            systemHealth.put("tracing", tracingService.getStats());
             systemHealth.put("timestamp", System.currentTimeMillis());
-            
+        
         } catch (Exception e) {
             logger.error("Error checking system health", e);
             systemHealth.put("systemHealthy", false);
@@ -283,12 +326,10 @@ public class HealthService {
         Map<String, Object> status = new HashMap<>();
         
         try {
-            Flyway flyway = Flyway.configure()
-                    .dataSource(config.url, config.username, config.password)
-                    .load();
-            
-            // Test connection by getting datasource
-            try (Connection connection = flyway.getConfiguration().getDataSource().getConnection()) {
+            // Probe through the tenant's own pool, which follows moves, so the result reflects
+            // what routed traffic sees rather than a fresh connection's
+            DataSource dataSource = multiRoutingDataSource.getTenantDataSource(DBTypeEnum.valueOf(dbName));
+            try (Connection connection = dataSource.getConnection()) {
                 boolean isValid = connection.isValid(5); // 5 second timeout
                 
                 status.put("connected", isValid);
@@ -299,9 +340,9 @@ public class HealthService {
                     status.put("databaseProduct", connection.getMetaData().getDatabaseProductName());
                     status.put("databaseVersion", connection.getMetaData().getDatabaseProductVersion());
                 }
-                
-            }
             
+            }
+        
         } catch (Exception e) {
             logger.warn("Database connectivity check failed for {}: {}", dbName, e.getMessage());
             status.put("connected", false);
@@ -309,6 +350,10 @@ public class HealthService {
             status.put("error", e.getMessage());
         }
         
+        // Probe results feed the tenant's circuit breaker
+        circuitBreakerRegistry.recordProbe(DBTypeEnum.valueOf(dbName),
+                Boolean.TRUE.equals(status.get("connected")), (String) status.get("error"));
+        
         status.put("timestamp", System.currentTimeMillis());
         return status;
     }
@@ -353,7 +398,7 @@ public class HealthService {
                 }
                 status.put("pendingMigrationsList", pendingList);
             }
-            
+        
         } catch (Exception e) {
             logger.warn("Migration status check failed for {}: {}", dbName, e.getMessage());
             status.put("upToDate", false);
@@ -370,18 +415,36 @@ public class HealthService {
     private Map<String, Object> testDatabaseRouting(DBTypeEnum dbType) {
         Map<String, Object> test = new HashMap<>();
         
+        if (multiRoutingDataSource.isCold(dbType)) {
+            // Offloaded tenants have no database to route to until they are rehydrated
+            test.put("success", true);
+            test.put("database", dbType.name());
+            test.put("state", "cold");
+            test.put("timestamp", System.currentTimeMillis());
+            return test;
+        }
+        if (!multiRoutingDataSource.isOwned(dbType)) {
+            // In cluster mode the owning node routes to this tenant, this node keeps no pool for it
+            test.put("success", true);
+            test.put("database", dbType.name());
+            test.put("state", "remote");
+            test.put("owner", clusterMembershipService.getOwnerUrl(dbType));
+            test.put("timestamp", System.currentTimeMillis());
+            return test;
+        }
+        
         try {
             // Set database context
             DBContextHolder.setCurrentDb(dbType);
             
-            // Try to count posts (simple query to test routing)
-            long postCount = postRepository.count();
+            // Read the post count from table statistics (simple query to test routing without a table scan)
+            long postCount = rowCountService.count(dbType, RowCountMode.fromName(healthCountMode));
             
             test.put("success", true);
             test.put("database", dbType.name());
             test.put("postCount", postCount);
             test.put("message", "Successfully routed to " + dbType.name() + " database");
-            
+        
         } catch (Exception e) {
             logger.warn("Database routing test failed for {}: {}", dbType, e.getMessage());
             test.put("success", false);
@@ -396,6 +459,27 @@ public class HealthService {
         return test;
     }
     
+    /**
+     * Live tenant databases; tenants offloaded to cold storage have none to check
+     */
+    private Map<String, DatabaseConfig> getDatabaseConfigs() {
+        Map<String, DatabaseConfig> configs = new HashMap<>(Map.of(
+            "MAIN", placed(DBTypeEnum.MAIN, mainDbUrl, mainDbUsername, mainDbPassword),
+            "CLIENT_A", placed(DBTypeEnum.CLIENT_A, clientADbUrl, clientADbUsername, clientADbPassword),
+            "CLIENT_B", placed(DBTypeEnum.CLIENT_B, clientBDbUrl, clientBDbUsername, clientBDbPassword)
+        ));
+        multiRoutingDataSource.getColdTenants().forEach(tenant -> configs.remove(tenant.name()));
+        return configs;
+    }
+    
+    /**
+     * Connection settings of a tenant database, following it when it was moved to another shard
+     */
+    private DatabaseConfig placed(DBTypeEnum tenant, String url, String username, String password) {
+        FlywayConfig.DatabaseConfig config = placementService.resolve(tenant, new FlywayConfig.DatabaseConfig(url, username, password));
+        return new DatabaseConfig(config.getUrl(), config.getUsername(), config.getPassword());
+    }
+    
     /**
      * Database configuration holder
      */
@@ -0,0 +1,87 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.profiling.TenantHeavyHitters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Locale;
+
+/**
+ * Tracks which tenants dominate database traffic right now, for sizing pools and spotting
+ * abusive tenants. Every connection closed by the routing datasource adds its tenant's
+ * request, connection time and rows read to sketches over the last
+ * {@code app.heavy-hitters.window-seconds}; each sketch keeps
+ * {@code app.heavy-hitters.capacity} counters whatever the number of tenants. Connections
+ * are buffered per thread and folded into the sketches every
+ * {@code app.heavy-hitters.fold-interval-ms}.
+ *
+ * Off by default: counting rows wraps every statement and result set of tracked connections.
+ */
+@Service
+public class HeavyHitterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeavyHitterService.class);
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    @Value("${app.heavy-hitters.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.heavy-hitters.window-seconds:300}")
+    private long windowSeconds;
+
+    @Value("${app.heavy-hitters.buckets:30}")
+    private int buckets;
+
+    @Value("${app.heavy-hitters.capacity:64}")
+    private int capacity;
+
+    private TenantHeavyHitters heavyHitters;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("Heavy-hitter tenant tracking is disabled");
+            return;
+        }
+        heavyHitters = new TenantHeavyHitters(windowSeconds * 1000, buckets, capacity);
+        multiRoutingDataSource.setHeavyHitters(heavyHitters);
+        logger.info("Heavy-hitter tenant tracking enabled (windowSeconds={}, buckets={}, capacity={})",
+                  windowSeconds, buckets, capacity);
+    }
+
+    @Scheduled(fixedDelayString = "${app.heavy-hitters.fold-interval-ms:1000}")
+    public void fold() {
+        if (heavyHitters != null) {
+            heavyHitters.fold();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The heaviest tenants by a metric (requests, db_time or rows) over the last
+     * windowSeconds, capped at the tracked window
+     */
+    public TenantHeavyHitters.Result getTop(String metric, long windowSeconds, int limit) {
+        if (!enabled) {
+            throw new IllegalStateException("Heavy-hitter tracking is disabled");
+        }
+        TenantHeavyHitters.Metric parsed;
+        try {
+            parsed = TenantHeavyHitters.Metric.valueOf(metric.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown metric: " + metric + ", expected requests, db_time or rows");
+        }
+        return heavyHitters.top(parsed, windowSeconds * 1000, limit);
+    }
+}
@@ -0,0 +1,119 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBContextHolder;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency keys of post writes and broadcasts, kept in each tenant's {@code idempotency_key} table.
+ * A key is inserted in the transaction of the write it belongs to, so it exists exactly
+ * when the write committed: a client that never learned the outcome of a write retries
+ * it with the same key and gets the post written the first time instead of a duplicate.
+ *
+ * Keys are kept for {@code app.idempotency.retention-hours}.
+ */
+@Service
+public class IdempotencyKeyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyKeyService.class);
+
+    public static final int MAX_KEY_LENGTH = 64;
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    @Value("${app.idempotency.retention-hours:24}")
+    private long retentionHours;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void start() {
+        jdbcTemplate = new JdbcTemplate(multiRoutingDataSource);
+    }
+
+    /**
+     * Whether a client-supplied key can be stored
+     */
+    public static boolean isValid(String key) {
+        return key != null && !key.isBlank() && key.length() <= MAX_KEY_LENGTH;
+    }
+
+    /**
+     * Id of the post written with this key, or null when no write with it committed
+     */
+    public Long findPostId(DBTypeEnum tenant, String key) {
+        return inTenant(tenant, () -> jdbcTemplate.query(
+                "SELECT post_id FROM idempotency_key WHERE request_key = ?",
+                rs -> rs.next() ? rs.getLong(1) : null, key));
+    }
+
+    /**
+     * Whether a write with this key committed, also one that recorded no post
+     */
+    public boolean exists(DBTypeEnum tenant, String key) {
+        return Boolean.TRUE.equals(inTenant(tenant, () -> jdbcTemplate.query(
+                "SELECT 1 FROM idempotency_key WHERE request_key = ?", rs -> rs.next() ? Boolean.TRUE : Boolean.FALSE, key)));
+    }
+
+    /**
+     * Record keys with the ids of the posts written under them. Called inside the write's
+     * transaction with the tenant's routing context set; a key recorded before makes the
+     * insert, and so the transaction, fail with a duplicate key.
+     */
+    public void record(Map<String, Long> postIdsByKey) {
+        if (postIdsByKey.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(postIdsByKey.size());
+        postIdsByKey.forEach((key, postId) -> rows.add(new Object[] {key, postId}));
+        jdbcTemplate.batchUpdate("INSERT INTO idempotency_key (request_key, post_id) VALUES (?, ?)", rows);
+    }
+
+    @Scheduled(cron = "${app.idempotency.purge-cron:0 15 * * * *}")
+    public void purgeExpired() {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - retentionHours * 3600_000L);
+        for (DBTypeEnum tenant : DBTypeEnum.values()) {
+            if (multiRoutingDataSource.isCold(tenant) || !multiRoutingDataSource.isOwned(tenant)) {
+                continue;
+            }
+            try {
+                int purged = inTenant(tenant, () -> jdbcTemplate.update(
+                        "DELETE FROM idempotency_key WHERE created_at < ?", cutoff));
+                if (purged > 0) {
+                    logger.info("Purged {} expired idempotency keys of tenant {}", purged, tenant);
+                }
+            } catch (Exception e) {
+                logger.warn("Could not purge idempotency keys of tenant {}: {}", tenant, e.getMessage());
+            }
+        }
+    }
+
+    private <T> T inTenant(DBTypeEnum tenant, Supplier<T> work) {
+        DBTypeEnum previous = DBContextHolder.getCurrentDb();
+        DBContextHolder.setCurrentDb(tenant);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                DBContextHolder.setCurrentDb(previous);
+            } else {
+                DBContextHolder.clear();
+            }
+        }
+    }
+}
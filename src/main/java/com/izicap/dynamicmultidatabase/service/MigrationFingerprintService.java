@@ -0,0 +1,171 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which version of the packaged migration set each tenant database was last
+ * migrated and validated at, so unchanged tenants can be skipped without Flyway
+ * rescanning scripts and reading every schema history table.
+ */
+@Service
+public class MigrationFingerprintService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigrationFingerprintService.class);
+
+    @Autowired
+    @Qualifier("mainJdbcTemplate")
+    private JdbcTemplate mainJdbcTemplate;
+
+    private final PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+    private final Map<List<String>, String> fingerprints = new ConcurrentHashMap<>();
+
+    private volatile boolean tableReady;
+
+    /**
+     * SHA-256 over the relative path and content of every resource under the given
+     * Flyway locations, computed once per location set
+     */
+    public String getFingerprint(String... locations) {
+        return fingerprints.computeIfAbsent(List.of(locations), this::computeFingerprint);
+    }
+
+    /**
+     * Fingerprint of a migration set as applied to one database. The database identity is
+     * part of it, so a tenant moved, restored or repointed to another database is migrated
+     * there instead of being skipped on the strength of its old database's record.
+     */
+    public String getDatabaseFingerprint(String fingerprint, String jdbcUrl) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(databaseIdentity(jdbcUrl).getBytes(StandardCharsets.UTF_8));
+            return toHex(digest.digest());
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to fingerprint database " + jdbcUrl, e);
+        }
+    }
+
+    /**
+     * Database fingerprint recorded for every tenant, read with a single query
+     */
+    public Map<String, String> findRecordedFingerprints() {
+        ensureTable();
+
+        Map<String, String> recorded = new HashMap<>();
+        mainJdbcTemplate.query("SELECT tenant_id, fingerprint FROM tenant_migration_fingerprint",
+                rs -> {
+                    recorded.put(rs.getString("tenant_id"), rs.getString("fingerprint"));
+                });
+        return recorded;
+    }
+
+    /**
+     * Record that a tenant was successfully migrated and validated at the given database fingerprint
+     */
+    public void recordFingerprint(String tenantId, String fingerprint) {
+        try {
+            ensureTable();
+            mainJdbcTemplate.update(
+                    "INSERT INTO tenant_migration_fingerprint (tenant_id, fingerprint) VALUES (?, ?) " +
+                    "ON DUPLICATE KEY UPDATE fingerprint = VALUES(fingerprint), migrated_at = CURRENT_TIMESTAMP",
+                    tenantId, fingerprint);
+            logger.debug("Recorded migration fingerprint {} for tenant {}", fingerprint, tenantId);
+
+        } catch (Exception e) {
+            // Without a record the tenant is simply migrated again on the next startup
+            logger.warn("Could not record migration fingerprint for tenant {}: {}", tenantId, e.getMessage());
+        }
+    }
+
+    private String computeFingerprint(List<String> locations) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            for (String location : locations) {
+                String basePath = location.replaceFirst("^classpath:", "").replaceAll("/+$", "");
+
+                // Sort by relative path so the fingerprint does not depend on classpath ordering
+                Map<String, Resource> sorted = new TreeMap<>();
+                for (Resource resource : resolver.getResources("classpath*:" + basePath + "/**/*")) {
+                    if (!resource.isReadable()) {
+                        continue;
+                    }
+                    String url = resource.getURL().toString();
+                    int index = url.lastIndexOf(basePath + "/");
+                    sorted.put(index >= 0 ? url.substring(index) : url, resource);
+                }
+
+                for (Map.Entry<String, Resource> entry : sorted.entrySet()) {
+                    digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                    try (InputStream in = entry.getValue().getInputStream()) {
+                        digest.update(in.readAllBytes());
+                    }
+                }
+            }
+
+            String hex = toHex(digest.digest());
+            logger.info("Computed migration set fingerprint {} for locations {}", hex, locations);
+            return hex;
+
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException("Failed to fingerprint migrations in " + locations, e);
+        }
+    }
+
+    /**
+     * Host, port and database or file of a JDBC URL, without the connection properties
+     * that do not change which database it points at
+     */
+    static String databaseIdentity(String jdbcUrl) {
+        int end = jdbcUrl.length();
+        for (char separator : new char[] {'?', ';'}) {
+            int index = jdbcUrl.indexOf(separator);
+            if (index >= 0 && index < end) {
+                end = index;
+            }
+        }
+        return jdbcUrl.substring(0, end);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private void ensureTable() {
+        if (tableReady) {
+            return;
+        }
+        mainJdbcTemplate.execute(
+                "CREATE TABLE IF NOT EXISTS tenant_migration_fingerprint (" +
+                "    tenant_id VARCHAR(64) NOT NULL PRIMARY KEY," +
+                "    fingerprint CHAR(64) NOT NULL," +
+                "    migrated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci");
+        tableReady = true;
+    }
+}
@@ -0,0 +1,212 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-tenant migration leases in the main database's {@code migration_lease} table, so
+ * that of several nodes starting at once only one runs Flyway against a tenant. A lease
+ * is held for {@code app.flyway.lease.ttl-ms} and renewed in the background while its
+ * migration runs; the lease of a node that died mid-migration simply expires and can
+ * then be taken over. Expiry is stamped and checked with the main database's clock, so
+ * clock skew between nodes does not let one take a live lease.
+ *
+ * A lease that is taken over, or cannot be renewed before it expires, is lost: the
+ * migrating thread is interrupted and closing the lease fails.
+ */
+@Service
+public class MigrationLeaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigrationLeaseService.class);
+
+    // Current time of the main database in epoch milliseconds
+    private static final String DB_NOW_MS = "CAST(UNIX_TIMESTAMP(NOW(3)) AS DECIMAL(20, 3)) * 1000";
+
+    @Autowired
+    @Qualifier("mainJdbcTemplate")
+    private JdbcTemplate mainJdbcTemplate;
+
+    @Value("${app.flyway.lease.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.flyway.lease.ttl-ms:60000}")
+    private long ttlMs;
+
+    // Identifies this process, so a restarted node does not mistake an old lease for its own
+    private final String owner = localHostName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "migration-lease-renewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean tableReady;
+
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Take the tenant's lease if it is free or expired, null while another node holds it.
+     * The lease is renewed until it is closed.
+     */
+    public Lease tryAcquire(String tenantId) {
+        ensureTable();
+
+        boolean acquired;
+        try {
+            acquired = mainJdbcTemplate.update(
+                    "INSERT INTO migration_lease (tenant_id, owner, expires_at) VALUES (?, ?, " + DB_NOW_MS + " + ?)",
+                    tenantId, owner, ttlMs) == 1;
+        } catch (DuplicateKeyException e) {
+            // Taking over an expired lease is a conditional update, so only one node can win it
+            acquired = mainJdbcTemplate.update(
+                    "UPDATE migration_lease SET owner = ?, expires_at = " + DB_NOW_MS + " + ? " +
+                    "WHERE tenant_id = ? AND (expires_at < " + DB_NOW_MS + " OR owner = ?)",
+                    owner, ttlMs, tenantId, owner) == 1;
+        }
+        if (!acquired) {
+            return null;
+        }
+
+        logger.debug("Acquired migration lease for tenant {} as {}", tenantId, owner);
+        return new Lease(tenantId);
+    }
+
+    /**
+     * Whether another node holds an unexpired lease on the tenant
+     */
+    public boolean isHeldElsewhere(String tenantId) {
+        ensureTable();
+        Integer held = mainJdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM migration_lease WHERE tenant_id = ? AND owner <> ? AND expires_at >= " + DB_NOW_MS,
+                Integer.class, tenantId, owner);
+        return held != null && held > 0;
+    }
+
+    private void renew(Lease lease) {
+        try {
+            int updated = mainJdbcTemplate.update(
+                    "UPDATE migration_lease SET expires_at = " + DB_NOW_MS + " + ? WHERE tenant_id = ? AND owner = ?",
+                    ttlMs, lease.tenantId, owner);
+            if (updated == 0) {
+                lease.lose("it was taken over by another node");
+            } else {
+                lease.renewedAt = System.nanoTime();
+            }
+        } catch (Exception e) {
+            // The lease stays ours until it expires; past that another node may have taken it
+            if (System.nanoTime() - lease.renewedAt >= TimeUnit.MILLISECONDS.toNanos(ttlMs)) {
+                lease.lose("it could not be renewed before expiring: " + e.getMessage());
+            } else {
+                logger.warn("Could not renew migration lease for tenant {}: {}", lease.tenantId, e.getMessage());
+            }
+        }
+    }
+
+    private void release(String tenantId) {
+        try {
+            mainJdbcTemplate.update("DELETE FROM migration_lease WHERE tenant_id = ? AND owner = ?", tenantId, owner);
+            logger.debug("Released migration lease for tenant {}", tenantId);
+        } catch (Exception e) {
+            // The lease expires on its own
+            logger.warn("Could not release migration lease for tenant {}: {}", tenantId, e.getMessage());
+        }
+    }
+
+    private static String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    private void ensureTable() {
+        if (tableReady) {
+            return;
+        }
+        mainJdbcTemplate.execute(
+                "CREATE TABLE IF NOT EXISTS migration_lease (" +
+                "    tenant_id VARCHAR(64) NOT NULL PRIMARY KEY," +
+                "    owner VARCHAR(128) NOT NULL," +
+                "    expires_at BIGINT NOT NULL" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci");
+        tableReady = true;
+    }
+
+    /**
+     * A held migration lease, renewed every third of its time to live until closed.
+     * Closing a lease that was lost in the meantime fails, as another node may have
+     * migrated the tenant concurrently.
+     */
+    public class Lease implements AutoCloseable {
+
+        private final String tenantId;
+
+        // Thread migrating under the lease, interrupted when the lease is lost
+        private final Thread holder = Thread.currentThread();
+
+        private final ScheduledFuture<?> renewal;
+
+        private volatile long renewedAt = System.nanoTime();
+
+        private volatile String lostReason;
+
+        private Lease(String tenantId) {
+            this.tenantId = tenantId;
+            long interval = Math.max(1, ttlMs / 3);
+            this.renewal = renewer.scheduleAtFixedRate(() -> renew(this), interval, interval, TimeUnit.MILLISECONDS);
+        }
+
+        public boolean isLost() {
+            return lostReason != null;
+        }
+
+        private void lose(String reason) {
+            lostReason = reason;
+            renewal.cancel(false);
+            logger.error("Migration lease for tenant {} was lost because {}, interrupting its migration", tenantId, reason);
+            holder.interrupt();
+        }
+
+        @Override
+        public void close() {
+            renewal.cancel(false);
+            if (lostReason == null) {
+                release(tenantId);
+                return;
+            }
+            if (Thread.currentThread() == holder) {
+                // Clear the interrupt aimed at the migration, the caller sees the failure instead
+                Thread.interrupted();
+            }
+            throw new IllegalStateException("Migration lease for tenant " + tenantId + " was lost because " + lostReason);
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBContextHolder;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.PostEntityListener;
+import com.izicap.dynamicmultidatabase.model.BulkPostOperation;
+import com.izicap.dynamicmultidatabase.model.BulkPostOperationProgress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Set-based updates and deletes of a tenant's posts, for retention and re-labelling jobs
+ * that would otherwise load and save posts one by one.
+ *
+ * Jobs visit the matching posts in keyset order, by id or by creation time, at most
+ * {@code app.bulk.chunk-size} at a time: each chunk's ids are selected, updated or deleted
+ * with a single statement, and committed together with the job's position in the
+ * tenant's {@code bulk_operation_checkpoint} table, so row locks are only held for one
+ * chunk and an interrupted job resumes after its last committed chunk. A job without an
+ * explicit id gets one derived from its definition, which only resumes an unfinished run:
+ * once it completed, submitting it again runs it anew, as recurring jobs need. A completed
+ * job with an explicit id runs again only when the submission asks for a restart. Between chunks the
+ * job pauses for {@code app.bulk.pause-ms}, or {@code app.bulk.sleep-ratio} times as long
+ * as the chunk took if that is longer, giving other transactions and replicas time to
+ * catch up.
+ *
+ * Chunks go through the routing datasource, so they wait while the tenant is paused for a
+ * move and fail fast while it is unavailable. Changed ids are published to the post
+ * change observers once their chunk is committed.
+ */
+@Service
+public class PostBulkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostBulkService.class);
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    @Value("${app.bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.bulk.pause-ms:50}")
+    private long pauseMs;
+
+    @Value("${app.bulk.sleep-ratio:1.0}")
+    private double sleepRatio;
+
+    @Value("${app.bulk.threads:2}")
+    private int threads;
+
+    // Jobs started by this instance, keyed by tenant and job id
+    private final Map<String, BulkPostOperationProgress> jobs = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Running jobs stop after their current chunk and resume when resubmitted
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start a bulk operation in the background, or resume it after its last committed
+     * chunk when a job with the same id ran before. Returns the running job when it is
+     * already in progress.
+     */
+    public BulkPostOperationProgress submit(DBTypeEnum tenant, BulkPostOperation operation) throws SQLException {
+        validate(operation);
+        String definition = operation.describe();
+        boolean derivedId = operation.getJobId() == null || operation.getJobId().isBlank();
+        String jobId = derivedId ? deriveJobId(definition) : operation.getJobId().trim();
+        boolean restartCompleted = derivedId || operation.isRestart();
+        if (jobId.length() > 64) {
+            throw new IllegalArgumentException("Job id must not be longer than 64 characters");
+        }
+
+        BulkPostOperationProgress progress = new BulkPostOperationProgress(jobId, tenant.name(), definition);
+        progress.setState(BulkPostOperationProgress.RUNNING);
+        progress.setStartedAt(new Date());
+
+        BulkPostOperationProgress running = jobs.compute(jobKey(tenant, jobId), (key, existing) ->
+                existing != null && BulkPostOperationProgress.RUNNING.equals(existing.getState()) ? existing : progress);
+        if (running != progress) {
+            if (!running.getDefinition().equals(definition)) {
+                throw new IllegalStateException("Job " + jobId + " is running with a different definition");
+            }
+            return running;
+        }
+
+        Checkpoint checkpoint;
+        try {
+            checkpoint = inTenant(tenant, connection -> startCheckpoint(connection, jobId, operation, restartCompleted));
+        } catch (SQLException | RuntimeException e) {
+            jobs.remove(jobKey(tenant, jobId), progress);
+            throw e;
+        }
+        progress.setResumedRows(checkpoint.completed ? 0 : checkpoint.rowsAffected);
+        progress.setRowsAffected(checkpoint.rowsAffected);
+        progress.setChunks(checkpoint.chunks);
+        progress.setCursor(checkpoint.cursor);
+
+        if (checkpoint.completed) {
+            logger.info("Bulk {} job {} on {} already completed, skipping", operation.getOperation(), jobId, tenant);
+            progress.setState(BulkPostOperationProgress.COMPLETED);
+            return progress;
+        }
+
+        executor.execute(() -> run(tenant, operation, progress));
+        return progress;
+    }
+
+    /**
+     * Progress of a job, from this instance's runs or else from the tenant's checkpoint
+     * table; null when the job is unknown
+     */
+    public BulkPostOperationProgress getProgress(DBTypeEnum tenant, String jobId) throws SQLException {
+        BulkPostOperationProgress progress = jobs.get(jobKey(tenant, jobId));
+        if (progress != null) {
+            return progress;
+        }
+        return inTenant(tenant, connection -> loadCheckpoint(connection, tenant, jobId));
+    }
+
+    /**
+     * Every job recorded in the tenant's checkpoint table, including unfinished ones left
+     * by a crash, with the live progress of those running here
+     */
+    public List<BulkPostOperationProgress> listJobs(DBTypeEnum tenant) throws SQLException {
+        List<BulkPostOperationProgress> recorded = inTenant(tenant, connection -> {
+            List<BulkPostOperationProgress> result = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT job_id FROM bulk_operation_checkpoint ORDER BY updated_at DESC")) {
+                while (rs.next()) {
+                    result.add(loadCheckpoint(connection, tenant, rs.getString(1)));
+                }
+            }
+            return result;
+        });
+
+        List<BulkPostOperationProgress> result = new ArrayList<>(recorded.size());
+        for (BulkPostOperationProgress progress : recorded) {
+            BulkPostOperationProgress live = jobs.get(jobKey(tenant, progress.getJobId()));
+            result.add(live != null ? live : progress);
+        }
+        return result;
+    }
+
+    private void run(DBTypeEnum tenant, BulkPostOperation operation, BulkPostOperationProgress progress) {
+        String jobId = progress.getJobId();
+        try {
+            if (progress.getCursor() != null) {
+                logger.info("Resuming bulk {} job {} on {} after {} rows", operation.getOperation(), jobId, tenant, progress.getRowsAffected());
+            } else {
+                logger.info("Starting bulk {} job {} on {}: {}", operation.getOperation(), jobId, tenant, progress.getDefinition());
+            }
+
+            String cursor = progress.getCursor();
+            while (true) {
+                long chunkStart = System.nanoTime();
+                String position = cursor;
+                ChunkResult chunk = inTenant(tenant, connection -> applyChunk(connection, jobId, operation, position));
+
+                if (chunk.ids.isEmpty()) {
+                    progress.setState(BulkPostOperationProgress.COMPLETED);
+                    logger.info("Completed bulk {} job {} on {}: {} rows in {} chunks",
+                              operation.getOperation(), jobId, tenant, progress.getRowsAffected(), progress.getChunks());
+                    return;
+                }
+
+                // Rows changed concurrently may have stopped matching, which is rare enough for maintained counts to absorb
+                PostEntityListener.publishBulk(tenant, chunk.ids, BulkPostOperation.DELETE.equals(operation.getOperation())
+                        ? PostEntityListener.ChangeType.DELETED : PostEntityListener.ChangeType.UPDATED);
+                cursor = chunk.cursor;
+                progress.addChunk(chunk.rowsAffected, cursor);
+                logger.debug("Bulk job {} on {}: chunk of {} rows committed, cursor {}", jobId, tenant, chunk.rowsAffected, cursor);
+
+                long chunkMs = (System.nanoTime() - chunkStart) / 1_000_000;
+                Thread.sleep(Math.max(pauseMs, (long) (chunkMs * sleepRatio)));
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Bulk job {} on {} stopped after {} rows, resubmit it to resume", jobId, tenant, progress.getRowsAffected());
+            progress.setState(BulkPostOperationProgress.STOPPED);
+        } catch (Exception e) {
+            logger.error("Bulk job {} on {} failed after {} rows", jobId, tenant, progress.getRowsAffected(), e);
+            progress.setError(e.getMessage());
+            progress.setState(BulkPostOperationProgress.FAILED);
+        }
+    }
+
+    /**
+     * Select the next chunk after the cursor, apply the operation to it and advance the
+     * checkpoint, all in one transaction
+     */
+    private ChunkResult applyChunk(Connection connection, String jobId, BulkPostOperation operation, String cursor)
+            throws SQLException {
+        boolean byCreatedAt = BulkPostOperation.CHUNK_BY_CREATED_AT.equals(operation.getChunkBy());
+        List<Object> criteriaParams = new ArrayList<>();
+        String criteria = criteria(operation, criteriaParams);
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            ChunkResult chunk = new ChunkResult();
+
+            // Keyset pagination, so every chunk is found through the index instead of rescanning earlier ones
+            StringBuilder select = new StringBuilder("SELECT id, created_at FROM post WHERE ");
+            List<Object> params = new ArrayList<>();
+            if (byCreatedAt) {
+                select.append("created_at IS NOT NULL");
+                if (cursor != null) {
+                    int separator = cursor.lastIndexOf('|');
+                    Timestamp createdAt = Timestamp.valueOf(cursor.substring(0, separator));
+                    long id = Long.parseLong(cursor.substring(separator + 1));
+                    select.append(" AND (created_at > ? OR (created_at = ? AND id > ?))");
+                    params.add(createdAt);
+                    params.add(createdAt);
+                    params.add(id);
+                }
+            } else {
+                select.append("id > ?");
+                params.add(cursor != null ? Long.parseLong(cursor) : Long.MIN_VALUE);
+            }
+            select.append(criteria).append(byCreatedAt ? " ORDER BY created_at, id" : " ORDER BY id").append(" LIMIT ?");
+            params.addAll(criteriaParams);
+            params.add(chunkSize);
+
+            try (PreparedStatement statement = connection.prepareStatement(select.toString())) {
+                bind(statement, params, 1);
+                try (ResultSet rs = statement.executeQuery()) {
+                    Timestamp lastCreatedAt = null;
+                    while (rs.next()) {
+                        chunk.ids.add(rs.getLong(1));
+                        lastCreatedAt = rs.getTimestamp(2);
+                    }
+                    if (!chunk.ids.isEmpty()) {
+                        long lastId = chunk.ids.get(chunk.ids.size() - 1);
+                        chunk.cursor = byCreatedAt ? lastCreatedAt + "|" + lastId : String.valueOf(lastId);
+                    }
+                }
+            }
+
+            if (chunk.ids.isEmpty()) {
+                finishCheckpoint(connection, jobId);
+                connection.commit();
+                return chunk;
+            }
+
+            // The criteria are checked again in case a row changed since it was selected
+            String idList = " id IN (" + "?, ".repeat(chunk.ids.size() - 1) + "?)";
+            List<Object> applyParams = new ArrayList<>();
+            String apply;
+            if (BulkPostOperation.DELETE.equals(operation.getOperation())) {
+                apply = "DELETE FROM post WHERE" + idList + criteria;
+            } else {
+                apply = "UPDATE post SET name = ?, updated_at = CURRENT_TIMESTAMP WHERE" + idList + criteria;
+                applyParams.add(operation.getSetName());
+            }
+            applyParams.addAll(chunk.ids);
+            applyParams.addAll(criteriaParams);
+
+            try (PreparedStatement statement = connection.prepareStatement(apply)) {
+                bind(statement, applyParams, 1);
+                chunk.rowsAffected = statement.executeUpdate();
+            }
+
+            advanceCheckpoint(connection, jobId, chunk);
+            connection.commit();
+            return chunk;
+
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private String criteria(BulkPostOperation operation, List<Object> params) {
+        StringBuilder criteria = new StringBuilder();
+        if (operation.getCreatedAfter() != null) {
+            criteria.append(" AND created_at >= ?");
+            params.add(new Timestamp(operation.getCreatedAfter().getTime()));
+        }
+        if (operation.getCreatedBefore() != null) {
+            criteria.append(" AND created_at < ?");
+            params.add(new Timestamp(operation.getCreatedBefore().getTime()));
+        }
+        if (operation.getNameEquals() != null) {
+            criteria.append(" AND name = ?");
+            params.add(operation.getNameEquals());
+        }
+        return criteria.toString();
+    }
+
+    private void validate(BulkPostOperation operation) {
+        String type = operation.getOperation();
+        if (!BulkPostOperation.DELETE.equals(type) && !BulkPostOperation.UPDATE.equals(type)) {
+            throw new IllegalArgumentException("Operation must be delete or update");
+        }
+        if (!BulkPostOperation.CHUNK_BY_ID.equals(operation.getChunkBy())
+                && !BulkPostOperation.CHUNK_BY_CREATED_AT.equals(operation.getChunkBy())) {
+            throw new IllegalArgumentException("chunkBy must be id or created_at");
+        }
+        if (BulkPostOperation.UPDATE.equals(type) && (operation.getSetName() == null || operation.getSetName().isBlank())) {
+            throw new IllegalArgumentException("Updates need setName");
+        }
+        // A bulk job is not the way to empty a tenant by accident
+        if (BulkPostOperation.DELETE.equals(type) && operation.getCreatedAfter() == null
+                && operation.getCreatedBefore() == null && operation.getNameEquals() == null) {
+            throw new IllegalArgumentException("Deletes need at least one of createdAfter, createdBefore or nameEquals");
+        }
+    }
+
+    private String deriveJobId(String definition) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(definition.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private String jobKey(DBTypeEnum tenant, String jobId) {
+        return tenant.name() + ":" + jobId;
+    }
+
+    /**
+     * Load the job's checkpoint, recording a new one when the job never ran, or resetting
+     * it when the job completed and restartCompleted is set
+     */
+    private Checkpoint startCheckpoint(Connection connection, String jobId, BulkPostOperation operation,
+                                       boolean restartCompleted) throws SQLException {
+        Checkpoint checkpoint = new Checkpoint();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT definition, cursor_position, rows_affected, chunks, completed FROM bulk_operation_checkpoint WHERE job_id = ?")) {
+            statement.setString(1, jobId);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    if (!operation.describe().equals(rs.getString("definition"))) {
+                        throw new IllegalStateException("Job " + jobId + " was started with a different definition: "
+                                + rs.getString("definition"));
+                    }
+                    checkpoint.cursor = rs.getString("cursor_position");
+                    checkpoint.rowsAffected = rs.getLong("rows_affected");
+                    checkpoint.chunks = rs.getLong("chunks");
+                    checkpoint.completed = rs.getBoolean("completed");
+                    if (checkpoint.completed && restartCompleted) {
+                        return restartCheckpoint(connection, jobId);
+                    }
+                    return checkpoint;
+                }
+            }
+        }
+
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO bulk_operation_checkpoint (job_id, definition) VALUES (?, ?)")) {
+            statement.setString(1, jobId);
+            statement.setString(2, operation.describe());
+            statement.executeUpdate();
+        }
+        return checkpoint;
+    }
+
+    private Checkpoint restartCheckpoint(Connection connection, String jobId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE bulk_operation_checkpoint SET cursor_position = NULL, rows_affected = 0, chunks = 0, " +
+                "completed = FALSE, updated_at = CURRENT_TIMESTAMP WHERE job_id = ? AND completed = TRUE")) {
+            statement.setString(1, jobId);
+            // Only one of several submissions racing to restart the job gets to reset it
+            if (statement.executeUpdate() == 0) {
+                throw new IllegalStateException("Job " + jobId + " was restarted by another submission");
+            }
+        }
+        logger.info("Restarting completed bulk job {}", jobId);
+        return new Checkpoint();
+    }
+
+    private void advanceCheckpoint(Connection connection, String jobId, ChunkResult chunk) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE bulk_operation_checkpoint SET cursor_position = ?, rows_affected = rows_affected + ?, " +
+                "chunks = chunks + 1, updated_at = CURRENT_TIMESTAMP WHERE job_id = ?")) {
+            statement.setString(1, chunk.cursor);
+            statement.setLong(2, chunk.rowsAffected);
+            statement.setString(3, jobId);
+            statement.executeUpdate();
+        }
+    }
+
+    private void finishCheckpoint(Connection connection, String jobId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE bulk_operation_checkpoint SET completed = TRUE, updated_at = CURRENT_TIMESTAMP WHERE job_id = ?")) {
+            statement.setString(1, jobId);
+            statement.executeUpdate();
+        }
+    }
+
+    private BulkPostOperationProgress loadCheckpoint(Connection connection, DBTypeEnum tenant, String jobId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT definition, cursor_position, rows_affected, chunks, completed, updated_at " +
+                "FROM bulk_operation_checkpoint WHERE job_id = ?")) {
+            statement.setString(1, jobId);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                BulkPostOperationProgress progress = new BulkPostOperationProgress(jobId, tenant.name(), rs.getString("definition"));
+                progress.setCursor(rs.getString("cursor_position"));
+                progress.setRowsAffected(rs.getLong("rows_affected"));
+                progress.setChunks(rs.getLong("chunks"));
+                progress.setState(rs.getBoolean("completed") ? BulkPostOperationProgress.COMPLETED : BulkPostOperationProgress.STOPPED);
+                progress.setUpdatedAt(rs.getTimestamp("updated_at"));
+                return progress;
+            }
+        }
+    }
+
+    private void bind(PreparedStatement statement, List<Object> params, int firstIndex) throws SQLException {
+        int index = firstIndex;
+        for (Object param : params) {
+            statement.setObject(index++, param);
+        }
+    }
+
+    private <T> T inTenant(DBTypeEnum tenant, ConnectionWork<T> work) throws SQLException {
+        DBTypeEnum previous = DBContextHolder.getCurrentDb();
+        DBContextHolder.setCurrentDb(tenant);
+        try (Connection connection = multiRoutingDataSource.getConnection()) {
+            return work.apply(connection);
+        } finally {
+            if (previous != null) {
+                DBContextHolder.setCurrentDb(previous);
+            } else {
+                DBContextHolder.clear();
+            }
+        }
+    }
+
+    private interface ConnectionWork<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    private static class Checkpoint {
+        String cursor;
+        long rowsAffected;
+        long chunks;
+        boolean completed;
+    }
+
+    private static class ChunkResult {
+        final List<Long> ids = new ArrayList<>();
+        String cursor;
+        int rowsAffected;
+    }
+}
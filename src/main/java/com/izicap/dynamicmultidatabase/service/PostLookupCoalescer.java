@@ -0,0 +1,294 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBContextHolder;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.Post;
+import com.izicap.dynamicmultidatabase.PostRepository;
+import com.izicap.dynamicmultidatabase.tracing.Span;
+import com.izicap.dynamicmultidatabase.tracing.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent single-post lookups per tenant into batched {@code IN (...)} queries,
+ * in the style of a DataLoader. The first lookup of a tenant opens a batch that is
+ * dispatched after {@code app.lookup-coalescing.window-ms}, or as soon as it holds
+ * {@code app.lookup-coalescing.max-batch-size} ids, so coalescing adds at most one window
+ * of latency. Lookups for an id that is already queued or being loaded for the same tenant
+ * share that lookup's result.
+ *
+ * Batches are loaded on a bounded pool with at most {@code app.lookup-coalescing.queue-capacity}
+ * batches waiting. While it is saturated, lookups query the database on the calling thread
+ * instead of queueing behind it, so the window stays the bound on the added latency.
+ *
+ * The tenant is captured when the lookup is made and batches never mix tenants. Returned
+ * posts are detached and may be shared between callers, so they must not be modified.
+ */
+@Service
+public class PostLookupCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostLookupCoalescer.class);
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Value("${app.lookup-coalescing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.lookup-coalescing.window-ms:2}")
+    private long windowMs;
+
+    @Value("${app.lookup-coalescing.max-batch-size:100}")
+    private int maxBatchSize;
+
+    @Value("${app.lookup-coalescing.threads:4}")
+    private int threads;
+
+    @Value("${app.lookup-coalescing.queue-capacity:16}")
+    private int queueCapacity;
+
+    private final Map<DBTypeEnum, TenantLoader> loaders = new ConcurrentHashMap<>();
+
+    private final AtomicLong lookups = new AtomicLong();
+
+    private final AtomicLong sharedLookups = new AtomicLong();
+
+    private final AtomicLong queries = new AtomicLong();
+
+    private final AtomicLong directLookups = new AtomicLong();
+
+    private ScheduledExecutorService windowTimer;
+
+    private ThreadPoolExecutor loadExecutor;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("Post lookup coalescing is disabled, lookups query the tenant database directly");
+            return;
+        }
+
+        windowTimer = Executors.newSingleThreadScheduledExecutor();
+        loadExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), new ThreadPoolExecutor.AbortPolicy());
+        logger.info("Post lookup coalescing enabled (windowMs={}, maxBatchSize={}, threads={}, queueCapacity={})",
+                  windowMs, maxBatchSize, threads, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        windowTimer.shutdownNow();
+        loadExecutor.shutdown();
+    }
+
+    /**
+     * Look up a post of the given tenant. Without coalescing the lookup runs on the calling
+     * thread; otherwise the returned future completes once the batch containing it was loaded.
+     */
+    public CompletableFuture<Optional<Post>> load(DBTypeEnum tenant, long id) {
+        lookups.incrementAndGet();
+
+        if (!enabled) {
+            return loadDirectly(tenant, id);
+        }
+        if (loadExecutor.getQueue().remainingCapacity() == 0) {
+            // Saturated: a new batch would wait longer than a query of its own takes
+            directLookups.incrementAndGet();
+            return loadDirectly(tenant, id);
+        }
+
+        TenantLoader loader = loaders.computeIfAbsent(tenant, TenantLoader::new);
+        List<Long> fullBatch = null;
+        Span traceParent = null;
+        CompletableFuture<Optional<Post>> result;
+
+        synchronized (loader) {
+            result = loader.inFlight.get(id);
+            if (result != null) {
+                sharedLookups.incrementAndGet();
+                return result;
+            }
+
+            result = new CompletableFuture<>();
+            loader.inFlight.put(id, result);
+            if (loader.pending.isEmpty()) {
+                loader.traceParent = Tracing.current();
+            }
+            loader.pending.add(id);
+
+            if (loader.pending.size() >= maxBatchSize) {
+                traceParent = loader.traceParent;
+                fullBatch = loader.takePending();
+            } else if (loader.pending.size() == 1) {
+                long window = loader.window;
+                windowTimer.schedule(() -> dispatchWindow(loader, window), windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (fullBatch != null) {
+            dispatch(loader, fullBatch, traceParent);
+        }
+        return result;
+    }
+
+    /**
+     * Lookup, query and sharing counters since startup
+     */
+    public Map<String, Object> getStats() {
+        long lookupCount = lookups.get();
+        long queryCount = queries.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("lookups", lookupCount);
+        stats.put("sharedLookups", sharedLookups.get());
+        stats.put("queries", queryCount);
+        stats.put("directLookups", directLookups.get());
+        stats.put("lookupsPerQuery", queryCount > 0 ? Math.round(lookupCount * 100.0 / queryCount) / 100.0 : 0.0);
+        return stats;
+    }
+
+    private void dispatchWindow(TenantLoader loader, long window) {
+        List<Long> batch;
+        Span traceParent;
+        synchronized (loader) {
+            // The batch this timer was set for was already dispatched because it filled up
+            if (loader.window != window || loader.pending.isEmpty()) {
+                return;
+            }
+            traceParent = loader.traceParent;
+            batch = loader.takePending();
+        }
+        dispatch(loader, batch, traceParent);
+    }
+
+    private CompletableFuture<Optional<Post>> loadDirectly(DBTypeEnum tenant, long id) {
+        DBTypeEnum previous = DBContextHolder.getCurrentDb();
+        try {
+            DBContextHolder.setCurrentDb(tenant);
+            queries.incrementAndGet();
+            return CompletableFuture.completedFuture(postRepository.findById(id));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            restoreContext(previous);
+        }
+    }
+
+    private void dispatch(TenantLoader loader, List<Long> batch, Span traceParent) {
+        try {
+            loadExecutor.execute(() -> loadBatch(loader, batch, traceParent));
+        } catch (RejectedExecutionException e) {
+            if (loadExecutor.isShutdown()) {
+                complete(loader, batch, null, e);
+                return;
+            }
+            // The pool filled up since the lookups were queued: load the batch on this thread
+            directLookups.addAndGet(batch.size());
+            loadBatch(loader, batch, traceParent);
+        }
+    }
+
+    // Traced as part of the request whose lookup opened the batch. Also runs on the caller's
+    // thread when the pool is full, so the caller's tenant context is restored afterwards
+    private void loadBatch(TenantLoader loader, List<Long> batch, Span traceParent) {
+        DBTypeEnum previous = DBContextHolder.getCurrentDb();
+        long startTime = System.nanoTime();
+        Span span = Tracing.startSpan(traceParent, "post.lookup.batch")
+                .setAttribute("tenant", loader.tenant.name())
+                .setAttribute("lookup.batch_size", batch.size());
+        try {
+            DBContextHolder.setCurrentDb(loader.tenant);
+            queries.incrementAndGet();
+
+            Map<Long, Post> found = new HashMap<>();
+            for (Post post : postRepository.findAllById(batch)) {
+                found.put(post.getId(), post);
+            }
+            // Closed before the callers resume, so their traces never end before it
+            span.close();
+            complete(loader, batch, found, null);
+
+            logger.debug("Loaded {} coalesced post lookups from {} in {} us",
+                       batch.size(), loader.tenant, (System.nanoTime() - startTime) / 1000);
+
+        } catch (Exception e) {
+            logger.warn("Coalesced lookup of {} posts from {} failed: {}", batch.size(), loader.tenant, e.getMessage());
+            span.setError(e).close();
+            complete(loader, batch, null, e);
+        } finally {
+            restoreContext(previous);
+        }
+    }
+
+    private static void restoreContext(DBTypeEnum previous) {
+        if (previous != null) {
+            DBContextHolder.setCurrentDb(previous);
+        } else {
+            DBContextHolder.clear();
+        }
+    }
+
+    private void complete(TenantLoader loader, List<Long> batch, Map<Long, Post> found, Exception failure) {
+        List<CompletableFuture<Optional<Post>>> results = new ArrayList<>(batch.size());
+        synchronized (loader) {
+            // Later lookups of these ids start a new batch instead of sharing a finished one
+            for (Long id : batch) {
+                results.add(loader.inFlight.remove(id));
+            }
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (failure != null) {
+                results.get(i).completeExceptionally(failure);
+            } else {
+                results.get(i).complete(Optional.ofNullable(found.get(batch.get(i))));
+            }
+        }
+    }
+
+    private static class TenantLoader {
+        final DBTypeEnum tenant;
+        // Guarded by the loader's monitor; holds queued and loading ids
+        final Map<Long, CompletableFuture<Optional<Post>>> inFlight = new HashMap<>();
+        List<Long> pending = new ArrayList<>();
+        long window;
+        // Current span of the lookup that opened the pending batch
+        Span traceParent;
+
+        TenantLoader(DBTypeEnum tenant) {
+            this.tenant = tenant;
+        }
+
+        List<Long> takePending() {
+            List<Long> batch = pending;
+            pending = new ArrayList<>();
+            traceParent = null;
+            window++;
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.PostEntityListener;
+import com.izicap.dynamicmultidatabase.model.PartitionMaintenanceResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the monthly partitions of tenants whose post table was range-partitioned by
+ * created_at (see {@code db/partitioning}). Partitions for the coming months are split
+ * off the catch-all partition, and partitions older than the retention period are
+ * exchanged into standalone tables, then kept as archives or dropped, both of which are
+ * metadata operations instead of row-by-row deletes.
+ *
+ * A freshly partitioned table has all its rows in the catch-all partition. The first
+ * maintenance splits it into monthly partitions starting at the oldest created_at, so
+ * history becomes subject to retention; that one reorganization copies the table.
+ *
+ * Rows leaving through an exchange bypass triggers and entity listeners, so their ids
+ * are released from {@code post_id_guard} and published as deleted afterwards.
+ */
+@Service
+public class PostPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostPartitionService.class);
+
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("p\\d{6}");
+
+    private static final String ARCHIVE_PREFIX = "post_archive_";
+
+    private static final String EXPIRED_PREFIX = "post_expired_";
+
+    private static final String ID_GUARD_TABLE = "post_id_guard";
+
+    private static final int ID_PAGE_SIZE = 1000;
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    @Value("${app.partitioning.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${app.partitioning.retention-months:0}")
+    private int retentionMonths;
+
+    @Value("${app.partitioning.expired-action:archive}")
+    private String expiredAction;
+
+    @Value("${app.partitioning.maintain-on-startup:true}")
+    private boolean maintainOnStartup;
+
+    /**
+     * Split off the upcoming partitions right after startup migrations partitioned a tenant
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void maintainOnStartup() {
+        if (enabled && maintainOnStartup) {
+            maintainAll();
+        }
+    }
+
+    @Scheduled(cron = "${app.partitioning.maintenance-cron:0 15 3 * * *}")
+    public void scheduledMaintenance() {
+        if (enabled) {
+            logger.info("Starting scheduled post partition maintenance");
+            maintainAll();
+        }
+    }
+
+    /**
+     * Maintain the post partitions of every tenant, one tenant at a time
+     */
+    public List<PartitionMaintenanceResult> maintainAll() {
+        List<PartitionMaintenanceResult> results = new ArrayList<>();
+        for (DBTypeEnum tenant : DBTypeEnum.values()) {
+            results.add(maintainTenant(tenant));
+        }
+        return results;
+    }
+
+    /**
+     * Add partitions up to {@code app.partitioning.months-ahead} months ahead and expire
+     * partitions older than {@code app.partitioning.retention-months}. Tenants whose post
+     * table is not partitioned are reported and left alone.
+     */
+    public PartitionMaintenanceResult maintainTenant(DBTypeEnum tenant) {
+        PartitionMaintenanceResult result = new PartitionMaintenanceResult(tenant.name());
+        if (multiRoutingDataSource.isCold(tenant)) {
+            logger.debug("Tenant {} is offloaded to cold storage, skipping partition maintenance", tenant);
+            return result;
+        }
+        if (!multiRoutingDataSource.isOwned(tenant)) {
+            logger.debug("Tenant {} is owned by another node, skipping partition maintenance", tenant);
+            return result;
+        }
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(multiRoutingDataSource.getGatedDataSource(tenant));
+
+            Map<String, String> partitions = listPartitions(jdbcTemplate);
+            if (partitions.isEmpty()) {
+                logger.debug("Post table of tenant {} is not partitioned, skipping maintenance", tenant);
+                return result;
+            }
+            result.setPartitioned(true);
+
+            addUpcomingPartitions(jdbcTemplate, tenant, partitions, result);
+            if (retentionMonths > 0) {
+                expirePartitions(jdbcTemplate, tenant, result);
+            }
+
+            listPartitions(jdbcTemplate).keySet().stream()
+                    .filter(name -> MONTHLY_PARTITION.matcher(name).matches())
+                    .forEach(result.getPartitions()::add);
+
+            if (!result.getAdded().isEmpty() || !result.getArchived().isEmpty() || !result.getDropped().isEmpty()) {
+                logger.info("Maintained post partitions of tenant {}: added {}, archived {}, dropped {}",
+                          tenant, result.getAdded(), result.getArchived(), result.getDropped());
+            }
+
+        } catch (Exception e) {
+            logger.error("Post partition maintenance failed for tenant {}", tenant, e);
+            result.setError(e.getMessage());
+        }
+        return result;
+    }
+
+    private void addUpcomingPartitions(JdbcTemplate jdbcTemplate, DBTypeEnum tenant,
+                                       Map<String, String> partitions, PartitionMaintenanceResult result) {
+        String catchAll = null;
+        long highestBound = Long.MIN_VALUE;
+        for (Map.Entry<String, String> partition : partitions.entrySet()) {
+            if ("MAXVALUE".equalsIgnoreCase(partition.getValue())) {
+                catchAll = partition.getKey();
+            } else {
+                highestBound = Math.max(highestBound, Long.parseLong(partition.getValue()));
+            }
+        }
+
+        // Bounds are epoch seconds of the next month's start in UTC, matching UNIX_TIMESTAMP(created_at)
+        YearMonth currentMonth = YearMonth.now(ZoneOffset.UTC);
+        YearMonth firstMonth = currentMonth;
+        if (highestBound != Long.MIN_VALUE) {
+            firstMonth = monthOf(highestBound);
+        } else if (catchAll != null) {
+            // Nothing split off yet: start at the oldest row, so history lands in its own month
+            Long oldest = jdbcTemplate.queryForObject(
+                    "SELECT MIN(UNIX_TIMESTAMP(created_at)) FROM post PARTITION (" + quote(catchAll) + ")", Long.class);
+            if (oldest != null) {
+                firstMonth = monthOf(oldest);
+            }
+        }
+        if (firstMonth.isAfter(currentMonth)) {
+            firstMonth = currentMonth;
+        }
+
+        Map<String, Long> upcoming = upcomingPartitions(firstMonth, currentMonth.plusMonths(monthsAhead), highestBound);
+        if (upcoming.isEmpty()) {
+            return;
+        }
+
+        StringJoiner definitions = new StringJoiner(", ", "(", ")");
+        upcoming.forEach((name, bound) -> definitions.add("PARTITION " + name + " VALUES LESS THAN (" + bound + ")"));
+
+        if (catchAll != null) {
+            // Rows already in the catch-all partition move to the partition of their month
+            definitions.add("PARTITION " + quote(catchAll) + " VALUES LESS THAN MAXVALUE");
+            jdbcTemplate.execute("ALTER TABLE post REORGANIZE PARTITION " + quote(catchAll) + " INTO " + definitions);
+        } else {
+            jdbcTemplate.execute("ALTER TABLE post ADD PARTITION " + definitions);
+        }
+        result.getAdded().addAll(upcoming.keySet());
+        logger.debug("Added post partitions {} for tenant {}", upcoming.keySet(), tenant);
+    }
+
+    /**
+     * Monthly partitions from firstMonth through lastMonth not yet covered by highestBound,
+     * in order, mapped to their exclusive upper bound
+     */
+    static Map<String, Long> upcomingPartitions(YearMonth firstMonth, YearMonth lastMonth, long highestBound) {
+        Map<String, Long> upcoming = new LinkedHashMap<>();
+        for (YearMonth month = firstMonth; !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            long bound = startOf(month.plusMonths(1));
+            if (bound > highestBound) {
+                upcoming.put(month.format(PARTITION_MONTH), bound);
+            }
+        }
+        return upcoming;
+    }
+
+    private void expirePartitions(JdbcTemplate jdbcTemplate, DBTypeEnum tenant, PartitionMaintenanceResult result) {
+        long cutoff = startOf(YearMonth.now(ZoneOffset.UTC).minusMonths(retentionMonths));
+        boolean archive = !"drop".equalsIgnoreCase(expiredAction.trim());
+        Map<String, String> partitions = listPartitions(jdbcTemplate);
+
+        // Tables of dropped partitions left behind by a run that failed before releasing their ids
+        for (String table : jdbcTemplate.queryForList(
+                "SELECT TABLE_NAME FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME LIKE ?",
+                String.class, EXPIRED_PREFIX.replace("_", "\\_") + "%")) {
+            if (!partitions.containsKey(table.substring(EXPIRED_PREFIX.length()))) {
+                releaseIds(jdbcTemplate, tenant, table);
+                jdbcTemplate.execute("DROP TABLE " + quote(table));
+            }
+        }
+
+        for (Map.Entry<String, String> partition : partitions.entrySet()) {
+            String name = partition.getKey();
+            if (!MONTHLY_PARTITION.matcher(name).matches() || Long.parseLong(partition.getValue()) > cutoff) {
+                continue;
+            }
+
+            // Dropped partitions are exchanged as well, so their ids can be released and published
+            String exchangeTable = (archive ? ARCHIVE_PREFIX : EXPIRED_PREFIX) + name;
+            if (tableExists(jdbcTemplate, exchangeTable)) {
+                // A previous run exchanged the partition but failed before finishing
+                Long rows = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM post PARTITION (" + quote(name) + ")", Long.class);
+                if (rows != null && rows > 0) {
+                    logger.warn("Table {} of tenant {} already exists while partition {} still has {} rows, skipping",
+                              exchangeTable, tenant, name, rows);
+                    continue;
+                }
+            } else {
+                jdbcTemplate.execute("CREATE TABLE " + quote(exchangeTable) + " LIKE post");
+                jdbcTemplate.execute("ALTER TABLE " + quote(exchangeTable) + " REMOVE PARTITIONING");
+                jdbcTemplate.execute("ALTER TABLE post EXCHANGE PARTITION " + quote(name) +
+                        " WITH TABLE " + quote(exchangeTable));
+            }
+
+            jdbcTemplate.execute("ALTER TABLE post DROP PARTITION " + quote(name));
+            result.getDropped().add(name);
+
+            releaseIds(jdbcTemplate, tenant, exchangeTable);
+            if (archive) {
+                result.getArchived().add(exchangeTable);
+            } else {
+                jdbcTemplate.execute("DROP TABLE " + quote(exchangeTable));
+            }
+        }
+    }
+
+    /**
+     * Release the ids of rows exchanged out of the post table from the id guard, and publish
+     * them as deleted, so counts, data versions and search indexes forget them
+     */
+    private void releaseIds(JdbcTemplate jdbcTemplate, DBTypeEnum tenant, String exchangeTable) {
+        boolean guarded = tableExists(jdbcTemplate, ID_GUARD_TABLE);
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM " + quote(exchangeTable) + " WHERE id > ? ORDER BY id LIMIT " + ID_PAGE_SIZE,
+                    Long.class, lastId);
+            if (ids.isEmpty()) {
+                return;
+            }
+            if (guarded) {
+                jdbcTemplate.update("DELETE FROM " + ID_GUARD_TABLE + " WHERE id IN (" +
+                        "?, ".repeat(ids.size() - 1) + "?)", ids.toArray());
+            }
+            PostEntityListener.publishBulk(tenant, ids, PostEntityListener.ChangeType.DELETED);
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+
+    /**
+     * Partition names of the post table mapped to their upper bound, in partition order;
+     * empty when the table is not partitioned
+     */
+    private Map<String, String> listPartitions(JdbcTemplate jdbcTemplate) {
+        Map<String, String> partitions = new LinkedHashMap<>();
+        jdbcTemplate.query(
+                "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'post' AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION",
+                rs -> {
+                    partitions.put(rs.getString("PARTITION_NAME"), rs.getString("PARTITION_DESCRIPTION"));
+                });
+        return partitions;
+    }
+
+    private boolean tableExists(JdbcTemplate jdbcTemplate, String table) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?",
+                Long.class, table);
+        return count != null && count > 0;
+    }
+
+    static YearMonth monthOf(long epochSeconds) {
+        return YearMonth.from(Instant.ofEpochSecond(epochSeconds).atZone(ZoneOffset.UTC));
+    }
+
+    static long startOf(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+    }
+
+    private String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+}
@@ -0,0 +1,569 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBContextHolder;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.Post;
+import com.izicap.dynamicmultidatabase.PostEntityListener;
+import com.izicap.dynamicmultidatabase.PostNgramIndex;
+import com.izicap.dynamicmultidatabase.TenantUnavailableException;
+import com.izicap.dynamicmultidatabase.model.ChangeFeedPage;
+import com.izicap.dynamicmultidatabase.model.PostSearchResult;
+import com.izicap.dynamicmultidatabase.tracing.Span;
+import com.izicap.dynamicmultidatabase.tracing.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Substring and keyword search over post names. The database path uses the n-gram
+ * FULLTEXT index added by the V6 migration, or {@code LIKE} on tenants without it.
+ * With {@code app.search.ngram.enabled}, every tenant served here also gets an in-memory
+ * {@link PostNgramIndex}: it is loaded by id once and then kept current from the tenant's
+ * change feed every {@code app.search.ngram.refresh-interval-ms}, while deletes and local
+ * writes are applied as they commit. Every {@code app.search.ngram.rebuild-interval-ms} the
+ * index is loaded again beside the live one and swapped in, which drops rows deleted by
+ * raw JDBC writers and anything else the incremental refresh missed. A tenant growing
+ * beyond {@code app.search.ngram.max-posts} loses its in-memory index and is searched in
+ * the database again.
+ *
+ * The in-memory index only supplies candidate ids; the posts are read back by primary
+ * key and checked again, so a stale index can miss recent renames but never returns a
+ * deleted or non-matching post. More candidates than requested are read, so stale ones
+ * do not crowd out real matches. Latencies of every path are kept for comparison.
+ */
+@Service
+public class PostSearchService implements PostEntityListener.Observer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostSearchService.class);
+
+    private static final int MAX_TERMS = 8;
+
+    // Characters with a meaning in FULLTEXT boolean mode
+    private static final String OPERATORS = "+-<>()~*\"@";
+
+    private static final long INDEX_CHECK_INTERVAL_MS = 60_000;
+
+    private static final int REFRESH_PAGE_SIZE = 1000;
+
+    // Changes committed this long before a full load started are read again from the change
+    // feed, covering transactions that were still open during the load
+    private static final long LOAD_OVERLAP_MS = 60_000;
+
+    // Candidates read per requested post at most, when stale ones keep failing the recheck
+    private static final int MAX_CANDIDATE_FACTOR = 16;
+
+    private static final RowMapper<Post> POST_ROW_MAPPER = (rs, rowNum) -> {
+        Post post = new Post(rs.getLong("id"), rs.getString("name"));
+        post.setCreatedAt(rs.getTimestamp("created_at"));
+        post.setUpdatedAt(rs.getTimestamp("updated_at"));
+        return post;
+    };
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @Value("${app.search.max-results:100}")
+    private int maxResults;
+
+    @Value("${app.search.ngram.enabled:false}")
+    private boolean ngramEnabled;
+
+    @Value("${app.search.ngram.max-posts:200000}")
+    private int ngramMaxPosts;
+
+    @Value("${app.search.ngram.rebuild-interval-ms:3600000}")
+    private long ngramRebuildIntervalMs;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<DBTypeEnum, TenantIndex> indexes = new ConcurrentHashMap<>();
+
+    // Whether each tenant has the FULLTEXT index, with the time it was checked
+    private final Map<DBTypeEnum, long[]> fulltextChecks = new ConcurrentHashMap<>();
+
+    private final Map<String, LatencyStats> latencies = new ConcurrentHashMap<>();
+
+    // Set once startup migrations have run, the indexes are loaded from migrated tables
+    private volatile boolean migrated;
+
+    @PostConstruct
+    public void start() {
+        jdbcTemplate = new JdbcTemplate(multiRoutingDataSource);
+        if (ngramEnabled) {
+            PostEntityListener.addObserver(this);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        PostEntityListener.removeObserver(this);
+    }
+
+    /**
+     * Posts whose name contains every whitespace-separated term of the query. Uses the
+     * in-memory index when preferred and loaded, the database otherwise; with compare,
+     * an in-memory search is repeated in the database and both are reported.
+     */
+    public PostSearchResult search(DBTypeEnum tenant, String query, int limit, boolean preferMemory, boolean compare) {
+        List<String> terms = parseTerms(query);
+        int size = Math.max(1, Math.min(limit, maxResults));
+
+        TenantIndex index = indexes.get(tenant);
+        if (!preferMemory || index == null || !index.ready) {
+            return searchDatabase(tenant, terms, size);
+        }
+
+        PostSearchResult result = searchMemory(tenant, index, terms, size);
+        if (compare) {
+            PostSearchResult database = searchDatabase(tenant, terms, size);
+            result.setComparison(database);
+            result.setSameResults(ids(result.getPosts()).equals(ids(database.getPosts())));
+        }
+        return result;
+    }
+
+    /**
+     * Latency of every search path, and the state of the in-memory index of every tenant
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> paths = new LinkedHashMap<>();
+        latencies.forEach((path, stats) -> paths.put(path, stats.snapshot()));
+
+        Map<String, Object> tenants = new LinkedHashMap<>();
+        indexes.forEach((tenant, index) -> {
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("ready", index.ready);
+            state.put("overflowed", index.overflowed);
+            state.put("posts", index.overflowed ? 0 : index.index.size());
+            state.put("estimatedBytes", index.overflowed ? 0 : index.index.estimatedBytes());
+            tenants.put(tenant.name(), state);
+        });
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ngramEnabled", ngramEnabled);
+        stats.put("latencyMs", paths);
+        stats.put("ngramIndexes", tenants);
+        return stats;
+    }
+
+    /**
+     * Load the in-memory indexes right after startup migrations
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        migrated = true;
+        refreshIndexes();
+    }
+
+    /**
+     * Load new and changed posts from the change feed of every tenant served here
+     */
+    @Scheduled(fixedDelayString = "${app.search.ngram.refresh-interval-ms:5000}")
+    public void refreshIndexes() {
+        if (!ngramEnabled || !migrated) {
+            return;
+        }
+        for (DBTypeEnum tenant : DBTypeEnum.values()) {
+            if (multiRoutingDataSource.isCold(tenant) || !multiRoutingDataSource.isOwned(tenant)) {
+                continue;
+            }
+            TenantIndex index = indexes.computeIfAbsent(tenant, key -> new TenantIndex());
+            try {
+                refresh(tenant, index);
+            } catch (Exception e) {
+                // Picked up again from the same cursor on the next refresh
+                logger.warn("Could not refresh the search index of {}: {}", tenant, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void onPostChange(DBTypeEnum tenant, Post post, PostEntityListener.ChangeType changeType) {
+        TenantIndex index = indexes.get(tenant);
+        if (index == null || index.overflowed) {
+            return;
+        }
+        for (PostNgramIndex target : index.targets()) {
+            if (changeType == PostEntityListener.ChangeType.DELETED) {
+                target.remove(post.getId());
+            } else if (post.getName() != null) {
+                target.put(post.getId(), post.getName());
+            }
+        }
+        if (changeType != PostEntityListener.ChangeType.DELETED) {
+            overflowed(tenant, index);
+        }
+    }
+
+    @Override
+    public void onPostsChanged(DBTypeEnum tenant, List<Long> ids, PostEntityListener.ChangeType changeType) {
+        // Bulk updates carry no names; they reach the index through the change feed
+        TenantIndex index = indexes.get(tenant);
+        if (index == null || index.overflowed || changeType != PostEntityListener.ChangeType.DELETED) {
+            return;
+        }
+        for (PostNgramIndex target : index.targets()) {
+            for (Long id : ids) {
+                target.remove(id);
+            }
+        }
+    }
+
+    private void refresh(DBTypeEnum tenant, TenantIndex index) {
+        // Only one refresh per tenant at a time, the cursor belongs to it
+        synchronized (index) {
+            if (index.overflowed) {
+                return;
+            }
+            if (index.cursor == null) {
+                long started = System.currentTimeMillis();
+                String cursor = load(tenant, index.index);
+                if (cursor == null) {
+                    dropIndex(tenant, index);
+                    return;
+                }
+                index.cursor = cursor;
+                index.loadedAt = started;
+            } else if (ngramRebuildIntervalMs > 0 && System.currentTimeMillis() - index.loadedAt >= ngramRebuildIntervalMs
+                    && !rebuild(tenant, index)) {
+                return;
+            }
+
+            ChangeFeedPage page;
+            do {
+                page = changeFeedService.getChanges(tenant, index.cursor, REFRESH_PAGE_SIZE);
+                for (Post post : page.getChanges()) {
+                    index.index.put(post.getId(), post.getName());
+                }
+                index.cursor = page.getNextCursor();
+                if (overflowed(tenant, index)) {
+                    return;
+                }
+            } while (page.isHasMore());
+
+            if (!index.ready) {
+                index.ready = true;
+                logger.info("In-memory search index of {} loaded with {} posts (~{} KB)",
+                          tenant, index.index.size(), index.index.estimatedBytes() / 1024);
+            }
+        }
+    }
+
+    /**
+     * Load the tenant into a new index while the current one keeps serving searches, then
+     * swap it in. Changes committed meanwhile are applied to both. False when the tenant
+     * has grown too large.
+     */
+    private boolean rebuild(DBTypeEnum tenant, TenantIndex index) {
+        long started = System.currentTimeMillis();
+        PostNgramIndex rebuilt = new PostNgramIndex();
+        index.rebuilding = rebuilt;
+        String cursor;
+        try {
+            cursor = load(tenant, rebuilt);
+            if (cursor != null) {
+                // Swapped before rebuilding is cleared, so no change misses the new index
+                index.index = rebuilt;
+            }
+        } finally {
+            index.rebuilding = null;
+        }
+        if (cursor == null) {
+            dropIndex(tenant, index);
+            return false;
+        }
+        index.cursor = cursor;
+        index.loadedAt = started;
+        logger.info("In-memory search index of {} rebuilt with {} posts in {} ms",
+                  tenant, rebuilt.size(), System.currentTimeMillis() - started);
+        return true;
+    }
+
+    /**
+     * Load every post in id order into target, and return the change feed cursor to
+     * continue from: a little before the load started, so writes made during the load
+     * are applied again. Null when the tenant has too many posts.
+     */
+    private String load(DBTypeEnum tenant, PostNgramIndex target) {
+        Timestamp loadStarted = inTenant(tenant, () -> jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP", Timestamp.class));
+
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            long after = lastId;
+            List<Post> posts = inTenant(tenant, () -> jdbcTemplate.query(
+                    "SELECT id, name FROM post WHERE id > ? ORDER BY id LIMIT ?",
+                    (rs, rowNum) -> new Post(rs.getLong("id"), rs.getString("name")), after, REFRESH_PAGE_SIZE));
+            for (Post post : posts) {
+                target.put(post.getId(), post.getName());
+                lastId = post.getId();
+            }
+            if (target.size() > ngramMaxPosts) {
+                return null;
+            }
+            if (posts.size() < REFRESH_PAGE_SIZE) {
+                break;
+            }
+        }
+
+        return ChangeFeedService.Cursor.at(new Timestamp(loadStarted.getTime() - LOAD_OVERLAP_MS), Long.MIN_VALUE).encode();
+    }
+
+    private boolean overflowed(DBTypeEnum tenant, TenantIndex index) {
+        if (index.index.size() <= ngramMaxPosts) {
+            return false;
+        }
+        dropIndex(tenant, index);
+        return true;
+    }
+
+    private void dropIndex(DBTypeEnum tenant, TenantIndex index) {
+        index.overflowed = true;
+        index.ready = false;
+        index.index = new PostNgramIndex();
+        logger.warn("Tenant {} has more than {} posts, searching it in the database instead of memory", tenant, ngramMaxPosts);
+    }
+
+    private PostSearchResult searchMemory(DBTypeEnum tenant, TenantIndex index, List<String> terms, int size) {
+        long started = System.nanoTime();
+        PostNgramIndex searched = index.index;
+        List<Post> posts = List.of();
+        // Stale candidates fail the recheck, so read twice as many and widen while they crowd out matches
+        for (int candidates = size * 2; ; candidates *= 2) {
+            List<Long> ids;
+            try (Span span = Tracing.startSpan("post.search.ngram")) {
+                ids = searched.search(terms, candidates);
+                span.setAttribute("candidates", ids.size());
+            }
+            if (ids.isEmpty()) {
+                break;
+            }
+            posts = recheck(tenant, searched, terms, ids);
+            if (posts.size() >= size || ids.size() < candidates || candidates >= size * MAX_CANDIDATE_FACTOR) {
+                break;
+            }
+        }
+        return record(tenant, terms, PostSearchResult.NGRAM, started,
+                posts.size() > size ? new ArrayList<>(posts.subList(0, size)) : posts);
+    }
+
+    /**
+     * Read the candidates by primary key and keep those still matching, highest id first.
+     * Candidates that no longer exist are dropped from the index.
+     */
+    private List<Post> recheck(DBTypeEnum tenant, PostNgramIndex searched, List<String> terms, List<Long> ids) {
+        String placeholders = ids.stream().map(id -> "?").collect(Collectors.joining(", "));
+        List<Post> found = inTenant(tenant, () -> jdbcTemplate.query(
+                "SELECT id, name, created_at, updated_at FROM post WHERE id IN (" + placeholders + ")",
+                POST_ROW_MAPPER, ids.toArray()));
+
+        Set<Long> missing = new HashSet<>(ids);
+        // The index may lag behind renames; only return posts that still match
+        List<Post> posts = new ArrayList<>(found.size());
+        for (Post post : found) {
+            missing.remove(post.getId());
+            String name = post.getName().toLowerCase(Locale.ROOT);
+            if (terms.stream().allMatch(name::contains)) {
+                posts.add(post);
+            }
+        }
+        // Deleted by a writer whose delete never reached the index
+        missing.forEach(searched::remove);
+        posts.sort((a, b) -> Long.compare(b.getId(), a.getId()));
+        return posts;
+    }
+
+    private PostSearchResult searchDatabase(DBTypeEnum tenant, List<String> terms, int size) {
+        long started = System.nanoTime();
+        if (hasFulltextIndex(tenant)) {
+            String booleanQuery = terms.stream()
+                    .map(term -> term.length() >= 2 ? "+\"" + term + "\"" : "+" + term + "*")
+                    .collect(Collectors.joining(" "));
+            List<Post> posts = inTenant(tenant, () -> jdbcTemplate.query(
+                    "SELECT id, name, created_at, updated_at FROM post " +
+                    "WHERE MATCH(name) AGAINST (? IN BOOLEAN MODE) ORDER BY id DESC LIMIT ?",
+                    POST_ROW_MAPPER, booleanQuery, size));
+            return record(tenant, terms, PostSearchResult.FULLTEXT, started, posts);
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT id, name, created_at, updated_at FROM post WHERE ");
+        List<Object> params = new ArrayList<>();
+        for (String term : terms) {
+            if (!params.isEmpty()) {
+                sql.append(" AND ");
+            }
+            sql.append("LOWER(name) LIKE ? ESCAPE '!'");
+            params.add("%" + term.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%");
+        }
+        sql.append(" ORDER BY id DESC LIMIT ?");
+        params.add(size);
+        List<Post> posts = inTenant(tenant, () -> jdbcTemplate.query(sql.toString(), POST_ROW_MAPPER, params.toArray()));
+        return record(tenant, terms, PostSearchResult.LIKE, started, posts);
+    }
+
+    private boolean hasFulltextIndex(DBTypeEnum tenant) {
+        long now = System.currentTimeMillis();
+        long[] check = fulltextChecks.get(tenant);
+        if (check != null && now - check[1] < INDEX_CHECK_INTERVAL_MS) {
+            return check[0] == 1;
+        }
+
+        boolean present;
+        try {
+            Long indexes = inTenant(tenant, () -> jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM information_schema.statistics " +
+                    "WHERE table_schema = DATABASE() AND table_name = 'post' AND index_type = 'FULLTEXT'", Long.class));
+            present = indexes != null && indexes > 0;
+        } catch (RuntimeException e) {
+            if (TenantUnavailableException.findIn(e) != null) {
+                throw e;
+            }
+            // Databases without MySQL's index statistics have no FULLTEXT indexes either
+            logger.debug("Could not look up FULLTEXT indexes of {}: {}", tenant, e.getMessage());
+            present = false;
+        }
+        fulltextChecks.put(tenant, new long[] {present ? 1 : 0, now});
+        return present;
+    }
+
+    private PostSearchResult record(DBTypeEnum tenant, List<String> terms, String path, long started, List<Post> posts) {
+        long micros = (System.nanoTime() - started) / 1000;
+        latencies.computeIfAbsent(path, key -> new LatencyStats()).add(micros);
+        return new PostSearchResult(tenant.name(), terms, path, micros / 1000.0, posts);
+    }
+
+    private List<String> parseTerms(String query) {
+        List<String> terms = new ArrayList<>();
+        if (query != null) {
+            for (String word : query.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+                StringBuilder term = new StringBuilder();
+                for (char c : word.toCharArray()) {
+                    if (OPERATORS.indexOf(c) < 0) {
+                        term.append(c);
+                    }
+                }
+                if (term.length() > 0 && !terms.contains(term.toString())) {
+                    terms.add(term.toString());
+                }
+            }
+        }
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Search query must contain at least one term");
+        }
+        if (terms.size() > MAX_TERMS) {
+            throw new IllegalArgumentException("Search query must not contain more than " + MAX_TERMS + " terms");
+        }
+        return terms;
+    }
+
+    private static List<Long> ids(List<Post> posts) {
+        return posts.stream().map(Post::getId).collect(Collectors.toList());
+    }
+
+    private <T> T inTenant(DBTypeEnum tenant, Supplier<T> work) {
+        DBTypeEnum previous = DBContextHolder.getCurrentDb();
+        DBContextHolder.setCurrentDb(tenant);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                DBContextHolder.setCurrentDb(previous);
+            } else {
+                DBContextHolder.clear();
+            }
+        }
+    }
+
+    private static class TenantIndex {
+        volatile PostNgramIndex index = new PostNgramIndex();
+        // Index being loaded to replace the current one, which receives changes as well
+        volatile PostNgramIndex rebuilding;
+        // When the current index started loading, guarded by the TenantIndex
+        long loadedAt;
+        // Change feed position the index is current up to, guarded by the TenantIndex
+        String cursor;
+        volatile boolean ready;
+        volatile boolean overflowed;
+
+        /**
+         * Indexes a committed change must reach, the rebuilding one read first so that a
+         * swap in between cannot leave both reads on the old index
+         */
+        List<PostNgramIndex> targets() {
+            PostNgramIndex next = rebuilding;
+            PostNgramIndex current = index;
+            return next != null && next != current ? List.of(current, next) : List.of(current);
+        }
+    }
+
+    /**
+     * Search latencies of one path: totals since startup, and percentiles over the most
+     * recent searches
+     */
+    private static class LatencyStats {
+
+        private static final int WINDOW = 1024;
+
+        private final long[] recentMicros = new long[WINDOW];
+
+        private long count;
+
+        private long totalMicros;
+
+        private long maxMicros;
+
+        synchronized void add(long micros) {
+            recentMicros[(int) (count % WINDOW)] = micros;
+            count++;
+            totalMicros += micros;
+            maxMicros = Math.max(maxMicros, micros);
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            long[] recent = Arrays.copyOf(recentMicros, (int) Math.min(count, WINDOW));
+            Arrays.sort(recent);
+
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("count", count);
+            snapshot.put("mean", count > 0 ? totalMicros / 1000.0 / count : 0);
+            snapshot.put("p50", percentile(recent, 0.50));
+            snapshot.put("p95", percentile(recent, 0.95));
+            snapshot.put("p99", percentile(recent, 0.99));
+            snapshot.put("max", maxMicros / 1000.0);
+            return snapshot;
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBContextHolder;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.Post;
+import com.izicap.dynamicmultidatabase.PostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Opt-in write-behind buffering for post writes. Writes are queued per tenant and
+ * flushed in batched transactions once a batch fills up or the flush interval elapses.
+ *
+ * Each queue is bounded: when a tenant's database cannot keep up, producers block for
+ * up to the enqueue timeout and are then rejected. The returned future completes once
+ * the write's batch has committed, which callers can wait on for a durable acknowledgement.
+ * A write queued with an idempotency key records it in the same transaction, so a caller
+ * whose acknowledgement timed out can retry with the key without writing twice.
+ *
+ * A batch that fails is retried one write per transaction, so a single bad row only
+ * fails its own write.
+ */
+@Service
+public class PostWriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostWriteBehindService.class);
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private IdempotencyKeyService idempotencyKeyService;
+
+    @Autowired
+    @Qualifier("multiTransactionManager")
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.write-behind.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.write-behind.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Value("${app.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.write-behind.enqueue-timeout-ms:1000}")
+    private long enqueueTimeoutMs;
+
+    @Value("${app.write-behind.flush-threads:2}")
+    private int flushThreads;
+
+    @Value("${app.write-behind.shutdown-timeout-ms:30000}")
+    private long shutdownTimeoutMs;
+
+    private final Map<DBTypeEnum, TenantBuffer> buffers = new ConcurrentHashMap<>();
+
+    private volatile boolean accepting;
+
+    private ScheduledExecutorService flushTimer;
+
+    private ExecutorService flushExecutor;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("Write-behind buffering is disabled, post writes are saved synchronously");
+            return;
+        }
+
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        flushExecutor = Executors.newFixedThreadPool(flushThreads);
+        flushTimer = Executors.newSingleThreadScheduledExecutor();
+        flushTimer.scheduleWithFixedDelay(this::scheduleFlushes, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        accepting = true;
+
+        logger.info("Write-behind buffering enabled (batchSize={}, flushIntervalMs={}, queueCapacity={} per tenant)",
+                  batchSize, flushIntervalMs, queueCapacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue a post for the given tenant. The tenant is captured here and used for the
+     * flush, whatever the flushing thread's context holds at that time. A write queued
+     * again with the idempotency key of a write still in the queue shares its future.
+     *
+     * @param requestKey idempotency key recorded with the write, or null
+     * @throws RejectedExecutionException if the tenant's queue stays full for the enqueue timeout
+     */
+    public CompletableFuture<Post> enqueue(DBTypeEnum tenant, Post post, String requestKey) {
+        if (!accepting) {
+            throw new IllegalStateException("Write-behind buffering is not accepting writes");
+        }
+
+        TenantBuffer buffer = buffers.computeIfAbsent(tenant, key -> new TenantBuffer(key, queueCapacity));
+        PendingWrite write = new PendingWrite(post, requestKey);
+
+        if (requestKey != null) {
+            PendingWrite queued = buffer.pendingKeys.putIfAbsent(requestKey, write);
+            if (queued != null) {
+                logger.debug("Write with idempotency key {} is already queued for {}", requestKey, tenant);
+                return queued.ack;
+            }
+            write.ack.whenComplete((saved, e) -> buffer.pendingKeys.remove(requestKey, write));
+        }
+
+        try {
+            if (!buffer.queue.offer(write, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                logger.warn("Write-behind queue for {} is full, rejecting write", tenant);
+                RejectedExecutionException rejected = new RejectedExecutionException("Write-behind queue for " + tenant + " is full");
+                write.ack.completeExceptionally(rejected);
+                throw rejected;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            RejectedExecutionException rejected = new RejectedExecutionException("Interrupted while queueing write for " + tenant, e);
+            write.ack.completeExceptionally(rejected);
+            throw rejected;
+        }
+
+        // Shutdown may have drained the queue between the accepting check and the offer
+        if (!accepting && buffer.queue.remove(write)) {
+            IllegalStateException stopped = new IllegalStateException("Write-behind buffering is not accepting writes");
+            write.ack.completeExceptionally(stopped);
+            throw stopped;
+        }
+
+        if (buffer.queue.size() >= batchSize) {
+            scheduleFlush(buffer);
+        }
+        return write.ack;
+    }
+
+    /**
+     * Number of writes queued for a tenant and not yet flushed
+     */
+    public int getQueuedWrites(DBTypeEnum tenant) {
+        TenantBuffer buffer = buffers.get(tenant);
+        return buffer != null ? buffer.queue.size() : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+
+        logger.info("Draining write-behind queues before shutdown");
+        accepting = false;
+        flushTimer.shutdownNow();
+
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMs;
+        for (TenantBuffer buffer : buffers.values()) {
+            // Wait for an in-flight flush of this tenant, then drain what is left on this thread
+            if (awaitFlushSlot(buffer, deadline)) {
+                try {
+                    while (!buffer.queue.isEmpty() && System.currentTimeMillis() <= deadline) {
+                        flushBatch(buffer);
+                    }
+                } finally {
+                    buffer.flushing.set(false);
+                }
+            }
+
+            if (!buffer.queue.isEmpty()) {
+                logger.error("Shutdown timeout reached with {} unflushed writes for {}", buffer.queue.size(), buffer.tenant);
+                failRemaining(buffer, new IllegalStateException("Application shut down before the write was flushed"));
+            }
+        }
+
+        flushExecutor.shutdown();
+        logger.info("Write-behind queues drained");
+    }
+
+    private boolean awaitFlushSlot(TenantBuffer buffer, long deadline) {
+        while (!buffer.flushing.compareAndSet(false, true)) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void scheduleFlushes() {
+        for (TenantBuffer buffer : buffers.values()) {
+            if (!buffer.queue.isEmpty()) {
+                scheduleFlush(buffer);
+            }
+        }
+    }
+
+    private void scheduleFlush(TenantBuffer buffer) {
+        // At most one flush per tenant at a time, so a slow tenant holds a single flush thread
+        if (!buffer.flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            flushExecutor.execute(() -> {
+                try {
+                    while (buffer.queue.size() > 0) {
+                        flushBatch(buffer);
+                        if (buffer.queue.size() < batchSize) {
+                            break;
+                        }
+                    }
+                } finally {
+                    buffer.flushing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            buffer.flushing.set(false);
+        }
+    }
+
+    private void flushBatch(TenantBuffer buffer) {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        buffer.queue.drainTo(batch, batchSize);
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Post> posts = new ArrayList<>(batch.size());
+        batch.forEach(write -> posts.add(write.post));
+
+        long startTime = System.nanoTime();
+        try {
+            DBContextHolder.setCurrentDb(buffer.tenant);
+            List<Post> saved = transactionTemplate.execute(status -> {
+                List<Post> written = postRepository.saveAll(posts);
+                Map<String, Long> keys = new LinkedHashMap<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.get(i).requestKey != null) {
+                        keys.put(batch.get(i).requestKey, written.get(i).getId());
+                    }
+                }
+                idempotencyKeyService.record(keys);
+                return written;
+            });
+
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).ack.complete(saved.get(i));
+            }
+            logger.debug("Flushed {} buffered writes to {} in {} us",
+                       batch.size(), buffer.tenant, (System.nanoTime() - startTime) / 1000);
+
+        } catch (Exception e) {
+            logger.warn("Failed to flush {} buffered writes to {} in one batch, saving them one by one: {}",
+                      batch.size(), buffer.tenant, e.getMessage());
+            batch.forEach(this::flushSingle);
+        } finally {
+            DBContextHolder.clear();
+        }
+    }
+
+    // Runs on the flushing thread with the tenant's routing context set
+    private void flushSingle(PendingWrite write) {
+        // The failed batch left the id it generated on the post; the retry generates its own
+        if (!write.assignedId) {
+            write.post.setId(0);
+        }
+        try {
+            Post saved = transactionTemplate.execute(status -> {
+                Post written = postRepository.save(write.post);
+                if (write.requestKey != null) {
+                    idempotencyKeyService.record(Map.of(write.requestKey, written.getId()));
+                }
+                return written;
+            });
+            write.ack.complete(saved);
+
+        } catch (DataIntegrityViolationException e) {
+            // The key was recorded by an earlier attempt of the same write, which did commit
+            Long postId = write.requestKey != null ? findPostId(write.requestKey) : null;
+            if (postId != null) {
+                write.ack.complete(postRepository.findById(postId).orElse(null));
+            } else {
+                logger.error("Failed to save buffered write of post {}", write.post.getId(), e);
+                write.ack.completeExceptionally(e);
+            }
+
+        } catch (Exception e) {
+            logger.error("Failed to save buffered write of post {}", write.post.getId(), e);
+            write.ack.completeExceptionally(e);
+        }
+    }
+
+    private Long findPostId(String requestKey) {
+        try {
+            return idempotencyKeyService.findPostId(DBContextHolder.getCurrentDb(), requestKey);
+        } catch (Exception e) {
+            logger.debug("Could not look up idempotency key {}: {}", requestKey, e.getMessage());
+            return null;
+        }
+    }
+
+    private void failRemaining(TenantBuffer buffer, Exception cause) {
+        List<PendingWrite> remaining = new ArrayList<>();
+        buffer.queue.drainTo(remaining);
+        remaining.forEach(write -> write.ack.completeExceptionally(cause));
+    }
+
+    private static class TenantBuffer {
+        final DBTypeEnum tenant;
+        final BlockingQueue<PendingWrite> queue;
+        // Queued writes by idempotency key, so a retry while the first attempt is queued joins it
+        final Map<String, PendingWrite> pendingKeys = new ConcurrentHashMap<>();
+        final AtomicBoolean flushing = new AtomicBoolean();
+
+        TenantBuffer(DBTypeEnum tenant, int capacity) {
+            this.tenant = tenant;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    private static class PendingWrite {
+        final Post post;
+        final String requestKey;
+        final boolean assignedId;
+        final CompletableFuture<Post> ack = new CompletableFuture<>();
+
+        PendingWrite(Post post, String requestKey) {
+            this.post = post;
+            this.requestKey = requestKey;
+            this.assignedId = post.getId() != 0;
+        }
+    }
+}
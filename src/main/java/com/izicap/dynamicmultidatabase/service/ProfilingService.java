@@ -0,0 +1,304 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.profiling.ConnectionAcquireEvent;
+import com.izicap.dynamicmultidatabase.profiling.FlywayMigrationEvent;
+import com.izicap.dynamicmultidatabase.profiling.RepositoryCallEvent;
+import com.izicap.dynamicmultidatabase.profiling.TenantRoutingEvent;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import jdk.management.jfr.FlightRecorderMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Continuous JDK Flight Recorder profiling. A background recording keeps the last
+ * {@code app.profiling.max-age-minutes} of JDK and tenant events (routing, connection
+ * acquisition, repository calls, Flyway runs) so a time-bounded slice can be dumped for
+ * offline analysis, and an in-process event stream aggregates GC pauses, allocation
+ * rate, lock contention and per-tenant timings over fixed windows.
+ */
+@Service
+public class ProfilingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfilingService.class);
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmmss");
+
+    @Value("${app.profiling.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.profiling.window-seconds:60}")
+    private long windowSeconds;
+
+    @Value("${app.profiling.max-age-minutes:15}")
+    private long maxAgeMinutes;
+
+    @Value("${app.profiling.lock-threshold-ms:10}")
+    private long lockThresholdMs;
+
+    @Value("${app.profiling.directory:recordings}")
+    private String directory;
+
+    private Recording recording;
+
+    private RecordingStream stream;
+
+    // Updated by the stream's thread only
+    private volatile Window current;
+
+    private volatile Map<String, Object> lastWindow;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("JFR profiling is disabled");
+            return;
+        }
+
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+            recording.setName("continuous");
+            recording.setToDisk(true);
+            recording.setMaxAge(Duration.ofMinutes(maxAgeMinutes));
+            recording.enable(ConnectionAcquireEvent.NAME);
+            recording.enable(RepositoryCallEvent.NAME);
+            recording.enable(FlywayMigrationEvent.NAME);
+            recording.enable(TenantRoutingEvent.NAME);
+            recording.start();
+
+            stream = new RecordingStream();
+            stream.enable("jdk.GarbageCollection");
+            stream.enable("jdk.ObjectAllocationSample").with("throttle", "150/s");
+            stream.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ofMillis(lockThresholdMs));
+            stream.enable("jdk.ThreadPark").withThreshold(Duration.ofMillis(lockThresholdMs));
+            stream.enable(ConnectionAcquireEvent.NAME);
+            stream.enable(RepositoryCallEvent.NAME);
+
+            current = new Window(Instant.now());
+            stream.onEvent("jdk.GarbageCollection", event -> current.onGarbageCollection(event));
+            stream.onEvent("jdk.ObjectAllocationSample", event -> current.allocatedBytes += event.getLong("weight"));
+            stream.onEvent("jdk.JavaMonitorEnter", event -> current.onMonitorEnter(event));
+            stream.onEvent("jdk.ThreadPark", event -> current.onThreadPark(event));
+            stream.onEvent(ConnectionAcquireEvent.NAME, event -> current.onConnectionAcquire(event));
+            stream.onEvent(RepositoryCallEvent.NAME, event -> current.onRepositoryCall(event));
+            stream.onFlush(this::rollWindow);
+            stream.startAsync();
+
+            logger.info("JFR profiling started (window={}s, continuous recording keeps {} minutes)", windowSeconds, maxAgeMinutes);
+
+        } catch (Exception e) {
+            // Profiling must never keep the application from starting
+            logger.warn("Could not start JFR profiling: {}", e.getMessage());
+            stop();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return recording != null;
+    }
+
+    /**
+     * Aggregates of the last completed window, or of the current one until a window completed
+     */
+    public Map<String, Object> getSummary() {
+        if (!isEnabled()) {
+            return Map.of("enabled", false);
+        }
+        Map<String, Object> summary = lastWindow;
+        if (summary == null) {
+            Window window = current;
+            summary = window != null ? window.summarize(Instant.now()) : Map.of();
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", true);
+        result.putAll(summary);
+        return result;
+    }
+
+    /**
+     * Write the last minutes of the continuous recording to a file. The slice starts at
+     * the beginning of the recording chunk containing the requested start time, so it can
+     * cover slightly more than asked for.
+     */
+    public Path dumpRecording(long minutes) throws IOException {
+        Recording source = recording;
+        if (source == null) {
+            throw new IllegalStateException("JFR profiling is disabled");
+        }
+        long boundedMinutes = Math.max(1, Math.min(minutes, maxAgeMinutes));
+        Instant startTime = Instant.now().minus(Duration.ofMinutes(boundedMinutes));
+
+        Path target = Paths.get(directory).resolve("profile-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jfr");
+        Files.createDirectories(target.getParent());
+
+        FlightRecorderMXBean flightRecorder = ManagementFactory.getPlatformMXBean(FlightRecorderMXBean.class);
+        long copyId = flightRecorder.cloneRecording(source.getId(), true);
+        try {
+            long streamId = flightRecorder.openStream(copyId, Map.of("startTime", String.valueOf(startTime.toEpochMilli())));
+            try (OutputStream out = Files.newOutputStream(target)) {
+                byte[] block;
+                while ((block = flightRecorder.readStream(streamId)) != null) {
+                    out.write(block);
+                }
+            } finally {
+                flightRecorder.closeStream(streamId);
+            }
+        } finally {
+            flightRecorder.closeRecording(copyId);
+        }
+
+        logger.info("Dumped the last {} minutes of profiling data to {} ({} bytes)", boundedMinutes, target, Files.size(target));
+        return target;
+    }
+
+    private void rollWindow() {
+        Instant now = Instant.now();
+        if (Duration.between(current.start, now).getSeconds() >= windowSeconds) {
+            lastWindow = current.summarize(now);
+            current = new Window(now);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    /**
+     * Aggregates of one window, updated by the stream's thread only. The current window
+     * may be summarized concurrently, which can read slightly torn counters.
+     */
+    private static class Window {
+        private final Instant start;
+        private long gcCount;
+        private long gcPauseNanos;
+        private long gcLongestPauseNanos;
+        private long allocatedBytes;
+        private long monitorEnterCount;
+        private long monitorEnterNanos;
+        private long lockParkCount;
+        private long lockParkNanos;
+        private final Map<String, TenantTimings> tenants = new ConcurrentSkipListMap<>();
+
+        Window(Instant start) {
+            this.start = start;
+        }
+
+        void onGarbageCollection(RecordedEvent event) {
+            gcCount++;
+            gcPauseNanos += event.getDuration("sumOfPauses").toNanos();
+            gcLongestPauseNanos = Math.max(gcLongestPauseNanos, event.getDuration("longestPause").toNanos());
+        }
+
+        void onMonitorEnter(RecordedEvent event) {
+            monitorEnterCount++;
+            monitorEnterNanos += event.getDuration().toNanos();
+        }
+
+        void onThreadPark(RecordedEvent event) {
+            // Only parks on a lock count as contention; idle pool threads park on conditions
+            RecordedClass parkedClass = event.getClass("parkedClass");
+            if (parkedClass != null && parkedClass.getName().endsWith("Sync")) {
+                lockParkCount++;
+                lockParkNanos += event.getDuration().toNanos();
+            }
+        }
+
+        void onConnectionAcquire(RecordedEvent event) {
+            TenantTimings timings = tenants.computeIfAbsent(event.getString("tenant"), key -> new TenantTimings());
+            timings.connectionAcquires++;
+            timings.connectionAcquireNanos += event.getDuration().toNanos();
+            timings.connectionAcquireMaxNanos = Math.max(timings.connectionAcquireMaxNanos, event.getDuration().toNanos());
+            if (!event.getBoolean("success")) {
+                timings.connectionFailures++;
+            }
+        }
+
+        void onRepositoryCall(RecordedEvent event) {
+            TenantTimings timings = tenants.computeIfAbsent(event.getString("tenant"), key -> new TenantTimings());
+            timings.repositoryCalls++;
+            timings.repositoryNanos += event.getDuration().toNanos();
+        }
+
+        Map<String, Object> summarize(Instant end) {
+            double seconds = Math.max(1, Duration.between(start, end).toMillis()) / 1000.0;
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("windowStart", start.toString());
+            summary.put("windowSeconds", Math.round(seconds * 10) / 10.0);
+            summary.put("gc", Map.of(
+                "collections", gcCount,
+                "totalPauseMs", millis(gcPauseNanos),
+                "longestPauseMs", millis(gcLongestPauseNanos),
+                "pausePercent", Math.round(gcPauseNanos / (seconds * 1e9) * 10000) / 100.0
+            ));
+            summary.put("allocation", Map.of(
+                "allocatedMB", allocatedBytes / (1024 * 1024),
+                "allocationRateMBPerSecond", Math.round(allocatedBytes / seconds / (1024 * 1024) * 10) / 10.0
+            ));
+            summary.put("lockContention", Map.of(
+                "monitorEnters", monitorEnterCount,
+                "monitorEnterMs", millis(monitorEnterNanos),
+                "lockParks", lockParkCount,
+                "lockParkMs", millis(lockParkNanos)
+            ));
+
+            Map<String, Object> tenantSummary = new LinkedHashMap<>();
+            tenants.forEach((tenant, timings) -> tenantSummary.put(tenant, timings.summarize()));
+            summary.put("tenants", tenantSummary);
+            return summary;
+        }
+    }
+
+    private static class TenantTimings {
+        private long connectionAcquires;
+        private long connectionAcquireNanos;
+        private long connectionAcquireMaxNanos;
+        private long connectionFailures;
+        private long repositoryCalls;
+        private long repositoryNanos;
+
+        Map<String, Object> summarize() {
+            return Map.of(
+                "connectionAcquires", connectionAcquires,
+                "connectionAcquireAvgMs", connectionAcquires > 0 ? millis(connectionAcquireNanos / connectionAcquires) : 0.0,
+                "connectionAcquireMaxMs", millis(connectionAcquireMaxNanos),
+                "connectionFailures", connectionFailures,
+                "repositoryCalls", repositoryCalls,
+                "repositoryCallAvgMs", repositoryCalls > 0 ? millis(repositoryNanos / repositoryCalls) : 0.0
+            );
+        }
+    }
+}
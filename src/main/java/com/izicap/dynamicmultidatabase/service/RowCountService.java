@@ -0,0 +1,296 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBContextHolder;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.Post;
+import com.izicap.dynamicmultidatabase.PostEntityListener;
+import com.izicap.dynamicmultidatabase.model.RowCountMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Post counts per tenant without {@code SELECT COUNT(*)}, which InnoDB answers with a full
+ * index scan. The approximate mode reads the row estimate from the table statistics. The
+ * exact mode reads a count kept in the tenant's {@code table_row_count} table: committed
+ * creates and deletes are summed in memory and added to it every
+ * {@code app.row-count.flush-interval-ms}, and it is periodically reset to a real count to
+ * correct drift from writes made outside this application or lost on a crash.
+ *
+ * Queries go through the routing datasource, so they are subject to the tenant's circuit
+ * breaker like any other tenant query.
+ */
+@Service
+public class RowCountService implements PostEntityListener.Observer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RowCountService.class);
+
+    private static final String TABLE = "post";
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<DBTypeEnum, TenantCounter> counters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        jdbcTemplate = new JdbcTemplate(multiRoutingDataSource);
+        PostEntityListener.addObserver(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        PostEntityListener.removeObserver(this);
+        flushDeltas();
+    }
+
+    public long count(DBTypeEnum tenant, RowCountMode mode) {
+        return mode == RowCountMode.APPROXIMATE ? approximateCount(tenant) : exactCount(tenant);
+    }
+
+    /**
+     * Row estimate of the tenant's post table from the table statistics. Falls back to the
+     * maintained count where no estimate is available.
+     */
+    public long approximateCount(DBTypeEnum tenant) {
+        Long estimate = inTenant(tenant, () -> jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                boolean expirySet = false;
+                try {
+                    // MySQL 8 otherwise serves statistics cached for up to a day
+                    statement.execute("SET SESSION information_schema_stats_expiry = 0");
+                    expirySet = true;
+                } catch (SQLException e) {
+                    logger.trace("Statistics expiry not supported: {}", e.getMessage());
+                }
+                try (ResultSet rs = statement.executeQuery(
+                        "SELECT TABLE_ROWS FROM information_schema.TABLES " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + TABLE + "'")) {
+                    return rs.next() ? rs.getObject(1, Long.class) : null;
+                } finally {
+                    if (expirySet) {
+                        // The connection goes back to the pool, where other queries should keep the cache
+                        statement.execute("SET SESSION information_schema_stats_expiry = DEFAULT");
+                    }
+                }
+            } catch (SQLException e) {
+                logger.debug("No table statistics for {}, using the maintained count: {}", TABLE, e.getMessage());
+                return null;
+            }
+        }));
+        return estimate != null ? estimate : exactCount(tenant);
+    }
+
+    /**
+     * Maintained count of the tenant's posts, including writes not yet added to the
+     * counter table. Reconciles first when the tenant has no counter row yet, and waits
+     * for a reconcile in progress.
+     */
+    public long exactCount(DBTypeEnum tenant) {
+        TenantCounter counter = counter(tenant);
+        Long stored;
+        counter.lock.lock();
+        try {
+            stored = readStoredCount(tenant);
+            if (stored != null) {
+                return stored + counter.pending.get();
+            }
+        } finally {
+            counter.lock.unlock();
+        }
+        return reconcile(tenant);
+    }
+
+    /**
+     * Committed creates minus deletes of the tenant not yet added to its counter table
+     */
+    public long pendingDelta(DBTypeEnum tenant) {
+        TenantCounter counter = counters.get(tenant);
+        return counter != null ? counter.pending.get() : 0;
+    }
+
+    /**
+     * Reset the tenant's counter to a real count. Under the counter's lock the pending
+     * delta is discarded right before counting, since every write it holds has committed
+     * and is part of the count, and the count is stored in the same transaction as it is
+     * taken. Writes recorded afterwards stay pending and are added on the next flush; only
+     * a write that commits in the instant between the reset and the count, and is recorded
+     * after the reset, is counted twice until the next reconcile.
+     */
+    public long reconcile(DBTypeEnum tenant) {
+        TenantCounter counter = counter(tenant);
+        counter.lock.lock();
+        counter.reconciling = true;
+        try {
+            long startTime = System.currentTimeMillis();
+            long discarded = counter.pending.getAndSet(0);
+            CountResult result;
+            try {
+                result = inTenant(tenant, () -> jdbcTemplate.execute(this::countAndStore));
+            } catch (RuntimeException e) {
+                counter.pending.addAndGet(discarded);
+                throw e;
+            }
+
+            if (result.previous != null && result.previous != result.count) {
+                logger.info("Reconciled {} row count of tenant {}: {} -> {}", TABLE, tenant, result.previous, result.count);
+            }
+            logger.debug("Counted {} {} rows of tenant {} in {} ms", result.count, TABLE, tenant, System.currentTimeMillis() - startTime);
+            return result.count + counter.pending.get();
+        } finally {
+            counter.reconciling = false;
+            counter.lock.unlock();
+        }
+    }
+
+    /**
+     * Count the rows and store the count in one transaction
+     */
+    private CountResult countAndStore(Connection connection) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            CountResult result = new CountResult();
+            try (Statement statement = connection.createStatement()) {
+                try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + TABLE)) {
+                    rs.next();
+                    result.count = rs.getLong(1);
+                }
+                try (ResultSet rs = statement.executeQuery(
+                        "SELECT row_count FROM table_row_count WHERE table_name = '" + TABLE + "' FOR UPDATE")) {
+                    result.previous = rs.next() ? rs.getLong(1) : null;
+                }
+            }
+
+            String sql = result.previous != null
+                    ? "UPDATE table_row_count SET row_count = ?, reconciled_at = CURRENT_TIMESTAMP WHERE table_name = ?"
+                    : "INSERT INTO table_row_count (row_count, table_name, reconciled_at) VALUES (?, ?, CURRENT_TIMESTAMP)";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setLong(1, result.count);
+                statement.setString(2, TABLE);
+                statement.executeUpdate();
+            }
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.row-count.flush-interval-ms:1000}")
+    public void flushDeltas() {
+        counters.forEach((tenant, counter) -> {
+            // A running reconcile resets the pending delta itself; do not wait for its count
+            if (counter.reconciling || counter.pending.get() == 0) {
+                return;
+            }
+            counter.lock.lock();
+            try {
+                if (!counter.reconciling) {
+                    flush(tenant, counter);
+                }
+            } catch (Exception e) {
+                logger.debug("Could not flush {} row count of tenant {}: {}", TABLE, tenant, e.getMessage());
+            } finally {
+                counter.lock.unlock();
+            }
+        });
+    }
+
+    @Scheduled(cron = "${app.row-count.reconcile-cron:0 0 * * * *}")
+    public void scheduledReconcile() {
+        for (DBTypeEnum tenant : DBTypeEnum.values()) {
+            // Offloaded tenants and, in cluster mode, tenants owned by other nodes are counted elsewhere
+            if (multiRoutingDataSource.isCold(tenant) || !multiRoutingDataSource.isOwned(tenant)) {
+                continue;
+            }
+            try {
+                reconcile(tenant);
+            } catch (Exception e) {
+                logger.warn("Could not reconcile {} row count of tenant {}: {}", TABLE, tenant, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void onPostChange(DBTypeEnum tenant, Post post, PostEntityListener.ChangeType changeType) {
+        if (changeType == PostEntityListener.ChangeType.CREATED) {
+            counter(tenant).pending.incrementAndGet();
+        } else if (changeType == PostEntityListener.ChangeType.DELETED) {
+            counter(tenant).pending.decrementAndGet();
+        }
+    }
+
+    // Callers hold the counter's lock
+    private void flush(DBTypeEnum tenant, TenantCounter counter) {
+        long delta = counter.pending.get();
+        if (delta == 0) {
+            return;
+        }
+        int updated = inTenant(tenant, () -> jdbcTemplate.update(
+                "UPDATE table_row_count SET row_count = row_count + ? WHERE table_name = ?", delta, TABLE));
+        if (updated > 0) {
+            counter.pending.addAndGet(-delta);
+        }
+    }
+
+    private Long readStoredCount(DBTypeEnum tenant) {
+        return inTenant(tenant, () -> jdbcTemplate.query(
+                "SELECT row_count FROM table_row_count WHERE table_name = ?",
+                rs -> rs.next() ? rs.getLong(1) : null, TABLE));
+    }
+
+    private TenantCounter counter(DBTypeEnum tenant) {
+        return counters.computeIfAbsent(tenant, key -> new TenantCounter());
+    }
+
+    private <T> T inTenant(DBTypeEnum tenant, Supplier<T> work) {
+        DBTypeEnum previous = DBContextHolder.getCurrentDb();
+        DBContextHolder.setCurrentDb(tenant);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                DBContextHolder.setCurrentDb(previous);
+            } else {
+                DBContextHolder.clear();
+            }
+        }
+    }
+
+    private static class CountResult {
+        long count;
+        Long previous;
+    }
+
+    private static class TenantCounter {
+        // Committed creates minus deletes not yet added to the counter table
+        final AtomicLong pending = new AtomicLong();
+        // Held while reading or updating the stored count together with the pending delta
+        final ReentrantLock lock = new ReentrantLock();
+        volatile boolean reconciling;
+    }
+}
@@ -0,0 +1,170 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBContextHolder;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.model.TenantBroadcastReport;
+import com.izicap.dynamicmultidatabase.model.TenantBroadcastResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Applies a unit of work to several tenant databases in parallel, e.g. to write
+ * reference data to every tenant. Each tenant runs in its own transaction on a bounded
+ * pool, so a failing tenant rolls back alone and the broadcast takes about as long as
+ * the slowest tenant rather than the sum of all of them.
+ *
+ * A broadcast with a request key records the key in each tenant's transaction, so
+ * retrying it, e.g. after a tenant timed out without a known outcome, skips the tenants
+ * where it already committed instead of applying the work twice.
+ */
+@Service
+public class TenantBroadcastService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantBroadcastService.class);
+
+    @Autowired
+    @Qualifier("multiTransactionManager")
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private IdempotencyKeyService idempotencyKeyService;
+
+    @Value("${app.broadcast.concurrency:8}")
+    private int concurrency;
+
+    @Value("${app.broadcast.timeout-ms:30000}")
+    private long timeoutMs;
+
+    private ExecutorService executor;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "tenant-broadcast-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = Executors.newFixedThreadPool(Math.max(1, concurrency), threadFactory);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Apply the unit of work to every tenant
+     */
+    public <T> TenantBroadcastReport broadcast(Function<DBTypeEnum, T> work) {
+        return broadcast(Arrays.asList(DBTypeEnum.values()), null, work);
+    }
+
+    public <T> TenantBroadcastReport broadcast(Collection<DBTypeEnum> tenants, Function<DBTypeEnum, T> work) {
+        return broadcast(tenants, null, work);
+    }
+
+    /**
+     * Apply the unit of work to the given tenants, each in its own transaction with the
+     * tenant's database selected, once per request key when one is given. Waits up to the
+     * broadcast timeout; tenants that have not completed by then are interrupted and
+     * reported as timed out, since their commit may still have reached the database.
+     */
+    public <T> TenantBroadcastReport broadcast(Collection<DBTypeEnum> tenants, String requestKey,
+                                               Function<DBTypeEnum, T> work) {
+        long startTime = System.currentTimeMillis();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        Map<DBTypeEnum, Future<TenantBroadcastResult>> futures = new LinkedHashMap<>();
+        for (DBTypeEnum tenant : new LinkedHashSet<>(tenants)) {
+            futures.put(tenant, executor.submit(() -> apply(tenant, requestKey, work)));
+        }
+
+        TenantBroadcastReport report = new TenantBroadcastReport();
+        report.setRequestKey(requestKey);
+        for (Map.Entry<DBTypeEnum, Future<TenantBroadcastResult>> entry : futures.entrySet()) {
+            DBTypeEnum tenant = entry.getKey();
+            Future<TenantBroadcastResult> future = entry.getValue();
+            try {
+                report.addResult(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                logger.warn("Broadcast to {} did not complete within {} ms", tenant, timeoutMs);
+                report.addResult(TenantBroadcastResult.timedOut(tenant.name(), "Did not complete within " + timeoutMs
+                        + " ms and may still have committed", System.currentTimeMillis() - startTime));
+
+            } catch (ExecutionException e) {
+                report.addResult(TenantBroadcastResult.failed(tenant.name(), String.valueOf(e.getCause()),
+                        System.currentTimeMillis() - startTime));
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(pending -> pending.cancel(true));
+                throw new IllegalStateException("Interrupted while broadcasting to tenants", e);
+            }
+        }
+
+        report.setDurationMillis(System.currentTimeMillis() - startTime);
+        logger.info("Broadcast to {} tenants finished: {}", futures.size(), report);
+        return report;
+    }
+
+    private <T> TenantBroadcastResult apply(DBTypeEnum tenant, String requestKey, Function<DBTypeEnum, T> work) {
+        long startTime = System.currentTimeMillis();
+        try {
+            DBContextHolder.setCurrentDb(tenant);
+            TenantBroadcastResult outcome = transactionTemplate.execute(status -> {
+                if (requestKey != null && idempotencyKeyService.exists(tenant, requestKey)) {
+                    return TenantBroadcastResult.alreadyApplied(tenant.name(), System.currentTimeMillis() - startTime);
+                }
+                T result = work.apply(tenant);
+                if (requestKey != null) {
+                    // A concurrent attempt with the same key makes this insert, and so the transaction, fail
+                    idempotencyKeyService.record(Collections.singletonMap(requestKey, null));
+                }
+                return TenantBroadcastResult.succeeded(tenant.name(), result, System.currentTimeMillis() - startTime);
+            });
+            if (TenantBroadcastResult.ALREADY_APPLIED.equals(outcome.getOutcome())) {
+                logger.info("Broadcast with request key {} was already applied to {}", requestKey, tenant);
+            }
+            return outcome;
+
+        } catch (Exception e) {
+            logger.error("Broadcast to {} failed, its transaction was rolled back", tenant, e);
+            return TenantBroadcastResult.failed(tenant.name(), e.getMessage(), System.currentTimeMillis() - startTime);
+        } finally {
+            DBContextHolder.clear();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBContextHolder;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.Post;
+import com.izicap.dynamicmultidatabase.PostEntityListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-tenant version stamps for post data, used to answer conditional GETs without
+ * reading the posts. The stamp combines a counter of this instance's committed post
+ * writes, bumped by every write published to {@link PostEntityListener} (entity writes,
+ * bulk jobs, imports and partition drops), with what the tenant database shows of
+ * writes made elsewhere: the latest {@code updated_at}, which the database assigns with
+ * microseconds on every insert and update, and the maintained post count, which changes
+ * on every create and delete. Both are read with a single indexed query.
+ *
+ * Deletes made by another instance change the count once that instance flushes it,
+ * within {@code app.row-count.flush-interval-ms}. Stamps of different instances differ
+ * in their counter, so a client switching instances gets a full response once.
+ */
+@Service
+public class TenantDataVersionService implements PostEntityListener.Observer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantDataVersionService.class);
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    @Autowired
+    private RowCountService rowCountService;
+
+    private JdbcTemplate jdbcTemplate;
+
+    // Last stamp seen per tenant, which dates the last-modified time of a new stamp
+    private final Map<DBTypeEnum, DataVersion> versions = new ConcurrentHashMap<>();
+
+    // Committed post writes per tenant seen by this instance
+    private final Map<DBTypeEnum, AtomicLong> changes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        jdbcTemplate = new JdbcTemplate(multiRoutingDataSource);
+        PostEntityListener.addObserver(this);
+    }
+
+    @PreDestroy
+    public void stop() {
+        PostEntityListener.removeObserver(this);
+    }
+
+    @Override
+    public void onPostChange(DBTypeEnum tenant, Post post, PostEntityListener.ChangeType changeType) {
+        changes.computeIfAbsent(tenant, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    @Override
+    public void onPostsChanged(DBTypeEnum tenant, List<Long> ids, PostEntityListener.ChangeType changeType) {
+        if (!ids.isEmpty()) {
+            changes.computeIfAbsent(tenant, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Current version of a tenant's post data
+     */
+    public DataVersion getVersion(DBTypeEnum tenant) {
+        DataVersion current = readVersion(tenant);
+        return versions.compute(tenant, (key, previous) -> {
+            if (previous != null && previous.sameData(current)) {
+                return previous;
+            }
+            // HTTP dates only carry second precision; always advance, so If-Modified-Since
+            // clients notice changes within the same second
+            long now = System.currentTimeMillis() / 1000 * 1000;
+            current.lastModified = previous != null ? Math.max(previous.lastModified + 1000, now) : now;
+            if (previous != null) {
+                logger.debug("Data version of {} changed from {} to {}", tenant, previous.getETag(), current.getETag());
+            }
+            return current;
+        });
+    }
+
+    private DataVersion readVersion(DBTypeEnum tenant) {
+        // Read first: a write committing during the query then shows in the next stamp
+        AtomicLong changeCount = changes.get(tenant);
+        long changed = changeCount != null ? changeCount.get() : 0;
+        DBTypeEnum previous = DBContextHolder.getCurrentDb();
+        DBContextHolder.setCurrentDb(tenant);
+        try {
+            DataVersion version = jdbcTemplate.queryForObject(
+                    "SELECT (SELECT MAX(updated_at) FROM post) AS max_updated_at, " +
+                    "(SELECT row_count FROM table_row_count WHERE table_name = 'post') AS row_count",
+                    (rs, rowNum) -> {
+                        Timestamp maxUpdatedAt = rs.getTimestamp("max_updated_at");
+                        long rowCount = rs.getLong("row_count");
+                        return new DataVersion(tenant, maxUpdatedAt != null ? micros(maxUpdatedAt) : 0,
+                                rs.wasNull() ? -1 : rowCount, changed);
+                    });
+            version.rowCount += rowCountService.pendingDelta(tenant);
+            return version;
+        } finally {
+            if (previous != null) {
+                DBContextHolder.setCurrentDb(previous);
+            } else {
+                DBContextHolder.clear();
+            }
+        }
+    }
+
+    private static long micros(Timestamp timestamp) {
+        return Math.floorDiv(timestamp.getTime(), 1000L) * 1_000_000L + timestamp.getNanos() / 1000;
+    }
+
+    public static class DataVersion {
+        private final DBTypeEnum tenant;
+        private final long maxUpdatedAtMicros;
+        private long rowCount;
+        private final long changes;
+        private volatile long lastModified;
+
+        DataVersion(DBTypeEnum tenant, long maxUpdatedAtMicros, long rowCount, long changes) {
+            this.tenant = tenant;
+            this.maxUpdatedAtMicros = maxUpdatedAtMicros;
+            this.rowCount = rowCount;
+            this.changes = changes;
+        }
+
+        boolean sameData(DataVersion other) {
+            return maxUpdatedAtMicros == other.maxUpdatedAtMicros && rowCount == other.rowCount
+                    && changes == other.changes;
+        }
+
+        public String getETag() {
+            return "W/\"" + tenant.name().toLowerCase() + "-" + Long.toHexString(maxUpdatedAtMicros) + "-" + rowCount
+                    + "-" + changes + "\"";
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
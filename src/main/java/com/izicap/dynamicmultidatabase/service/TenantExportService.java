@@ -0,0 +1,291 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.model.DataFileFormat;
+import com.izicap.dynamicmultidatabase.model.TenantExportResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports tenant databases to gzip-compressed NDJSON or CSV files, one file per table.
+ * Rows are read with a forward-only streaming cursor and written straight to a file
+ * channel, so heap usage stays flat regardless of table size.
+ */
+@Service
+public class TenantExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantExportService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    @Value("${app.export.directory:exports}")
+    private String exportDirectory;
+
+    @Value("${app.export.format:ndjson}")
+    private String defaultFormat;
+
+    @Value("${app.export.parallelism:2}")
+    private int parallelism;
+
+    @Value("${app.export.excluded-tables:flyway_schema_history,flyway_partitioning_history,bulk_import_checkpoint,bulk_operation_checkpoint,backfill_checkpoint,post_id_guard}")
+    private String excludedTables;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Nightly export of every tenant, enabled by setting {@code app.export.cron}
+     */
+    @Scheduled(cron = "${app.export.cron:-}")
+    public void scheduledExport() {
+        logger.info("Starting scheduled export of all tenant databases");
+        exportTenants(Arrays.asList(DBTypeEnum.values()), DataFileFormat.fromName(defaultFormat));
+    }
+
+    /**
+     * Export several tenants in parallel into a new timestamped directory
+     */
+    public List<TenantExportResult> exportTenants(Collection<DBTypeEnum> tenants, DataFileFormat format) {
+        Path runDirectory = Paths.get(exportDirectory,
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmmss")));
+        logger.info("Exporting {} tenants as {} to {} with parallelism {}", tenants.size(), format, runDirectory, parallelism);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, tenants.size())));
+        try {
+            List<Future<TenantExportResult>> futures = new ArrayList<>();
+            for (DBTypeEnum tenant : tenants) {
+                futures.add(executor.submit(() -> exportTenant(tenant, format, runDirectory.resolve(tenant.name().toLowerCase()))));
+            }
+
+            List<TenantExportResult> results = new ArrayList<>();
+            for (Future<TenantExportResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tenant export was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tenant export failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Export every table of one tenant into the target directory. Failures are reported
+     * in the result rather than thrown.
+     */
+    public TenantExportResult exportTenant(DBTypeEnum tenant, DataFileFormat format, Path targetDirectory) {
+        TenantExportResult result = new TenantExportResult(tenant.name(), targetDirectory.toString());
+        long startTime = System.currentTimeMillis();
+
+        try (Connection connection = multiRoutingDataSource.getGatedDataSource(tenant).getConnection()) {
+            Files.createDirectories(targetDirectory);
+            boolean mysql = connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+
+            for (String table : listTables(connection)) {
+                Path file = targetDirectory.resolve(table + format.getExtension() + ".gz");
+                long rows = exportTable(connection, table, format, file, mysql);
+                result.addTable(table, rows, Files.size(file));
+                logger.debug("Exported {} rows of {}.{} to {}", rows, tenant, table, file);
+            }
+            result.setSuccess(true);
+
+        } catch (SQLException | IOException | RuntimeException e) {
+            logger.error("Export failed for tenant {}", tenant, e);
+            result.setError(e.getMessage());
+        }
+
+        result.complete(System.currentTimeMillis() - startTime);
+        logger.info("Exported tenant {}: {} rows in {} ms ({} rows/s)",
+                  tenant, result.getRows(), result.getDurationMillis(), result.getRowsPerSecond());
+        return result;
+    }
+
+    private List<String> listTables(Connection connection) throws SQLException {
+        Set<String> excluded = Arrays.stream(excludedTables.split(","))
+                .map(String::trim)
+                .map(String::toLowerCase)
+                .collect(Collectors.toSet());
+
+        List<String> tables = new ArrayList<>();
+        DatabaseMetaData metaData = connection.getMetaData();
+        // The schema keeps databases like H2 from listing their information schema tables
+        try (ResultSet rs = metaData.getTables(connection.getCatalog(), connection.getSchema(), "%", new String[]{"TABLE"})) {
+            while (rs.next()) {
+                String table = rs.getString("TABLE_NAME");
+                if (!excluded.contains(table.toLowerCase())) {
+                    tables.add(table);
+                }
+            }
+        }
+        return tables;
+    }
+
+    private long exportTable(Connection connection, String table, DataFileFormat format, Path file, boolean mysql)
+            throws SQLException, IOException {
+        // Write to a temporary file first, so an interrupted export never looks complete
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        long rows = 0;
+
+        try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Integer.MIN_VALUE makes MySQL Connector/J stream rows one by one instead of buffering the result
+            statement.setFetchSize(mysql ? Integer.MIN_VALUE : 1000);
+
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM " + quote(table, mysql));
+                 FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 OutputStream out = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE)) {
+
+                ResultSetMetaData metaData = rs.getMetaData();
+                String[] columns = new String[metaData.getColumnCount()];
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = metaData.getColumnLabel(i + 1);
+                }
+
+                if (format == DataFileFormat.NDJSON) {
+                    rows = writeNdjson(rs, columns, out);
+                } else {
+                    rows = writeCsv(rs, columns, out);
+                }
+            }
+        }
+
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    private long writeNdjson(ResultSet rs, String[] columns, OutputStream out) throws SQLException, IOException {
+        long rows = 0;
+        try (JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            generator.setRootValueSeparator(null);
+
+            while (rs.next()) {
+                generator.writeStartObject();
+                for (int i = 0; i < columns.length; i++) {
+                    generator.writeFieldName(columns[i]);
+                    writeJsonValue(generator, rs, i + 1);
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private void writeJsonValue(JsonGenerator generator, ResultSet rs, int column) throws SQLException, IOException {
+        Object value = rs.getObject(column);
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof Number) {
+            generator.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof byte[]) {
+            generator.writeBinary((byte[]) value);
+        } else {
+            // Temporal values use the database's textual form, which imports back unchanged
+            generator.writeString(rs.getString(column));
+        }
+    }
+
+    private long writeCsv(ResultSet rs, String[] columns, OutputStream out) throws SQLException, IOException {
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCsvField(writer, columns[i]);
+        }
+        writer.write('\n');
+
+        while (rs.next()) {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                String value = rs.getString(i + 1);
+                if (value == null) {
+                    // Same NULL marker as MySQL's SELECT ... INTO OUTFILE and LOAD DATA
+                    writer.write("\\N");
+                } else {
+                    writeCsvField(writer, value);
+                }
+            }
+            writer.write('\n');
+            rows++;
+        }
+
+        writer.flush();
+        return rows;
+    }
+
+    private void writeCsvField(Writer writer, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0 && !value.equals("\\N")) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private String quote(String identifier, boolean mysql) {
+        return mysql ? "`" + identifier.replace("`", "``") + "`" : "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
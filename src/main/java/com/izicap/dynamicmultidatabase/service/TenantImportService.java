@@ -0,0 +1,826 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.PostEntityListener;
+import com.izicap.dynamicmultidatabase.model.DataFileFormat;
+import com.izicap.dynamicmultidatabase.model.TenantImportResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Bulk loads NDJSON or CSV files (plain or gzip-compressed, as written by
+ * {@link TenantExportService}) into tenant tables.
+ *
+ * Rows are committed in chunks, each together with its progress row in the tenant's
+ * {@code bulk_import_checkpoint} table, so a failed import resumes after the last
+ * committed chunk. On MySQL each chunk is loaded with {@code LOAD DATA LOCAL INFILE}
+ * when the driver allows it and the table has no binary columns, and with multi-row
+ * inserts otherwise. Posts imported into the {@code post} table are published to the
+ * {@link PostEntityListener} observers once their chunk commits.
+ */
+@Service
+public class TenantImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantImportService.class);
+
+    private static final String METHOD_LOAD_DATA = "LOAD_DATA";
+
+    private static final String METHOD_INSERT = "INSERT";
+
+    // MySQL rejects prepared statements with more placeholders than this
+    private static final int MAX_PLACEHOLDERS = 65535;
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    @Value("${app.import.directory:exports}")
+    private String importDirectory;
+
+    @Value("${app.import.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${app.import.load-data-enabled:true}")
+    private boolean loadDataEnabled;
+
+    @Value("${app.import.rebuild-indexes:true}")
+    private boolean rebuildIndexes;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    // Tenants whose driver or server refused LOAD DATA LOCAL INFILE
+    private final Set<DBTypeEnum> loadDataRefused = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Resolve a path relative to the import directory, rejecting paths that escape it
+     */
+    public Path resolveImportPath(String relativePath) {
+        Path base = Paths.get(importDirectory).toAbsolutePath().normalize();
+        Path resolved = base.resolve(relativePath).normalize();
+        if (!resolved.startsWith(base)) {
+            throw new IllegalArgumentException("Import path must be inside " + base);
+        }
+        if (!Files.exists(resolved)) {
+            throw new IllegalArgumentException("Import path does not exist: " + relativePath);
+        }
+        return resolved;
+    }
+
+    /**
+     * Import every data file of a directory, such as one tenant directory of an export,
+     * into the table named after each file
+     */
+    public List<TenantImportResult> importDirectory(DBTypeEnum tenant, Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+                if (Files.isRegularFile(file) && !name.endsWith(".partial") && isDataFile(name)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(null);
+
+        List<TenantImportResult> results = new ArrayList<>();
+        for (Path file : files) {
+            results.add(importFile(tenant, file, tableName(file)));
+        }
+        return results;
+    }
+
+    /**
+     * Import one data file into a tenant table, resuming after the last committed chunk
+     * of an earlier run of the same file. The table defaults to the file name without
+     * its extensions. Failures are reported in the result rather than thrown.
+     */
+    public TenantImportResult importFile(DBTypeEnum tenant, Path file, String targetTable) {
+        String table = targetTable != null && !targetTable.isBlank() ? targetTable : tableName(file);
+        TenantImportResult result = new TenantImportResult(tenant.name(), table, file.getFileName().toString());
+        long startTime = System.currentTimeMillis();
+
+        try (Connection connection = multiRoutingDataSource.getGatedDataSource(tenant).getConnection()) {
+            boolean mysql = connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+
+            // Keyed by content, so a changed file with the same name and size starts over
+            String importKey = table + ":" + contentDigest(file);
+            Checkpoint checkpoint = loadCheckpoint(connection, importKey);
+
+            if (checkpoint != null && checkpoint.completed) {
+                logger.info("Import {} into {}.{} already completed, skipping", file.getFileName(), tenant, table);
+                result.setResumedRows(checkpoint.rowsCommitted);
+                result.setSuccess(true);
+            } else {
+                if (checkpoint == null) {
+                    checkpoint = startCheckpoint(connection, importKey, table, mysql);
+                } else {
+                    logger.info("Resuming import {} into {}.{} after {} committed rows",
+                              file.getFileName(), tenant, table, checkpoint.rowsCommitted);
+                }
+                result.setResumedRows(checkpoint.rowsCommitted);
+
+                loadChunks(connection, tenant, file, table, checkpoint, mysql, result);
+                finishCheckpoint(connection, table, checkpoint);
+                result.setSuccess(true);
+            }
+
+        } catch (SQLException | IOException | RuntimeException e) {
+            logger.error("Import of {} into {}.{} failed after {} rows", file, tenant, table, result.getRows(), e);
+            result.setError(e.getMessage());
+        }
+
+        result.complete(System.currentTimeMillis() - startTime);
+        logger.info("Imported {} rows into {}.{} in {} ms ({} rows/s, method {})",
+                  result.getRows(), tenant, table, result.getDurationMillis(), result.getRowsPerSecond(), result.getMethod());
+        return result;
+    }
+
+    private void loadChunks(Connection connection, DBTypeEnum tenant, Path file, String table, Checkpoint checkpoint,
+                            boolean mysql, TenantImportResult result) throws SQLException, IOException {
+        Map<String, Integer> columnTypes = readColumnTypes(connection, table, mysql);
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        if (mysql) {
+            // Exported tables are consistent as a whole but are imported one file at a time
+            execute(connection, "SET SESSION foreign_key_checks = 0");
+        }
+
+        try (RowReader reader = openReader(file, columnTypes)) {
+            String[] columns = reader.getColumns();
+            for (String column : columns) {
+                if (!columnTypes.containsKey(column.toLowerCase(Locale.ROOT))) {
+                    throw new IllegalArgumentException("Column " + column + " does not exist in table " + table);
+                }
+            }
+
+            // LOAD DATA reads text only, so tables with binary columns are always inserted
+            boolean binary = hasBinaryColumn(columns, columnTypes);
+            int idColumn = "post".equalsIgnoreCase(table) ? indexOf(columns, "id") : -1;
+
+            for (long skipped = 0; skipped < checkpoint.rowsCommitted; skipped++) {
+                if (reader.next() == null) {
+                    break;
+                }
+            }
+
+            List<Object[]> chunk = new ArrayList<>(chunkSize);
+            Object[] row;
+            do {
+                row = reader.next();
+                if (row != null) {
+                    chunk.add(row);
+                }
+                if (chunk.size() == chunkSize || (row == null && !chunk.isEmpty())) {
+                    String method = loadChunk(connection, tenant, table, columns, chunk, mysql, binary);
+                    checkpoint.rowsCommitted += chunk.size();
+                    updateCheckpoint(connection, checkpoint);
+                    connection.commit();
+                    if (idColumn >= 0) {
+                        PostEntityListener.publishBulk(tenant, ids(chunk, idColumn), PostEntityListener.ChangeType.CREATED);
+                    }
+
+                    result.addChunk(chunk.size());
+                    result.setMethod(method);
+                    chunk.clear();
+                }
+            } while (row != null);
+
+        } catch (SQLException | IOException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            if (mysql) {
+                execute(connection, "SET SESSION foreign_key_checks = 1");
+            }
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Load one chunk inside the current transaction. LOAD DATA is tried first and
+     * abandoned for the tenant as soon as the driver or server refuses it.
+     */
+    private String loadChunk(Connection connection, DBTypeEnum tenant, String table, String[] columns,
+                             List<Object[]> chunk, boolean mysql, boolean binary) throws SQLException, IOException {
+        if (mysql && loadDataEnabled && !loadDataRefused.contains(tenant) && !binary) {
+            try {
+                loadDataInfile(connection, table, columns, chunk);
+                return METHOD_LOAD_DATA;
+            } catch (SQLException e) {
+                if (!isLoadDataDisabled(e)) {
+                    throw e;
+                }
+                logger.warn("LOAD DATA LOCAL INFILE is not allowed for {} ({}), falling back to multi-row inserts",
+                          tenant, e.getMessage());
+                loadDataRefused.add(tenant);
+            }
+        }
+        insertRows(connection, table, columns, chunk, mysql);
+        return METHOD_INSERT;
+    }
+
+    private void loadDataInfile(Connection connection, String table, String[] columns, List<Object[]> chunk)
+            throws SQLException, IOException {
+        Path chunkFile = Files.createTempFile("bulk-import-", ".tsv");
+        try {
+            try (Writer writer = Files.newBufferedWriter(chunkFile, StandardCharsets.UTF_8)) {
+                for (Object[] row : chunk) {
+                    for (int i = 0; i < row.length; i++) {
+                        if (i > 0) {
+                            writer.write('\t');
+                        }
+                        writeTsvField(writer, row[i]);
+                    }
+                    writer.write('\n');
+                }
+            }
+
+            StringBuilder sql = new StringBuilder("LOAD DATA LOCAL INFILE '")
+                    .append(chunkFile.toAbsolutePath().toString().replace("\\", "\\\\").replace("'", "\\'"))
+                    .append("' INTO TABLE ").append(quote(table, true))
+                    .append(" CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (");
+            for (int i = 0; i < columns.length; i++) {
+                sql.append(i > 0 ? ", " : "").append(quote(columns[i], true));
+            }
+            sql.append(')');
+
+            try (Statement statement = connection.createStatement()) {
+                long loaded = statement.executeLargeUpdate(sql.toString());
+                if (loaded != chunk.size()) {
+                    throw new SQLException("LOAD DATA loaded " + loaded + " of " + chunk.size() + " rows into " + table);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(chunkFile);
+        }
+    }
+
+    /**
+     * Write a value as a LOAD DATA field, escaped for FIELDS ESCAPED BY '\\'
+     */
+    static void writeTsvField(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            writer.write("\\N");
+            return;
+        }
+        String text = value instanceof Boolean ? ((Boolean) value ? "1" : "0") : value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\': writer.write("\\\\"); break;
+                case '\t': writer.write("\\t"); break;
+                case '\n': writer.write("\\n"); break;
+                case '\r': writer.write("\\r"); break;
+                case '\0': writer.write("\\0"); break;
+                default: writer.write(c);
+            }
+        }
+    }
+
+    private void insertRows(Connection connection, String table, String[] columns, List<Object[]> chunk, boolean mysql)
+            throws SQLException {
+        int rowsPerStatement = Math.max(1, Math.min(chunk.size(), MAX_PLACEHOLDERS / columns.length));
+
+        for (int start = 0; start < chunk.size(); start += rowsPerStatement) {
+            List<Object[]> rows = chunk.subList(start, Math.min(start + rowsPerStatement, chunk.size()));
+
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(quote(table, mysql)).append(" (");
+            for (int i = 0; i < columns.length; i++) {
+                sql.append(i > 0 ? ", " : "").append(quote(columns[i], mysql));
+            }
+            sql.append(") VALUES ");
+            String placeholders = "(" + "?, ".repeat(columns.length - 1) + "?)";
+            for (int i = 0; i < rows.size(); i++) {
+                sql.append(i > 0 ? ", " : "").append(placeholders);
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                int index = 1;
+                for (Object[] row : rows) {
+                    for (Object value : row) {
+                        statement.setObject(index++, value);
+                    }
+                }
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Drop the non-unique secondary indexes of an empty MySQL table before the first
+     * chunk, so they are built once at the end instead of maintained row by row. The
+     * definitions are kept in the checkpoint, so a resumed import still restores them.
+     */
+    private void dropSecondaryIndexes(Connection connection, String table, Checkpoint checkpoint) throws SQLException {
+        Map<String, StringBuilder> definitions = new LinkedHashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT INDEX_NAME, COLUMN_NAME, SUB_PART FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND NON_UNIQUE = 1 AND INDEX_TYPE = 'BTREE' " +
+                "ORDER BY INDEX_NAME, SEQ_IN_INDEX")) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    String column = quote(rs.getString("COLUMN_NAME"), true);
+                    long subPart = rs.getLong("SUB_PART");
+                    if (!rs.wasNull()) {
+                        column += "(" + subPart + ")";
+                    }
+                    StringBuilder definition = definitions.computeIfAbsent(rs.getString("INDEX_NAME"), name -> new StringBuilder());
+                    definition.append(definition.length() > 0 ? ", " : "").append(column);
+                }
+            }
+        }
+
+        for (Map.Entry<String, StringBuilder> entry : definitions.entrySet()) {
+            try {
+                execute(connection, "ALTER TABLE " + quote(table, true) + " DROP INDEX " + quote(entry.getKey(), true));
+            } catch (SQLException e) {
+                // Indexes backing a foreign key cannot be dropped; they are simply maintained during the load
+                logger.debug("Keeping index {} on {}: {}", entry.getKey(), table, e.getMessage());
+                continue;
+            }
+            checkpoint.droppedIndexes.add(quote(entry.getKey(), true) + " (" + entry.getValue() + ")");
+            recordDroppedIndexes(connection, checkpoint);
+        }
+        logger.info("Dropped {} secondary indexes on {} for the import", checkpoint.droppedIndexes.size(), table);
+    }
+
+    /**
+     * Re-create the dropped indexes that do not exist yet. An import that stopped after
+     * the rebuild but before it was marked completed finds them all in place on resume.
+     */
+    private void rebuildSecondaryIndexes(Connection connection, String table, List<String> indexes) throws SQLException {
+        Set<String> existing = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT DISTINCT INDEX_NAME FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?")) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getString(1).toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (String index : indexes) {
+            // Definitions are "`name` (columns)"
+            String name = index.substring(1, index.indexOf("` (")).replace("``", "`");
+            if (!existing.contains(name.toLowerCase(Locale.ROOT))) {
+                missing.add(index);
+            }
+        }
+        if (missing.isEmpty()) {
+            logger.info("Secondary indexes on {} already rebuilt", table);
+            return;
+        }
+
+        StringBuilder sql = new StringBuilder("ALTER TABLE ").append(quote(table, true));
+        for (int i = 0; i < missing.size(); i++) {
+            sql.append(i > 0 ? "," : "").append(" ADD INDEX ").append(missing.get(i));
+        }
+
+        long startTime = System.currentTimeMillis();
+        execute(connection, sql.toString());
+        logger.info("Rebuilt {} secondary indexes on {} in {} ms", missing.size(), table, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Hex SHA-256 of the file as stored, compressed or not, read in one streaming pass
+     */
+    private static String contentDigest(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private Checkpoint loadCheckpoint(Connection connection, String importKey) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT rows_committed, dropped_indexes, completed FROM bulk_import_checkpoint WHERE import_key = ?")) {
+            statement.setString(1, importKey);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Checkpoint checkpoint = new Checkpoint(importKey);
+                checkpoint.rowsCommitted = rs.getLong("rows_committed");
+                checkpoint.droppedIndexes = splitIndexes(rs.getString("dropped_indexes"));
+                checkpoint.completed = rs.getBoolean("completed");
+                return checkpoint;
+            }
+        }
+    }
+
+    private Checkpoint startCheckpoint(Connection connection, String importKey, String table, boolean mysql)
+            throws SQLException {
+        Checkpoint checkpoint = new Checkpoint(importKey);
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO bulk_import_checkpoint (import_key, table_name, rows_committed) VALUES (?, ?, 0)")) {
+            statement.setString(1, importKey);
+            statement.setString(2, table);
+            statement.executeUpdate();
+        }
+
+        // Only safe on an empty table: rebuilding the indexes of a populated one costs more than it saves
+        if (mysql && rebuildIndexes && isEmpty(connection, table)) {
+            dropSecondaryIndexes(connection, table, checkpoint);
+        }
+        return checkpoint;
+    }
+
+    private void recordDroppedIndexes(Connection connection, Checkpoint checkpoint) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE bulk_import_checkpoint SET dropped_indexes = ? WHERE import_key = ?")) {
+            statement.setString(1, String.join(";", checkpoint.droppedIndexes));
+            statement.setString(2, checkpoint.importKey);
+            statement.executeUpdate();
+        }
+    }
+
+    private void updateCheckpoint(Connection connection, Checkpoint checkpoint) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE bulk_import_checkpoint SET rows_committed = ?, updated_at = CURRENT_TIMESTAMP WHERE import_key = ?")) {
+            statement.setLong(1, checkpoint.rowsCommitted);
+            statement.setString(2, checkpoint.importKey);
+            statement.executeUpdate();
+        }
+    }
+
+    private void finishCheckpoint(Connection connection, String table, Checkpoint checkpoint) throws SQLException {
+        if (!checkpoint.droppedIndexes.isEmpty()) {
+            rebuildSecondaryIndexes(connection, table, checkpoint.droppedIndexes);
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE bulk_import_checkpoint SET completed = TRUE, dropped_indexes = NULL, " +
+                "updated_at = CURRENT_TIMESTAMP WHERE import_key = ?")) {
+            statement.setString(1, checkpoint.importKey);
+            statement.executeUpdate();
+        }
+    }
+
+    private Map<String, Integer> readColumnTypes(Connection connection, String table, boolean mysql) throws SQLException {
+        Map<String, Integer> columnTypes = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT * FROM " + quote(table, mysql) + " WHERE 1 = 0")) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columnTypes.put(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), metaData.getColumnType(i));
+            }
+        }
+        return columnTypes;
+    }
+
+    private boolean isEmpty(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT 1 FROM " + quote(table, true) + " LIMIT 1")) {
+            return !rs.next();
+        }
+    }
+
+    private RowReader openReader(Path file, Map<String, Integer> columnTypes) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+        if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz")) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+
+        DataFileFormat format = DataFileFormat.fromFileName(file.getFileName().toString());
+        return format == DataFileFormat.NDJSON ? new NdjsonRowReader(in, columnTypes) : new CsvRowReader(in);
+    }
+
+    private boolean isDataFile(String fileName) {
+        try {
+            DataFileFormat.fromFileName(fileName);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private String tableName(Path file) {
+        String name = file.getFileName().toString().replaceFirst("(?i)\\.gz$", "");
+        return name.substring(0, name.lastIndexOf('.'));
+    }
+
+    private static boolean hasBinaryColumn(String[] columns, Map<String, Integer> columnTypes) {
+        for (String column : columns) {
+            if (isBinaryType(columnTypes.get(column.toLowerCase(Locale.ROOT)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isBinaryType(Integer type) {
+        return type != null && (type == Types.BINARY || type == Types.VARBINARY
+                || type == Types.LONGVARBINARY || type == Types.BLOB);
+    }
+
+    private static int indexOf(String[] columns, String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static List<Long> ids(List<Object[]> chunk, int idColumn) {
+        List<Long> ids = new ArrayList<>(chunk.size());
+        for (Object[] row : chunk) {
+            Object id = row[idColumn];
+            if (id instanceof Number) {
+                ids.add(((Number) id).longValue());
+            } else if (id != null) {
+                ids.add(Long.parseLong(id.toString().trim()));
+            }
+        }
+        return ids;
+    }
+
+    private boolean isLoadDataDisabled(SQLException e) {
+        // 1148: command not allowed by the server, 3948/3950: local infile disabled on client or server
+        int code = e.getErrorCode();
+        String message = e.getMessage() == null ? "" : e.getMessage().toLowerCase(Locale.ROOT);
+        return code == 1148 || code == 3948 || code == 3950 || message.contains("loading local data is disabled");
+    }
+
+    private List<String> splitIndexes(String indexes) {
+        List<String> result = new ArrayList<>();
+        if (indexes != null && !indexes.isBlank()) {
+            for (String index : indexes.split(";")) {
+                result.add(index.trim());
+            }
+        }
+        return result;
+    }
+
+    private void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private String quote(String identifier, boolean mysql) {
+        return mysql ? "`" + identifier.replace("`", "``") + "`" : "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private static class Checkpoint {
+        final String importKey;
+        long rowsCommitted;
+        List<String> droppedIndexes = new ArrayList<>();
+        boolean completed;
+
+        Checkpoint(String importKey) {
+            this.importKey = importKey;
+        }
+    }
+
+    private interface RowReader extends Closeable {
+        String[] getColumns();
+
+        /**
+         * Next row in column order, or null at the end of the file
+         */
+        Object[] next() throws IOException;
+    }
+
+    /**
+     * Reads one JSON object per line. The columns are those of the first object; later
+     * objects missing a column import it as NULL.
+     */
+    private class NdjsonRowReader implements RowReader {
+        private final JsonParser parser;
+        private final Map<String, Integer> columnTypes;
+        private String[] columns;
+        private Map<String, Integer> positions;
+        private Object[] pending;
+
+        NdjsonRowReader(InputStream in, Map<String, Integer> columnTypes) throws IOException {
+            this.parser = jsonFactory.createParser(in);
+            this.columnTypes = columnTypes;
+
+            List<String> names = new ArrayList<>();
+            Map<String, Object> first = readObject();
+            if (first != null) {
+                names.addAll(first.keySet());
+            }
+            columns = names.toArray(new String[0]);
+            positions = new HashMap<>();
+            for (int i = 0; i < columns.length; i++) {
+                positions.put(columns[i], i);
+            }
+            pending = first != null ? toRow(first) : null;
+        }
+
+        @Override
+        public String[] getColumns() {
+            return columns;
+        }
+
+        @Override
+        public Object[] next() throws IOException {
+            if (pending != null) {
+                Object[] row = pending;
+                pending = null;
+                return row;
+            }
+            Map<String, Object> object = readObject();
+            return object != null ? toRow(object) : null;
+        }
+
+        private Map<String, Object> readObject() throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return null;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object at " + parser.getCurrentLocation());
+            }
+
+            Map<String, Object> object = new LinkedHashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (value) {
+                    case VALUE_NULL:
+                        object.put(name, null);
+                        break;
+                    case VALUE_NUMBER_INT:
+                    case VALUE_NUMBER_FLOAT:
+                        object.put(name, parser.getNumberValue());
+                        break;
+                    case VALUE_TRUE:
+                    case VALUE_FALSE:
+                        object.put(name, parser.getBooleanValue());
+                        break;
+                    case VALUE_STRING:
+                        object.put(name, isBinary(name) ? Base64.getDecoder().decode(parser.getText()) : parser.getText());
+                        break;
+                    default:
+                        throw new IOException("Unsupported JSON value for column " + name + " at " + parser.getCurrentLocation());
+                }
+            }
+            return object;
+        }
+
+        private Object[] toRow(Map<String, Object> object) throws IOException {
+            Object[] row = new Object[columns.length];
+            for (Map.Entry<String, Object> entry : object.entrySet()) {
+                Integer position = positions.get(entry.getKey());
+                if (position == null) {
+                    throw new IOException("Unexpected column " + entry.getKey() + " at " + parser.getCurrentLocation());
+                }
+                row[position] = entry.getValue();
+            }
+            return row;
+        }
+
+        private boolean isBinary(String column) {
+            return isBinaryType(columnTypes.get(column.toLowerCase(Locale.ROOT)));
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+    /**
+     * Reads RFC 4180 CSV with a header line; an unquoted {@code \N} field is NULL
+     */
+    private static class CsvRowReader implements RowReader {
+        private final Reader reader;
+        private final String[] columns;
+
+        CsvRowReader(InputStream in) throws IOException {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+            Object[] header = next();
+            if (header == null) {
+                columns = new String[0];
+            } else {
+                columns = new String[header.length];
+                for (int i = 0; i < header.length; i++) {
+                    columns[i] = String.valueOf(header[i]);
+                }
+            }
+        }
+
+        @Override
+        public String[] getColumns() {
+            return columns;
+        }
+
+        @Override
+        public Object[] next() throws IOException {
+            List<Object> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean wasQuoted = false;
+
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted CSV field");
+                    }
+                    if (c == '"') {
+                        reader.mark(1);
+                        int nextChar = reader.read();
+                        if (nextChar == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                    wasQuoted = true;
+                } else if (c == ',' || c == '\n' || c == -1) {
+                    String value = field.toString();
+                    fields.add(!wasQuoted && value.equals("\\N") ? null : value);
+                    field.setLength(0);
+                    wasQuoted = false;
+                    if (c != ',') {
+                        break;
+                    }
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+
+            if (columns != null && fields.size() != columns.length) {
+                throw new IOException("CSV row has " + fields.size() + " fields, expected " + columns.length);
+            }
+            return fields.toArray();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.TenantGate;
+import com.izicap.dynamicmultidatabase.config.FlywayConfig;
+import com.izicap.dynamicmultidatabase.model.DataFileFormat;
+import com.izicap.dynamicmultidatabase.model.TenantExportResult;
+import com.izicap.dynamicmultidatabase.model.TenantImportResult;
+import com.izicap.dynamicmultidatabase.model.TenantLifecycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Moves dormant tenants to cold storage and back. Offloading exports every table of the
+ * tenant as gzipped NDJSON into {@code app.cold-storage.directory}, drops its database and
+ * marks it cold, so routing refuses its connections and its pool holds no idle connections.
+ * Rehydration recreates the database at the schema version of the archive, imports the
+ * archive and then applies the newer migrations, and the archive is deleted once the
+ * tenant is routed again. Lifecycle states are kept in the main database, applied to
+ * routing at startup and polled every {@code app.cold-storage.state-poll-interval-ms},
+ * so every node follows offloads and rehydrations made by another.
+ *
+ * The pause that keeps writes away from a tenant being exported holds on this node only.
+ * In cluster mode no other node connects to a tenant it does not own, so offloads and
+ * rehydrations run on the owner alone; deployments with several replicas need it.
+ *
+ * Tenant activity is persisted in the main database's {@code tenant_activity} table every
+ * {@code app.cold-storage.activity-flush-interval-ms}, so restarts and other nodes do not
+ * make a dormant tenant look recently used.
+ */
+@Service
+public class TenantLifecycleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantLifecycleService.class);
+
+    private static final DateTimeFormatter DIRECTORY_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmmss");
+
+    @Autowired
+    @Qualifier("mainJdbcTemplate")
+    private JdbcTemplate mainJdbcTemplate;
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    @Autowired
+    private FlywayConfig flywayConfig;
+
+    @Autowired
+    private TenantPlacementService placementService;
+
+    @Autowired
+    private TenantExportService tenantExportService;
+
+    @Autowired
+    private TenantImportService tenantImportService;
+
+    @Autowired
+    private RowCountService rowCountService;
+
+    @Value("${app.cold-storage.directory:cold-storage}")
+    private String directory;
+
+    @Value("${app.cold-storage.min-idle-minutes:1440}")
+    private long minIdleMinutes;
+
+    @Value("${app.cold-storage.drain-timeout-ms:5000}")
+    private long drainTimeoutMs;
+
+    @Value("${app.cold-storage.rehydrate-threads:2}")
+    private int rehydrateThreads;
+
+    private final Set<DBTypeEnum> warming = ConcurrentHashMap.newKeySet();
+
+    private final Set<DBTypeEnum> offloading = ConcurrentHashMap.newKeySet();
+
+    // Last checkout time of each tenant's gate already written to tenant_activity
+    private final Map<DBTypeEnum, Long> persistedActivity = new ConcurrentHashMap<>();
+
+    private ExecutorService rehydrateExecutor;
+
+    private volatile boolean tableReady;
+
+    @PostConstruct
+    public void applyRecordedStates() {
+        rehydrateExecutor = Executors.newFixedThreadPool(rehydrateThreads);
+        try {
+            syncRecordedStates();
+        } catch (Exception e) {
+            logger.error("Could not apply recorded tenant lifecycle states: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Follow lifecycle changes recorded by other nodes: route to tenants rehydrated
+     * elsewhere again, and stop routing to tenants offloaded elsewhere
+     */
+    @Scheduled(fixedDelayString = "${app.cold-storage.state-poll-interval-ms:5000}",
+               initialDelayString = "${app.cold-storage.state-poll-interval-ms:5000}")
+    public void pollRecordedStates() {
+        try {
+            syncRecordedStates();
+        } catch (Exception e) {
+            logger.warn("Could not poll recorded tenant lifecycle states: {}", e.getMessage());
+        }
+    }
+
+    private void syncRecordedStates() {
+        ensureTable();
+        Set<DBTypeEnum> cold = EnumSet.noneOf(DBTypeEnum.class);
+        mainJdbcTemplate.query("SELECT tenant_id FROM tenant_lifecycle WHERE state = ?",
+                rs -> {
+                    cold.add(DBTypeEnum.valueOf(rs.getString("tenant_id")));
+                }, TenantLifecycle.COLD);
+
+        for (DBTypeEnum tenant : DBTypeEnum.values()) {
+            // This node's own offloads and rehydrations update routing themselves
+            if (warming.contains(tenant) || offloading.contains(tenant)) {
+                continue;
+            }
+            if (cold.contains(tenant) && !multiRoutingDataSource.isCold(tenant)) {
+                multiRoutingDataSource.markCold(tenant);
+            } else if (!cold.contains(tenant) && multiRoutingDataSource.isCold(tenant)) {
+                multiRoutingDataSource.markWarm(tenant);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rehydrateExecutor.shutdownNow();
+    }
+
+    /**
+     * Lifecycle state of every tenant
+     */
+    public List<TenantLifecycle> getLifecycles() {
+        ensureTable();
+        Map<String, TenantLifecycle> lifecycles = new LinkedHashMap<>();
+        for (DBTypeEnum tenant : DBTypeEnum.values()) {
+            lifecycles.put(tenant.name(), new TenantLifecycle(tenant.name(), TenantLifecycle.ACTIVE));
+        }
+        mainJdbcTemplate.query("SELECT * FROM tenant_lifecycle", rs -> {
+            TenantLifecycle lifecycle = new TenantLifecycle(rs.getString("tenant_id"), rs.getString("state"));
+            lifecycle.setArchivePath(rs.getString("archive_path"));
+            lifecycle.setSchemaVersion(rs.getString("schema_version"));
+            lifecycle.setArchivedRows(rs.getLong("archived_rows"));
+            lifecycle.setOffloadedAt(rs.getTimestamp("offloaded_at"));
+            lifecycle.setRehydratedAt(rs.getTimestamp("rehydrated_at"));
+            lifecycle.setLastError(rs.getString("last_error"));
+            lifecycles.put(lifecycle.getTenant(), lifecycle);
+        });
+        for (DBTypeEnum tenant : warming) {
+            lifecycles.get(tenant.name()).setState(TenantLifecycle.WARMING);
+        }
+        return new ArrayList<>(lifecycles.values());
+    }
+
+    public boolean isCold(DBTypeEnum tenant) {
+        return multiRoutingDataSource.isCold(tenant);
+    }
+
+    /**
+     * Whether this node may offload and rehydrate the tenant: always outside cluster mode
+     */
+    public boolean isOwned(DBTypeEnum tenant) {
+        return multiRoutingDataSource.isOwned(tenant);
+    }
+
+    /**
+     * Record the latest connection checkout of every tenant, and a first sighting of
+     * tenants without activity so far, so idle time is measured across restarts
+     */
+    @Scheduled(fixedDelayString = "${app.cold-storage.activity-flush-interval-ms:60000}")
+    public void persistActivity() {
+        try {
+            ensureTable();
+            for (DBTypeEnum tenant : DBTypeEnum.values()) {
+                long lastEnteredAt = multiRoutingDataSource.getGate(tenant).getLastEnteredAt();
+                Long persisted = persistedActivity.get(tenant);
+                if (persisted != null && lastEnteredAt <= persisted) {
+                    continue;
+                }
+                if (lastEnteredAt > 0) {
+                    mainJdbcTemplate.update(
+                            "INSERT INTO tenant_activity (tenant_id, last_active_at) VALUES (?, ?) " +
+                            "ON DUPLICATE KEY UPDATE last_active_at = GREATEST(last_active_at, VALUES(last_active_at))",
+                            tenant.name(), new Timestamp(lastEnteredAt));
+                } else {
+                    mainJdbcTemplate.update(
+                            "INSERT IGNORE INTO tenant_activity (tenant_id, last_active_at) VALUES (?, CURRENT_TIMESTAMP)",
+                            tenant.name());
+                }
+                persistedActivity.put(tenant, lastEnteredAt);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not persist tenant activity: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Time of the tenant's last activity seen by any node, in epoch milliseconds
+     */
+    private long lastActiveAt(DBTypeEnum tenant) {
+        ensureTable();
+        Timestamp persisted = mainJdbcTemplate.query(
+                "SELECT last_active_at FROM tenant_activity WHERE tenant_id = ?",
+                rs -> rs.next() ? rs.getTimestamp(1) : null, tenant.name());
+        long lastEnteredAt = multiRoutingDataSource.getGate(tenant).getLastEnteredAt();
+        if (persisted == null && lastEnteredAt == 0) {
+            // Not seen before: idle time starts now
+            persistActivity();
+            return System.currentTimeMillis();
+        }
+        return Math.max(persisted != null ? persisted.getTime() : 0, lastEnteredAt);
+    }
+
+    /**
+     * Export a tenant to cold storage and drop its database. Rejects tenants that are
+     * already cold or had connections within {@code app.cold-storage.min-idle-minutes},
+     * unless forced, and in cluster mode tenants this node does not own. New connections
+     * to the tenant wait while it is exported and are refused once it is cold.
+     */
+    public TenantLifecycle offload(DBTypeEnum tenant, boolean force) throws InterruptedException, IOException {
+        if (tenant == DBTypeEnum.MAIN) {
+            throw new IllegalArgumentException("The main database cannot be offloaded");
+        }
+        requireOwned(tenant);
+        if (multiRoutingDataSource.isCold(tenant) || warming.contains(tenant)) {
+            throw new IllegalStateException("Tenant " + tenant + " is already cold");
+        }
+        if (!offloading.add(tenant)) {
+            throw new IllegalStateException("Tenant " + tenant + " is already being offloaded");
+        }
+        try {
+            return offloadPaused(tenant, force);
+        } finally {
+            offloading.remove(tenant);
+        }
+    }
+
+    private TenantLifecycle offloadPaused(DBTypeEnum tenant, boolean force) throws InterruptedException, IOException {
+        TenantGate gate = multiRoutingDataSource.getGate(tenant);
+        long idleMinutes = TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis() - lastActiveAt(tenant));
+        if (!force && idleMinutes < minIdleMinutes) {
+            throw new IllegalStateException("Tenant " + tenant + " was active " + idleMinutes +
+                    " minutes ago, less than the required " + minIdleMinutes);
+        }
+
+        FlywayConfig.DatabaseConfig database = flywayConfig.getTenantDatabase(tenant);
+        Path archive = Paths.get(directory, tenant.name().toLowerCase(),
+                LocalDateTime.now().format(DIRECTORY_TIMESTAMP)).toAbsolutePath();
+        logger.info("Offloading tenant {} to {}", tenant, archive);
+
+        TenantLifecycle lifecycle = new TenantLifecycle(tenant.name(), TenantLifecycle.COLD);
+        gate.pause();
+        try {
+            if (!gate.awaitIdle(drainTimeoutMs)) {
+                throw new IllegalStateException("Tenant " + tenant + " still had " + gate.getInFlight() +
+                        " connections in use after " + drainTimeoutMs + " ms");
+            }
+
+            TenantExportResult export = tenantExportService.exportTenant(tenant, DataFileFormat.NDJSON, archive);
+            if (!export.isSuccess()) {
+                recordError(tenant, "Offload failed: " + export.getError());
+                throw new IOException("Export of tenant " + tenant + " failed: " + export.getError());
+            }
+
+            lifecycle.setArchivePath(archive.toString());
+            lifecycle.setSchemaVersion(flywayConfig.getSchemaVersion(database));
+            lifecycle.setArchivedRows(export.getRows());
+            lifecycle.setOffloadedAt(new Date());
+            mainJdbcTemplate.update(
+                    "INSERT INTO tenant_lifecycle (tenant_id, state, archive_path, schema_version, archived_rows, offloaded_at, last_error) " +
+                    "VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP, NULL) " +
+                    "ON DUPLICATE KEY UPDATE state = VALUES(state), archive_path = VALUES(archive_path), " +
+                    "schema_version = VALUES(schema_version), archived_rows = VALUES(archived_rows), " +
+                    "offloaded_at = CURRENT_TIMESTAMP, last_error = NULL",
+                    tenant.name(), TenantLifecycle.COLD, lifecycle.getArchivePath(), lifecycle.getSchemaVersion(),
+                    lifecycle.getArchivedRows());
+            multiRoutingDataSource.markCold(tenant);
+
+            // Still paused, so connections waiting at the gate cannot reach the database being dropped
+            try {
+                placementService.dropDatabase(database);
+            } catch (SQLException e) {
+                // The archive is complete and the tenant is cold either way; the database is only left behind
+                logger.error("Could not drop the database of offloaded tenant {}", tenant, e);
+                recordError(tenant, "Database was not dropped: " + e.getMessage());
+            }
+        } finally {
+            // Waiting connections now fail fast as cold, or proceed if the offload failed
+            gate.resume();
+        }
+
+        logger.info("Offloaded tenant {}: {} rows at schema version {} archived to {}",
+                  tenant, lifecycle.getArchivedRows(), lifecycle.getSchemaVersion(), archive);
+        return lifecycle;
+    }
+
+    /**
+     * Start rehydrating a cold tenant in the background. Returns false when the tenant
+     * is not cold, is already being rehydrated or, in cluster mode, is owned by another node.
+     */
+    public boolean rehydrateAsync(DBTypeEnum tenant) {
+        if (!multiRoutingDataSource.isCold(tenant) || !multiRoutingDataSource.isOwned(tenant) || !warming.add(tenant)) {
+            return false;
+        }
+        try {
+            rehydrateExecutor.execute(() -> {
+                try {
+                    rehydrate(tenant);
+                } catch (Exception e) {
+                    logger.error("Rehydration of tenant {} failed, it stays cold", tenant, e);
+                    recordError(tenant, "Rehydration failed: " + e.getMessage());
+                } finally {
+                    warming.remove(tenant);
+                }
+            });
+        } catch (RuntimeException e) {
+            warming.remove(tenant);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Recreate a cold tenant's database from its archive and route to it again
+     */
+    private void rehydrate(DBTypeEnum tenant) throws SQLException, IOException {
+        long startTime = System.currentTimeMillis();
+        String recordedState = mainJdbcTemplate.query("SELECT state FROM tenant_lifecycle WHERE tenant_id = ?",
+                rs -> rs.next() ? rs.getString(1) : null, tenant.name());
+        if (!TenantLifecycle.COLD.equals(recordedState)) {
+            // Rehydrated by another node since this one last polled
+            logger.info("Tenant {} is no longer cold, routing to it again", tenant);
+            multiRoutingDataSource.markWarm(tenant);
+            return;
+        }
+        TenantLifecycle lifecycle = getLifecycles().stream()
+                .filter(candidate -> candidate.getTenant().equals(tenant.name()))
+                .findFirst()
+                .orElseThrow();
+        if (lifecycle.getArchivePath() == null || !Files.isDirectory(Paths.get(lifecycle.getArchivePath()))) {
+            throw new IllegalStateException("Archive of tenant " + tenant + " not found: " + lifecycle.getArchivePath());
+        }
+        Path archive = Paths.get(lifecycle.getArchivePath());
+        FlywayConfig.DatabaseConfig database = flywayConfig.getTenantDatabase(tenant);
+        logger.info("Rehydrating tenant {} from {}", tenant, archive);
+
+        // Start from an empty database, also after an earlier rehydration failed halfway
+        placementService.dropDatabase(database);
+        placementService.ensureDatabase(database);
+        if (lifecycle.getSchemaVersion() != null) {
+            flywayConfig.migrateToVersion(database, lifecycle.getSchemaVersion());
+        }
+
+        Map<String, Path> files = archiveFiles(archive);
+        DataSource dataSource = multiRoutingDataSource.getGatedDataSource(tenant);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String table : new ArrayList<>(files.keySet())) {
+                if (!tableExists(connection, table)) {
+                    logger.warn("Table {} of tenant {} does not exist at schema version {}, not restoring {}",
+                              table, tenant, lifecycle.getSchemaVersion(), files.get(table));
+                    files.remove(table);
+                    continue;
+                }
+                // Rows seeded by migrations are in the archive as well
+                statement.executeUpdate("DELETE FROM `" + table.replace("`", "``") + "`");
+            }
+        }
+
+        long rows = 0;
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            TenantImportResult result = tenantImportService.importFile(tenant, file.getValue(), file.getKey());
+            if (!result.isSuccess()) {
+                throw new IllegalStateException("Import of " + file.getValue() + " failed: " + result.getError());
+            }
+            rows += result.getRows();
+        }
+
+        flywayConfig.migrateTenantDatabase(database.getUrl(), database.getUsername(), database.getPassword(), tenant.name());
+
+        mainJdbcTemplate.update(
+                "UPDATE tenant_lifecycle SET state = ?, archive_path = NULL, rehydrated_at = CURRENT_TIMESTAMP, " +
+                "last_error = NULL WHERE tenant_id = ?",
+                TenantLifecycle.ACTIVE, tenant.name());
+        multiRoutingDataSource.markWarm(tenant);
+        // The archive restored the stored count, and the import published its rows as created on top of it
+        try {
+            rowCountService.reconcile(tenant);
+        } catch (Exception e) {
+            logger.warn("Could not reconcile the row count of rehydrated tenant {}: {}", tenant, e.getMessage());
+        }
+        deleteArchive(tenant, archive);
+
+        logger.info("Rehydrated tenant {} with {} rows in {} ms", tenant, rows, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Data files of an archive keyed by table, named like the export writes them
+     */
+    private Map<String, Path> archiveFiles(Path archive) throws IOException {
+        Map<String, Path> files = new LinkedHashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(archive, "*.gz")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                files.put(name.substring(0, name.indexOf('.')), file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Delete an archive whose data is back in the tenant database
+     */
+    private void deleteArchive(DBTypeEnum tenant, Path archive) {
+        try (Stream<Path> paths = Files.walk(archive)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+            logger.info("Deleted archive {} of rehydrated tenant {}", archive, tenant);
+        } catch (IOException e) {
+            logger.warn("Could not delete archive {} of rehydrated tenant {}: {}", archive, tenant, e.getMessage());
+        }
+    }
+
+    private void requireOwned(DBTypeEnum tenant) {
+        if (!multiRoutingDataSource.isOwned(tenant)) {
+            throw new IllegalStateException("Tenant " + tenant + " is owned by another node, offload it there");
+        }
+    }
+
+    private boolean tableExists(Connection connection, String table) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(connection.getCatalog(), connection.getSchema(), table, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    private void recordError(DBTypeEnum tenant, String error) {
+        try {
+            ensureTable();
+            mainJdbcTemplate.update(
+                    "INSERT INTO tenant_lifecycle (tenant_id, state, last_error) VALUES (?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE last_error = VALUES(last_error)",
+                    tenant.name(), multiRoutingDataSource.isCold(tenant) ? TenantLifecycle.COLD : TenantLifecycle.ACTIVE, error);
+        } catch (Exception e) {
+            logger.warn("Could not record lifecycle error of tenant {}: {}", tenant, e.getMessage());
+        }
+    }
+
+    private void ensureTable() {
+        if (tableReady) {
+            return;
+        }
+        mainJdbcTemplate.execute(
+                "CREATE TABLE IF NOT EXISTS tenant_lifecycle (" +
+                "    tenant_id VARCHAR(64) NOT NULL PRIMARY KEY," +
+                "    state VARCHAR(16) NOT NULL," +
+                "    archive_path VARCHAR(512)," +
+                "    schema_version VARCHAR(50)," +
+                "    archived_rows BIGINT NOT NULL DEFAULT 0," +
+                "    offloaded_at TIMESTAMP NULL," +
+                "    rehydrated_at TIMESTAMP NULL," +
+                "    last_error VARCHAR(1000)" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci");
+        mainJdbcTemplate.execute(
+                "CREATE TABLE IF NOT EXISTS tenant_activity (" +
+                "    tenant_id VARCHAR(64) NOT NULL PRIMARY KEY," +
+                "    last_active_at TIMESTAMP NOT NULL" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci");
+        tableReady = true;
+    }
+}
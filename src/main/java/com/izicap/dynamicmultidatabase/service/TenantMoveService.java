@@ -0,0 +1,506 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.Post;
+import com.izicap.dynamicmultidatabase.PostEntityListener;
+import com.izicap.dynamicmultidatabase.TenantGate;
+import com.izicap.dynamicmultidatabase.config.FlywayConfig;
+import com.izicap.dynamicmultidatabase.model.TenantMoveReport;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Moves a tenant database to another shard while it keeps serving traffic.
+ *
+ * The data is bulk copied to the target, then re-copied in catch-up rounds from
+ * {@code updated_at} until the remaining delta is small. New connections to the tenant
+ * are then paused until in-flight ones are returned, the last delta and the deletes
+ * captured during the move are applied, and the tenant's route is switched atomically.
+ *
+ * Catch-up and captured deletes miss changes made outside JPA on this instance, such as
+ * partition drops or bulk jobs on other nodes, so every keyed table is compared row by
+ * row before the switch, once while the tenant is still serving and once under the pause.
+ * Differences are repaired, and the move is aborted when they persist.
+ */
+@Service
+public class TenantMoveService implements PostEntityListener.Observer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantMoveService.class);
+
+    private static final String UPDATED_AT = "updated_at";
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    @Autowired
+    private TenantPlacementService placementService;
+
+    @Autowired
+    private FlywayConfig flywayConfig;
+
+    @Value("${app.tenant-move.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.tenant-move.catch-up-margin-seconds:5}")
+    private int catchUpMarginSeconds;
+
+    @Value("${app.tenant-move.catch-up-threshold:100}")
+    private long catchUpThreshold;
+
+    @Value("${app.tenant-move.max-catch-up-rounds:5}")
+    private int maxCatchUpRounds;
+
+    @Value("${app.tenant-move.drain-timeout-ms:5000}")
+    private long drainTimeoutMs;
+
+    @Value("${app.tenant-move.excluded-tables:flyway_schema_history,flyway_partitioning_history,bulk_import_checkpoint,bulk_operation_checkpoint,backfill_checkpoint,post_id_guard,post_archive_*,post_expired_*}")
+    private String excludedTables;
+
+    // Post ids deleted per tenant while it is being moved; present only during a move
+    private final Map<DBTypeEnum, Set<Long>> capturedDeletes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registerObserver() {
+        PostEntityListener.addObserver(this);
+    }
+
+    @PreDestroy
+    public void unregisterObserver() {
+        PostEntityListener.removeObserver(this);
+    }
+
+    @Override
+    public void onPostChange(DBTypeEnum tenant, Post post, PostEntityListener.ChangeType changeType) {
+        Set<Long> deletes = capturedDeletes.get(tenant);
+        if (deletes != null && changeType == PostEntityListener.ChangeType.DELETED) {
+            deletes.add(post.getId());
+        }
+    }
+
+    /**
+     * Move a tenant database to the given shard. Failures leave the tenant routed to its
+     * current database and are reported rather than thrown.
+     */
+    public TenantMoveReport moveTenant(DBTypeEnum tenant, String shard, String database) {
+        TenantMoveReport report = new TenantMoveReport(tenant.name(), shard, database);
+        long startTime = System.currentTimeMillis();
+
+        if (capturedDeletes.putIfAbsent(tenant, ConcurrentHashMap.newKeySet()) != null) {
+            throw new IllegalStateException("Tenant " + tenant + " is already being moved");
+        }
+
+        HikariDataSource target = null;
+        boolean switched = false;
+        try {
+            logger.info("Moving tenant {} to database {} on shard {}", tenant, database, shard);
+
+            placementService.ensureDatabase(shard, database);
+            target = placementService.createDataSource(tenant, shard, database);
+            flywayConfig.migrateSchema(new FlywayConfig.DatabaseConfig(target.getJdbcUrl(), target.getUsername(), target.getPassword()));
+
+            // The source connection is held across the pause, so it must not count at the gate
+            try (Connection source = multiRoutingDataSource.getTenantDataSource(tenant).getConnection();
+                 Connection destination = target.getConnection()) {
+                destination.setAutoCommit(false);
+
+                List<TableInfo> tables = listTables(source);
+                Timestamp syncPoint = currentTimestamp(source);
+
+                long copyStart = System.currentTimeMillis();
+                for (TableInfo table : tables) {
+                    report.addCopiedTable(table.name, copyRows(source, destination, table, null));
+                }
+                report.completeCopy(System.currentTimeMillis() - copyStart);
+                logger.info("Copied {} rows of tenant {} in {} ms ({} rows/s)",
+                          report.getCopiedRows(), tenant, report.getCopyMillis(), report.getCopyRowsPerSecond());
+
+                // Catch up while the tenant keeps serving writes, until the delta is small
+                for (int round = 0; round < maxCatchUpRounds; round++) {
+                    Timestamp nextSyncPoint = currentTimestamp(source);
+                    long rows = catchUp(source, destination, tables, syncPoint);
+                    syncPoint = nextSyncPoint;
+                    report.addCatchUpRound(rows);
+                    logger.info("Catch-up round {} for tenant {} copied {} rows", round + 1, tenant, rows);
+                    if (rows <= catchUpThreshold) {
+                        break;
+                    }
+                }
+
+                // Repair what catch-up cannot see while the tenant still serves, to keep the pause short
+                long repaired = reconcile(source, destination, tables);
+                report.addRepairedRows(repaired);
+                logger.info("Keyed comparison for tenant {} repaired {} rows before cutover", tenant, repaired);
+
+                switched = cutover(tenant, shard, database, source, destination, target, tables, syncPoint, report);
+            }
+
+            report.setSuccess(switched);
+
+        } catch (Exception e) {
+            logger.error("Move of tenant {} to shard {} failed", tenant, shard, e);
+            report.setError(e.getMessage());
+        } finally {
+            capturedDeletes.remove(tenant);
+            if (!switched && target != null) {
+                target.close();
+            }
+        }
+
+        report.setDurationMillis(System.currentTimeMillis() - startTime);
+        logger.info("Move of tenant {} finished: {}", tenant, report);
+        return report;
+    }
+
+    /**
+     * Pause the tenant, apply the final delta and switch its route. Only the captured deletes,
+     * the rows changed since the last sync point and the keyless tables are copied under the
+     * pause; the keyed comparison runs before it, so the pause does not grow with the tenant.
+     * Returns whether the route was switched; the tenant is resumed either way.
+     */
+    private boolean cutover(DBTypeEnum tenant, String shard, String database, Connection source, Connection destination,
+                            HikariDataSource target, List<TableInfo> tables, Timestamp syncPoint,
+                            TenantMoveReport report) throws SQLException, InterruptedException {
+        TenantGate gate = multiRoutingDataSource.getGate(tenant);
+        long pauseStart = System.currentTimeMillis();
+        gate.pause();
+        try {
+            if (!gate.awaitIdle(drainTimeoutMs)) {
+                throw new IllegalStateException(gate.getInFlight() + " connections of tenant " + tenant
+                        + " were still in use after " + drainTimeoutMs + " ms, move aborted");
+            }
+
+            report.setReplayedDeletes(replayDeletes(destination, capturedDeletes.get(tenant)));
+            long rows = catchUp(source, destination, tables, syncPoint);
+
+            // Tables without a key cannot be compared, so they are re-copied
+            for (TableInfo table : tables) {
+                if (table.keyColumn == null) {
+                    execute(destination, "DELETE FROM " + quote(table.name));
+                    rows += copyRows(source, destination, table, null);
+                }
+            }
+            report.addCatchUpRound(rows);
+
+            placementService.switchPlacement(tenant, shard, database, target);
+            return true;
+
+        } finally {
+            gate.resume();
+            report.setPauseMillis(System.currentTimeMillis() - pauseStart);
+            logger.info("Tenant {} was paused for {} ms during cutover", tenant, report.getPauseMillis());
+        }
+    }
+
+    private long catchUp(Connection source, Connection destination, List<TableInfo> tables, Timestamp syncPoint)
+            throws SQLException {
+        Timestamp since = new Timestamp(syncPoint.getTime() - catchUpMarginSeconds * 1000L);
+        long rows = 0;
+        for (TableInfo table : tables) {
+            if (table.hasUpdatedAt) {
+                rows += copyRows(source, destination, table, since);
+            }
+        }
+        return rows;
+    }
+
+    long reconcile(Connection source, Connection destination, List<TableInfo> tables) throws SQLException {
+        long repaired = 0;
+        for (TableInfo table : tables) {
+            if (table.keyColumn != null) {
+                repaired += reconcileTable(source, destination, table);
+            }
+        }
+        return repaired;
+    }
+
+    /**
+     * Compare a table on both sides in chunks of its primary key, and make the destination
+     * match: rows missing or different there are re-copied and rows the source no longer
+     * has are deleted. Returns the number of rows repaired.
+     */
+    private long reconcileTable(Connection source, Connection destination, TableInfo table) throws SQLException {
+        int keyIndex = table.columns.indexOf(table.keyColumn);
+        String columns = table.columns.stream().map(this::quote).collect(Collectors.joining(", "));
+        String placeholders = "(" + "?, ".repeat(table.columns.size() - 1) + "?)";
+
+        long repaired = 0;
+        Object lowerKey = null;
+        while (true) {
+            List<Object[]> sourceRows = readKeyRange(source, table, lowerKey, null, batchSize);
+            boolean lastChunk = sourceRows.size() < batchSize;
+            // The last chunk is open-ended, so rows only the destination has past it are found too
+            Object upperKey = lastChunk ? null : sourceRows.get(sourceRows.size() - 1)[keyIndex];
+
+            Map<Object, Object[]> destinationRows = new HashMap<>();
+            for (Object[] row : readKeyRange(destination, table, lowerKey, upperKey, 0)) {
+                destinationRows.put(row[keyIndex], row);
+            }
+
+            List<Object[]> changed = new ArrayList<>();
+            for (Object[] row : sourceRows) {
+                Object[] copy = destinationRows.remove(row[keyIndex]);
+                if (copy == null || !Arrays.deepEquals(row, copy)) {
+                    changed.add(row);
+                }
+            }
+            if (!changed.isEmpty()) {
+                writeBatch(destination, table.name, columns, placeholders, changed);
+            }
+            if (!destinationRows.isEmpty()) {
+                deleteKeys(destination, table, new ArrayList<>(destinationRows.keySet()));
+            }
+            repaired += changed.size() + destinationRows.size();
+
+            if (lastChunk) {
+                return repaired;
+            }
+            lowerKey = upperKey;
+        }
+    }
+
+    /**
+     * Rows with a key above lowerKey and up to upperKey in key order, either bound open when
+     * null, at most limit of them when limit is positive
+     */
+    private List<Object[]> readKeyRange(Connection connection, TableInfo table, Object lowerKey, Object upperKey,
+                                        int limit) throws SQLException {
+        String key = quote(table.keyColumn);
+        String sql = "SELECT * FROM " + quote(table.name) + " WHERE 1 = 1"
+                + (lowerKey != null ? " AND " + key + " > ?" : "")
+                + (upperKey != null ? " AND " + key + " <= ?" : "")
+                + " ORDER BY " + key
+                + (limit > 0 ? " LIMIT " + limit : "");
+
+        List<Object[]> rows = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (lowerKey != null) {
+                statement.setObject(index++, lowerKey);
+            }
+            if (upperKey != null) {
+                statement.setObject(index, upperKey);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Object[] row = new Object[table.columns.size()];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private void deleteKeys(Connection destination, TableInfo table, List<Object> keys) throws SQLException {
+        try (PreparedStatement statement = destination.prepareStatement("DELETE FROM " + quote(table.name) + " WHERE "
+                + quote(table.keyColumn) + " IN (" + "?, ".repeat(keys.size() - 1) + "?)")) {
+            for (int i = 0; i < keys.size(); i++) {
+                statement.setObject(i + 1, keys.get(i));
+            }
+            statement.executeUpdate();
+        }
+        destination.commit();
+    }
+
+    /**
+     * Stream rows from the source and upsert them into the destination in batches,
+     * optionally only those updated since the given time
+     */
+    private long copyRows(Connection source, Connection destination, TableInfo table, Timestamp updatedSince)
+            throws SQLException {
+        String sql = "SELECT * FROM " + quote(table.name)
+                + (updatedSince != null ? " WHERE " + UPDATED_AT + " >= ?" : "");
+        String columns = table.columns.stream().map(this::quote).collect(Collectors.joining(", "));
+        String placeholders = "(" + "?, ".repeat(table.columns.size() - 1) + "?)";
+
+        long rows = 0;
+        try (PreparedStatement select = source.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Stream rows instead of buffering the whole table in the driver; the
+            // MIN_VALUE streaming hint is MySQL-specific and rejected by other drivers
+            boolean mysql = source.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+            select.setFetchSize(mysql ? Integer.MIN_VALUE : batchSize);
+            if (updatedSince != null) {
+                select.setTimestamp(1, updatedSince);
+            }
+
+            try (ResultSet rs = select.executeQuery()) {
+                List<Object[]> batch = new ArrayList<>(batchSize);
+                boolean more = rs.next();
+                while (more) {
+                    Object[] row = new Object[table.columns.size()];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = rs.getObject(i + 1);
+                    }
+                    batch.add(row);
+                    more = rs.next();
+
+                    if (batch.size() == batchSize || (!more && !batch.isEmpty())) {
+                        writeBatch(destination, table.name, columns, placeholders, batch);
+                        rows += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    private void writeBatch(Connection destination, String table, String columns, String placeholders,
+                            List<Object[]> batch) throws SQLException {
+        StringBuilder sql = new StringBuilder("REPLACE INTO ").append(quote(table))
+                .append(" (").append(columns).append(") VALUES ");
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i > 0 ? ", " : "").append(placeholders);
+        }
+
+        try (PreparedStatement statement = destination.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (Object[] row : batch) {
+                for (Object value : row) {
+                    statement.setObject(index++, value);
+                }
+            }
+            statement.executeUpdate();
+        }
+        destination.commit();
+    }
+
+    private int replayDeletes(Connection destination, Set<Long> deletes) throws SQLException {
+        if (deletes == null || deletes.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(deletes);
+        for (int start = 0; start < ids.size(); start += batchSize) {
+            List<Long> chunk = ids.subList(start, Math.min(start + batchSize, ids.size()));
+            try (PreparedStatement statement = destination.prepareStatement(
+                    "DELETE FROM post WHERE id IN (" + "?, ".repeat(chunk.size() - 1) + "?)")) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setLong(i + 1, chunk.get(i));
+                }
+                statement.executeUpdate();
+            }
+        }
+        destination.commit();
+        return ids.size();
+    }
+
+    List<TableInfo> listTables(Connection connection) throws SQLException {
+        Set<String> excluded = Arrays.stream(excludedTables.split(","))
+                .map(String::trim)
+                .map(String::toLowerCase)
+                .collect(Collectors.toSet());
+
+        List<String> names = new ArrayList<>();
+        try (ResultSet rs = connection.getMetaData().getTables(connection.getCatalog(), connection.getSchema(), "%", new String[]{"TABLE"})) {
+            while (rs.next()) {
+                String table = rs.getString("TABLE_NAME");
+                if (!isExcluded(table.toLowerCase(), excluded)) {
+                    names.add(table);
+                }
+            }
+        }
+
+        List<TableInfo> tables = new ArrayList<>();
+        for (String name : names) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT * FROM " + quote(name) + " WHERE 1 = 0")) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                List<String> columns = new ArrayList<>();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    columns.add(metaData.getColumnLabel(i));
+                }
+                tables.add(new TableInfo(name, columns, keyColumn(connection, name, columns)));
+            }
+        }
+        return tables;
+    }
+
+    // Entries ending in '*' exclude every table with that prefix
+    private boolean isExcluded(String table, Set<String> excluded) {
+        for (String pattern : excluded) {
+            if (pattern.endsWith("*") ? table.startsWith(pattern.substring(0, pattern.length() - 1)) : table.equals(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Column identifying the rows of a table, or null when it has no single-column key.
+     * The key of a partitioned post table includes created_at, but id stays unique alone.
+     */
+    private String keyColumn(Connection connection, String table, List<String> columns) throws SQLException {
+        List<String> keys = new ArrayList<>();
+        try (ResultSet rs = connection.getMetaData().getPrimaryKeys(connection.getCatalog(), connection.getSchema(), table)) {
+            while (rs.next()) {
+                keys.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        if (keys.size() > 1 && keys.stream().anyMatch("id"::equalsIgnoreCase)) {
+            keys.retainAll(List.of("id", "ID"));
+        }
+        if (keys.size() != 1) {
+            return null;
+        }
+        // Use the column's label as the result sets report it
+        return columns.stream().filter(keys.get(0)::equalsIgnoreCase).findFirst().orElse(null);
+    }
+
+    private Timestamp currentTimestamp(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT CURRENT_TIMESTAMP")) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+
+    private void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    static class TableInfo {
+        final String name;
+        final List<String> columns;
+        final String keyColumn;
+        final boolean hasUpdatedAt;
+
+        TableInfo(String name, List<String> columns, String keyColumn) {
+            this.name = name;
+            this.columns = columns;
+            this.keyColumn = keyColumn;
+            this.hasUpdatedAt = columns.stream().anyMatch(UPDATED_AT::equalsIgnoreCase);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.config.FlywayConfig;
+import com.izicap.dynamicmultidatabase.config.ShardProperties;
+import com.izicap.dynamicmultidatabase.model.TenantPlacement;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Maps tenants to the shard (physical MySQL server) and database they live on. Tenants
+ * without a recorded placement use their statically configured datasource; placements
+ * recorded by tenant moves are kept in the main database and re-applied to routing at
+ * startup.
+ */
+@Service
+public class TenantPlacementService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TenantPlacementService.class);
+
+    private static final Pattern DATABASE_NAME = Pattern.compile("[A-Za-z0-9_]{1,64}");
+
+    @Autowired
+    @Qualifier("mainJdbcTemplate")
+    private JdbcTemplate mainJdbcTemplate;
+
+    @Autowired
+    private MultiRoutingDataSource multiRoutingDataSource;
+
+    @Autowired
+    private ShardProperties shardProperties;
+
+    @Value("${app.tenant-move.retire-timeout-ms:60000}")
+    private long retireTimeoutMs;
+
+    private final Map<DBTypeEnum, TenantPlacement> placements = new ConcurrentHashMap<>();
+
+    // Datasources created for moved tenants, closed when the tenant moves again or on shutdown
+    private final Map<DBTypeEnum, HikariDataSource> ownedDataSources = new ConcurrentHashMap<>();
+
+    private volatile boolean tableReady;
+
+    // Closes pools of moved-away tenants once the connections still checked out are returned
+    private final ExecutorService retireExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tenant-pool-retire");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void applyRecordedPlacements() {
+        try {
+            ensureTable();
+            mainJdbcTemplate.query("SELECT tenant_id, shard, database_name FROM tenant_placement", rs -> {
+                DBTypeEnum tenant = DBTypeEnum.valueOf(rs.getString("tenant_id"));
+                String shard = rs.getString("shard");
+                String database = rs.getString("database_name");
+
+                if (!shardProperties.getShards().containsKey(shard)) {
+                    logger.error("Tenant {} is placed on unknown shard {}, keeping its configured datasource", tenant, shard);
+                    return;
+                }
+                HikariDataSource dataSource = createDataSource(tenant, shard, database);
+                multiRoutingDataSource.switchRoute(tenant, dataSource);
+                ownedDataSources.put(tenant, dataSource);
+                placements.put(tenant, new TenantPlacement(tenant.name(), shard, database, dataSource.getJdbcUrl()));
+                logger.info("Routing tenant {} to database {} on shard {}", tenant, database, shard);
+            });
+        } catch (Exception e) {
+            // Without the main database nothing is routed anyway; moved tenants would use stale routes
+            logger.error("Could not apply recorded tenant placements: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void closeDataSources() {
+        retireExecutor.shutdownNow();
+        ownedDataSources.values().forEach(HikariDataSource::close);
+    }
+
+    /**
+     * Current placement of every tenant
+     */
+    public List<TenantPlacement> getPlacements(Map<String, FlywayConfig.DatabaseConfig> configured) {
+        List<TenantPlacement> result = new ArrayList<>();
+        for (DBTypeEnum tenant : DBTypeEnum.values()) {
+            TenantPlacement placement = placements.get(tenant);
+            if (placement == null) {
+                FlywayConfig.DatabaseConfig config = configured.get(tenant.name());
+                String url = config != null ? config.getUrl() : null;
+                placement = new TenantPlacement(tenant.name(), TenantPlacement.DEFAULT_SHARD, databaseName(url), url);
+            }
+            result.add(placement);
+        }
+        return result;
+    }
+
+    /**
+     * Connection settings of a tenant database, following its placement when it was moved
+     */
+    public FlywayConfig.DatabaseConfig resolve(DBTypeEnum tenant, FlywayConfig.DatabaseConfig configured) {
+        TenantPlacement placement = placements.get(tenant);
+        if (placement == null) {
+            return configured;
+        }
+        ShardProperties.Shard shard = shardProperties.getShard(placement.getShard());
+        return new FlywayConfig.DatabaseConfig(placement.getUrl(), shard.getUsername(), shard.getPassword());
+    }
+
+    /**
+     * Create the tenant database on a shard if it does not exist yet
+     */
+    public void ensureDatabase(String shardName, String database) throws SQLException {
+        validateDatabaseName(database);
+        ShardProperties.Shard shard = shardProperties.getShard(shardName);
+
+        try (Connection connection = DriverManager.getConnection(shard.urlFor(""), shard.getUsername(), shard.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE IF NOT EXISTS `" + database + "` " +
+                    "DEFAULT CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci");
+        }
+    }
+
+    /**
+     * Create the database a tenant connects to if it does not exist yet. Databases other
+     * than MySQL are created on first connect and are left alone.
+     */
+    public void ensureDatabase(FlywayConfig.DatabaseConfig config) throws SQLException {
+        if (!isMySql(config.getUrl())) {
+            return;
+        }
+        String database = databaseName(config.getUrl());
+        validateDatabaseName(database);
+
+        try (Connection connection = DriverManager.getConnection(serverUrl(config.getUrl()), config.getUsername(), config.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE IF NOT EXISTS `" + database + "` " +
+                    "DEFAULT CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci");
+        }
+    }
+
+    /**
+     * Drop the database a tenant connects to. Databases other than MySQL cannot be
+     * dropped over a connection to themselves and have all their objects dropped instead.
+     */
+    public void dropDatabase(FlywayConfig.DatabaseConfig config) throws SQLException {
+        if (!isMySql(config.getUrl())) {
+            try (Connection connection = DriverManager.getConnection(config.getUrl(), config.getUsername(), config.getPassword());
+                 Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+            }
+            return;
+        }
+        String database = databaseName(config.getUrl());
+        validateDatabaseName(database);
+
+        try (Connection connection = DriverManager.getConnection(serverUrl(config.getUrl()), config.getUsername(), config.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS `" + database + "`");
+        }
+    }
+
+    /**
+     * Connection pool for a tenant database on a shard
+     */
+    public HikariDataSource createDataSource(DBTypeEnum tenant, String shardName, String database) {
+        validateDatabaseName(database);
+        ShardProperties.Shard shard = shardProperties.getShard(shardName);
+
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(tenant.name().toLowerCase() + "-" + shardName);
+        dataSource.setJdbcUrl(shard.urlFor(database));
+        dataSource.setUsername(shard.getUsername());
+        dataSource.setPassword(shard.getPassword());
+        dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+        return dataSource;
+    }
+
+    /**
+     * Persist a tenant's new placement and switch its route to the given datasource.
+     * Returns the datasource the tenant was routed to before.
+     */
+    public DataSource switchPlacement(DBTypeEnum tenant, String shard, String database, HikariDataSource dataSource) {
+        ensureTable();
+        mainJdbcTemplate.update(
+                "INSERT INTO tenant_placement (tenant_id, shard, database_name) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE shard = VALUES(shard), database_name = VALUES(database_name), " +
+                "moved_at = CURRENT_TIMESTAMP",
+                tenant.name(), shard, database);
+
+        DataSource previous = multiRoutingDataSource.switchRoute(tenant, dataSource);
+        placements.put(tenant, new TenantPlacement(tenant.name(), shard, database, dataSource.getJdbcUrl()));
+
+        HikariDataSource previousOwned = ownedDataSources.put(tenant, dataSource);
+        if (previousOwned != null) {
+            retire(previousOwned);
+        } else if (previous instanceof HikariDataSource) {
+            // The configured pool belongs to the application context; only let go of its connections
+            HikariPoolMXBean poolMXBean = ((HikariDataSource) previous).getHikariPoolMXBean();
+            if (poolMXBean != null) {
+                poolMXBean.softEvictConnections();
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Close a pool the tenant is no longer routed to without aborting requests still running
+     * on it: idle connections are evicted at once, checked-out ones as they are returned, and
+     * the pool is closed when none is left in use or after app.tenant-move.retire-timeout-ms
+     */
+    private void retire(HikariDataSource pool) {
+        HikariPoolMXBean poolMXBean = pool.getHikariPoolMXBean();
+        if (poolMXBean == null) {
+            pool.close();
+            return;
+        }
+        poolMXBean.softEvictConnections();
+        retireExecutor.execute(() -> {
+            long deadline = System.currentTimeMillis() + retireTimeoutMs;
+            try {
+                while (poolMXBean.getActiveConnections() > 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(100);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (poolMXBean.getActiveConnections() > 0) {
+                logger.warn("Closing pool {} with {} connections still in use", pool.getPoolName(),
+                          poolMXBean.getActiveConnections());
+            }
+            pool.close();
+        });
+    }
+
+    private void validateDatabaseName(String database) {
+        if (database == null || !DATABASE_NAME.matcher(database).matches()) {
+            throw new IllegalArgumentException("Invalid database name: " + database);
+        }
+    }
+
+    private boolean isMySql(String url) {
+        return url != null && url.startsWith("jdbc:mysql:");
+    }
+
+    // The server of a MySQL URL, without a default database but keeping its parameters
+    private String serverUrl(String url) {
+        return url.replaceFirst("^(jdbc:mysql://[^/?]*)/?[^?]*", "$1/");
+    }
+
+    private String databaseName(String url) {
+        if (url == null) {
+            return null;
+        }
+        String path = url.replaceFirst("^jdbc:[a-z]+://[^/]*/?", "");
+        int end = path.indexOf('?');
+        return end >= 0 ? path.substring(0, end) : path;
+    }
+
+    private void ensureTable() {
+        if (tableReady) {
+            return;
+        }
+        mainJdbcTemplate.execute(
+                "CREATE TABLE IF NOT EXISTS tenant_placement (" +
+                "    tenant_id VARCHAR(64) NOT NULL PRIMARY KEY," +
+                "    shard VARCHAR(64) NOT NULL," +
+                "    database_name VARCHAR(64) NOT NULL," +
+                "    moved_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci");
+        tableReady = true;
+    }
+}
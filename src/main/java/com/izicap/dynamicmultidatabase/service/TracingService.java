@@ -0,0 +1,265 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.izicap.dynamicmultidatabase.tracing.Span;
+import com.izicap.dynamicmultidatabase.tracing.Trace;
+import com.izicap.dynamicmultidatabase.tracing.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects finished traces and decides which to keep: traces selected by head sampling
+ * ({@code app.tracing.sample-rate}), traces slower than {@code app.tracing.slow-threshold-ms}
+ * and failed traces. As the decision is made once a trace has finished, every slow or
+ * failed request is kept regardless of the sample rate. Kept traces go to an in-memory
+ * buffer of the most recent {@code app.tracing.buffer-size} traces and, when
+ * {@code app.tracing.export-file} is set, are appended to it as one JSON span per line.
+ */
+@Service
+public class TracingService implements Tracing.Collector {
+
+    private static final Logger logger = LoggerFactory.getLogger(TracingService.class);
+
+    @Value("${app.tracing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.tracing.sample-rate:0.01}")
+    private double sampleRate;
+
+    @Value("${app.tracing.slow-threshold-ms:200}")
+    private long slowThresholdMs;
+
+    @Value("${app.tracing.buffer-size:500}")
+    private int bufferSize;
+
+    @Value("${app.tracing.max-spans-per-trace:1000}")
+    private int maxSpansPerTrace;
+
+    @Value("${app.tracing.export-file:}")
+    private String exportFile;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Guarded by its own monitor, newest last
+    private final Deque<Trace> traces = new ArrayDeque<>();
+
+    private final AtomicLong finished = new AtomicLong();
+
+    private final AtomicLong keptSampled = new AtomicLong();
+
+    private final AtomicLong keptSlow = new AtomicLong();
+
+    private final AtomicLong keptFailed = new AtomicLong();
+
+    private ExecutorService exportExecutor;
+
+    private BufferedWriter exportWriter;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("Tracing is disabled");
+            return;
+        }
+
+        if (exportFile != null && !exportFile.isBlank()) {
+            try {
+                Path path = Paths.get(exportFile);
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                exportWriter = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                exportExecutor = Executors.newSingleThreadExecutor();
+            } catch (IOException e) {
+                logger.warn("Could not open trace export file {}, keeping traces in memory only: {}", exportFile, e.getMessage());
+            }
+        }
+
+        Tracing.configure(this, sampleRate, maxSpansPerTrace);
+        logger.info("Tracing enabled (sampleRate={}, slowThresholdMs={}, bufferSize={}, exportFile={})",
+                  sampleRate, slowThresholdMs, bufferSize, exportWriter != null ? exportFile : "none");
+    }
+
+    @PreDestroy
+    public void stop() {
+        Tracing.disable();
+        if (exportExecutor != null) {
+            exportExecutor.shutdown();
+            try {
+                exportExecutor.awaitTermination(5, TimeUnit.SECONDS);
+                exportWriter.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                logger.warn("Could not close trace export file: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void onTraceEnd(Trace trace) {
+        finished.incrementAndGet();
+
+        long durationMs = trace.getRoot().getDurationMicros() / 1000;
+        if (trace.isError()) {
+            keptFailed.incrementAndGet();
+        } else if (durationMs >= slowThresholdMs) {
+            keptSlow.incrementAndGet();
+        } else if (trace.isSampled()) {
+            keptSampled.incrementAndGet();
+        } else {
+            return;
+        }
+
+        synchronized (traces) {
+            traces.addLast(trace);
+            while (traces.size() > bufferSize) {
+                traces.removeFirst();
+            }
+        }
+
+        if (exportExecutor != null) {
+            try {
+                exportExecutor.execute(() -> export(trace));
+            } catch (RejectedExecutionException e) {
+                logger.debug("Trace {} not exported, exporter is shut down", trace.getTraceId());
+            }
+        }
+    }
+
+    /**
+     * Summaries of kept traces, newest first, optionally only those at least minDurationMs
+     * long or for one tenant
+     */
+    public List<Map<String, Object>> getTraces(long minDurationMs, String tenant, int limit) {
+        List<Map<String, Object>> summaries = new ArrayList<>();
+        synchronized (traces) {
+            Iterator<Trace> newestFirst = traces.descendingIterator();
+            while (newestFirst.hasNext() && summaries.size() < limit) {
+                Trace trace = newestFirst.next();
+                if (trace.getRoot().getDurationMicros() / 1000 < minDurationMs) {
+                    continue;
+                }
+                if (tenant != null && !tenant.equalsIgnoreCase(trace.getTenant())) {
+                    continue;
+                }
+                summaries.add(summarize(trace));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * A kept trace with all of its spans, or null when it is not (or no longer) kept
+     */
+    public Map<String, Object> getTrace(String traceId) {
+        Trace found = null;
+        synchronized (traces) {
+            for (Trace trace : traces) {
+                if (trace.getTraceId().equals(traceId)) {
+                    found = trace;
+                    break;
+                }
+            }
+        }
+        if (found == null) {
+            return null;
+        }
+        Map<String, Object> result = summarize(found);
+        result.put("spans", found.getSpans());
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("sampleRate", sampleRate);
+        stats.put("slowThresholdMs", slowThresholdMs);
+        stats.put("finishedTraces", finished.get());
+        stats.put("keptSampled", keptSampled.get());
+        stats.put("keptSlow", keptSlow.get());
+        stats.put("keptFailed", keptFailed.get());
+        synchronized (traces) {
+            stats.put("buffered", traces.size());
+        }
+        return stats;
+    }
+
+    private Map<String, Object> summarize(Trace trace) {
+        Span root = trace.getRoot();
+        List<Span> spans = trace.getSpans();
+
+        // Where the time went: total time per span name, excluding the root itself
+        Map<String, Long> timeByName = new HashMap<>();
+        for (Span span : spans) {
+            if (span != root && span.getDurationMicros() >= 0) {
+                timeByName.merge(span.getName(), span.getDurationMicros(), Long::sum);
+            }
+        }
+        Map<String, Double> breakdown = new LinkedHashMap<>();
+        timeByName.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(entry -> breakdown.put(entry.getKey(), entry.getValue() / 1000.0));
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("traceId", trace.getTraceId());
+        summary.put("name", root.getName());
+        summary.put("tenant", trace.getTenant());
+        summary.put("startEpochMicros", root.getStartEpochMicros());
+        summary.put("durationMs", root.getDurationMicros() / 1000.0);
+        summary.put("error", trace.isError());
+        summary.put("sampled", trace.isSampled());
+        summary.put("spanCount", spans.size());
+        summary.put("droppedSpans", trace.getDroppedSpans());
+        summary.put("timeByOperationMs", breakdown);
+        return summary;
+    }
+
+    private void export(Trace trace) {
+        try {
+            for (Span span : trace.getSpans()) {
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("traceId", span.getTraceId());
+                line.put("spanId", span.getSpanId());
+                line.put("parentSpanId", span.getParentSpanId());
+                line.put("name", span.getName());
+                line.put("startEpochMicros", span.getStartEpochMicros());
+                line.put("durationMicros", span.getDurationMicros());
+                line.put("tenant", trace.getTenant());
+                line.put("attributes", span.getAttributes());
+                line.put("error", span.getError());
+                exportWriter.write(objectMapper.writeValueAsString(line));
+                exportWriter.newLine();
+            }
+            exportWriter.flush();
+        } catch (IOException e) {
+            logger.warn("Could not export trace {}: {}", trace.getTraceId(), e.getMessage());
+        }
+    }
+}
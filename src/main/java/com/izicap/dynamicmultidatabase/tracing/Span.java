@@ -0,0 +1,130 @@
+package com.izicap.dynamicmultidatabase.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One timed operation of a trace. Spans are started through {@link Tracing} and become
+ * the current span of their thread until they are closed.
+ */
+public class Span implements AutoCloseable {
+    
+    // Returned when nothing is traced; ignores attributes and closing
+    static final Span NOOP = new Span(null, null, null, null);
+    
+    private final Trace trace;
+    private final String spanId;
+    private final String parentSpanId;
+    private volatile String name;
+    private final long startEpochMicros;
+    private final long startNanos;
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+    private final Span parent;
+    // Current span of the starting thread, restored on close; the parent unless the span was started on another thread
+    private Span previous;
+    private volatile long durationNanos = -1;
+    private String error;
+    
+    Span(Trace trace, String spanId, Span parent, String name) {
+        this.trace = trace;
+        this.spanId = spanId;
+        this.parent = parent;
+        this.parentSpanId = parent != null ? parent.spanId : (trace != null ? trace.getRemoteParentSpanId() : null);
+        this.name = name;
+        this.startEpochMicros = System.currentTimeMillis() * 1000;
+        this.startNanos = System.nanoTime();
+    }
+    
+    public Span setAttribute(String key, Object value) {
+        if (trace != null && value != null) {
+            synchronized (attributes) {
+                attributes.put(key, value);
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * Mark the span, and with it the trace, as failed
+     */
+    public Span setError(Throwable throwable) {
+        return throwable != null ? setError(throwable.getClass().getSimpleName() + ": " + throwable.getMessage()) : this;
+    }
+    
+    public Span setError(String message) {
+        if (trace != null) {
+            error = message;
+            trace.markError();
+        }
+        return this;
+    }
+    
+    /**
+     * Rename the span once more is known about the operation, e.g. the matched route
+     */
+    public Span updateName(String name) {
+        if (trace != null) {
+            this.name = name;
+        }
+        return this;
+    }
+    
+    @Override
+    public void close() {
+        if (trace == null || durationNanos >= 0) {
+            return;
+        }
+        durationNanos = System.nanoTime() - startNanos;
+        Tracing.onSpanEnd(this);
+    }
+    
+    Trace getTrace() {
+        return trace;
+    }
+    
+    Span getParent() {
+        return parent;
+    }
+    
+    Span getPrevious() {
+        return previous;
+    }
+    
+    void setPrevious(Span previous) {
+        this.previous = previous;
+    }
+    
+    public String getTraceId() {
+        return trace != null ? trace.getTraceId() : null;
+    }
+    
+    public String getSpanId() {
+        return spanId;
+    }
+    
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public long getStartEpochMicros() {
+        return startEpochMicros;
+    }
+    
+    public long getDurationMicros() {
+        return durationNanos >= 0 ? durationNanos / 1000 : -1;
+    }
+    
+    public Map<String, Object> getAttributes() {
+        synchronized (attributes) {
+            return new LinkedHashMap<>(attributes);
+        }
+    }
+    
+    public String getError() {
+        return error;
+    }
+}
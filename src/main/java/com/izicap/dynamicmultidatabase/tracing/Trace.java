@@ -0,0 +1,83 @@
+package com.izicap.dynamicmultidatabase.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The spans recorded for one root operation, such as an HTTP request or a Flyway run.
+ * Spans past the configured maximum are timed but not kept, so a long batch cannot
+ * grow a trace without bound.
+ */
+public class Trace {
+    
+    private final String traceId;
+    private final String remoteParentSpanId;
+    private final boolean sampled;
+    private final int maxSpans;
+    private final List<Span> spans = new ArrayList<>();
+    private volatile String tenant;
+    private volatile boolean error;
+    private int droppedSpans;
+    private Span root;
+    
+    Trace(String traceId, String remoteParentSpanId, boolean sampled, int maxSpans) {
+        this.traceId = traceId;
+        this.remoteParentSpanId = remoteParentSpanId;
+        this.sampled = sampled;
+        this.maxSpans = maxSpans;
+    }
+    
+    synchronized void add(Span span) {
+        if (root == null) {
+            root = span;
+        }
+        if (spans.size() < maxSpans) {
+            spans.add(span);
+        } else {
+            droppedSpans++;
+        }
+    }
+    
+    void markError() {
+        error = true;
+    }
+    
+    void setTenant(String tenant) {
+        this.tenant = tenant;
+    }
+    
+    public String getTraceId() {
+        return traceId;
+    }
+    
+    String getRemoteParentSpanId() {
+        return remoteParentSpanId;
+    }
+    
+    /**
+     * Whether the trace was selected by head sampling, either locally or by the caller
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+    
+    public String getTenant() {
+        return tenant;
+    }
+    
+    public boolean isError() {
+        return error;
+    }
+    
+    public synchronized Span getRoot() {
+        return root;
+    }
+    
+    public synchronized List<Span> getSpans() {
+        return new ArrayList<>(spans);
+    }
+    
+    public synchronized int getDroppedSpans() {
+        return droppedSpans;
+    }
+}
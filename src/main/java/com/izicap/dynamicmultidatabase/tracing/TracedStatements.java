@@ -0,0 +1,64 @@
+package com.izicap.dynamicmultidatabase.tracing;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Wraps JDBC statements so that every execution is recorded as a {@code db.statement}
+ * span of the current trace, with the tenant and the SQL text as attributes
+ */
+public final class TracedStatements {
+    
+    private static final int MAX_SQL_LENGTH = 500;
+    
+    private TracedStatements() {
+    }
+    
+    /**
+     * Wrap a statement; sql is the text a prepared statement was created with, null for
+     * plain statements that receive it on execution
+     */
+    public static Statement wrap(Statement statement, String sql, String tenant) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (!method.getName().startsWith("execute")) {
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    }
+                    
+                    String text = sql != null ? sql : (args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null);
+                    try (Span span = Tracing.startSpan("db.statement")) {
+                        span.setAttribute("tenant", tenant)
+                            .setAttribute("db.operation", method.getName())
+                            .setAttribute("db.statement", truncate(text));
+                        try {
+                            Object result = method.invoke(statement, args);
+                            if (result instanceof Integer || result instanceof Long) {
+                                span.setAttribute("db.rows_affected", result);
+                            }
+                            return result;
+                        } catch (InvocationTargetException e) {
+                            span.setError(e.getTargetException());
+                            throw e.getTargetException();
+                        }
+                    }
+                });
+    }
+    
+    private static String truncate(String sql) {
+        if (sql == null || sql.length() <= MAX_SQL_LENGTH) {
+            return sql;
+        }
+        return sql.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+}
@@ -0,0 +1,186 @@
+package com.izicap.dynamicmultidatabase.tracing;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Entry point of the in-process tracer. The current span is kept per thread, like the
+ * tenant in {@link com.izicap.dynamicmultidatabase.DBContextHolder}; child spans are only
+ * recorded below a trace started by a root operation, so background work that is not
+ * traced costs a thread-local lookup. Trace and span ids follow the W3C Trace Context
+ * format, so an incoming {@code traceparent} header continues the caller's trace.
+ *
+ * Nothing is recorded until a {@link Collector} is registered; it receives every
+ * finished trace and decides which ones to keep.
+ */
+public final class Tracing {
+    
+    private static final Pattern TRACEPARENT = Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})");
+    
+    private static final ThreadLocal<Span> current = new ThreadLocal<>();
+    
+    private static volatile Collector collector;
+    
+    private static volatile double sampleRate;
+    
+    private static volatile int maxSpansPerTrace = 1000;
+    
+    public interface Collector {
+        void onTraceEnd(Trace trace);
+    }
+    
+    private Tracing() {
+    }
+    
+    public static void configure(Collector traceCollector, double headSampleRate, int maxSpans) {
+        sampleRate = headSampleRate;
+        maxSpansPerTrace = maxSpans;
+        collector = traceCollector;
+    }
+    
+    public static void disable() {
+        collector = null;
+    }
+    
+    public static boolean isEnabled() {
+        return collector != null;
+    }
+    
+    /**
+     * Whether the current thread is inside a recorded trace
+     */
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+    
+    /**
+     * Start a new trace with a root span, continuing the caller's trace when a valid
+     * {@code traceparent} header is given
+     */
+    public static Span startTrace(String name, String traceparent) {
+        if (collector == null) {
+            return Span.NOOP;
+        }
+        
+        String traceId = null;
+        String remoteParentSpanId = null;
+        boolean sampled = ThreadLocalRandom.current().nextDouble() < sampleRate;
+        if (traceparent != null) {
+            Matcher matcher = TRACEPARENT.matcher(traceparent.trim());
+            if (matcher.matches()) {
+                traceId = matcher.group(1);
+                remoteParentSpanId = matcher.group(2);
+                sampled = sampled || (Integer.parseInt(matcher.group(3), 16) & 1) == 1;
+            }
+        }
+        if (traceId == null) {
+            traceId = newId(16);
+        }
+        
+        return begin(new Trace(traceId, remoteParentSpanId, sampled, maxSpansPerTrace), null, name);
+    }
+    
+    /**
+     * Start a child of the current span; does nothing outside a trace
+     */
+    public static Span startSpan(String name) {
+        Span parent = current.get();
+        if (parent == null) {
+            return Span.NOOP;
+        }
+        return begin(parent.getTrace(), parent, name);
+    }
+    
+    /**
+     * Start a child of a span captured on another thread, so work handed to an executor
+     * stays part of the trace that asked for it; does nothing when the span is null
+     */
+    public static Span startSpan(Span parent, String name) {
+        if (parent == null || parent.getTrace() == null) {
+            return Span.NOOP;
+        }
+        return begin(parent.getTrace(), parent, name);
+    }
+    
+    /**
+     * The current span of this thread, null outside a trace
+     */
+    public static Span current() {
+        return current.get();
+    }
+    
+    /**
+     * Start a child of the current span, or a new trace for work that is not part of
+     * one, such as startup migrations
+     */
+    public static Span startSpanOrTrace(String name) {
+        return current.get() != null ? startSpan(name) : startTrace(name, null);
+    }
+    
+    /**
+     * Record the tenant a traced operation was routed to
+     */
+    public static void tagTenant(DBTypeEnum tenant) {
+        if (tenant != null) {
+            tagTenant(tenant.name());
+        }
+    }
+    
+    public static void tagTenant(String tenant) {
+        Span span = current.get();
+        if (span != null && tenant != null) {
+            span.getTrace().setTenant(tenant);
+            span.getTrace().getRoot().setAttribute("tenant", tenant);
+        }
+    }
+    
+    /**
+     * {@code traceparent} header value identifying a span to downstream callers
+     */
+    public static String traceparent(Span span) {
+        if (span.getTraceId() == null) {
+            return null;
+        }
+        return "00-" + span.getTraceId() + "-" + span.getSpanId() + "-" + (span.getTrace().isSampled() ? "01" : "00");
+    }
+    
+    static void onSpanEnd(Span span) {
+        Span active = current.get();
+        if (span.getParent() != null) {
+            if (active == span) {
+                current.set(span.getPrevious());
+            }
+            return;
+        }
+        
+        // Spans left open below the root must not leak into the next request on this thread
+        if (active != null && active.getTrace() == span.getTrace()) {
+            current.remove();
+        }
+        Collector traceCollector = collector;
+        if (traceCollector != null) {
+            traceCollector.onTraceEnd(span.getTrace());
+        }
+    }
+    
+    private static Span begin(Trace trace, Span parent, String name) {
+        Span span = new Span(trace, newId(8), parent, name);
+        span.setPrevious(current.get());
+        trace.add(span);
+        current.set(span);
+        return span;
+    }
+    
+    private static String newId(int bytes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder id = new StringBuilder(bytes * 2);
+        for (int i = 0; i < bytes; i++) {
+            int value = random.nextInt(256);
+            id.append(Character.forDigit(value >> 4, 16)).append(Character.forDigit(value & 0xf, 16));
+        }
+        return id.toString();
+    }
+}
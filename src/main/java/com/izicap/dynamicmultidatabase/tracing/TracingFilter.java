@@ -0,0 +1,52 @@
+package com.izicap.dynamicmultidatabase.tracing;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Starts a trace for every HTTP request, continuing the caller's trace when it sends a
+ * {@code traceparent} header, and returns the request's own {@code traceparent}
+ */
+public class TracingFilter extends OncePerRequestFilter {
+    
+    public static final String TRACEPARENT_HEADER = "traceparent";
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Reading traces must not fill the buffer with traces of reading traces
+        return !Tracing.isEnabled() || request.getRequestURI().startsWith("/traces");
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Span span = Tracing.startTrace("HTTP " + request.getMethod(), request.getHeader(TRACEPARENT_HEADER));
+        span.setAttribute("http.method", request.getMethod())
+            .setAttribute("http.target", request.getRequestURI());
+        response.setHeader(TRACEPARENT_HEADER, Tracing.traceparent(span));
+        
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (route != null) {
+                span.updateName(request.getMethod() + " " + route);
+                span.setAttribute("http.route", route);
+            }
+            span.setAttribute("http.status_code", response.getStatus());
+            if (response.getStatus() >= 500) {
+                span.setError("HTTP " + response.getStatus());
+            }
+            span.close();
+        }
+    }
+}
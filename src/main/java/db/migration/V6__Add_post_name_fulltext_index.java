@@ -0,0 +1,97 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Add an n-gram FULLTEXT index on post names, used by {@code GET /posts/search} for
+ * substring and keyword search. Written in Java because the index only exists on MySQL:
+ * other databases, and tenants whose post table is partitioned (MySQL has no FULLTEXT
+ * indexes on partitioned tables), skip it and are searched with {@code LIKE} instead.
+ * Tenants partitioned later lose the index first, see
+ * {@link com.izicap.dynamicmultidatabase.migration.DropFulltextIndexCallback}.
+ *
+ * Building the first FULLTEXT index of a table rebuilds it in place; MySQL allows
+ * reads but blocks writes to the table until the build is done.
+ */
+public class V6__Add_post_name_fulltext_index extends BaseJavaMigration {
+    
+    private static final Logger logger = LoggerFactory.getLogger(V6__Add_post_name_fulltext_index.class);
+    
+    private static final String INDEX_NAME = "idx_post_name_fulltext";
+    
+    private static volatile boolean partitioningEnabled;
+    
+    /**
+     * Set by the application, as the partitioning scripts run after this migration
+     */
+    public static void setPartitioningEnabled(boolean enabled) {
+        partitioningEnabled = enabled;
+    }
+    
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+    
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        String product = connection.getMetaData().getDatabaseProductName();
+        
+        if (!"MySQL".equalsIgnoreCase(product)) {
+            logger.info("Skipping FULLTEXT index on post names, {} does not support it", product);
+            return;
+        }
+        if (partitioningEnabled || isPartitioned(connection)) {
+            logger.info("Skipping FULLTEXT index on post names, partitioned tables cannot have one");
+            return;
+        }
+        if (hasIndex(connection)) {
+            return;
+        }
+        
+        try (Statement statement = connection.createStatement()) {
+            String stopwords;
+            try (ResultSet rs = statement.executeQuery("SELECT @@SESSION.innodb_ft_enable_stopword")) {
+                rs.next();
+                stopwords = rs.getBoolean(1) ? "ON" : "OFF";
+            }
+            // The ngram parser drops every token containing a stopword, which would make
+            // names with "a" or "i" in them unsearchable; the setting is captured at creation
+            statement.execute("SET SESSION innodb_ft_enable_stopword = OFF");
+            try {
+                statement.execute("ALTER TABLE post ADD FULLTEXT INDEX " + INDEX_NAME + " (name) WITH PARSER ngram, " +
+                                  "ALGORITHM=INPLACE, LOCK=SHARED");
+            } finally {
+                // The connection may be reused after the migration
+                statement.execute("SET SESSION innodb_ft_enable_stopword = " + stopwords);
+            }
+        }
+    }
+    
+    private boolean isPartitioned(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT COUNT(*) FROM information_schema.partitions " +
+                     "WHERE table_schema = DATABASE() AND table_name = 'post' AND partition_name IS NOT NULL")) {
+            return rs.next() && rs.getLong(1) > 0;
+        }
+    }
+    
+    private boolean hasIndex(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT COUNT(*) FROM information_schema.statistics " +
+                     "WHERE table_schema = DATABASE() AND table_name = 'post' AND index_name = '" + INDEX_NAME + "'")) {
+            return rs.next() && rs.getLong(1) > 0;
+        }
+    }
+}
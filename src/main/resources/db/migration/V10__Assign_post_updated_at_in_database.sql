@@ -0,0 +1,7 @@
+-- Let the database assign post.updated_at on every write, with microsecond precision
+-- Databases baselined after Hibernate created the post table never ran V1, so their column has neither default nor
+-- ON UPDATE; the entity does not write it, which left it NULL there. Microseconds keep writes within one second apart.
+
+UPDATE post SET updated_at = COALESCE(created_at, CURRENT_TIMESTAMP(6)) WHERE updated_at IS NULL;
+
+ALTER TABLE post MODIFY updated_at TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6);
\ No newline at end of file
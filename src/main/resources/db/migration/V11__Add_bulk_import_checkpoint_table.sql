@@ -0,0 +1,12 @@
+-- Create table for the checkpoints of tenant imports
+-- Each chunk of an import is committed together with its progress here, keyed by the target table and the SHA-256
+-- of the file, so an interrupted import of the same data resumes after its last chunk
+
+CREATE TABLE IF NOT EXISTS bulk_import_checkpoint (
+    import_key VARCHAR(255) NOT NULL PRIMARY KEY,
+    table_name VARCHAR(64) NOT NULL,
+    rows_committed BIGINT NOT NULL DEFAULT 0,
+    dropped_indexes TEXT,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
\ No newline at end of file
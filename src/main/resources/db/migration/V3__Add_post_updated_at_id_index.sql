@@ -0,0 +1,4 @@
+-- Add index supporting the incremental change feed
+-- Changes are read in (updated_at, id) order starting after a client cursor
+
+CREATE INDEX idx_post_updated_at_id ON post(updated_at, id);
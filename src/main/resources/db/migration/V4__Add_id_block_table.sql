@@ -0,0 +1,11 @@
+-- Create table for block-allocated ids
+-- Each row holds the next unreserved id of a sequence; instances reserve ids in blocks
+
+CREATE TABLE IF NOT EXISTS id_block (
+    sequence_name VARCHAR(64) NOT NULL PRIMARY KEY,
+    next_value BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Start post ids after the ids assigned so far
+INSERT IGNORE INTO id_block (sequence_name, next_value)
+SELECT 'post', COALESCE(MAX(id), 0) + 1 FROM post;
@@ -0,0 +1,12 @@
+-- Create table for maintained row counts
+-- Counts are adjusted by the application as rows are written and periodically reconciled with COUNT(*)
+
+CREATE TABLE IF NOT EXISTS table_row_count (
+    table_name VARCHAR(64) NOT NULL PRIMARY KEY,
+    row_count BIGINT NOT NULL,
+    reconciled_at TIMESTAMP NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Start from the current number of posts
+INSERT IGNORE INTO table_row_count (table_name, row_count, reconciled_at)
+SELECT 'post', COUNT(*), CURRENT_TIMESTAMP FROM post;
@@ -0,0 +1,6 @@
+-- Add indexes on post name and created_at
+-- V1 used CREATE INDEX IF NOT EXISTS, which MySQL does not support, so the indexes are created here
+
+CREATE INDEX idx_post_name ON post(name);
+
+CREATE INDEX idx_post_created_at ON post(created_at);
\ No newline at end of file
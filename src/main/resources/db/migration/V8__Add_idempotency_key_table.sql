@@ -0,0 +1,11 @@
+-- Create table for idempotency keys of post writes
+-- A key is recorded in the transaction of the write it belongs to, so a client retrying a write whose outcome it
+-- never learned can find out whether it was applied
+
+CREATE TABLE IF NOT EXISTS idempotency_key (
+    request_key VARCHAR(64) NOT NULL PRIMARY KEY,
+    post_id BIGINT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE INDEX idx_idempotency_key_created_at ON idempotency_key(created_at);
\ No newline at end of file
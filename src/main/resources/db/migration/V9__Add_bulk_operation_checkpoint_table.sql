@@ -0,0 +1,12 @@
+-- Create table for the checkpoints of bulk post updates and deletes
+-- Each chunk of a job is committed together with its position here, so an interrupted job resumes after its last chunk
+
+CREATE TABLE IF NOT EXISTS bulk_operation_checkpoint (
+    job_id VARCHAR(64) NOT NULL PRIMARY KEY,
+    definition VARCHAR(1000) NOT NULL,
+    cursor_position VARCHAR(64),
+    rows_affected BIGINT NOT NULL DEFAULT 0,
+    chunks BIGINT NOT NULL DEFAULT 0,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
\ No newline at end of file
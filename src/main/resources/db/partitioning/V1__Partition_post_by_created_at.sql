@@ -0,0 +1,13 @@
+-- Range-partition post by month of created_at (opt-in, see app.partitioning.enabled)
+-- MySQL requires the partitioning column in every unique key, so the primary key becomes (id, created_at).
+-- Rows start in the catch-all partition; the partition maintainer splits off monthly partitions.
+
+UPDATE post SET created_at = COALESCE(updated_at, CURRENT_TIMESTAMP) WHERE created_at IS NULL;
+
+ALTER TABLE post
+    MODIFY created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, created_at)
+    PARTITION BY RANGE (UNIX_TIMESTAMP(created_at)) (
+        PARTITION p_future VALUES LESS THAN MAXVALUE
+    );
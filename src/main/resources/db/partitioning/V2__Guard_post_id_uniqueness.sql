@@ -0,0 +1,54 @@
+-- Keep post ids unique on the partitioned post table (opt-in, see app.partitioning.enabled)
+-- Partitioning made the primary key (id, created_at), so MySQL no longer rejects a second row with an existing id.
+-- post_id_guard holds one row per id, maintained by triggers, and an insert whose id already belongs to a row
+-- with another created_at fails with a duplicate key error. The same (id, created_at) is the same row, so
+-- REPLACE and upserts keep working. The cost is one extra indexed write per insert and delete; partition
+-- drops bypass triggers, so the partition maintainer deletes the guard rows of the ids it drops.
+-- Creating triggers with binary logging enabled needs SUPER or log_bin_trust_function_creators.
+
+CREATE TABLE IF NOT EXISTS post_id_guard (
+    id BIGINT NOT NULL PRIMARY KEY,
+    created_at TIMESTAMP NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT IGNORE INTO post_id_guard (id, created_at)
+SELECT id, created_at FROM post;
+
+DELIMITER $$
+
+CREATE TRIGGER post_id_guard_insert BEFORE INSERT ON post
+FOR EACH ROW
+BEGIN
+    INSERT INTO post_id_guard (id, created_at) VALUES (NEW.id, NEW.created_at)
+        ON DUPLICATE KEY UPDATE id = id;
+    IF (SELECT created_at FROM post_id_guard WHERE id = NEW.id) <> NEW.created_at THEN
+        SIGNAL SQLSTATE '23000' SET MESSAGE_TEXT = 'Duplicate post id', MYSQL_ERRNO = 1062;
+    END IF;
+END$$
+
+-- REPLACE deletes the row it replaces after the insert trigger ran, so the guard row is restored afterwards
+CREATE TRIGGER post_id_guard_after_insert AFTER INSERT ON post
+FOR EACH ROW
+BEGIN
+    INSERT INTO post_id_guard (id, created_at) VALUES (NEW.id, NEW.created_at)
+        ON DUPLICATE KEY UPDATE id = id;
+END$$
+
+CREATE TRIGGER post_id_guard_update BEFORE UPDATE ON post
+FOR EACH ROW
+BEGIN
+    IF NEW.id <> OLD.id THEN
+        INSERT INTO post_id_guard (id, created_at) VALUES (NEW.id, NEW.created_at);
+        DELETE FROM post_id_guard WHERE id = OLD.id;
+    ELSEIF NEW.created_at <> OLD.created_at THEN
+        UPDATE post_id_guard SET created_at = NEW.created_at WHERE id = NEW.id;
+    END IF;
+END$$
+
+CREATE TRIGGER post_id_guard_delete AFTER DELETE ON post
+FOR EACH ROW
+BEGIN
+    DELETE FROM post_id_guard WHERE id = OLD.id AND created_at = OLD.created_at;
+END$$
+
+DELIMITER ;
\ No newline at end of file
@@ -0,0 +1,86 @@
+package com.izicap.dynamicmultidatabase;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostNgramIndexTests {
+
+    private PostNgramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PostNgramIndex();
+        index.put(1, "Dynamic Routing");
+        index.put(2, "Tenant routing table");
+        index.put(3, "Connection pools");
+        index.put(4, "Routing by tenant");
+    }
+
+    @Test
+    void findsSubstringsCaseInsensitivelyHighestIdFirst() {
+        assertEquals(List.of(4L, 2L, 1L), index.search(List.of("ROUT"), 10));
+        assertEquals(List.of(4L, 2L, 1L), index.search(List.of("outin"), 10));
+        assertEquals(List.of(3L), index.search(List.of("ection po"), 10));
+    }
+
+    @Test
+    void requiresEveryTerm() {
+        assertEquals(List.of(4L, 2L), index.search(List.of("routing", "tenant"), 10));
+        assertEquals(List.of(), index.search(List.of("routing", "pools"), 10));
+        assertEquals(List.of(), index.search(List.of("nowhere"), 10));
+    }
+
+    @Test
+    void checksShortTermsAgainstTheNames() {
+        assertEquals(List.of(3L), index.search(List.of("ls"), 10));
+        assertEquals(List.of(4L, 1L), index.search(List.of("routing", "y"), 10));
+    }
+
+    @Test
+    void gramsAloneDoNotMatch() {
+        // Every trigram of "tab" and "ble" occurs, but not together in one name
+        index.put(5, "tab ble");
+        assertEquals(List.of(2L), index.search(List.of("table"), 10));
+    }
+
+    @Test
+    void stopsAtTheLimit() {
+        assertEquals(List.of(4L, 2L), index.search(List.of("routing"), 2));
+    }
+
+    @Test
+    void putReplacesTheIndexedName() {
+        index.put(2, "Renamed");
+
+        assertEquals(List.of(4L, 1L), index.search(List.of("routing"), 10));
+        assertEquals(List.of(2L), index.search(List.of("renamed"), 10));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void removeDropsThePost() {
+        long before = index.estimatedBytes();
+        index.remove(4);
+        index.remove(99);
+
+        assertEquals(List.of(2L, 1L), index.search(List.of("routing"), 10));
+        assertEquals(3, index.size());
+        assertTrue(index.estimatedBytes() < before);
+    }
+
+    @Test
+    void returnsToItsEmptySizeOnceEverythingIsRemoved() {
+        for (long id = 1; id <= 4; id++) {
+            index.remove(id);
+        }
+
+        assertEquals(0, index.size());
+        assertEquals(0, index.estimatedBytes());
+        assertEquals(List.of(), index.search(List.of("ro"), 10));
+    }
+}
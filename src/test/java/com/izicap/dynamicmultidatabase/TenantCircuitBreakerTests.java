@@ -0,0 +1,95 @@
+package com.izicap.dynamicmultidatabase;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TenantCircuitBreakerTests {
+
+    private static final long LONG_OPEN_MS = 60_000;
+
+    @Test
+    void opensAfterConsecutiveFailuresOnly() throws Exception {
+        TenantCircuitBreaker breaker = new TenantCircuitBreaker(DBTypeEnum.CLIENT_A, 3, LONG_OPEN_MS, 1);
+
+        breaker.onFailure(new IllegalStateException("down"));
+        breaker.onFailure(new IllegalStateException("down"));
+        breaker.onSuccess();
+        breaker.onFailure(new IllegalStateException("down"));
+        breaker.onFailure(new IllegalStateException("down"));
+        assertEquals(TenantCircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.acquirePermission();
+
+        breaker.onFailure(new IllegalStateException("down"));
+        assertEquals(TenantCircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void rejectsWhileOpen() {
+        TenantCircuitBreaker breaker = new TenantCircuitBreaker(DBTypeEnum.CLIENT_A, 1, LONG_OPEN_MS, 1);
+        breaker.onFailure(new IllegalStateException("down"));
+
+        TenantUnavailableException rejected = assertThrows(TenantUnavailableException.class, breaker::acquirePermission);
+        assertEquals(DBTypeEnum.CLIENT_A, rejected.getTenant());
+        assertEquals(1L, breaker.getStatus().get("rejectedRequests"));
+    }
+
+    @Test
+    void halfOpenLetsLimitedTrialsThrough() {
+        TenantCircuitBreaker breaker = new TenantCircuitBreaker(DBTypeEnum.CLIENT_A, 1, 0, 2);
+        breaker.onFailure(new IllegalStateException("down"));
+
+        assertDoesNotThrow(breaker::acquirePermission);
+        assertEquals(TenantCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertDoesNotThrow(breaker::acquirePermission);
+        assertThrows(TenantUnavailableException.class, breaker::acquirePermission);
+    }
+
+    @Test
+    void trialSuccessClosesTheCircuit() throws Exception {
+        TenantCircuitBreaker breaker = new TenantCircuitBreaker(DBTypeEnum.CLIENT_A, 1, 0, 1);
+        breaker.onFailure(new IllegalStateException("down"));
+        breaker.acquirePermission();
+
+        breaker.onSuccess();
+        assertEquals(TenantCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getStatus().get("consecutiveFailures"));
+    }
+
+    @Test
+    void trialFailureOpensTheCircuitAgain() throws Exception {
+        TenantCircuitBreaker breaker = new TenantCircuitBreaker(DBTypeEnum.CLIENT_A, 5, 0, 1);
+        for (int i = 0; i < 5; i++) {
+            breaker.onFailure(new IllegalStateException("down"));
+        }
+        breaker.acquirePermission();
+
+        // A single failure is enough in half-open, whatever the threshold
+        breaker.onFailure(new IllegalStateException("still down"));
+        assertEquals(TenantCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals("still down", breaker.getStatus().get("lastFailure"));
+    }
+
+    @Test
+    void healthyProbeAllowsTrialsBeforeTheOpenDurationEnds() {
+        TenantCircuitBreaker breaker = new TenantCircuitBreaker(DBTypeEnum.CLIENT_A, 1, LONG_OPEN_MS, 1);
+        breaker.onFailure(new IllegalStateException("down"));
+        assertThrows(TenantUnavailableException.class, breaker::acquirePermission);
+
+        breaker.onProbe(true, null);
+        assertEquals(TenantCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertDoesNotThrow(breaker::acquirePermission);
+    }
+
+    @Test
+    void failedProbeCountsAsFailure() {
+        TenantCircuitBreaker breaker = new TenantCircuitBreaker(DBTypeEnum.CLIENT_A, 2, LONG_OPEN_MS, 1);
+
+        breaker.onProbe(false, "timeout");
+        breaker.onProbe(false, null);
+        assertEquals(TenantCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals("Health probe failed", breaker.getStatus().get("lastFailure"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.izicap.dynamicmultidatabase;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TenantRingTests {
+
+    private static final List<String> NODES = List.of("node-1", "node-2", "node-3", "node-4");
+
+    @Test
+    void emptyRingOwnsNothing() {
+        assertNull(new TenantRing(List.of(), 100).ownerOf(DBTypeEnum.CLIENT_A));
+    }
+
+    @Test
+    void singleNodeOwnsEveryTenant() {
+        TenantRing ring = new TenantRing(List.of("node-1"), 10);
+        for (DBTypeEnum tenant : DBTypeEnum.values()) {
+            assertEquals("node-1", ring.ownerOf(tenant));
+        }
+    }
+
+    @Test
+    void everyNodeAgreesWhateverTheOrderItListsNodesIn() {
+        TenantRing ring = new TenantRing(NODES, 100);
+        TenantRing reversed = new TenantRing(List.of("node-4", "node-3", "node-2", "node-1"), 100);
+        for (DBTypeEnum tenant : DBTypeEnum.values()) {
+            assertTrue(NODES.contains(ring.ownerOf(tenant)));
+            assertEquals(ring.ownerOf(tenant), reversed.ownerOf(tenant));
+        }
+    }
+
+    @Test
+    void leavingNodeOnlyMovesItsOwnTenants() {
+        Map<DBTypeEnum, String> before = owners(new TenantRing(NODES, 100));
+        for (String leaving : NODES) {
+            List<String> remaining = NODES.stream().filter(node -> !node.equals(leaving)).toList();
+            Map<DBTypeEnum, String> after = owners(new TenantRing(remaining, 100));
+            for (DBTypeEnum tenant : DBTypeEnum.values()) {
+                if (!before.get(tenant).equals(leaving)) {
+                    assertEquals(before.get(tenant), after.get(tenant), tenant + " moved when " + leaving + " left");
+                } else {
+                    assertTrue(remaining.contains(after.get(tenant)));
+                }
+            }
+        }
+    }
+
+    private static Map<DBTypeEnum, String> owners(TenantRing ring) {
+        Map<DBTypeEnum, String> owners = new EnumMap<>(DBTypeEnum.class);
+        for (DBTypeEnum tenant : DBTypeEnum.values()) {
+            owners.put(tenant, ring.ownerOf(tenant));
+        }
+        return owners;
+    }
+}
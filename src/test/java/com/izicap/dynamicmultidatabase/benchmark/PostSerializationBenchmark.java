@@ -0,0 +1,68 @@
+package com.izicap.dynamicmultidatabase.benchmark;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.izicap.dynamicmultidatabase.Post;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares payload size and serialization cost of a large post listing in the formats
+ * served by the post endpoints. Run with {@code ./gradlew serializationBenchmark}.
+ */
+public class PostSerializationBenchmark {
+
+    private static final int POSTS = 10_000;
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 500;
+
+    public static void main(String[] args) throws Exception {
+        List<Post> posts = new ArrayList<>(POSTS);
+        for (int i = 1; i <= POSTS; i++) {
+            Post post = new Post(i, "Post number " + i + " of the benchmark listing");
+            post.setCreatedAt(new Date(1_700_000_000_000L + i * 1000L));
+            post.setUpdatedAt(new Date(1_700_000_000_000L + i * 2000L));
+            posts.add(post);
+        }
+
+        Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+        // Baseline: ignore @JsonSerialize so Post goes through the reflective bean serializer
+        mappers.put("json (bean serializer)", Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(MapperFeature.USE_ANNOTATIONS).build());
+        mappers.put("json (PostSerializer)", Jackson2ObjectMapperBuilder.json().build());
+        mappers.put("smile (PostSerializer)", Jackson2ObjectMapperBuilder.smile().build());
+        mappers.put("cbor (PostSerializer)", Jackson2ObjectMapperBuilder.cbor().build());
+
+        System.out.printf("Serializing %d posts, %d measured iterations%n%n", POSTS, MEASURED_ITERATIONS);
+        System.out.printf("%-24s %14s %14s %14s%n", "format", "payload bytes", "ms/listing", "ns/post");
+
+        for (Map.Entry<String, ObjectMapper> entry : mappers.entrySet()) {
+            ObjectMapper mapper = entry.getValue();
+
+            int payloadSize = 0;
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                payloadSize = mapper.writeValueAsBytes(posts).length;
+            }
+
+            long blackhole = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                blackhole += mapper.writeValueAsBytes(posts).length;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            if (blackhole != (long) payloadSize * MEASURED_ITERATIONS) {
+                throw new IllegalStateException("Non-deterministic payload size for " + entry.getKey());
+            }
+
+            System.out.printf("%-24s %14d %14.3f %14.1f%n", entry.getKey(), payloadSize,
+                    elapsed / 1_000_000.0 / MEASURED_ITERATIONS,
+                    (double) elapsed / MEASURED_ITERATIONS / POSTS);
+        }
+    }
+}
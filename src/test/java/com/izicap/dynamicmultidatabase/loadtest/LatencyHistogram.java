@@ -0,0 +1,67 @@
+package com.izicap.dynamicmultidatabase.loadtest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe log-linear latency histogram in microseconds. Values below 256 µs are
+ * recorded exactly; above that every power of two is split into 128 linear buckets, so
+ * the percentiles read back are within 1% of the recorded latencies.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 128;
+    private static final int EXACT_VALUES = 2 * SUB_BUCKETS;
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int MAX_SHIFT = 40 - 8;
+
+    private final AtomicLongArray counts = new AtomicLongArray(EXACT_VALUES + (MAX_SHIFT + 1) * SUB_BUCKETS);
+
+    public void record(long micros) {
+        counts.incrementAndGet(indexOf(Math.min(MAX_VALUE, Math.max(0, micros))));
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Latency in microseconds that the given fraction of recorded requests did not exceed
+     */
+    public long percentile(double fraction) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= threshold) {
+                return highestValueOf(i);
+            }
+        }
+        return MAX_VALUE;
+    }
+
+    private static int indexOf(long value) {
+        if (value < EXACT_VALUES) {
+            return (int) value;
+        }
+        // value >>> shift lies in [128, 256)
+        int shift = 63 - Long.numberOfLeadingZeros(value) - 7;
+        return EXACT_VALUES + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < EXACT_VALUES) {
+            return index;
+        }
+        int shift = (index - EXACT_VALUES) / SUB_BUCKETS + 1;
+        long subBucket = (index - EXACT_VALUES) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,265 @@
+package com.izicap.dynamicmultidatabase.loadtest;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator for a running instance of the application. Each worker
+ * repeatedly picks a tenant (uniformly or Zipf-skewed) and an operation from the
+ * configured mix, calls the endpoint and records its latency; requests made during the
+ * warmup are not recorded. Run with {@code ./gradlew loadTest}, for example against the
+ * in-memory {@code h2} profile:
+ *
+ * <pre>
+ * ./gradlew bootRun --args='--spring.profiles.active=h2'
+ * ./gradlew loadTest -PloadTestArgs="--distribution=zipf --concurrency=32 --duration-seconds=60"
+ * </pre>
+ *
+ * Options (all {@code --name=value}): {@code base-url}, {@code tenants} (most popular
+ * first), {@code distribution} ({@code uniform} or {@code zipf}), {@code zipf-exponent},
+ * {@code concurrency}, {@code duration-seconds}, {@code warmup-seconds}, {@code mix}
+ * (weights of {@code test}, {@code write} and {@code health}), {@code ack}, {@code seed},
+ * and {@code report} / {@code label} to append the results to a CSV file for comparing runs.
+ */
+public class TenantLoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("base-url", "http://localhost:8080");
+        DEFAULTS.put("tenants", "main,client-a,client-b");
+        DEFAULTS.put("distribution", "uniform");
+        DEFAULTS.put("zipf-exponent", "1.0");
+        DEFAULTS.put("concurrency", "16");
+        DEFAULTS.put("duration-seconds", "30");
+        DEFAULTS.put("warmup-seconds", "5");
+        DEFAULTS.put("mix", "test=80,write=15,health=5");
+        DEFAULTS.put("ack", "durable");
+        DEFAULTS.put("seed", "42");
+        DEFAULTS.put("report", "");
+        DEFAULTS.put("label", "");
+    }
+
+    private static final String[] OPERATIONS = {"test", "write", "health"};
+
+    private final Map<String, String> options;
+    private final HttpClient client;
+    private final TenantSelector selector;
+    private final int[] mixWeights = new int[OPERATIONS.length];
+    private final AtomicLong nextPostId = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    private final Map<String, Stats> tenantStats = new ConcurrentHashMap<>();
+    private final Map<String, Stats> operationStats = new ConcurrentHashMap<>();
+
+    public TenantLoadTest(Map<String, String> options) {
+        this.options = options;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        double exponent = "zipf".equalsIgnoreCase(options.get("distribution"))
+                ? Double.parseDouble(options.get("zipf-exponent")) : 0.0;
+        this.selector = new TenantSelector(Arrays.asList(options.get("tenants").split(",")), exponent);
+
+        for (String weight : options.get("mix").split(",")) {
+            String[] parts = weight.split("=");
+            int operation = Arrays.asList(OPERATIONS).indexOf(parts[0].trim());
+            if (operation < 0) {
+                throw new IllegalArgumentException("Unknown operation in mix: " + parts[0]);
+            }
+            mixWeights[operation] = Integer.parseInt(parts[1].trim());
+        }
+        if (Arrays.stream(mixWeights).sum() <= 0) {
+            throw new IllegalArgumentException("The operation mix needs a positive weight");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option: " + name + ", expected one of " + DEFAULTS.keySet());
+            }
+            options.put(name, arg.substring(arg.indexOf('=') + 1));
+        }
+
+        new TenantLoadTest(options).run();
+    }
+
+    public void run() throws Exception {
+        int concurrency = Integer.parseInt(options.get("concurrency"));
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("warmup-seconds")));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("duration-seconds")));
+        long seed = Long.parseLong(options.get("seed"));
+
+        System.out.printf("Load test against %s: %s%n", options.get("base-url"), options);
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Random random = new Random(seed + i);
+            workers.submit(() -> work(random, measureFrom, end));
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(durationNanos + warmupNanos + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS)) {
+            workers.shutdownNow();
+        }
+
+        double seconds = durationNanos / 1e9;
+        printTable("tenant", selector.getTenants(), tenantStats, seconds, true);
+        printTable("operation", Arrays.asList(OPERATIONS), operationStats, seconds, false);
+        appendReport(seconds);
+    }
+
+    private void work(Random random, long measureFrom, long end) {
+        while (System.nanoTime() < end) {
+            String operation = nextOperation(random);
+            String tenant = "health".equals(operation) ? null : selector.next(random);
+
+            long started = System.nanoTime();
+            int status;
+            try {
+                status = client.send(request(operation, tenant), HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (IOException e) {
+                status = -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long micros = (System.nanoTime() - started) / 1000;
+
+            if (started >= measureFrom) {
+                operationStats.computeIfAbsent(operation, key -> new Stats()).record(micros, status);
+                if (tenant != null) {
+                    tenantStats.computeIfAbsent(tenant, key -> new Stats()).record(micros, status);
+                }
+            }
+        }
+    }
+
+    private String nextOperation(Random random) {
+        int pick = random.nextInt(Arrays.stream(mixWeights).sum());
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            pick -= mixWeights[i];
+            if (pick < 0) {
+                return OPERATIONS[i];
+            }
+        }
+        return OPERATIONS[0];
+    }
+
+    private HttpRequest request(String operation, String tenant) {
+        String baseUrl = options.get("base-url");
+        switch (operation) {
+            case "write":
+                long id = nextPostId.incrementAndGet();
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/posts?client=" + encode(tenant) + "&id=" + id +
+                                "&name=" + encode("Load test post " + id) + "&ack=" + encode(options.get("ack"))))
+                        .timeout(Duration.ofSeconds(30))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build();
+            case "health":
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/health"))
+                        .timeout(Duration.ofSeconds(30))
+                        .GET()
+                        .build();
+            default:
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/test?client=" + encode(tenant)))
+                        .timeout(Duration.ofSeconds(30))
+                        .GET()
+                        .build();
+        }
+    }
+
+    private void printTable(String title, List<String> keys, Map<String, Stats> stats, double seconds, boolean withShare) {
+        System.out.printf("%n%-12s %7s %10s %10s %8s %8s %10s %10s %10s%n", title, "share", "requests", "req/s",
+                "errors", "503s", "p50 ms", "p99 ms", "p999 ms");
+
+        for (int i = 0; i < keys.size(); i++) {
+            Stats stat = stats.getOrDefault(keys.get(i), new Stats());
+            String share = withShare ? String.format("%.1f%%", selector.share(i) * 100) : "";
+            System.out.printf("%-12s %7s %10d %10.1f %8d %8d %10.2f %10.2f %10.2f%n", keys.get(i), share,
+                    stat.latency.getCount(), stat.latency.getCount() / seconds, stat.errors.get(), stat.unavailable.get(),
+                    stat.latency.percentile(0.50) / 1000.0, stat.latency.percentile(0.99) / 1000.0,
+                    stat.latency.percentile(0.999) / 1000.0);
+        }
+    }
+
+    private void appendReport(double seconds) throws IOException {
+        String report = options.get("report");
+        if (report.isBlank()) {
+            return;
+        }
+        Path path = Path.of(report);
+        boolean header = !Files.exists(path);
+
+        List<String> lines = new ArrayList<>();
+        if (header) {
+            lines.add("timestamp,label,distribution,concurrency,tenant,requests,req_per_s,errors,unavailable,p50_ms,p99_ms,p999_ms");
+        }
+        String prefix = Instant.now() + "," + options.get("label") + "," + options.get("distribution") + "," +
+                options.get("concurrency") + ",";
+        for (String tenant : selector.getTenants()) {
+            Stats stat = tenantStats.getOrDefault(tenant, new Stats());
+            lines.add(prefix + tenant + "," + stat.latency.getCount() + "," +
+                    String.format("%.1f", stat.latency.getCount() / seconds) + "," + stat.errors.get() + "," +
+                    stat.unavailable.get() + "," + stat.latency.percentile(0.50) / 1000.0 + "," +
+                    stat.latency.percentile(0.99) / 1000.0 + "," + stat.latency.percentile(0.999) / 1000.0);
+        }
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            lines.forEach(writer::println);
+        }
+        System.out.printf("%nAppended results to %s%n", path.toAbsolutePath());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static class Stats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong unavailable = new AtomicLong();
+
+        void record(long micros, int status) {
+            latency.record(micros);
+            if (status == 503) {
+                unavailable.incrementAndGet();
+            } else if (status < 200 || status >= 400) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+}
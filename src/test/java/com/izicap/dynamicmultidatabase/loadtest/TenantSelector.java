@@ -0,0 +1,50 @@
+package com.izicap.dynamicmultidatabase.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Picks the tenant of each load test request. With a Zipf exponent of 0 every tenant is
+ * equally popular; with an exponent {@code s > 0} the tenant at rank {@code k} (in the
+ * configured order) is picked with a probability proportional to {@code 1 / k^s}.
+ */
+public class TenantSelector {
+
+    private final List<String> tenants;
+    private final double[] cumulative;
+
+    public TenantSelector(List<String> tenants, double zipfExponent) {
+        if (tenants.isEmpty()) {
+            throw new IllegalArgumentException("At least one tenant is required");
+        }
+        this.tenants = List.copyOf(tenants);
+        this.cumulative = new double[tenants.size()];
+
+        double total = 0;
+        for (int rank = 1; rank <= tenants.size(); rank++) {
+            total += 1.0 / Math.pow(rank, zipfExponent);
+            cumulative[rank - 1] = total;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    public String next(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        index = index >= 0 ? index + 1 : -index - 1;
+        return tenants.get(Math.min(index, tenants.size() - 1));
+    }
+
+    /**
+     * Share of requests the tenant at the given index receives
+     */
+    public double share(int index) {
+        return index == 0 ? cumulative[0] : cumulative[index] - cumulative[index - 1];
+    }
+
+    public List<String> getTenants() {
+        return tenants;
+    }
+}
@@ -0,0 +1,126 @@
+package com.izicap.dynamicmultidatabase.profiling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TenantHeavyHittersTests {
+
+    @Test
+    void sketchTracksEveryKeyAboveItsShare() {
+        SpaceSaving sketch = new SpaceSaving(4);
+        Map<String, Long> truth = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            // A heavy key among many light ones
+            String key = random.nextInt(3) == 0 ? "heavy" : "light-" + random.nextInt(200);
+            sketch.add(key, 1);
+            truth.merge(key, 1L, Long::sum);
+        }
+
+        SpaceSaving.Snapshot snapshot = sketch.snapshot();
+        assertEquals(10_000, snapshot.total);
+        long[] heavy = snapshot.counters.get("heavy");
+        assertTrue(heavy != null, "heavy key is tracked");
+        assertTrue(heavy[0] >= truth.get("heavy"));
+        assertTrue(heavy[0] - heavy[1] <= truth.get("heavy"));
+        snapshot.counters.forEach((key, values) -> assertTrue(values[1] <= snapshot.total / 4));
+    }
+
+    @Test
+    void sketchWithFreeCountersIsExact() {
+        SpaceSaving sketch = new SpaceSaving(4);
+        sketch.add("a", 3);
+        sketch.add("b", 2);
+        sketch.add("a", 1);
+
+        SpaceSaving.Snapshot snapshot = sketch.snapshot();
+        assertEquals(0, snapshot.minCount);
+        assertEquals(4, snapshot.counters.get("a")[0]);
+        assertEquals(0, snapshot.counters.get("a")[1]);
+        assertEquals(2, snapshot.counters.get("b")[0]);
+    }
+
+    @Test
+    void mergedEstimatesBoundTheTrueTotals() {
+        Random random = new Random(42);
+        List<SpaceSaving.Snapshot> snapshots = new ArrayList<>();
+        Map<String, Long> truth = new HashMap<>();
+        for (int bucket = 0; bucket < 6; bucket++) {
+            SpaceSaving sketch = new SpaceSaving(5);
+            for (int i = 0; i < 2_000; i++) {
+                // Skewed, and a different tenant is hot in each bucket
+                String tenant = "t" + (random.nextInt(4) == 0 ? bucket : random.nextInt(30));
+                long weight = 1 + random.nextInt(50);
+                sketch.add(tenant, weight);
+                truth.merge(tenant, weight, Long::sum);
+            }
+            snapshots.add(sketch.snapshot());
+        }
+
+        Map<String, long[]> merged = TenantHeavyHitters.merge(snapshots);
+        assertTrue(!merged.isEmpty());
+        merged.forEach((tenant, values) -> {
+            long actual = truth.get(tenant);
+            assertTrue(values[0] >= actual, tenant + " estimated " + values[0] + " below " + actual);
+            assertTrue(values[0] - values[1] <= actual, tenant + " error " + values[1] + " does not cover " + actual);
+        });
+    }
+
+    @Test
+    void mergeChargesMissingTenantsTheSmallestCounter() {
+        SpaceSaving full = new SpaceSaving(2);
+        full.add("a", 10);
+        full.add("b", 4);
+        SpaceSaving other = new SpaceSaving(2);
+        other.add("c", 5);
+
+        Map<String, long[]> merged = TenantHeavyHitters.merge(List.of(full.snapshot(), other.snapshot()));
+        // c may have been evicted from the full sketch below its smallest counter
+        assertEquals(9, merged.get("c")[0]);
+        assertEquals(4, merged.get("c")[1]);
+        // The other sketch has free counters, so a and b never occurred there
+        assertEquals(10, merged.get("a")[0]);
+        assertEquals(0, merged.get("a")[1]);
+    }
+
+    @Test
+    void topFoldsTheBuffersOfEveryThread() throws Exception {
+        TenantHeavyHitters heavyHitters = new TenantHeavyHitters(60_000, 6, 8);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    heavyHitters.record(i % 4 == 0 ? "CLIENT_A" : "MAIN", 2_000_000, 3);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        TenantHeavyHitters.Result requests = heavyHitters.top(TenantHeavyHitters.Metric.REQUESTS, 60_000, 10);
+        assertEquals(4_000, requests.getTotal());
+        assertEquals(2, requests.getTenants().size());
+        assertEquals("MAIN", requests.getTenants().get(0).getTenant());
+        assertEquals(3_000, requests.getTenants().get(0).getValue());
+        assertEquals(0.75, requests.getTenants().get(0).getShare());
+        assertEquals(1_000, requests.getTenants().get(1).getValue());
+
+        TenantHeavyHitters.Result time = heavyHitters.top(TenantHeavyHitters.Metric.DB_TIME, 60_000, 1);
+        assertEquals(1, time.getTenants().size());
+        assertEquals(3_000 * 2_000L, time.getTenants().get(0).getValue());
+
+        TenantHeavyHitters.Result rows = heavyHitters.top(TenantHeavyHitters.Metric.ROWS, 60_000, 10);
+        assertEquals(12_000, rows.getTotal());
+    }
+}
@@ -0,0 +1,179 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBContextHolder;
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.Post;
+import com.izicap.dynamicmultidatabase.PostRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Batching of the coalescer against a repository that records the tenant and ids of
+ * every query; only ids below 100 exist
+ */
+class PostLookupCoalescerTests {
+
+    private final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+
+    private final PostRepository postRepository = mock(PostRepository.class);
+
+    private PostLookupCoalescer coalescer;
+
+    @AfterEach
+    void tearDown() {
+        if (coalescer != null) {
+            coalescer.shutdown();
+        }
+        DBContextHolder.clear();
+    }
+
+    @Test
+    void coalescesLookupsWithinTheWindow() throws Exception {
+        start(true, 50, 100);
+
+        CompletableFuture<Optional<Post>> first = coalescer.load(DBTypeEnum.CLIENT_A, 1);
+        CompletableFuture<Optional<Post>> second = coalescer.load(DBTypeEnum.CLIENT_A, 2);
+        CompletableFuture<Optional<Post>> missing = coalescer.load(DBTypeEnum.CLIENT_A, 100);
+
+        assertEquals("post-1", get(first).orElseThrow().getName());
+        assertEquals("post-2", get(second).orElseThrow().getName());
+        assertFalse(get(missing).isPresent());
+        assertEquals(List.of("CLIENT_A[1, 2, 100]"), queries);
+        assertEquals(1L, coalescer.getStats().get("queries"));
+    }
+
+    @Test
+    void sharesALookupOfAnIdAlreadyQueued() throws Exception {
+        start(true, 50, 100);
+
+        CompletableFuture<Optional<Post>> first = coalescer.load(DBTypeEnum.CLIENT_A, 7);
+        CompletableFuture<Optional<Post>> second = coalescer.load(DBTypeEnum.CLIENT_A, 7);
+
+        assertSame(first, second);
+        get(first);
+        assertEquals(List.of("CLIENT_A[7]"), queries);
+        assertEquals(1L, coalescer.getStats().get("sharedLookups"));
+
+        // A lookup after the batch completed starts a new one
+        get(coalescer.load(DBTypeEnum.CLIENT_A, 7));
+        assertEquals(2, queries.size());
+    }
+
+    @Test
+    void dispatchesAFullBatchBeforeTheWindowEnds() throws Exception {
+        start(true, 60_000, 2);
+
+        CompletableFuture<Optional<Post>> first = coalescer.load(DBTypeEnum.MAIN, 1);
+        CompletableFuture<Optional<Post>> second = coalescer.load(DBTypeEnum.MAIN, 2);
+        CompletableFuture<Optional<Post>> third = coalescer.load(DBTypeEnum.MAIN, 3);
+
+        get(first);
+        get(second);
+        assertEquals(List.of("MAIN[1, 2]"), queries);
+        assertFalse(third.isDone());
+    }
+
+    @Test
+    void neverMixesTenants() throws Exception {
+        start(true, 50, 100);
+
+        CompletableFuture<Optional<Post>> main = coalescer.load(DBTypeEnum.MAIN, 1);
+        CompletableFuture<Optional<Post>> clientB = coalescer.load(DBTypeEnum.CLIENT_B, 2);
+        get(main);
+        get(clientB);
+
+        assertEquals(2, queries.size());
+        assertTrue(queries.containsAll(List.of("MAIN[1]", "CLIENT_B[2]")), queries.toString());
+    }
+
+    @Test
+    void failsEveryLookupOfAFailedBatch() {
+        start(true, 50, 100);
+        doThrow(new IllegalStateException("down")).when(postRepository).findAllById(any());
+
+        CompletableFuture<Optional<Post>> first = coalescer.load(DBTypeEnum.CLIENT_A, 1);
+        CompletableFuture<Optional<Post>> second = coalescer.load(DBTypeEnum.CLIENT_A, 2);
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> get(first));
+        assertEquals("down", failure.getCause().getMessage());
+        assertThrows(ExecutionException.class, () -> get(second));
+    }
+
+    @Test
+    void looksUpDirectlyWhenDisabled() throws Exception {
+        start(false, 50, 100);
+
+        CompletableFuture<Optional<Post>> result = coalescer.load(DBTypeEnum.CLIENT_A, 5);
+
+        assertTrue(result.isDone());
+        assertEquals("post-5", get(result).orElseThrow().getName());
+        assertEquals(List.of("CLIENT_A 5"), queries);
+        verify(postRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void restoresTheCallersTenantAfterADirectLookup() throws Exception {
+        start(false, 50, 100);
+        DBContextHolder.setCurrentDb(DBTypeEnum.CLIENT_B);
+
+        get(coalescer.load(DBTypeEnum.CLIENT_A, 5));
+
+        assertEquals(List.of("CLIENT_A 5"), queries);
+        assertEquals(DBTypeEnum.CLIENT_B, DBContextHolder.getCurrentDb());
+    }
+
+    private void start(boolean enabled, long windowMs, int maxBatchSize) {
+        when(postRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Long> ids = new ArrayList<>();
+            invocation.<Iterable<Long>>getArgument(0).forEach(ids::add);
+            queries.add(DBContextHolder.getCurrentDb() + ids.toString());
+            List<Post> posts = new ArrayList<>();
+            for (Long id : ids) {
+                if (id < 100) {
+                    posts.add(new Post(id, "post-" + id));
+                }
+            }
+            return posts;
+        });
+        when(postRepository.findById(anyLong())).thenAnswer(invocation -> {
+            long id = invocation.getArgument(0);
+            queries.add(DBContextHolder.getCurrentDb() + " " + id);
+            return id < 100 ? Optional.of(new Post(id, "post-" + id)) : Optional.empty();
+        });
+
+        coalescer = new PostLookupCoalescer();
+        ReflectionTestUtils.setField(coalescer, "postRepository", postRepository);
+        ReflectionTestUtils.setField(coalescer, "enabled", enabled);
+        ReflectionTestUtils.setField(coalescer, "windowMs", windowMs);
+        ReflectionTestUtils.setField(coalescer, "maxBatchSize", maxBatchSize);
+        ReflectionTestUtils.setField(coalescer, "threads", 2);
+        ReflectionTestUtils.setField(coalescer, "queueCapacity", 16);
+        coalescer.start();
+    }
+
+    private static Optional<Post> get(CompletableFuture<Optional<Post>> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,48 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostPartitionServiceTests {
+
+    @Test
+    void boundsAreTheStartOfTheNextMonthInUtc() {
+        Map<String, Long> upcoming = PostPartitionService.upcomingPartitions(
+                YearMonth.of(2024, 11), YearMonth.of(2025, 2), Long.MIN_VALUE);
+
+        assertEquals(List.of("p202411", "p202412", "p202501", "p202502"), List.copyOf(upcoming.keySet()));
+        // 2024-12-01T00:00:00Z, 2025-01-01T00:00:00Z, 2025-02-01T00:00:00Z, 2025-03-01T00:00:00Z
+        assertEquals(List.of(1733011200L, 1735689600L, 1738368000L, 1740787200L), List.copyOf(upcoming.values()));
+    }
+
+    @Test
+    void skipsMonthsAlreadyCovered() {
+        long highestBound = PostPartitionService.startOf(YearMonth.of(2025, 1));
+
+        Map<String, Long> upcoming = PostPartitionService.upcomingPartitions(
+                PostPartitionService.monthOf(highestBound), YearMonth.of(2025, 3), highestBound);
+
+        assertEquals(List.of("p202501", "p202502", "p202503"), List.copyOf(upcoming.keySet()));
+        upcoming.values().forEach(bound -> assertTrue(bound > highestBound));
+    }
+
+    @Test
+    void addsNothingOnceTheLastMonthIsCovered() {
+        long highestBound = PostPartitionService.startOf(YearMonth.of(2025, 4));
+
+        assertTrue(PostPartitionService.upcomingPartitions(
+                YearMonth.of(2025, 1), YearMonth.of(2025, 3), highestBound).isEmpty());
+    }
+
+    @Test
+    void monthOfABoundIsTheMonthItStarts() {
+        assertEquals(YearMonth.of(2025, 1), PostPartitionService.monthOf(1735689600L));
+        assertEquals(YearMonth.of(2024, 12), PostPartitionService.monthOf(1735689599L));
+    }
+}
@@ -0,0 +1,132 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.PostEntityListener.ChangeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Maintained post counts against an in-memory H2 database standing in for one tenant.
+ * Writes are reported to the service the way the entity listener does after commit.
+ */
+class RowCountServiceTests {
+
+    private static final DBTypeEnum TENANT = DBTypeEnum.CLIENT_A;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private RowCountService rowCountService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:row-count-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE post (id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE table_row_count (table_name VARCHAR(64) NOT NULL PRIMARY KEY, " +
+                "row_count BIGINT NOT NULL, reconciled_at TIMESTAMP NULL)");
+
+        rowCountService = new RowCountService();
+        ReflectionTestUtils.setField(rowCountService, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @Test
+    void reconcileCreatesTheCounterRow() {
+        insertPosts(3);
+
+        assertNull(storedCount());
+        assertEquals(3, rowCountService.exactCount(TENANT));
+        assertEquals(3, storedCount());
+    }
+
+    @Test
+    void countsPendingWritesBeforeTheyAreFlushed() {
+        insertPosts(2);
+        rowCountService.reconcile(TENANT);
+
+        insertPosts(3);
+        create(3);
+        jdbcTemplate.update("DELETE FROM post WHERE id = 1");
+        rowCountService.onPostChange(TENANT, null, ChangeType.DELETED);
+        rowCountService.onPostChange(TENANT, null, ChangeType.UPDATED);
+
+        assertEquals(2, storedCount());
+        assertEquals(2, rowCountService.pendingDelta(TENANT));
+        assertEquals(4, rowCountService.exactCount(TENANT));
+    }
+
+    @Test
+    void flushAddsThePendingDeltaOnce() {
+        insertPosts(1);
+        rowCountService.reconcile(TENANT);
+        insertPosts(2);
+        create(2);
+
+        rowCountService.flushDeltas();
+        rowCountService.flushDeltas();
+
+        assertEquals(3, storedCount());
+        assertEquals(0, rowCountService.pendingDelta(TENANT));
+        assertEquals(3, rowCountService.exactCount(TENANT));
+    }
+
+    @Test
+    void flushKeepsTheDeltaWithoutACounterRow() {
+        create(2);
+
+        rowCountService.flushDeltas();
+
+        assertNull(storedCount());
+        assertEquals(2, rowCountService.pendingDelta(TENANT));
+    }
+
+    @Test
+    void reconcileDiscardsWritesItCountedAndCorrectsDrift() {
+        insertPosts(2);
+        rowCountService.reconcile(TENANT);
+        // Written by something that does not report to the service
+        insertPosts(4);
+        // Committed and reported, not flushed yet
+        insertPosts(1);
+        create(1);
+
+        assertEquals(7, rowCountService.reconcile(TENANT));
+        assertEquals(7, storedCount());
+        assertEquals(0, rowCountService.pendingDelta(TENANT));
+    }
+
+    @Test
+    void failedReconcileKeepsThePendingDelta() {
+        create(2);
+        jdbcTemplate.execute("DROP TABLE post");
+
+        assertThrows(RuntimeException.class, () -> rowCountService.reconcile(TENANT));
+        assertEquals(2, rowCountService.pendingDelta(TENANT));
+    }
+
+    private void insertPosts(int count) {
+        for (int i = 0; i < count; i++) {
+            jdbcTemplate.update("INSERT INTO post (name) VALUES ('post')");
+        }
+    }
+
+    private void create(int count) {
+        for (int i = 0; i < count; i++) {
+            rowCountService.onPostChange(TENANT, null, ChangeType.CREATED);
+        }
+    }
+
+    private Long storedCount() {
+        return jdbcTemplate.query("SELECT row_count FROM table_row_count WHERE table_name = 'post'",
+                rs -> rs.next() ? rs.getLong(1) : null);
+    }
+}
@@ -0,0 +1,173 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import com.izicap.dynamicmultidatabase.DBTypeEnum;
+import com.izicap.dynamicmultidatabase.MultiRoutingDataSource;
+import com.izicap.dynamicmultidatabase.model.TenantImportResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chunked CSV imports into an in-memory H2 database, which takes the multi-row insert
+ * path; LOAD DATA needs MySQL, so only its field encoding is checked here
+ */
+class TenantImportServiceTests {
+
+    private static final String CSV =
+            "id,name,note\n" +
+            "1,plain,\\N\n" +
+            "2,\"with, comma\",\"\\N\"\n" +
+            "3,\"say \"\"hi\"\"\",x\r\n" +
+            "4,\"two\nlines\",y\n" +
+            "5,last,z\n";
+
+    @TempDir
+    Path directory;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TenantImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:import-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE item (id BIGINT PRIMARY KEY, name VARCHAR(20), note VARCHAR(2))");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V11__Add_bulk_import_checkpoint_table.sql"))
+                .execute(dataSource);
+
+        MultiRoutingDataSource routing = mock(MultiRoutingDataSource.class);
+        when(routing.getGatedDataSource(DBTypeEnum.CLIENT_A)).thenReturn(dataSource);
+
+        importService = new TenantImportService();
+        ReflectionTestUtils.setField(importService, "multiRoutingDataSource", routing);
+        ReflectionTestUtils.setField(importService, "chunkSize", 2);
+        ReflectionTestUtils.setField(importService, "loadDataEnabled", true);
+        ReflectionTestUtils.setField(importService, "rebuildIndexes", true);
+    }
+
+    @Test
+    void importsCsvInChunks() throws Exception {
+        TenantImportResult result = importService.importFile(DBTypeEnum.CLIENT_A, write("item.csv", CSV), null);
+
+        assertTrue(result.isSuccess(), result.getError());
+        assertEquals("item", result.getTable());
+        assertEquals(5, result.getRows());
+        assertEquals(3, result.getChunks());
+        assertEquals("INSERT", result.getMethod());
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT id, name, note FROM item ORDER BY id");
+        assertEquals(5, rows.size());
+        assertNull(rows.get(0).get("note"));
+        assertEquals("with, comma", rows.get(1).get("name"));
+        // Only an unquoted \N is NULL
+        assertEquals("\\N", rows.get(1).get("note"));
+        assertEquals("say \"hi\"", rows.get(2).get("name"));
+        assertEquals("x", rows.get(2).get("note"));
+        assertEquals("two\nlines", rows.get(3).get("name"));
+    }
+
+    @Test
+    void resumesAfterTheLastCommittedChunk() throws Exception {
+        Path file = write("item.csv", CSV.replace("3,\"say \"\"hi\"\"\",x", "3,\"say \"\"hi\"\"\",xyz"));
+
+        TenantImportResult failed = importService.importFile(DBTypeEnum.CLIENT_A, file, null);
+        assertFalse(failed.isSuccess());
+        assertEquals(2, failed.getRows());
+        assertEquals(2, count());
+
+        jdbcTemplate.execute("ALTER TABLE item ALTER COLUMN note VARCHAR(3)");
+        TenantImportResult resumed = importService.importFile(DBTypeEnum.CLIENT_A, file, null);
+        assertTrue(resumed.isSuccess(), resumed.getError());
+        assertEquals(2, resumed.getResumedRows());
+        assertEquals(3, resumed.getRows());
+        assertEquals(2, resumed.getChunks());
+        assertEquals(5, count());
+    }
+
+    @Test
+    void skipsACompletedImport() throws Exception {
+        Path file = write("item.csv", CSV);
+        importService.importFile(DBTypeEnum.CLIENT_A, file, null);
+
+        TenantImportResult repeated = importService.importFile(DBTypeEnum.CLIENT_A, file, null);
+        assertTrue(repeated.isSuccess());
+        assertEquals(5, repeated.getResumedRows());
+        assertEquals(0, repeated.getRows());
+        assertEquals(5, count());
+    }
+
+    @Test
+    void startsOverWhenTheContentChanged() throws Exception {
+        importService.importFile(DBTypeEnum.CLIENT_A, write("item.csv", CSV), null);
+
+        // Same name and size, different rows
+        Path changed = write("item.csv", CSV.replace("\n1,", "\n6,").replace("\n2,", "\n7,")
+                .replace("\n3,", "\n8,").replace("\n4,", "\n9,").replace("\n5,", "\n0,"));
+        TenantImportResult result = importService.importFile(DBTypeEnum.CLIENT_A, changed, null);
+
+        assertTrue(result.isSuccess(), result.getError());
+        assertEquals(0, result.getResumedRows());
+        assertEquals(5, result.getRows());
+        assertEquals(10, count());
+    }
+
+    @Test
+    void rejectsUnknownColumns() throws Exception {
+        TenantImportResult result = importService.importFile(DBTypeEnum.CLIENT_A,
+                write("item.csv", "id,missing\n1,a\n"), null);
+
+        assertFalse(result.isSuccess());
+        assertTrue(result.getError().contains("missing"), result.getError());
+        assertEquals(0, count());
+    }
+
+    @Test
+    void rejectsRowsWithTheWrongNumberOfFields() throws Exception {
+        TenantImportResult result = importService.importFile(DBTypeEnum.CLIENT_A,
+                write("item.csv", "id,name,note\n1,a,b\n2,c\n"), null);
+
+        assertFalse(result.isSuccess());
+        assertEquals(0, count());
+    }
+
+    @Test
+    void escapesLoadDataFields() throws Exception {
+        StringWriter writer = new StringWriter();
+        for (Object value : Arrays.asList(null, "a\tb\nc\rd\\e\0", true, false, 42L)) {
+            TenantImportService.writeTsvField(writer, value);
+            writer.write('|');
+        }
+        assertEquals("\\N|a\\tb\\nc\\rd\\\\e\\0|1|0|42|", writer.toString());
+    }
+
+    private Path write(String name, String content) throws Exception {
+        return Files.writeString(directory.resolve(name), content, StandardCharsets.UTF_8);
+    }
+
+    private long count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM item", Long.class);
+    }
+}
@@ -0,0 +1,112 @@
+package com.izicap.dynamicmultidatabase.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Table discovery and the keyed comparison that repairs the destination before cutover,
+ * between two in-memory H2 databases
+ */
+class TenantMoveServiceTests {
+
+    private Connection source;
+
+    private Connection destination;
+
+    private TenantMoveService moveService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        source = connect();
+        destination = connect();
+        destination.setAutoCommit(false);
+        for (Connection connection : List.of(source, destination)) {
+            JdbcTemplate jdbcTemplate = template(connection);
+            jdbcTemplate.execute("CREATE TABLE post (id BIGINT PRIMARY KEY, name VARCHAR(255), " +
+                    "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            jdbcTemplate.execute("CREATE TABLE flyway_schema_history (installed_rank INT PRIMARY KEY)");
+            jdbcTemplate.execute("CREATE TABLE post_archive_p202401 (id BIGINT PRIMARY KEY)");
+            jdbcTemplate.execute("CREATE TABLE audit_note (note VARCHAR(20))");
+        }
+        destination.commit();
+
+        moveService = new TenantMoveService();
+        ReflectionTestUtils.setField(moveService, "batchSize", 2);
+        ReflectionTestUtils.setField(moveService, "excludedTables", "flyway_schema_history, post_archive_*");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        source.close();
+        destination.close();
+    }
+
+    @Test
+    void listsTablesWithoutExcludedOnes() throws Exception {
+        List<TenantMoveService.TableInfo> tables = moveService.listTables(source);
+
+        // In name order, as the database reports them
+        assertEquals(2, tables.size());
+        assertEquals("audit_note", tables.get(0).name);
+        assertNull(tables.get(0).keyColumn);
+        assertEquals("post", tables.get(1).name);
+        assertEquals("id", tables.get(1).keyColumn);
+        assertTrue(tables.get(1).hasUpdatedAt);
+    }
+
+    @Test
+    void reconcileMakesTheDestinationMatchChunkByChunk() throws Exception {
+        JdbcTemplate sourceTemplate = template(source);
+        JdbcTemplate destinationTemplate = template(destination);
+        for (long id = 1; id <= 7; id++) {
+            sourceTemplate.update("INSERT INTO post (id, name, updated_at) VALUES (?, ?, TIMESTAMP '2025-01-01 00:00:00')",
+                    id, "post-" + id);
+        }
+        // 1, 2 and 7 match; 3 is missing, 4 stale, 5 and 6 missing, 10 only on the destination
+        for (long id : new long[] {1, 2, 4, 7}) {
+            destinationTemplate.update("INSERT INTO post (id, name, updated_at) VALUES (?, ?, TIMESTAMP '2025-01-01 00:00:00')",
+                    id, id == 4 ? "stale" : "post-" + id);
+        }
+        destinationTemplate.update("INSERT INTO post (id, name) VALUES (10, 'deleted')");
+        // Deleted on the source between two of its keys
+        destinationTemplate.update("INSERT INTO post (id, name) VALUES (0, 'deleted')");
+        destination.commit();
+
+        List<TenantMoveService.TableInfo> tables = moveService.listTables(source);
+        long repaired = moveService.reconcile(source, destination, tables);
+
+        assertEquals(6, repaired);
+        List<Map<String, Object>> rows = destinationTemplate.queryForList("SELECT id, name FROM post ORDER BY id");
+        assertEquals(7, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(i + 1L, rows.get(i).get("id"));
+            assertEquals("post-" + (i + 1), rows.get(i).get("name"));
+        }
+
+        long again = moveService.reconcile(source, destination, tables);
+        assertEquals(0, again);
+    }
+
+    private static Connection connect() throws Exception {
+        return new DriverManagerDataSource("jdbc:h2:mem:move-" + UUID.randomUUID() +
+                ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "").getConnection();
+    }
+
+    private static JdbcTemplate template(Connection connection) {
+        return new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+    }
+}